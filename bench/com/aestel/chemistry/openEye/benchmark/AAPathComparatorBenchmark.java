@@ -0,0 +1,156 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import openeye.oechem.OEMolBase;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.aestel.chemistry.openEye.BatchSimComparator;
+import com.aestel.chemistry.openEye.SimComparator;
+import com.aestel.chemistry.openEye.SimComparatorList;
+import com.aestel.chemistry.openEye.SimilarityCollector;
+import com.genentech.chemistry.openEye.AAPathComparatorFact;
+import com.genentech.chemistry.openEye.AAPathComparatorFact.AAPathCompareType;
+
+/**
+ * Throughput of all versions of the AAPath comparators, used to choose
+ * {@link AAPathComparatorFact#DEFAULTVersion}.
+ *
+ * Each invocation compares one query with all molecules of the set, the
+ * score is therefore in comparisons per time unit. search does the same
+ * through {@link SimComparatorList}, which uses the {@link BatchSimComparator}
+ * API of versions 5 to 8. createComparator measures the path enumeration for
+ * one molecule.
+ *
+ * @author albertgo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AAPathComparatorBenchmark
+{  @Param({ "1", "2", "3", "4", "5", "6", "7", "8" })
+   public int version;
+
+   /** FUZZY types are only supported by versions 5 to 8 */
+   @Param({ "DEFAULT", "FAST" })
+   public String type;
+
+   @Param({ "50" })
+   public int nMols;
+
+   /** passed to similarity(other, minSim), 0 computes all similarities */
+   @Param({ "0" })
+   public double minSim;
+
+   private AAPathComparatorFact fact;
+   private List<OEMolBase> mols;
+   private List<SimComparator<OEMolBase>> comps;
+   private SimComparatorList<OEMolBase, SimComparator<OEMolBase>> store;
+   private SumCollector collector;
+   private int query;
+
+   /** sums the similarities so that the search is not eliminated */
+   private static class SumCollector implements SimilarityCollector
+   {  private final double minSim;
+      double sum;
+
+      SumCollector(double minSim)
+      {  this.minSim = minSim;
+      }
+
+      @Override
+      public void collect(int idx, double sim)
+      {  sum += sim;
+      }
+
+      @Override
+      public double getMinSimilarity()
+      {  return minSim;
+      }
+   }
+
+   @Setup
+   public void setUp()
+   {  fact = new AAPathComparatorFact(AAPathCompareType.valueOf(type), version);
+      mols = BenchmarkData.readMolecules(BenchmarkData.MOLECULES, nMols);
+      comps = new ArrayList<SimComparator<OEMolBase>>(mols.size());
+      store = new SimComparatorList<OEMolBase, SimComparator<OEMolBase>>(mols.size());
+      for(OEMolBase mol : mols)
+      {  comps.add(fact.createComparator(mol));
+         store.add(fact.createComparator(mol));
+      }
+      collector = new SumCollector(minSim);
+   }
+
+   @TearDown
+   public void tearDown()
+   {  for(SimComparator<OEMolBase> c : comps)
+         c.close();
+      store.close();
+      BenchmarkData.delete(mols);
+      fact.close();
+   }
+
+   /** next query, cycling through the set */
+   private int nextQuery()
+   {  if( ++query >= comps.size() ) query = 0;
+      return query;
+   }
+
+   @Benchmark
+   public double similarity()
+   {  SimComparator<OEMolBase> q = comps.get(nextQuery());
+      double sum = 0D;
+      for(SimComparator<OEMolBase> c : comps)
+         sum += q.similarity(c, minSim);
+      return sum;
+   }
+
+   @Benchmark
+   public double search()
+   {  collector.sum = 0D;
+      store.search(nextQuery(), collector);
+      return collector.sum;
+   }
+
+   @Benchmark
+   public SimComparator<OEMolBase> createComparator()
+   {  SimComparator<OEMolBase> c = fact.createComparator(mols.get(nextQuery()));
+      c.close();
+      return c;
+   }
+}
@@ -0,0 +1,94 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import openeye.oechem.OEGraphMol;
+import openeye.oechem.OEMolBase;
+import openeye.oechem.oechem;
+import openeye.oechem.oemolistream;
+
+/**
+ * Fixed molecule and fingerprint sets from the test directory used by all
+ * benchmarks so that numbers are comparable between runs.
+ *
+ * Paths are relative to the project directory, the directory can be changed
+ * with the system property bench.testDir.
+ *
+ * @author albertgo
+ */
+public final class BenchmarkData
+{  /** 100 drug like molecules */
+   public static final String MOLECULES = "inputFiles/100.sdf";
+   /** circular fingerprints from sdfCFP in tag AFP2 */
+   public static final String CFP_FILE = "sdfCFP/100.refout.sdf";
+   public static final String CFP_TAG  = "AFP2";
+   /** linear path fingerprints from sdfFingerprinter folded to 512 bits */
+   public static final String LINEAR_FILE = "sdfFingerprinter/100.refout.sdf";
+   public static final String LINEAR_TAG  = "linear7*4_folded512";
+
+   private BenchmarkData()
+   {
+   }
+
+   public static String getPath(String file)
+   {  return System.getProperty("bench.testDir", "test") + '/' + file;
+   }
+
+   /**
+    * @param maxMols read at most this many molecules
+    */
+   public static List<OEMolBase> readMolecules(String file, int maxMols)
+   {  List<OEMolBase> mols = new ArrayList<OEMolBase>();
+      oemolistream ifs = new oemolistream(getPath(file));
+      OEMolBase mol = new OEGraphMol();
+      while( mols.size() < maxMols && oechem.OEReadMolecule(ifs, mol) )
+         mols.add(new OEGraphMol(mol));
+      ifs.close();
+      ifs.delete();
+      mol.delete();
+
+      if( mols.size() == 0 )
+         throw new Error("No molecules in " + getPath(file));
+      return mols;
+   }
+
+   /**
+    * @return the value of tag for each molecule in file.
+    */
+   public static List<String> readTag(String file, String tag)
+   {  List<OEMolBase> mols = readMolecules(file, Integer.MAX_VALUE);
+      List<String> values = new ArrayList<String>(mols.size());
+      for(OEMolBase mol : mols)
+      {  String val = oechem.OEGetSDData(mol, tag);
+         if( val.length() == 0 )
+            throw new Error(String.format("Missing %s in %s", tag, getPath(file)));
+         values.add(val);
+      }
+      delete(mols);
+      return values;
+   }
+
+   public static void delete(List<OEMolBase> mols)
+   {  for(OEMolBase mol : mols)
+         mol.delete();
+      mols.clear();
+   }
+}
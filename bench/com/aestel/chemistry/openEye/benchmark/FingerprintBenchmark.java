@@ -0,0 +1,158 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import openeye.oechem.OEGraphMol;
+import openeye.oechem.OEMolBase;
+import openeye.oechem.oechem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.aestel.chemistry.openEye.fp.ByteFingerprint;
+import com.aestel.chemistry.openEye.fp.FPComparator;
+import com.aestel.chemistry.openEye.fp.FPMTaniComparator;
+import com.aestel.chemistry.openEye.fp.LongFingerprint;
+import com.aestel.chemistry.openEye.fp.SparseFingerprint;
+
+/**
+ * Throughput of the fingerprint similarity kernels.
+ *
+ * Each invocation compares one query with all fingerprints of the set, the
+ * score is therefore in comparisons per time unit.
+ *
+ * @author albertgo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FingerprintBenchmark
+{  /** CFP: circular fingerprints, LINEAR: folded linear path fingerprints */
+   @Param({ "CFP", "LINEAR" })
+   public String fpSet;
+
+   private LongFingerprint[] longFPs;
+   private ByteFingerprint[] byteFPs;
+   private SparseFingerprint[] sparseFPs;
+   private FPComparator[] comparators;
+   private FPMTaniComparator[] mTaniComparators;
+   private int query;
+
+   @Setup
+   public void setUp()
+   {  List<String> hex;
+      if( "CFP".equals(fpSet) )
+         hex = BenchmarkData.readTag(BenchmarkData.CFP_FILE, BenchmarkData.CFP_TAG);
+      else
+         hex = BenchmarkData.readTag(BenchmarkData.LINEAR_FILE, BenchmarkData.LINEAR_TAG);
+
+      int n = hex.size();
+      longFPs = new LongFingerprint[n];
+      byteFPs = new ByteFingerprint[n];
+      sparseFPs = new SparseFingerprint[n];
+      comparators = new FPComparator[n];
+      mTaniComparators = new FPMTaniComparator[n];
+
+      OEMolBase mol = new OEGraphMol();
+      for(int i=0; i<n; i++)
+      {  longFPs[i] = new LongFingerprint(hex.get(i));
+         byteFPs[i] = new ByteFingerprint(hex.get(i));
+         sparseFPs[i] = new SparseFingerprint(longFPs[i].getBits());
+
+         oechem.OESetSDData(mol, "fp", hex.get(i));
+         comparators[i] = new FPComparator(mol, "fp");
+         mTaniComparators[i] = new FPMTaniComparator(mol, "fp");
+      }
+      mol.delete();
+   }
+
+   /** next query, cycling through the set */
+   private int nextQuery()
+   {  if( ++query >= longFPs.length ) query = 0;
+      return query;
+   }
+
+   @Benchmark
+   public double longTanimoto()
+   {  LongFingerprint q = longFPs[nextQuery()];
+      double sum = 0D;
+      for(LongFingerprint fp : longFPs)
+         sum += q.tanimoto(fp);
+      return sum;
+   }
+
+   @Benchmark
+   public double longMTanimoto()
+   {  LongFingerprint q = longFPs[nextQuery()];
+      double sum = 0D;
+      for(LongFingerprint fp : longFPs)
+         sum += q.mtanimoto(fp);
+      return sum;
+   }
+
+   @Benchmark
+   public double byteTanimoto()
+   {  ByteFingerprint q = byteFPs[nextQuery()];
+      double sum = 0D;
+      for(ByteFingerprint fp : byteFPs)
+         sum += q.tanimoto(fp);
+      return sum;
+   }
+
+   @Benchmark
+   public double sparseTanimoto()
+   {  SparseFingerprint q = sparseFPs[nextQuery()];
+      double sum = 0D;
+      for(SparseFingerprint fp : sparseFPs)
+         sum += q.tanimoto(fp);
+      return sum;
+   }
+
+   @Benchmark
+   public double fpComparator()
+   {  FPComparator q = comparators[nextQuery()];
+      double sum = 0D;
+      for(FPComparator c : comparators)
+         sum += q.similarity(c);
+      return sum;
+   }
+
+   @Benchmark
+   public double fpMTaniComparator()
+   {  FPMTaniComparator q = mTaniComparators[nextQuery()];
+      double sum = 0D;
+      for(FPMTaniComparator c : mTaniComparators)
+         sum += q.similarity(c);
+      return sum;
+   }
+}
@@ -0,0 +1,96 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import openeye.oechem.OEExprOpts;
+import openeye.oechem.OEMolBase;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.aestel.chemistry.openEye.SimComparator;
+import com.genentech.chemistry.openEye.MCSSCompareType;
+import com.genentech.chemistry.openEye.MCSSComparatorFact;
+
+/**
+ * Throughput of the MCSS comparator with the default atom and bond expressions.
+ *
+ * Each invocation compares one query with all molecules of the set.
+ *
+ * @author albertgo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MCSSComparatorBenchmark
+{  @Param({ "DEFAULT", "QUERYRatio" })
+   public String type;
+
+   @Param({ "20" })
+   public int nMols;
+
+   private MCSSComparatorFact fact;
+   private List<OEMolBase> mols;
+   private List<SimComparator<OEMolBase>> comps;
+   private int query;
+
+   @Setup
+   public void setUp()
+   {  fact = new MCSSComparatorFact(MCSSCompareType.toEnum(type),
+                                    OEExprOpts.DefaultAtoms, OEExprOpts.DefaultBonds);
+      mols = BenchmarkData.readMolecules(BenchmarkData.MOLECULES, nMols);
+      comps = new ArrayList<SimComparator<OEMolBase>>(mols.size());
+      for(OEMolBase mol : mols)
+         comps.add(fact.createComparator(mol));
+   }
+
+   @TearDown
+   public void tearDown()
+   {  for(SimComparator<OEMolBase> c : comps)
+         c.close();
+      BenchmarkData.delete(mols);
+      fact.close();
+   }
+
+   @Benchmark
+   public double similarity()
+   {  if( ++query >= comps.size() ) query = 0;
+      SimComparator<OEMolBase> q = comps.get(query);
+      double sum = 0D;
+      for(SimComparator<OEMolBase> c : comps)
+         sum += q.similarity(c);
+      return sum;
+   }
+}
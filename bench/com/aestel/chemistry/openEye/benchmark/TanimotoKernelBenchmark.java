@@ -0,0 +1,139 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye.benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.aestel.chemistry.openEye.fp.LongFingerprint;
+import com.aestel.chemistry.openEye.fp.PackedFingerprintStore;
+import com.aestel.chemistry.openEye.fp.TanimotoKernel;
+
+/**
+ * Throughput of the scalar and vector {@link TanimotoKernel}s scoring one
+ * query against packed reference fingerprints.
+ *
+ * The fingerprint set is repeated to fill {@link #nRef} references. Each
+ * invocation scores one query against all references, the score is
+ * therefore in comparisons per time unit.
+ *
+ * The vector kernel needs the jdk.incubator.vector module, without it the
+ * scalar kernel is used and a warning is printed:
+ * <pre>
+ * ant benchmark -Dbench.args="TanimotoKernelBenchmark -jvmArgsAppend --add-modules=jdk.incubator.vector"
+ * </pre>
+ *
+ * @author albertgo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TanimotoKernelBenchmark
+{  private static final int BLOCKSize = 64;
+
+   @Param({ "scalar", "vector" })
+   public String kernelName;
+
+   /** CFP: circular fingerprints, LINEAR: folded linear path fingerprints */
+   @Param({ "CFP", "LINEAR" })
+   public String fpSet;
+
+   @Param({ "10000" })
+   public int nRef;
+
+   private TanimotoKernel kernel;
+   private long[][] queries;
+   private long[] words;
+   private int stride;
+   private int[] counts;
+   private int query;
+
+   @Setup
+   public void setUp()
+   {  kernel = TanimotoKernel.createKernel(kernelName);
+
+      List<String> hex;
+      if( "CFP".equals(fpSet) )
+         hex = BenchmarkData.readTag(BenchmarkData.CFP_FILE, BenchmarkData.CFP_TAG);
+      else
+         hex = BenchmarkData.readTag(BenchmarkData.LINEAR_FILE, BenchmarkData.LINEAR_TAG);
+
+      PackedFingerprintStore store = new PackedFingerprintStore(nRef);
+      for(int i=0; i<nRef; i++)
+         store.add(new LongFingerprint(hex.get(i % hex.size())));
+      stride = store.getStride();
+
+      words = new long[nRef * stride];
+      for(int i=0; i<nRef; i++)
+         for(int w=0; w<stride; w++)
+            words[i*stride + w] = store.getWord(i, w);
+
+      // queries padded to the stride of the store
+      queries = new long[Math.min(nRef, hex.size())][];
+      for(int i=0; i<queries.length; i++)
+         queries[i] = Arrays.copyOfRange(words, i*stride, (i+1)*stride);
+
+      counts = new int[BLOCKSize];
+   }
+
+   /** next query, cycling through the set */
+   private long[] nextQuery()
+   {  if( ++query >= queries.length ) query = 0;
+      return queries[query];
+   }
+
+   /** one call to the kernel per reference */
+   @Benchmark
+   public int pairwise()
+   {  long[] q = nextQuery();
+      int sum = 0;
+      for(int i=0; i<nRef; i++)
+         sum += kernel.andBitCount(q, 0, words, i*stride, stride);
+      return sum;
+   }
+
+   /** one call to the kernel per block of {@value #BLOCKSize} references */
+   @Benchmark
+   public int block()
+   {  long[] q = nextQuery();
+      int sum = 0;
+      for(int from=0; from<nRef; from+=BLOCKSize)
+      {  int n = Math.min(BLOCKSize, nRef-from);
+         kernel.andBitCounts(q, 0, stride, words, from*stride, stride, n, counts);
+         for(int i=0; i<n; i++)
+            sum += counts[i];
+      }
+      return sum;
+   }
+}
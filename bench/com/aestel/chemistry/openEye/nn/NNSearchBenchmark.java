@@ -0,0 +1,127 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye.nn;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import openeye.oechem.OEGraphMol;
+import openeye.oechem.OEMolBase;
+import openeye.oechem.oechem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.aestel.chemistry.openEye.SimComparatorList;
+import com.aestel.chemistry.openEye.SimComparatorStore;
+import com.aestel.chemistry.openEye.benchmark.BenchmarkData;
+import com.aestel.chemistry.openEye.fp.FPComparator;
+import com.aestel.chemistry.openEye.fp.FPComparatorFact;
+
+/**
+ * Throughput of the reference search inner loop of {@link MultiNNFinder} and
+ * {@link NNFinder}: one query searched against a store of fingerprints with
+ * the collectors used by the finders.
+ *
+ * The reference set is the fingerprint set repeated to nRefs entries.
+ * The score is in queries per time unit.
+ *
+ * @author albertgo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NNSearchBenchmark
+{  /** packed: store of {@link FPComparatorFact}, list: {@link SimComparatorList} */
+   @Param({ "packed", "list" })
+   public String store;
+
+   @Param({ "1", "10" })
+   public int maxNeighbors;
+
+   @Param({ "0", "0.6" })
+   public double minSim;
+
+   @Param({ "10000" })
+   public int nRefs;
+
+   @Param({ "false" })
+   public boolean maxTanimoto;
+
+   private FPComparator[] queries;
+   private SimComparatorStore<FPComparator, FPComparator> refs;
+   private MultiNNCollector multiCollector;
+   private int query;
+
+   @Setup
+   public void setUp()
+   {  List<String> hex = BenchmarkData.readTag(BenchmarkData.CFP_FILE, BenchmarkData.CFP_TAG);
+      FPComparatorFact fact = new FPComparatorFact(maxTanimoto, "fp");
+      if( "packed".equals(store) )
+         refs = fact.createStore(nRefs);
+      else
+         refs = new SimComparatorList<FPComparator, FPComparator>(nRefs);
+
+      queries = new FPComparator[hex.size()];
+      OEMolBase mol = new OEGraphMol();
+      for(int i=0; i<queries.length; i++)
+      {  oechem.OESetSDData(mol, "fp", hex.get(i));
+         queries[i] = fact.createComparable(mol);
+      }
+      mol.delete();
+
+      for(int i=0; i<nRefs; i++)
+         refs.add(queries[i % queries.length].clone());
+
+      multiCollector = new MultiNNCollector(maxNeighbors, minSim, Double.MAX_VALUE, -1);
+   }
+
+   @TearDown
+   public void tearDown()
+   {  refs.close();
+   }
+
+   @Benchmark
+   public Object search()
+   {  if( ++query >= queries.length ) query = 0;
+      FPComparator q = queries[query];
+
+      if( maxNeighbors == 1 && minSim == 0D )
+      {  NNCollector collector = new NNCollector(Double.MAX_VALUE, -1);
+         refs.search(q, collector);
+         return collector;
+      }
+
+      multiCollector.reset(-1);
+      refs.search(q, multiCollector);
+      return multiCollector.getNeighbors();
+   }
+}
@@ -0,0 +1,134 @@
+/*
+   Copyright 2008-2015 Genentech Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+*/
+
+package com.gNova.circularFP;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import openeye.oechem.OEMolBase;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.aestel.chemistry.openEye.benchmark.BenchmarkData;
+
+import static com.gNova.circularFP.CFingerprint.CFPCountType;
+
+/**
+ * Molecules per second for circular fingerprints as computed by sdfCFP with
+ * the hex format: {@link CFP} with {@link CFingerprint} against the former
+ * boxed collection implementation in {@link LegacyCFP} and
+ * {@link LegacyCFingerprint}.
+ *
+ * setUp fails if the two implementations do not give identical fingerprints.
+ *
+ * @author albertgo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CFPBenchmark
+{  private static final int NBits = 256;
+
+   @Param({ "0", "1", "2", "3" })
+   public int level;
+
+   @Param({ "atomic" })
+   public String type;
+
+   /** must not be larger than the number of molecules in the input file */
+   public static final int NMols = 100;
+
+   private List<OEMolBase> mols;
+   private CFP cfp;
+   private LegacyCFP legacyCFP;
+
+   @Setup
+   public void setUp()
+   {  mols = BenchmarkData.readMolecules(BenchmarkData.MOLECULES, NMols);
+      if( mols.size() != NMols )
+         throw new Error("Expected " + NMols + " molecules in " + BenchmarkData.MOLECULES);
+
+      cfp = new CFP(false);
+      legacyCFP = new LegacyCFP(false);
+      if( "functional".equals(type) )
+      {  cfp.initializeSmarts(null);
+         legacyCFP.initializeSmarts(null);
+      }
+
+      for(OEMolBase mol : mols)
+      {  for(CFPCountType countType : CFPCountType.values())
+         {  cfp.generate(mol, level, type);
+            legacyCFP.generate(mol, level, type);
+            Fingerprint fp = CFingerprint.createCFingerprint(cfp, NBits, countType);
+            Fingerprint legacyFP = LegacyCFingerprint.createCFingerprint(
+                                       legacyCFP.getCounts(0), NBits, countType);
+            if( ! fp.getHexString().equals(legacyFP.getHexString())
+                || ! fp.getAtomIDString().equals(legacyFP.getAtomIDString()) )
+               throw new Error(String.format("Different fingerprints for level %d %s: %s %s",
+                                 level, countType, fp.getAtomIDString(), legacyFP.getAtomIDString()));
+         }
+      }
+   }
+
+   @TearDown
+   public void tearDown()
+   {  BenchmarkData.delete(mols);
+   }
+
+   @Benchmark
+   @OperationsPerInvocation(NMols)
+   public int current()
+   {  int nBits = 0;
+      for(OEMolBase mol : mols)
+      {  cfp.clear();
+         cfp.generate(mol, level, type);
+         Fingerprint fp = CFingerprint.createCFingerprint(cfp, NBits, CFPCountType.NOCount);
+         nBits += fp.getHexString().length();
+      }
+      return nBits;
+   }
+
+   @Benchmark
+   @OperationsPerInvocation(NMols)
+   public int legacy()
+   {  int nBits = 0;
+      for(OEMolBase mol : mols)
+      {  legacyCFP.clear();
+         legacyCFP.generate(mol, level, type);
+         Fingerprint fp = LegacyCFingerprint.createCFingerprint(
+                                 legacyCFP.getCounts(0), NBits, CFPCountType.NOCount);
+         nBits += fp.getHexString().length();
+      }
+      return nBits;
+   }
+}
@@ -0,0 +1,43 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye;
+
+import java.util.List;
+
+/**
+ * SimComparator that can efficiently compare itself to many other comparators.
+ *
+ * {@link SimComparatorList#search(int, SimilarityCollector)} uses this to
+ * compare a stored comparator to all others.
+ *
+ * @author albertgo
+ *
+ * @param <T> the comparable class type
+ */
+public interface BatchSimComparator<T> extends SimComparator<T>
+{  /**
+    * Compare this to each comparator in others.
+    *
+    * The result is the same as calling {@link #similarity(SimComparator, double)}
+    * for each comparator but implementations may reuse internal buffers.
+    *
+    * @param sims used to return the similarities if it is not null and long enough.
+    * @return array with the similarity to others.get(i) at position i.
+    */
+   double[] similarities(List<? extends SimComparator<T>> others, double minSim, double[] sims);
+}
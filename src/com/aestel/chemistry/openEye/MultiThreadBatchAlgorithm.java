@@ -0,0 +1,57 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye;
+
+import openeye.oechem.OEMolBase;
+
+
+/**
+ * Implement this interface to process the records of an SDF file in parallel
+ * using the {@link MultiThreadBatchRunner}.
+ *
+ * Reading and consuming happen on one thread at a time and in input order,
+ * only {@link #process(OEMolBase)} is executed in parallel.
+ *
+ * @param <R> type of the result computed for each input molecule
+ * @author albertgo
+ */
+public interface MultiThreadBatchAlgorithm<R>
+{
+   /**
+    * Read the next input record into mol.
+    * @return false if there are no more records.
+    */
+   public boolean read(OEMolBase mol);
+
+   /**
+    * Compute the result for one molecule, this must be thread save.
+    * The molecule may be modified eg. by adding SD data.
+    */
+   public R process(OEMolBase mol);
+
+   /**
+    * Output the result of a molecule, called in the order in which the
+    * molecules were read.
+    */
+   public void consume(OEMolBase mol, R result);
+
+   /**
+    * Free any resources.
+    */
+   void close();
+}
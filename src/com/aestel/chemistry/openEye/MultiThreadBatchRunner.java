@@ -0,0 +1,288 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import openeye.oechem.OEGraphMol;
+import openeye.oechem.OEMolBase;
+
+/**
+ * Run a {@link MultiThreadBatchAlgorithm} on nCpu threads.
+ *
+ * The thread calling {@link #run()} reads the input in batches of batchSize
+ * molecules and submits each batch to a worker thread. At most 2*nCpu batches
+ * are read ahead of the output. Finished batches are kept in a reorder
+ * buffer until all previous batches have been consumed, so the output is
+ * in input order independent of the thread timing.
+ *
+ * {@link MultiThreadBatchAlgorithm#consume} is called by a worker thread
+ * which finished a batch while no other thread was consuming. That thread
+ * keeps consuming the batches in input order as long as the next one is
+ * ready. The reorder buffer is not locked while consuming, so the other
+ * workers go on computing. consume is therefore never called concurrently
+ * but not always from the same thread.
+ *
+ * If process or consume throw an exception the worker threads are stopped
+ * and {@link #run()} throws an Error. An exception thrown by read also stops
+ * the worker threads and is passed on by {@link #run()}.
+ *
+ * @param <R> type of the result computed for each molecule
+ * @author albertgo
+ */
+public class MultiThreadBatchRunner<R>
+{  public static final int DEFAULT_BATCHSIZE = 32;
+
+   private final MultiThreadBatchAlgorithm<R> algorithm;
+   private final int nCpu;
+   private final int batchSize;
+   private final int maxBatchesInFlight;
+   private final ExecutorService executor;
+   /** one permit per batch that may be read before it is consumed */
+   private final Semaphore inFlight;
+
+   /** finished batches which can not be consumed yet, guards nextBatch, nConsumed and consuming */
+   private final Map<Integer, Batch> reorderBuffer = new HashMap<Integer, Batch>();
+   private int nextBatch = 0;
+   private int nConsumed = 0;
+   /** true while a worker thread is consuming batches */
+   private boolean consuming = false;
+   private long start;
+   private volatile Throwable error = null;
+
+   /**
+    * @param alg algorithm to execute, a call to {@link #close()} will close the algorithm.
+    */
+   public MultiThreadBatchRunner(MultiThreadBatchAlgorithm<R> alg, int nCpu, int batchSize)
+   {  if( nCpu < 1 || batchSize < 1 )
+         throw new Error("nCpu and batchSize must be > 0");
+
+      this.algorithm = alg;
+      this.nCpu = nCpu;
+      this.batchSize = batchSize;
+      this.maxBatchesInFlight = 2 * nCpu;
+      this.executor = Executors.newFixedThreadPool(nCpu);
+      this.inFlight = new Semaphore(maxBatchesInFlight);
+   }
+
+   public MultiThreadBatchRunner(MultiThreadBatchAlgorithm<R> alg, int nCpu)
+   {  this(alg, nCpu, DEFAULT_BATCHSIZE);
+   }
+
+   /** helper to create a runner for an algorithm with unknown result type */
+   public static <R> MultiThreadBatchRunner<R> create(MultiThreadBatchAlgorithm<R> alg, int nCpu)
+   {  return new MultiThreadBatchRunner<R>(alg, nCpu);
+   }
+
+   /** helper to create a runner for an algorithm with unknown result type */
+   public static <R> MultiThreadBatchRunner<R> create(MultiThreadBatchAlgorithm<R> alg,
+                                                      int nCpu, int batchSize)
+   {  return new MultiThreadBatchRunner<R>(alg, nCpu, batchSize);
+   }
+
+   public void run()
+   {  start = System.currentTimeMillis();
+      int nRead = 0;
+      int nBatches = 0;
+      boolean completed = false;
+
+      try
+      {  while( error == null )
+         {  inFlight.acquire();
+            Batch batch = new Batch(nBatches);
+            if( batch.read() == 0 )
+            {  inFlight.release();
+               break;
+            }
+            nRead += batch.size;
+            nBatches++;
+
+            executor.submit(batch);
+         }
+
+         // wait until the last batch was consumed
+         synchronized(reorderBuffer)
+         {  while( nextBatch < nBatches && error == null )
+               reorderBuffer.wait();
+         }
+         completed = true;
+
+      }catch(InterruptedException e)
+      {  Thread.currentThread().interrupt();
+      }finally
+      {  // the pool threads would keep the jvm from exiting
+         if( ! completed || error != null ) stopWorkers();
+      }
+
+      if( error != null )
+         throw new Error(error);
+
+      double sec = (System.currentTimeMillis()-start)/1000D;
+      String alg = algorithm.getClass().getName();
+      if( alg.lastIndexOf('.') >= 0) alg = alg.substring(alg.lastIndexOf('.')+1);
+      System.err.printf("\n%s: Read %d structures. nCpu=%d %.1f sec %.1f mol/sec\n", alg,
+            nRead, nCpu, sec, nRead / Math.max(sec, 0.001D));
+   }
+
+   /**
+    * Called by the worker threads after computing a batch. Unless another
+    * thread is consuming, consume this and any following batches that are
+    * complete.
+    *
+    * If consume throws, consuming stays true so that no later batch is output.
+    */
+   private void batchDone(Batch batch)
+   {  synchronized(reorderBuffer)
+      {  reorderBuffer.put(batch.batchNum, batch);
+         if( consuming ) return;
+         consuming = true;
+      }
+
+      while( true )
+      {  synchronized(reorderBuffer)
+         {  batch = reorderBuffer.remove(nextBatch);
+            if( batch == null || error != null )
+            {  consuming = false;
+               return;
+            }
+         }
+
+         try
+         {  batch.consume();
+         }finally
+         {  synchronized(reorderBuffer)
+            {  nextBatch++;
+               reportProgress(batch.size);
+               reorderBuffer.notifyAll();
+            }
+            inFlight.release();
+         }
+      }
+   }
+
+   private void reportProgress(int nMols)
+   {  int lastCount = nConsumed;
+      nConsumed += nMols;
+
+      int dotInterval = 100*nCpu;
+      int lineInterval = 4000*nCpu;
+      for(int i=lastCount/dotInterval + 1; i<=nConsumed/dotInterval; i++)
+      {  System.err.print(".");
+         if( (i*dotInterval) % lineInterval == 0 )
+         {  double sec = (System.currentTimeMillis()-start)/1000D;
+            System.err.printf( " %d %dsec %.1f mol/sec\n",
+                     i*dotInterval, (int)sec, i*dotInterval / Math.max(sec, 0.001D));
+         }
+      }
+   }
+
+   private void failed(Throwable e)
+   {  synchronized(reorderBuffer)
+      {  if( error == null ) error = e;
+         reorderBuffer.notifyAll();
+      }
+
+      // unblock the reader
+      inFlight.release(maxBatchesInFlight);
+   }
+
+
+   /**
+    * Molecules and results of one batch.
+    */
+   private class Batch implements Runnable
+   {  private final int batchNum;
+      private final OEMolBase[] mols;
+      private final Object[] results;
+      private int size = 0;
+
+      Batch(int batchNum)
+      {  this.batchNum = batchNum;
+         this.mols = new OEMolBase[batchSize];
+         this.results = new Object[batchSize];
+      }
+
+      /** @return number of molecules read */
+      int read()
+      {  while( size < batchSize )
+         {  OEMolBase mol = new OEGraphMol();
+            if( ! algorithm.read(mol) )
+            {  mol.delete();
+               break;
+            }
+            mols[size++] = mol;
+         }
+         return size;
+      }
+
+      @Override
+      public void run()
+      {  try
+         {  for(int i=0; i<size; i++)
+               results[i] = algorithm.process(mols[i]);
+
+            batchDone(this);
+
+         }catch(Throwable e)
+         {  failed(e);
+         }
+      }
+
+      @SuppressWarnings("unchecked")
+      void consume()
+      {  for(int i=0; i<size; i++)
+         {  algorithm.consume(mols[i], (R)results[i]);
+            mols[i].delete();
+            mols[i] = null;
+            results[i] = null;
+         }
+      }
+   }
+
+   /**
+    * Interrupt the worker threads and wait for them to terminate.
+    */
+   private void stopWorkers()
+   {  executor.shutdownNow();
+      try
+      {  executor.awaitTermination(1, TimeUnit.MINUTES);
+      } catch (InterruptedException e)
+      {  Thread.currentThread().interrupt();
+      }
+   }
+
+   /** @return true if all worker threads have terminated */
+   boolean isTerminated()
+   {  return executor.isTerminated();
+   }
+
+   public void close()
+   {  executor.shutdown();
+      try
+      {  executor.awaitTermination(1, TimeUnit.MINUTES);
+      } catch (InterruptedException e)
+      {  Thread.currentThread().interrupt();
+      }
+      algorithm.close();
+   }
+}
@@ -0,0 +1,147 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import openeye.oechem.OEMolBase;
+
+import org.testng.annotations.Test;
+
+public class MultiThreadBatchRunnerTest
+{
+   /** results must be consumed in input order even if processing times vary */
+   @Test()
+   public void testOrderedOutput()
+   {  for(int nCpu=1; nCpu<=4; nCpu++)
+      {  for(int batchSize : new int[] { 1, 3, 32 })
+         {  OrderAlgorithm alg = new OrderAlgorithm(200);
+            MultiThreadBatchRunner<Integer> runner
+               = new MultiThreadBatchRunner<Integer>(alg, nCpu, batchSize);
+            runner.run();
+            runner.close();
+
+            assert alg.closed;
+            assert alg.consumed.size() == 200 : "nCpu=" + nCpu + " batchSize=" + batchSize;
+            for(int i=0; i<alg.consumed.size(); i++)
+               assert alg.consumed.get(i).intValue() == i * i : "nCpu=" + nCpu + " pos " + i;
+         }
+      }
+   }
+
+   @Test()
+   public void testErrorInProcess()
+   {  OrderAlgorithm alg = new OrderAlgorithm(200);
+      alg.failAt = 77;
+      MultiThreadBatchRunner<Integer> runner = new MultiThreadBatchRunner<Integer>(alg, 3, 4);
+      boolean failed = false;
+      try
+      {  runner.run();
+      } catch(Error e)
+      {  failed = true;
+      }
+      runner.close();
+
+      assert failed;
+      assert alg.consumed.size() <= 77;
+   }
+
+   /** the pool threads must terminate without calling close() after a failure */
+   @Test()
+   public void testErrorStopsWorkers()
+   {  for(int failIn=0; failIn<3; failIn++)
+      {  OrderAlgorithm alg = new OrderAlgorithm(200);
+         if( failIn == 0 ) alg.failAt = 77;
+         if( failIn == 1 ) alg.failConsumeAt = 77 * 77;
+         if( failIn == 2 ) alg.failReadAt = 77;
+         MultiThreadBatchRunner<Integer> runner = new MultiThreadBatchRunner<Integer>(alg, 3, 4);
+         boolean failed = false;
+         try
+         {  runner.run();
+         } catch(Throwable e)
+         {  failed = true;
+         }
+
+         assert failed : "failIn=" + failIn;
+         assert runner.isTerminated() : "failIn=" + failIn;
+         assert alg.consumed.size() <= 77 : "failIn=" + failIn;
+         runner.close();
+      }
+   }
+
+   private static class OrderAlgorithm implements MultiThreadBatchAlgorithm<Integer>
+   {  private final int nMols;
+      private final Random rand = new Random(42);
+      private int nRead = 0;
+      final List<Integer> consumed = new ArrayList<Integer>();
+      volatile int failAt = -1;
+      volatile int failConsumeAt = -1;
+      int failReadAt = -1;
+      /** true while in consume, which must not be called concurrently */
+      private final AtomicBoolean consuming = new AtomicBoolean();
+      boolean closed = false;
+
+      OrderAlgorithm(int nMols)
+      {  this.nMols = nMols;
+      }
+
+      @Override
+      public boolean read(OEMolBase mol)
+      {  if( nRead >= nMols ) return false;
+         if( nRead == failReadAt ) throw new IllegalStateException("failing at " + nRead);
+         mol.SetTitle(Integer.toString(nRead++));
+         return true;
+      }
+
+      @Override
+      public Integer process(OEMolBase mol)
+      {  int i = Integer.parseInt(mol.GetTitle());
+         if( i == failAt ) throw new IllegalStateException("failing at " + i);
+
+         long sleep;
+         synchronized(rand)
+         {  sleep = rand.nextInt(3);
+         }
+         try
+         {  Thread.sleep(sleep);
+         } catch (InterruptedException e)
+         {  Thread.currentThread().interrupt();
+         }
+         return i * i;
+      }
+
+      @Override
+      public void consume(OEMolBase mol, Integer result)
+      {  boolean concurrent = consuming.getAndSet(true);
+         assert ! concurrent : "concurrent consume";
+         if( result.intValue() == failConsumeAt )
+            throw new IllegalStateException("failing at " + result);
+
+         consumed.add(result);
+         consuming.set(false);
+      }
+
+      @Override
+      public void close()
+      {  closed = true;
+      }
+   }
+}
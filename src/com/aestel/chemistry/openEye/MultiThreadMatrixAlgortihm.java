@@ -35,8 +35,14 @@ public interface MultiThreadMatrixAlgortihm
     */
    public int getObjectCount();
 
+   /**
+    * @return number of tasks to be submitted, usually {@link #getObjectCount()}.
+    */
+   public int getTaskCount();
+
    /**
     * Compare element i with all elements in the vector.
+    * If the algorithm processes tiles of elements i is the index of the tile.
     */
    public void submitTask(ExecutorCompletionService<Boolean> completionService, int i);
 
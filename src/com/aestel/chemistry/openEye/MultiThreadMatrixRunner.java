@@ -48,14 +48,15 @@ public class MultiThreadMatrixRunner<T, Y extends SimComparator<T>>
       int iCounter = 0;
 
       // START THREADS
-      int nSubmitted = Math.min(nCpu*2, algorithm.getObjectCount());
+      int nTasks = algorithm.getTaskCount();
+      int nSubmitted = Math.min(nCpu*2, nTasks);
       for(int i=0; i<nSubmitted; i++)
          algorithm.submitTask(completionService, i);
 
       // as soon as a threads completes the calculation for one element
       // start the algorithm for the next element
       try
-      {  for( int i= nSubmitted; i< algorithm.getObjectCount(); i++)
+      {  for( int i= nSubmitted; i< nTasks; i++)
          {  completionService.take().get();
             algorithm.submitTask(completionService, i);
 
@@ -85,8 +86,12 @@ public class MultiThreadMatrixRunner<T, Y extends SimComparator<T>>
 
       String alg = algorithm.getClass().getName();
       if( alg.lastIndexOf('.') >= 0) alg = alg.substring(alg.lastIndexOf('.')+1);
-      System.err.printf("\n%s: Processed %d structures. nCpu=%d %.1f sec\n", alg,
-            iCounter, nCpu, (System.currentTimeMillis()-start)/1000D);
+      if( nTasks == algorithm.getObjectCount() )
+         System.err.printf("\n%s: Processed %d structures. nCpu=%d %.1f sec\n", alg,
+               iCounter, nCpu, (System.currentTimeMillis()-start)/1000D);
+      else
+         System.err.printf("\n%s: Processed %d structures in %d tasks. nCpu=%d %.1f sec\n", alg,
+               algorithm.getObjectCount(), iCounter, nCpu, (System.currentTimeMillis()-start)/1000D);
    }
 
    /**
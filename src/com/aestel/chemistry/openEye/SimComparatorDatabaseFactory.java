@@ -0,0 +1,38 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye;
+
+/**
+ * A {@link SimComparatorFactory} may implement this interface if it can
+ * read reference comparators from a file with precomputed comparators
+ * instead of creating them from molecules.
+ *
+ * @author albertgo
+ *
+ * @param <T> the comparable class type
+ * @param <Y> the comparator class type
+ */
+public interface SimComparatorDatabaseFactory<T, Y extends SimComparator<T>>
+{  /**
+    * @return true if fileName is a file with precomputed comparators that
+    *         can be opened with {@link #openDatabase(String)}.
+    */
+   boolean isDatabase(String fileName);
+
+   SimComparatorDatabase<T, Y> openDatabase(String fileName);
+}
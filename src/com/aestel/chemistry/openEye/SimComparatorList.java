@@ -0,0 +1,127 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Default {@link SimComparatorStore} keeping the comparator objects in a list.
+ *
+ * @author albertgo
+ *
+ * @param <T> the comparable class type
+ * @param <Y> the comparator class type
+ */
+public class SimComparatorList<T, Y extends SimComparator<T>> implements SimComparatorStore<T, Y>
+{  private final List<Y> comparators;
+   /** result buffer for {@link BatchSimComparator#similarities}, the list is shared by threads */
+   private final ThreadLocal<double[]> batchSims = new ThreadLocal<double[]>();
+
+   public SimComparatorList(int initialCapacity)
+   {  comparators = new ArrayList<Y>(initialCapacity);
+   }
+
+   /**
+    * Create the store for comparators created by compFact.
+    *
+    * @return the store provided by compFact if it implements
+    *         {@link SimComparatorStoreFactory} or a new {@link SimComparatorList}.
+    */
+   @SuppressWarnings("unchecked")
+   public static <T, Y extends SimComparator<T>> SimComparatorStore<T, Y>
+                  createStore(SimComparatorFactory<?, T, Y> compFact, int initialCapacity)
+   {  if( compFact instanceof SimComparatorStoreFactory )
+         return ((SimComparatorStoreFactory<T, Y>) compFact).createStore(initialCapacity);
+
+      return new SimComparatorList<T, Y>(initialCapacity);
+   }
+
+   @Override
+   public void add(Y comparator)
+   {  comparators.add(comparator);
+   }
+
+   public Y get(int idx)
+   {  return comparators.get(idx);
+   }
+
+   @Override
+   public int size()
+   {  return comparators.size();
+   }
+
+   @Override
+   public double similarity(int idx, Y query)
+   {  return comparators.get(idx).similarity(query);
+   }
+
+   @Override
+   public double similarity(int idx, Y query, double minSim)
+   {  return comparators.get(idx).similarity(query, minSim);
+   }
+
+   @Override
+   public double similarity(int idx1, int idx2)
+   {  return comparators.get(idx1).similarity(comparators.get(idx2));
+   }
+
+   /**
+    * Compares all comparators in order of their index using
+    * {@link SimComparator#similarity(SimComparator, double)}.
+    */
+   @Override
+   public void search(Y query, SimilarityCollector collector)
+   {  for( int i=0; i<comparators.size(); i++)
+         collector.collect(i, comparators.get(i).similarity(query, collector.getMinSimilarity()));
+   }
+
+   /**
+    * Compares all comparators in order of their index using
+    * {@link SimComparator#similarity(SimComparator, double)}.
+    *
+    * If the comparator at queryIdx is a {@link BatchSimComparator} it is
+    * compared to all comparators in one call to {@link BatchSimComparator#similarities}.
+    */
+   @Override
+   public void search(int queryIdx, SimilarityCollector collector)
+   {  Y query = comparators.get(queryIdx);
+      if( query instanceof BatchSimComparator )
+      {  @SuppressWarnings("unchecked")
+         BatchSimComparator<T> batchQuery = (BatchSimComparator<T>) query;
+         int n = comparators.size();
+         double[] sims = batchQuery.similarities(comparators, collector.getMinSimilarity(),
+                                                 batchSims.get());
+         batchSims.set(sims);
+
+         for( int i=0; i<n; i++)
+            collector.collect(i, sims[i]);
+         return;
+      }
+
+      for( int i=0; i<comparators.size(); i++)
+         collector.collect(i, query.similarity(comparators.get(i), collector.getMinSimilarity()));
+   }
+
+   @Override
+   public void close()
+   {  for( Y c : comparators )
+         c.close();
+      comparators.clear();
+   }
+}
@@ -0,0 +1,81 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye;
+
+/**
+ * Indexed collection of comparators used as reference set by the
+ * near neighbor finders.
+ *
+ * Implementations may store the comparators in a packed form and may therefore
+ * not keep the objects passed to {@link #add(SimComparator)}.
+ *
+ * @author albertgo
+ *
+ * @param <T> the comparable class type
+ * @param <Y> the comparator class type
+ */
+public interface SimComparatorStore<T, Y extends SimComparator<T>>
+{  /**
+    * Add comparator at index {@link #size()}.
+    * The store takes ownership of comparator and will close it when no longer needed.
+    */
+   void add(Y comparator);
+
+   /**
+    * @return number of comparators in this store.
+    */
+   int size();
+
+   /**
+    * @return similarity of the comparator at idx to query.
+    */
+   double similarity(int idx, Y query);
+
+   /**
+    * @return similarity of the comparator at idx to query, this may return 0
+    *         if the similarity is below minSim.
+    */
+   double similarity(int idx, Y query, double minSim);
+
+   /**
+    * @return similarity of the comparator at idx1 to the comparator at idx2.
+    */
+   double similarity(int idx1, int idx2);
+
+   /**
+    * Pass the similarity of query to each comparator in this store to collector.
+    *
+    * Comparators which can not reach {@link SimilarityCollector#getMinSimilarity()}
+    * may be skipped.
+    */
+   void search(Y query, SimilarityCollector collector);
+
+   /**
+    * Pass the similarity of the comparator at queryIdx to each comparator in
+    * this store to collector. This includes the comparator at queryIdx itself.
+    *
+    * Comparators which can not reach {@link SimilarityCollector#getMinSimilarity()}
+    * may be skipped.
+    */
+   void search(int queryIdx, SimilarityCollector collector);
+
+   /**
+    * Close all comparators in this store.
+    */
+   void close();
+}
@@ -0,0 +1,45 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye;
+
+/**
+ * Receives the results of {@link SimComparatorStore#search(SimComparator, SimilarityCollector)}.
+ *
+ * The store uses {@link #getMinSimilarity()} to skip comparators which
+ * can not reach that similarity. The value returned by {@link #getMinSimilarity()}
+ * may increase while the search progresses, e.g. when searching for the
+ * nearest neighbor, but it must never decrease.
+ *
+ * @author albertgo
+ */
+public interface SimilarityCollector
+{  /**
+    * Called for comparators that might have a similarity >= {@link #getMinSimilarity()}.
+    *
+    * Comparators are not necessarily reported in the order of their index.
+    * sim may be 0 if the similarity is below {@link #getMinSimilarity()}.
+    *
+    * @param idx index of the comparator in the store.
+    */
+   void collect(int idx, double sim);
+
+   /**
+    * @return similarity below which results are of no interest to this collector.
+    */
+   double getMinSimilarity();
+}
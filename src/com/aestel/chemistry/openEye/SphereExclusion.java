@@ -20,7 +20,11 @@ package com.aestel.chemistry.openEye;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 import openeye.oechem.OEGraphMol;
@@ -32,17 +36,41 @@ import openeye.oechem.oemolothread;
 /**
  * SphereExclusion method implementation with generic comparable and comparator types.
  *
+ * If more than one cpu is used the candidates are read in blocks. Each candidate
+ * of a block is compared to the centroids known at the start of the block in
+ * parallel. The candidates are then processed in input order comparing them
+ * to the centroids found within the block. The output is therefore identical
+ * to the output of the single threaded algorithm.
+ *
+ * If the comparator factory implements {@link SimComparatorStoreFactory} the
+ * centroids are kept in the store returned by {@link SimComparatorStoreFactory#createIndex(int)}.
+ * Instead of scanning all centroids the index is searched for the centroids
+ * with similarity >= radius. These are then processed in the same order as
+ * in the linear scan. Unless printSphereMatchCount is set only the first match
+ * in scan order is kept while searching. The similarity of any centroid outside of the radius
+ * is smaller than the similarity of any member so that the maxSim
+ * values are not changed by skipping them. For the same reason the radius
+ * is passed as minimum similarity when comparing to a centroid.
+ *
  * @author albertgo
  *
  */
 public class SphereExclusion<T, Y extends SimComparator<T>>
-{  private final oemolothread ofs;
+{  /** number of candidates read ahead per cpu */
+   private static final int BLOCKSizePerCpu = 16;
+   /** minimum number of centroids compared in one task */
+   private static final int MINChunkSize = 64;
+
+   private final oemolothread ofs;
    private final double radius;
    private final boolean reverseMatch;
    private final boolean printAll;
    private final boolean printSphereMatchCount;
-   private final List<Y> centroids;
+   private final SimComparatorStore<T, Y> centroids;
+   /** if true centroids are searched using {@link SimComparatorStore#search(SimComparator, SimilarityCollector)} */
+   private final boolean useIndex;
    private final SimComparatorFactory<OEMolBase, T, Y> comparableFact;
+   private final int nCpu;
    private long start;
    private int iCounter;
    private int exCounter;
@@ -65,17 +93,44 @@ public class SphereExclusion<T, Y extends SimComparator<T>>
    public SphereExclusion(SimComparatorFactory<OEMolBase, T, Y> comparableFact,
                     String refFile, String outFile, double radius,
                     boolean reverseMatch, boolean printSphereMatchCount, boolean printAll)
+   {  this(comparableFact, refFile, outFile, radius, reverseMatch, printSphereMatchCount,
+           printAll, 1);
+   }
+
+   /**
+    * @param nCpu number of threads used to compare candidates to centroids.
+    *
+    * @see #SphereExclusion(SimComparatorFactory, String, String, double, boolean, boolean, boolean)
+    */
+   public SphereExclusion(SimComparatorFactory<OEMolBase, T, Y> comparableFact,
+                    String refFile, String outFile, double radius,
+                    boolean reverseMatch, boolean printSphereMatchCount, boolean printAll,
+                    int nCpu)
    {  this.comparableFact = comparableFact;
       this.ofs = new oemolothread(outFile);
       this.radius = radius;
       this.reverseMatch = reverseMatch;
       this.printAll = printAll;
       this.printSphereMatchCount = printSphereMatchCount;
-      this.centroids = new ArrayList<Y>(2000);
+      this.nCpu = nCpu;
+      if( comparableFact instanceof SimComparatorStoreFactory )
+      {  this.centroids = createIndex(comparableFact);
+         this.useIndex = true;
+      }else
+      {  this.centroids = new SimComparatorList<T, Y>(2000);
+         this.useIndex = false;
+      }
       if( refFile != null ) readReferenceFile(refFile);
    }
 
 
+   @SuppressWarnings("unchecked")
+   private static <T, Y extends SimComparator<T>> SimComparatorStore<T, Y>
+                  createIndex(SimComparatorFactory<OEMolBase, T, Y> compFact)
+   {  return ((SimComparatorStoreFactory<T, Y>) compFact).createIndex(2000);
+   }
+
+
    public void run(String inFile)
    {  oemolithread ifs = new oemolithread(inFile);
 
@@ -84,84 +139,436 @@ public class SphereExclusion<T, Y extends SimComparator<T>>
       exCounter = 0;
       incCounter = 0;
 
-      OEMolBase mol = new OEGraphMol();
-      while(oechem.OEReadMolecule(ifs, mol))
-      {  iCounter++;
+      if( nCpu > 1 )
+         runParallel(ifs);
+      else
+         runSequential(ifs);
 
-         T tmp = comparableFact.createComparable(mol);
-         Y current = comparableFact.createComparator(tmp);
+      ifs.close();
+      inFile = inFile.replaceAll(".*" + Pattern.quote(File.separator), "");
+      System.err.printf("SphereExclusion: Read %d structures from %s, %d included, %d excluded. %d sec\n",
+            iCounter, inFile, incCounter, exCounter, (System.currentTimeMillis()-start)/1000);
+   }
+
+
+   private void runSequential(oemolithread ifs)
+   {  OEMolBase mol = new OEGraphMol();
+      while(oechem.OEReadMolecule(ifs, mol))
+      {  T tmp = comparableFact.createComparable(mol);
+         Candidate cand = new Candidate(mol, comparableFact.createComparator(tmp));
          // tmp needs delete;
 
-         double maxSim = -1D;
-         int sphereMatchCounter=0;
-         int centIdx;
-         final int increment;
-         final int lastCentroid;
-
-         if( reverseMatch )
-         {  // compare next record with last centroid found first
-            // this is usually faster since it is assumed that close input
-            // records are more similar to each other and the likelihood of
-            // Exclusion is therefore higher.
-            increment = -1;
-            lastCentroid = -1;
-            centIdx = centroids.size();
-         }else
-         {  // compare next record with first centroid found first
-            // this assigns the new record to the first matching centroid which
-            // might have superior properties.
-            increment = 1;
-            lastCentroid = centroids.size();
-            centIdx = -1;
+         // compare to all so far known centroids
+         if( useIndex )
+            cand.applyResults(new ChunkResult[] { searchIndex(cand.comparator) });
+         else
+            compareToCentroids(cand, 0, centroids.size());
+         finishCandidate(cand);
+      }
+      mol.delete();
+   }
+
+
+   /**
+    * Read blocks of candidates, compare them in parallel to the centroids known
+    * at the start of the block and then complete the comparison in input order.
+    */
+   private void runParallel(oemolithread ifs)
+   {  ForkJoinPool pool = new ForkJoinPool(nCpu);
+      int blockSize = nCpu * BLOCKSizePerCpu;
+      List<Candidate> block = new ArrayList<Candidate>(blockSize);
+
+      OEMolBase mol = new OEGraphMol();
+      boolean hasMore = true;
+      while( hasMore )
+      {  block.clear();
+         while( block.size() < blockSize && (hasMore = oechem.OEReadMolecule(ifs, mol)) )
+         {  block.add(new Candidate(mol, null));
+            mol = new OEGraphMol();
          }
+         if( block.size() == 0 ) break;
 
-         // compare to all so far known centroids
-         while( (centIdx += increment) != lastCentroid )
-         {  Y c2 = centroids.get(centIdx);
-            double sim = c2.similarity(current);
-            if( sim > maxSim ) maxSim = sim;
-            if( sim >= radius )  // inside the radius of centrIdx's sphere?
-            {  exCounter++;
-               sphereMatchCounter++;
-               oechem.OESetSDData(mol, "sphereIdx", Integer.toString(centIdx));
-               oechem.OESetSDData(mol, "maxSim", String.format("%.3f",maxSim));
-
-               if( printSphereMatchCount )
-               {  oechem.OESetSDData(mol, "sphereMatchCounter", Integer.toString(sphereMatchCounter));
-                  oechem.OEWriteMolecule(ofs, mol);
-
-               } else // do not assign to multiple clusters
-               {  if( printAll ) oechem.OEWriteMolecule(ofs, mol);
-                  break;
-               }
+         int nOldCentroids = centroids.size();
+         pool.invoke(new BlockTask(block, nOldCentroids));
+
+         for( Candidate cand : block )
+         {  if( reverseMatch )
+            {  // centroids found in this block come first
+               if( ! compareToCentroids(cand, nOldCentroids, centroids.size()) )
+                  cand.applyResults(cand.oldResults);
+            }else
+            {  if( ! cand.applyResults(cand.oldResults) )
+                  compareToCentroids(cand, nOldCentroids, centroids.size());
             }
+
+            finishCandidate(cand);
+            cand.mol.delete();
+         }
+      }
+      mol.delete();
+      pool.shutdown();
+   }
+
+
+   /**
+    * Compare cand to the centroids with index from (inclusive) to to (exclusive)
+    * in the order given by reverseMatch.
+    *
+    * @return true if a centroid was found and no further centroids need to be checked.
+    */
+   private boolean compareToCentroids(Candidate cand, int from, int to)
+   {  if( reverseMatch )
+      {  // compare next record with last centroid found first
+         // this is usually faster since it is assumed that close input
+         // records are more similar to each other and the likelihood of
+         // Exclusion is therefore higher.
+         for( int centIdx = to-1; centIdx >= from; centIdx-- )
+            if( cand.compare(centIdx) ) return true;
+      }else
+      {  // compare next record with first centroid found first
+         // this assigns the new record to the first matching centroid which
+         // might have superior properties.
+         for( int centIdx = from; centIdx < to; centIdx++ )
+            if( cand.compare(centIdx) ) return true;
+      }
+      return false;
+   }
+
+
+   /**
+    * Search the centroid index for all centroids with similarity >= radius.
+    *
+    * @return the matches in the order in which they would be found by
+    *         {@link #compareToCentroids(Candidate, int, int)}, if
+    *         printSphereMatchCount is false only the first of these.
+    */
+   private ChunkResult searchIndex(Y comparator)
+   {  final ChunkResult res = new ChunkResult();
+      if( ! printSphereMatchCount )
+      {  FirstMatchCollector first = new FirstMatchCollector();
+         centroids.search(comparator, first);
+         if( first.matchIdx >= 0 )
+         {  res.addMatch(first.matchIdx, first.matchSim);
+            res.maxSim = first.matchSim;
          }
+         return res;
+      }
 
-         if( sphereMatchCounter == 0 ) // was not a member of any centroids
-         {  // so it becomes a new centroid
-            String spherIdx = Integer.toString(centroids.size());
-            oechem.OESetSDData(mol, "sphereIdx",  spherIdx);
-            oechem.OESetSDData(mol, "includeIdx", spherIdx);
-            oechem.OESetSDData(mol, "maxSim",     "1");
-            centroids.add(current);
-            incCounter++;
+      centroids.search(comparator, new SimilarityCollector()
+      {  @Override
+         public void collect(int idx, double sim)
+         {  if( sim >= radius ) res.addMatch(idx, sim);
+         }
+
+         @Override
+         public double getMinSimilarity()
+         {  return radius;
+         }
+      });
+
+      res.sortMatches(reverseMatch);
+      return res;
+   }
+
+
+   /**
+    * Keeps the centroid with similarity >= radius that comes first in the scan
+    * order of {@link #compareToCentroids(Candidate, int, int)}.
+    *
+    * All centroids before it in scan order have similarity < radius so its
+    * similarity is also the maxSim of the linear scan.
+    */
+   private class FirstMatchCollector implements SimilarityCollector
+   {  int matchIdx = -1;
+      double matchSim = -1D;
+
+      @Override
+      public void collect(int idx, double sim)
+      {  if( sim < radius ) return;
+         if( matchIdx < 0 || (reverseMatch ? idx > matchIdx : idx < matchIdx) )
+         {  matchIdx = idx;
+            matchSim = sim;
+         }
+      }
+
+      @Override
+      public double getMinSimilarity()
+      {  return radius;
+      }
+   }
+
+
+   /**
+    * Write cand as new centroid if it did not match any centroid.
+    */
+   private void finishCandidate(Candidate cand)
+   {  iCounter++;
+      OEMolBase mol = cand.mol;
 
+      if( cand.sphereMatchCounter == 0 ) // was not a member of any centroids
+      {  // so it becomes a new centroid
+         String spherIdx = Integer.toString(centroids.size());
+         oechem.OESetSDData(mol, "sphereIdx",  spherIdx);
+         oechem.OESetSDData(mol, "includeIdx", spherIdx);
+         oechem.OESetSDData(mol, "maxSim",     "1");
+         centroids.add(cand.comparator);
+         incCounter++;
+
+         oechem.OEWriteMolecule(ofs, mol);
+      }else
+      {  cand.comparator.close();
+      }
+
+      if(iCounter % 100 == 0) System.err.print(".");
+      if(iCounter % 4000 == 0)
+      {  System.err.printf( " %d %d included %dsec\n",
+               iCounter, incCounter, (System.currentTimeMillis()-start)/1000);
+      }
+   }
+
+
+   /**
+    * State of the comparison of one input record to the centroids.
+    */
+   private class Candidate
+   {  final OEMolBase mol;
+      Y comparator;
+      double maxSim = -1D;
+      int sphereMatchCounter = 0;
+      /** results of the parallel comparison with the centroids known at the start of the block */
+      ChunkResult[] oldResults;
+
+      Candidate(OEMolBase mol, Y comparator)
+      {  this.mol = mol;
+         this.comparator = comparator;
+      }
+
+      /**
+       * Compare to centroid centIdx.
+       * @return true if no further centroids need to be checked.
+       */
+      boolean compare(int centIdx)
+      {  double sim = centroids.similarity(centIdx, comparator, radius);
+         if( sim > maxSim ) maxSim = sim;
+         if( sim >= radius )  // inside the radius of centrIdx's sphere?
+            return addMatch(centIdx);
+
+         return false;
+      }
+
+      /**
+       * Record that this is a member of centIdx's sphere.
+       * @return true if no further centroids need to be checked.
+       */
+      boolean addMatch(int centIdx)
+      {  exCounter++;
+         sphereMatchCounter++;
+         oechem.OESetSDData(mol, "sphereIdx", Integer.toString(centIdx));
+         oechem.OESetSDData(mol, "maxSim", String.format("%.3f",maxSim));
+
+         if( printSphereMatchCount )
+         {  oechem.OESetSDData(mol, "sphereMatchCounter", Integer.toString(sphereMatchCounter));
             oechem.OEWriteMolecule(ofs, mol);
+            return false;
          }
 
-         if(iCounter % 100 == 0) System.err.print(".");
-         if(iCounter % 4000 == 0)
-         {  System.err.printf( " %d %d included %dsec\n",
-                  iCounter, incCounter, (System.currentTimeMillis()-start)/1000);
+         // do not assign to multiple clusters
+         if( printAll ) oechem.OEWriteMolecule(ofs, mol);
+         return true;
+      }
+
+      /**
+       * Apply the results of the parallel comparison in scan order
+       * as if the centroids had been compared one by one.
+       *
+       * @return true if no further centroids need to be checked.
+       */
+      boolean applyResults(ChunkResult[] results)
+      {  for( ChunkResult res : results )
+         {  for( int i=0; i<res.nMatches; i++ )
+            {  if( res.matchMaxSim[i] > maxSim ) maxSim = res.matchMaxSim[i];
+               if( addMatch(res.matchIdx[i]) ) return true;
+            }
+            if( res.maxSim > maxSim ) maxSim = res.maxSim;
          }
+         return false;
       }
+   }
 
-      ifs.close();
-      inFile = inFile.replaceAll(".*" + Pattern.quote(File.separator), "");
-      System.err.printf("SphereExclusion: Read %d structures from %s, %d included, %d excluded. %d sec\n",
-            iCounter, inFile, incCounter, exCounter, (System.currentTimeMillis()-start)/1000);
+
+   /**
+    * Result of comparing one candidate to a consecutive range of centroids in scan order.
+    */
+   private static class ChunkResult
+   {  /** maximum similarity over the compared centroids */
+      double maxSim = -1D;
+      int nMatches = 0;
+      /** centroid indexes with sim >= radius */
+      int[] matchIdx = new int[1];
+      /** maximum similarity in this chunk up to and including each match */
+      double[] matchMaxSim = new double[1];
+
+      /**
+       * Add match found in scan order, maxSim must already include sim of centIdx.
+       */
+      void addMatch(int centIdx)
+      {  addMatch(centIdx, maxSim);
+      }
+
+      /**
+       * Also used to collect matches in arbitrary order before calling {@link #sortMatches(boolean)}.
+       */
+      void addMatch(int centIdx, double sim)
+      {  if( nMatches == matchIdx.length )
+         {  matchIdx = Arrays.copyOf(matchIdx, nMatches * 2);
+            matchMaxSim = Arrays.copyOf(matchMaxSim, nMatches * 2);
+         }
+         matchIdx[nMatches] = centIdx;
+         matchMaxSim[nMatches] = sim;
+         nMatches++;
+      }
+
+      /**
+       * Reorder matches collected with {@link #addMatch(int, double)} into scan
+       * order and replace their similarity by the running maximum.
+       */
+      void sortMatches(boolean reverse)
+      {  long[] keys = new long[nMatches];
+         for( int i=0; i<nMatches; i++ )
+         {  long scanPos = reverse ? Integer.MAX_VALUE - matchIdx[i] : matchIdx[i];
+            keys[i] = scanPos << 32 | i;
+         }
+         Arrays.sort(keys);
+
+         int[] sortedIdx = new int[Math.max(1, nMatches)];
+         double[] sortedMaxSim = new double[Math.max(1, nMatches)];
+         for( int i=0; i<nMatches; i++ )
+         {  int oldPos = (int)(keys[i] & 0xFFFFFFFFL);
+            double sim = matchMaxSim[oldPos];
+            if( sim > maxSim ) maxSim = sim;
+            sortedIdx[i] = matchIdx[oldPos];
+            sortedMaxSim[i] = maxSim;
+         }
+         matchIdx = sortedIdx;
+         matchMaxSim = sortedMaxSim;
+      }
    }
 
+
+   /**
+    * Create the comparators for a block of candidates and compare them to the
+    * first nOldCentroids centroids in parallel.
+    */
+   private class BlockTask extends RecursiveAction
+   {  private static final long serialVersionUID = 1L;
+      private final List<Candidate> block;
+      private final int nOldCentroids;
+
+      BlockTask(List<Candidate> block, int nOldCentroids)
+      {  this.block = block;
+         this.nOldCentroids = nOldCentroids;
+      }
+
+      @Override
+      protected void compute()
+      {  int nChunks = Math.max(1, Math.min(nCpu, nOldCentroids / MINChunkSize));
+         List<RecursiveAction> tasks = new ArrayList<RecursiveAction>(block.size());
+         for( Candidate cand : block )
+            tasks.add(new CandidateTask(cand, nOldCentroids, nChunks));
+
+         invokeAll(tasks);
+      }
+   }
+
+
+   /**
+    * Compare one candidate to the first nOldCentroids centroids split into nChunks.
+    */
+   private class CandidateTask extends RecursiveAction
+   {  private static final long serialVersionUID = 1L;
+      private final Candidate cand;
+      private final int nOldCentroids;
+      private final int nChunks;
+
+      CandidateTask(Candidate cand, int nOldCentroids, int nChunks)
+      {  this.cand = cand;
+         this.nOldCentroids = nOldCentroids;
+         this.nChunks = nChunks;
+      }
+
+      @Override
+      protected void compute()
+      {  T tmp = comparableFact.createComparable(cand.mol);
+         cand.comparator = comparableFact.createComparator(tmp);
+
+         if( useIndex )
+         {  cand.oldResults = new ChunkResult[] { searchIndex(cand.comparator) };
+            return;
+         }
+
+         ChunkResult[] results = new ChunkResult[nChunks];
+         // scan position of first match found so far, used to cancel chunks after it
+         AtomicInteger firstMatchPos = new AtomicInteger(Integer.MAX_VALUE);
+         List<ChunkTask> tasks = new ArrayList<ChunkTask>(nChunks);
+         for( int c=0; c<nChunks; c++ )
+         {  results[c] = new ChunkResult();
+            tasks.add(new ChunkTask(cand.comparator, results[c], firstMatchPos,
+                  (int)((long)nOldCentroids * c / nChunks),
+                  (int)((long)nOldCentroids * (c+1) / nChunks), nOldCentroids));
+         }
+         invokeAll(tasks);
+
+         cand.oldResults = results;
+      }
+   }
+
+
+   /**
+    * Compare a comparator to the centroids at scan positions from (inclusive)
+    * to to (exclusive).
+    */
+   private class ChunkTask extends RecursiveAction
+   {  private static final long serialVersionUID = 1L;
+      private final Y comparator;
+      private final ChunkResult result;
+      private final AtomicInteger firstMatchPos;
+      private final int from;
+      private final int to;
+      private final int nOldCentroids;
+
+      ChunkTask(Y comparator, ChunkResult result, AtomicInteger firstMatchPos,
+                int from, int to, int nOldCentroids)
+      {  this.comparator = comparator;
+         this.result = result;
+         this.firstMatchPos = firstMatchPos;
+         this.from = from;
+         this.to = to;
+         this.nOldCentroids = nOldCentroids;
+      }
+
+      @Override
+      protected void compute()
+      {  for( int pos = from; pos < to; pos++ )
+         {  // a match was found at an earlier position, this chunk is not needed
+            if( pos > firstMatchPos.get() ) return;
+
+            int centIdx = reverseMatch ? nOldCentroids - 1 - pos : pos;
+            double sim = centroids.similarity(centIdx, comparator, radius);
+            if( sim > result.maxSim ) result.maxSim = sim;
+            if( sim >= radius )
+            {  result.addMatch(centIdx);
+               if( ! printSphereMatchCount )
+               {  int first = firstMatchPos.get();
+                  while( pos < first && ! firstMatchPos.compareAndSet(first, pos) )
+                     first = firstMatchPos.get();
+                  return;
+               }
+            }
+         }
+      }
+   }
+
+
    /**
     * Read in file with preselected centroids
     */
@@ -184,10 +591,8 @@ public class SphereExclusion<T, Y extends SimComparator<T>>
    public void close()
    {  ofs.close();
       ofs.delete();
-      for(SimComparator<?> c: centroids)
-         c.close();
+      centroids.close();
 
       comparableFact.close();
    }
 }
-
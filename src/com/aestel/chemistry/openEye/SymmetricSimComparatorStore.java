@@ -0,0 +1,67 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+
+package com.aestel.chemistry.openEye;
+
+/**
+ * A {@link SimComparatorStore} with a symmetric similarity which can compare
+ * tiles of comparators with each other.
+ *
+ * The comparators are addressed by their position in an internal order which
+ * need not be the order in which they were added. {@link #getIndexAt(int)}
+ * converts a position to the index as passed to the {@link SimilarityCollector}.
+ *
+ * This is used to compute the upper triangle of a similarity matrix tile by tile
+ * so that the comparators of both tiles stay in the processor cache.
+ *
+ * @author albertgo
+ *
+ * @param <T> the comparable class type
+ * @param <Y> the comparator class type
+ */
+public interface SymmetricSimComparatorStore<T, Y extends SimComparator<T>>
+                 extends SimComparatorStore<T, Y>
+{  /**
+    * @return number of comparators per tile, chosen so that the comparators of two
+    *         tiles and their similarities fit into the L2 cache.
+    */
+   int getTileSize();
+
+   /**
+    * @return index of the comparator at position pos.
+    */
+   int getIndexAt(int pos);
+
+   /**
+    * @return upper bound of the similarity of any comparator at positions
+    *         [from1,to1) to any comparator at positions [from2,to2).
+    */
+   double getSimilarityBound(int from1, int to1, int from2, int to2);
+
+   /**
+    * Compute the similarity of each comparator at positions [from1,to1) to each
+    * comparator at positions [from2,to2).
+    *
+    * Pairs which can not reach the smaller of minSim1[p-from1] and minSim2[q-from2]
+    * may be skipped, their similarity is reported as -1.
+    *
+    * @param sims receives similarity(p,q) at (p-from1)*(to2-from2) + q-from2.
+    */
+   void similarity(int from1, int to1, double[] minSim1,
+                   int from2, int to2, double[] minSim2, double[] sims);
+}
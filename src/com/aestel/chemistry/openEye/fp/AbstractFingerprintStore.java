@@ -0,0 +1,188 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye.fp;
+
+/**
+ * Common methods for stores holding many fingerprints with a fixed number
+ * of longs per fingerprint and the number of bits set in each fingerprint.
+ *
+ * @author albertgo
+ */
+public abstract class AbstractFingerprintStore
+{  /**
+    * @return number of fingerprints in this store.
+    */
+   public abstract int size();
+
+   /**
+    * @return number of longs used to store each fingerprint.
+    */
+   public abstract int getStride();
+
+   /**
+    * @return number of bits set in fingerprint idx.
+    */
+   public abstract int getNBits(int idx);
+
+   /**
+    * @return long number wordIdx of fingerprint idx.
+    */
+   public abstract long getWord(int idx, int wordIdx);
+
+   /**
+    * @return number of bits set in fingerprint idx and query.
+    */
+   public abstract int andBitCount(int idx, long[] query);
+
+   /**
+    * @return number of bits set in both fingerprint idx1 and idx2.
+    */
+   public abstract int andBitCount(int idx1, int idx2);
+
+   /**
+    * Score query against the block of fingerprints from .. to-1.
+    *
+    * @param counts set to {@link #andBitCount(int, long[])} for each fingerprint
+    *        in the block, must have at least to-from elements.
+    */
+   public void andBitCounts(int from, int to, long[] query, int[] counts)
+   {  for(int i=from; i<to; i++)
+         counts[i-from] = andBitCount(i, query);
+   }
+
+   /**
+    * Score fingerprint idx against the block of fingerprints from .. to-1.
+    *
+    * @param counts set to {@link #andBitCount(int, int)} for each fingerprint
+    *        in the block, must have at least to-from elements.
+    */
+   public void andBitCounts(int from, int to, int idx, int[] counts)
+   {  for(int i=from; i<to; i++)
+         counts[i-from] = andBitCount(i, idx);
+   }
+
+   /**
+    * Only valid if the fingerprints are ordered by ascending number of bits set.
+    *
+    * @return the first index whose fingerprint has at least nb bits set or
+    *         {@link #size()} if there is none.
+    */
+   public int getFirstIndexWithNBits(int nb)
+   {  int lo = 0;
+      int hi = size();
+      while( lo < hi )
+      {  int mid = (lo + hi) >>> 1;
+         if( getNBits(mid) < nb )
+            lo = mid + 1;
+         else
+            hi = mid;
+      }
+      return lo;
+   }
+
+   /**
+    * @return same value as {@link LongFingerprint#tanimoto(Fingerprint)}.
+    */
+   public double tanimoto(int idx, LongFingerprint query)
+   {  return tanimoto(getNBits(idx), query.getNBits(),
+                      andBitCount(idx, query.getLongs()));
+   }
+
+   /**
+    * @return same value as {@link LongFingerprint#tanimoto(Fingerprint)}.
+    */
+   public double tanimoto(int idx1, int idx2)
+   {  return tanimoto(getNBits(idx1), getNBits(idx2),
+                      andBitCount(idx1, idx2));
+   }
+
+   /**
+    * Compute {@link #tanimoto(int, LongFingerprint)} for the block of
+    * fingerprints from .. to-1.
+    *
+    * @param counts work array with at least to-from elements.
+    * @param sims set to the similarities, must have at least to-from elements.
+    */
+   public void tanimoto(int from, int to, LongFingerprint query, int[] counts, double[] sims)
+   {  andBitCounts(from, to, query.getLongs(), counts);
+
+      int nb2 = query.getNBits();
+      for(int i=from; i<to; i++)
+         sims[i-from] = tanimoto(getNBits(i), nb2, counts[i-from]);
+   }
+
+   /**
+    * @return same value as {@link LongFingerprint#mtanimoto(Fingerprint)}.
+    */
+   public double mtanimoto(int idx, LongFingerprint query)
+   {  return mtanimoto(getNBits(idx), query.getNBits(),
+                       andBitCount(idx, query.getLongs()));
+   }
+
+   /**
+    * @return same value as {@link LongFingerprint#mtanimoto(Fingerprint)}.
+    */
+   public double mtanimoto(int idx1, int idx2)
+   {  return mtanimoto(getNBits(idx1), getNBits(idx2),
+                       andBitCount(idx1, idx2));
+   }
+
+   /**
+    * Compute {@link #mtanimoto(int, LongFingerprint)} for the block of
+    * fingerprints from .. to-1.
+    *
+    * @param counts work array with at least to-from elements.
+    * @param sims set to the similarities, must have at least to-from elements.
+    */
+   public void mtanimoto(int from, int to, LongFingerprint query, int[] counts, double[] sims)
+   {  andBitCounts(from, to, query.getLongs(), counts);
+
+      int nb2 = query.getNBits();
+      for(int i=from; i<to; i++)
+         sims[i-from] = mtanimoto(getNBits(i), nb2, counts[i-from]);
+   }
+
+   /**
+    * @return tanimoto of two fingerprints with nb1 and nb2 bits set and
+    *         andBitCount bits set in both.
+    */
+   static double tanimoto(int nb1, int nb2, int andBitCount)
+   {  if( nb1 == 0 && nb2 == 0 ) return 1;
+      return ( (double) andBitCount )/(nb1+nb2-andBitCount);
+   }
+
+   /**
+    * @return modified tanimoto of two fingerprints with nb1 and nb2 bits set
+    *         and andBitCount bits set in both.
+    */
+   static double mtanimoto(int nb1, int nb2, int andBitCount)
+   {  if( nb1 == 0 && nb2 == 0 ) return 1;
+      return ( (double) andBitCount )/(Math.max(nb1, nb2) * 2 - andBitCount);
+   }
+
+   /**
+    * @return a new {@link LongFingerprint} with the content of fingerprint idx.
+    */
+   public LongFingerprint getFingerprint(int idx)
+   {  long[] longs = new long[getStride()];
+      for(int i=0; i<longs.length; i++)
+         longs[i] = getWord(idx, i);
+
+      return new LongFingerprint(longs);
+   }
+}
@@ -0,0 +1,440 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye.fp;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+
+import com.aestel.Settings;
+import com.aestel.chemistry.openEye.fp.tools.GeneralHashFunctionLibrary;
+import com.aestel.utility.LogHelper;
+
+/**
+ * Read only dictionary mapping structure code names to bit positions which is
+ * memory mapped from a binary file compiled from a tab separated dictionary
+ * of {@link TABDictionaryStructureCodeMapper}.
+ *
+ * Loading does not parse the dictionary and needs almost no heap. Names are
+ * looked up by binary search of their 64 bit code
+ * ({@link GeneralHashFunctionLibrary#BKDRHash(CharSequence)}) followed by a
+ * comparison with the stored name. Codes from a
+ * {@link LongStructureCodeNameIterator} are looked up without the comparison,
+ * {@link #write} refuses dictionaries with two names of the same code in
+ * one type.
+ *
+ * Positions of unknown names are either -1 or hashed as in
+ * {@link TABDictionaryStructureCodeMapper}.
+ *
+ * The file contains, all numbers in big endian byte order:
+ * <pre>
+ * long    magic number "AEFPDC" + version
+ * int     minIdx
+ * int     maxIdx
+ * int     nTypes
+ * per type:
+ *    UTF     type name as written by {@link DataOutputStream#writeUTF}
+ *    int     nCodes: number of names of this type
+ * per type:
+ *    long[nCodes]  codes of the names in ascending order
+ *    int[nCodes]   bit position of each code
+ * int[maxIdx+2]   offset of the name of each bit position in the name section
+ * byte[]          UTF-8 encoded names by bit position
+ * </pre>
+ *
+ * Create the binary file for dictionaries in AESTEL_DIR/config/fp with
+ * {@link #main}, which is run by the fpDictionaries target of build.xml.
+ *
+ * @author albertgo
+ */
+public final class BinaryDictionaryStructureCodeMapper implements LongStructureCodeMapper
+{  public static final String FILE_EXTENSION = ".bin";
+
+   private static final long MAGIC = 0x4145465044430001L;
+   private static final Charset UTF8 = Charset.forName("UTF-8");
+
+   private final String[] types;
+   private final LongBuffer[] codes;
+   private final IntBuffer[] codeIdx;
+   private final IntBuffer nameOffsets;
+   private final ByteBuffer names;
+   private final int minIdx;
+   private final int maxIdx;
+   private final boolean hashNewCodes;
+   private final int numHashIdexes;
+
+
+   /**
+    * Memory map an existing binary dictionary.
+    * @param hashNewCodes if true unknown code names are hashed into a range
+    *        above the dictionary else their position is -1.
+    */
+   public BinaryDictionaryStructureCodeMapper(String fileName, boolean hashNewCodes)
+   throws IOException
+   {  RandomAccessFile raf = new RandomAccessFile(fileName, "r");
+      try
+      {  if( raf.readLong() != MAGIC )
+            throw new IOException("Not a binary fingerprint dictionary: " + fileName);
+
+         minIdx = raf.readInt();
+         maxIdx = raf.readInt();
+         int nTypes = raf.readInt();
+         types = new String[nTypes];
+         int[] nCodes = new int[nTypes];
+         for(int t=0; t<nTypes; t++)
+         {  types[t] = raf.readUTF();
+            nCodes[t] = raf.readInt();
+         }
+
+         FileChannel ch = raf.getChannel();
+         long pos = raf.getFilePointer();
+         codes = new LongBuffer[nTypes];
+         codeIdx = new IntBuffer[nTypes];
+         for(int t=0; t<nTypes; t++)
+         {  codes[t] = map(ch, pos, nCodes[t] * 8L).asLongBuffer();
+            pos += nCodes[t] * 8L;
+            codeIdx[t] = map(ch, pos, nCodes[t] * 4L).asIntBuffer();
+            pos += nCodes[t] * 4L;
+         }
+
+         nameOffsets = map(ch, pos, (maxIdx + 2L) * 4).asIntBuffer();
+         pos += (maxIdx + 2L) * 4;
+         names = map(ch, pos, nameOffsets.get(maxIdx+1));
+      } finally
+      {  raf.close();
+      }
+
+      this.hashNewCodes = hashNewCodes;
+      if(hashNewCodes)
+      {  if(maxIdx < 100)
+            throw new Error("hashNewCodes should only be used with larger dictionaries\n");
+         numHashIdexes = (maxIdx-minIdx)/3;
+      } else
+      {  numHashIdexes = 0;
+      }
+   }
+
+   private static ByteBuffer map(FileChannel ch, long pos, long size) throws IOException
+   {  if( size > Integer.MAX_VALUE )
+         throw new IOException("Fingerprint dictionary section too large: " + size);
+      if( pos + size > ch.size() )
+         throw new IOException("Truncated fingerprint dictionary");
+
+      return ch.map(MapMode.READ_ONLY, pos, size);
+   }
+
+   /**
+    * @return the binary dictionary compiled from the tab separated dictionary
+    *         tabFileName in AESTEL_DIR/config/fp or null if there is none or
+    *         if it is older than the tab separated dictionary.
+    */
+   public static BinaryDictionaryStructureCodeMapper openCompiled(String tabFileName,
+                                                                  boolean hashNewCodes)
+   {  File tabFile = new File(Settings.AESTEL_INSTALL_PATH + "/config/fp/" + tabFileName);
+      File binFile = getBinaryFile(tabFile);
+      if( ! binFile.exists() ) return null;
+      if( tabFile.exists() && tabFile.lastModified() > binFile.lastModified() )
+      {  LogHelper.LOG.warning("Ignoring outdated fingerprint dictionary: " + binFile);
+         return null;
+      }
+
+      try
+      {  return new BinaryDictionaryStructureCodeMapper(binFile.getPath(), hashNewCodes);
+      } catch (IOException e)
+      {  throw new Error(binFile.toString(), e);
+      }
+   }
+
+   private static File getBinaryFile(File tabFile)
+   {  String name = tabFile.getPath().replaceAll("\\.tab$", "") + FILE_EXTENSION;
+      return new File(name);
+   }
+
+   private int getTypeIdx(String type)
+   {  for(int t=0; t<types.length; t++)
+         if( types[t].equals(type) ) return t;
+      return -1;
+   }
+
+   /**
+    * @return bit position of code in the dictionary or -1.
+    */
+   private int find(String type, long code)
+   {  int t = getTypeIdx(type);
+      if( t < 0 ) return -1;
+
+      LongBuffer typeCodes = codes[t];
+      int low = 0;
+      int high = typeCodes.limit() - 1;
+      while( low <= high )
+      {  int mid = (low + high) >>> 1;
+         long midCode = typeCodes.get(mid);
+         if( midCode < code )
+            low = mid + 1;
+         else if( midCode > code )
+            high = mid - 1;
+         else
+            return codeIdx[t].get(mid);
+      }
+      return -1;
+   }
+
+   private int getUnknownIndex(long code)
+   {  if( hashNewCodes )
+         return GeneralHashFunctionLibrary.toInt(code, numHashIdexes)+maxIdx+1;
+      return -1;
+   }
+
+   /**
+    * returns -1 if hashNewCodes is false and the codeName is unknown.
+    */
+   @Override
+   public int getIndex(String type, String codeName)
+   {  long code = GeneralHashFunctionLibrary.BKDRHash(codeName);
+      int idx = find(type, code);
+      if( idx >= 0 && nameEquals(idx, codeName) ) return idx;
+
+      return getUnknownIndex(code);
+   }
+
+   @Override
+   public boolean isCodeSupported()
+   {  return true;
+   }
+
+   @Override
+   public int getIndex(String type, long code)
+   {  int idx = find(type, code);
+      if( idx >= 0 ) return idx;
+
+      return getUnknownIndex(code);
+   }
+
+   /**
+    * Compare the stored name of position idx to name without decoding it.
+    */
+   private boolean nameEquals(int idx, String name)
+   {  int start = nameOffsets.get(idx);
+      int len = nameOffsets.get(idx+1) - start;
+      if( len != name.length() ) return name.equals(getName(idx));
+
+      for(int i=0; i<len; i++)
+      {  char c = name.charAt(i);
+         if( c >= 0x80 ) return name.equals(getName(idx));
+         if( names.get(start+i) != c ) return false;
+      }
+      return true;
+   }
+
+   /**
+    * @return name of the code with position idx or null.
+    */
+   @Override
+   public String getName(int idx)
+   {  if( idx < 0 || idx > maxIdx ) return null;
+
+      int start = nameOffsets.get(idx);
+      int len = nameOffsets.get(idx+1) - start;
+      if( len == 0 ) return null;
+
+      byte[] b = new byte[len];
+      ByteBuffer dup = names.duplicate();
+      dup.position(start);
+      dup.get(b);
+      return new String(b, UTF8);
+   }
+
+   @Override
+   public int getMinIdx()
+   {  return minIdx;
+   }
+
+   @Override
+   public int getMaxIdx()
+   {  return maxIdx + numHashIdexes;
+   }
+
+   @Override
+   public void close()
+   {  // the mapping is released by the garbage collector
+   }
+
+   /**
+    * @return iterator of String[3] = {CodeType, CodeName, BitIndex}, followed
+    *         by the hashed positions as in {@link TABDictionaryStructureCodeMapper}.
+    */
+   @Override
+   public Iterator<String[]> getIterator()
+   {  return new Iterator<String[]>()
+      {  private int type = 0;
+         private int pos = 0;
+         private int hashIdx = 0;
+
+         @Override
+         public boolean hasNext()
+         {  while( type < types.length && pos >= codes[type].limit() )
+            {  type++;
+               pos = 0;
+            }
+            return type < types.length || hashIdx < numHashIdexes;
+         }
+
+         @Override
+         public String[] next()
+         {  if( ! hasNext() )
+               throw new NoSuchElementException();
+
+            String[] code = new String[3];
+            if( type < types.length )
+            {  int idx = codeIdx[type].get(pos++);
+               code[TYPEIdx] = types[type];
+               code[NAMEIdx] = getName(idx);
+               code[INDEXIdx] = Integer.toString(idx);
+            } else
+            {  code[INDEXIdx] = Integer.toString(maxIdx+(++hashIdx));
+               code[NAMEIdx] = "HASH" + code[INDEXIdx];
+               code[TYPEIdx] = "HASHED";
+            }
+            return code;
+         }
+
+         @Override
+         public void remove()
+         {  throw new UnsupportedOperationException();
+         }
+      };
+   }
+
+
+   /**
+    * Write the names of mapper into a new binary dictionary file.
+    * @param mapper must not hash unknown names.
+    */
+   public static void write(String fileName, StructureCodeMapper mapper)
+   throws IOException
+   {  int minIdx = mapper.getMinIdx();
+      int maxIdx = mapper.getMaxIdx();
+      if( maxIdx < 0 ) throw new Error("Empty dictionary can not be written: " + fileName);
+
+      Map<String,List<long[]>> typeToCodes = new LinkedHashMap<String, List<long[]>>();
+      Iterator<String[]> it = mapper.getIterator();
+      while( it.hasNext() )
+      {  String[] code = it.next();
+         List<long[]> typeCodes = typeToCodes.get(code[TYPEIdx]);
+         if( typeCodes == null )
+         {  typeCodes = new ArrayList<long[]>();
+            typeToCodes.put(code[TYPEIdx], typeCodes);
+         }
+         typeCodes.add(new long[] { GeneralHashFunctionLibrary.BKDRHash(code[NAMEIdx]),
+                                    Integer.parseInt(code[INDEXIdx]) });
+      }
+
+      ByteArrayOutputStream nameBytes = new ByteArrayOutputStream();
+      int[] nameOffsets = new int[maxIdx+2];
+      for(int idx=0; idx<=maxIdx; idx++)
+      {  nameOffsets[idx] = nameBytes.size();
+         String name = idx < minIdx ? null : mapper.getName(idx);
+         if( name != null )
+         {  byte[] b = name.getBytes(UTF8);
+            nameBytes.write(b, 0, b.length);
+         }
+      }
+      nameOffsets[maxIdx+1] = nameBytes.size();
+
+      DataOutputStream out = new DataOutputStream(
+                  new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16));
+      try
+      {  out.writeLong(MAGIC);
+         out.writeInt(minIdx);
+         out.writeInt(maxIdx);
+         out.writeInt(typeToCodes.size());
+         for(Entry<String, List<long[]>> e : typeToCodes.entrySet())
+         {  out.writeUTF(e.getKey());
+            out.writeInt(e.getValue().size());
+         }
+
+         for(Entry<String, List<long[]>> e : typeToCodes.entrySet())
+         {  long[][] typeCodes = e.getValue().toArray(new long[e.getValue().size()][]);
+            Arrays.sort(typeCodes, new Comparator<long[]>()
+            {  @Override
+               public int compare(long[] a, long[] b)
+               {  return a[0] < b[0] ? -1 : (a[0] > b[0] ? 1 : 0);
+               }
+            });
+            for(int i=1; i<typeCodes.length; i++)
+               if( typeCodes[i][0] == typeCodes[i-1][0] )
+                  throw new Error(String.format("Code collision in type %s: %s %s",
+                        e.getKey(), mapper.getName((int)typeCodes[i][1]),
+                        mapper.getName((int)typeCodes[i-1][1])));
+
+            for(long[] code : typeCodes)
+               out.writeLong(code[0]);
+            for(long[] code : typeCodes)
+               out.writeInt((int)code[1]);
+         }
+
+         for(int offset : nameOffsets)
+            out.writeInt(offset);
+         nameBytes.writeTo(out);
+      } finally
+      {  out.close();
+      }
+   }
+
+   /**
+    * Compile the tab separated dictionaries given as arguments into binary
+    * dictionaries next to them in AESTEL_DIR/config/fp.
+    */
+   public static void main(String...args) throws IOException
+   {  if( args.length == 0 )
+      {  System.err.println("BinaryDictionaryStructureCodeMapper dictionary.tab ...\n"
+                          + "   compile dictionaries in $AESTEL_DIR/config/fp");
+         System.exit(1);
+      }
+
+      for(String tabFileName : args)
+      {  TABDictionaryStructureCodeMapper mapper
+               = new TABDictionaryStructureCodeMapper(tabFileName, false, false);
+         File binFile = getBinaryFile(
+               new File(Settings.AESTEL_INSTALL_PATH + "/config/fp/" + tabFileName));
+         write(binFile.getPath(), mapper);
+         mapper.close();
+         System.err.printf("%s: %d codes written to %s\n",
+                           tabFileName, mapper.getMaxIdx()+1, binFile);
+      }
+   }
+}
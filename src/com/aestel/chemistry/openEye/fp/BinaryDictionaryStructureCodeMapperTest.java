@@ -0,0 +1,143 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye.fp;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+import com.aestel.chemistry.openEye.fp.tools.GeneralHashFunctionLibrary;
+
+public class BinaryDictionaryStructureCodeMapperTest
+{  private static final String[][] CODES =
+   {  { "lin74", "C-C",      "0" },
+      { "lin74", "c:c",      "1" },
+      { "lin74", "*-*=*-*",  "2" },
+      { "maccs", "ISOTOPE",  "4" },
+      { "maccs", "C=O",      "5" },
+      { "lin74", "C-N",      "6" },
+   };
+
+   @Test()
+   public void testLookup() throws IOException
+   {  BinaryDictionaryStructureCodeMapper mapper = write(CODES, false);
+
+      assert mapper.getMinIdx() == 0;
+      assert mapper.getMaxIdx() == 6;
+      for(String[] code : CODES)
+      {  int idx = Integer.parseInt(code[2]);
+         assert mapper.getIndex(code[0], code[1]) == idx;
+         assert mapper.getIndex(code[0], GeneralHashFunctionLibrary.BKDRHash(code[1])) == idx;
+         assert code[1].equals(mapper.getName(idx));
+      }
+      assert mapper.getName(3) == null;
+      assert mapper.getIndex("lin74", "C=O") == -1;
+      assert mapper.getIndex("lin7", "C-C") == -1;
+      assert mapper.getIndex("lin74", "C-O") == -1;
+      assert mapper.getIndex("lin74", GeneralHashFunctionLibrary.BKDRHash("C-O")) == -1;
+
+      Set<String> found = new HashSet<String>();
+      Iterator<String[]> it = mapper.getIterator();
+      while(it.hasNext())
+      {  String[] code = it.next();
+         found.add(code[0] + ' ' + code[1] + ' ' + code[2]);
+      }
+      assert found.size() == CODES.length;
+      for(String[] code : CODES)
+         assert found.contains(code[0] + ' ' + code[1] + ' ' + code[2]);
+   }
+
+   @Test()
+   public void testHashNewCodes() throws IOException
+   {  String[][] codes = new String[200][];
+      for(int i=0; i<codes.length; i++)
+         codes[i] = new String[] { "lin7", "C" + i, Integer.toString(i) };
+      BinaryDictionaryStructureCodeMapper mapper = write(codes, true);
+
+      int numHash = 199/3;
+      assert mapper.getMaxIdx() == 199 + numHash;
+      assert mapper.getIndex("lin7", "C5") == 5;
+      int expected = GeneralHashFunctionLibrary.toInt(
+               GeneralHashFunctionLibrary.BKDRHash("N"), numHash) + 200;
+      assert mapper.getIndex("lin7", "N") == expected;
+      assert mapper.getIndex("lin74", "C5") == GeneralHashFunctionLibrary.toInt(
+               GeneralHashFunctionLibrary.BKDRHash("C5"), numHash) + 200;
+   }
+
+   private static BinaryDictionaryStructureCodeMapper write(String[][] codes,
+                                                             boolean hashNewCodes)
+   throws IOException
+   {  File file = File.createTempFile("dict", BinaryDictionaryStructureCodeMapper.FILE_EXTENSION);
+      file.deleteOnExit();
+      BinaryDictionaryStructureCodeMapper.write(file.getPath(), new ListMapper(codes));
+      return new BinaryDictionaryStructureCodeMapper(file.getPath(), hashNewCodes);
+   }
+
+   /** minimal dictionary */
+   private static class ListMapper implements StructureCodeMapper
+   {  private final String[][] codes;
+      private final List<String> names = new ArrayList<String>();
+
+      ListMapper(String[][] codes)
+      {  this.codes = codes;
+         for(String[] code : codes)
+         {  int idx = Integer.parseInt(code[2]);
+            while(names.size() <= idx) names.add(null);
+            names.set(idx, code[1]);
+         }
+      }
+
+      @Override
+      public int getIndex(String type, String fargName)
+      {  throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public String getName(int idx)
+      {  return names.get(idx);
+      }
+
+      @Override
+      public int getMinIdx()
+      {  return 0;
+      }
+
+      @Override
+      public int getMaxIdx()
+      {  return names.size() - 1;
+      }
+
+      @Override
+      public void close()
+      {  // nothing to do
+      }
+
+      @Override
+      public Iterator<String[]> getIterator()
+      {  List<String[]> list = new ArrayList<String[]>();
+         for(String[] code : codes) list.add(code.clone());
+         return list.iterator();
+      }
+   }
+}
@@ -21,10 +21,17 @@ package com.aestel.chemistry.openEye.fp;
  * This is an implementation of {@link Fingerprint} that stores the bits
  * in a byte array.
  *
+ * For the similarity computations the bytes are also kept packed into longs
+ * so that they are compared eight bytes at a time by the {@link TanimotoKernel}.
+ *
  * @author albertgo
  */
 final public class ByteFingerprint implements Fingerprint
-{  private final byte[] bytes;
+{  private static final TanimotoKernel KERNEL = TanimotoKernel.getInstance();
+
+   private final byte[] bytes;
+   /** bytes packed into longs, the last long is padded with 0 */
+   private final long[] longs;
    private final int nBits;
 
    public ByteFingerprint(String hex)
@@ -58,21 +65,34 @@ final public class ByteFingerprint implements Fingerprint
       }
 
       this.bytes = b;
+      this.longs = toLongs(b);
 
       int nb = 0;
-      for(byte bi : bytes)
-         nb += BYTEBitcount[bi & 0xFF];
+      for(long l : longs)
+         nb += Long.bitCount(l);
       this.nBits = nb;
    }
 
    public ByteFingerprint(byte[] bytes)
    {  this.bytes = bytes;
+      this.longs = toLongs(bytes);
       int nb = 0;
-      for(byte b : bytes)
-         nb += BYTEBitcount[b & 0xFF];
+      for(long l : longs)
+         nb += Long.bitCount(l);
       this.nBits = nb;
    }
 
+   /**
+    * Pack bytes into longs, most significant byte first.
+    */
+   private static long[] toLongs(byte[] bytes)
+   {  long[] longs = new long[(bytes.length+7)/8];
+      for(int i=0; i<bytes.length; i++)
+         longs[i >> 3] |= (bytes[i] & 0xFFL) << (56 - ((i & 7) << 3));
+
+      return longs;
+   }
+
    @Override
    public double tanimoto(Fingerprint other)
    {  if( ! (other instanceof ByteFingerprint) )
@@ -80,35 +100,14 @@ final public class ByteFingerprint implements Fingerprint
 
       if( this.nBits == 0 && other.getNBits() == 0) return 1;
 
-      byte[] fp_1 = this.bytes;
-      byte[] fp_2 = ((ByteFingerprint) other).bytes;
-
-      int andBitCount = 0;  // number of bits present in both
-      int orBitCount = 0;   // number of bits present in either
-
-      int i=0;
-      byte[] longerFP;
-      int len;
-      if( fp_1.length < fp_2.length)
-      {  longerFP = fp_2;
-         len = fp_1.length;
-      }else
-      {  longerFP = fp_1;
-         len = fp_2.length;
-      }
+      long[] fp_1 = this.longs;
+      long[] fp_2 = ((ByteFingerprint) other).longs;
 
-      // we could possibly convert to long in 16 ops and then do the and/or
-      // and count on the long values more efficiently but I am not sure
-      for( ; i<len; i++)
-      {  andBitCount += BYTEBitcount[ fp_1[i]  & fp_2[i]  & 0xFF ];
-         orBitCount  += BYTEBitcount[ (fp_1[i] | fp_2[i]) & 0xFF ];
-      }
-
-      len = longerFP.length;
-      for( ; i<len; i++)
-         orBitCount += BYTEBitcount[ longerFP[i] & 0xFF ];
+      // number of bits present in both
+      int andBitCount = KERNEL.andBitCount(fp_1, 0, fp_2, 0, Math.min(fp_1.length, fp_2.length));
+      // number of bits present in either
+      int orBitCount = this.nBits + other.getNBits() - andBitCount;
 
-//System.err.printf("and=%d or=%d ", andBitCount, orBitCount);
       return ( (double) andBitCount )/orBitCount;
    }
 
@@ -122,21 +121,11 @@ final public class ByteFingerprint implements Fingerprint
 
       if( this.nBits == 0 && other.getNBits() == 0) return 1;
 
-      byte[] fp_1 = this.bytes;
-      byte[] fp_2 = ((ByteFingerprint) other).bytes;
+      long[] fp_1 = this.longs;
+      long[] fp_2 = ((ByteFingerprint) other).longs;
 
-      int andBitCount = 0;
+      int andBitCount = KERNEL.andBitCount(fp_1, 0, fp_2, 0, Math.min(fp_1.length, fp_2.length));
 
-      int len = Math.min(fp_1.length, fp_2.length);
-
-      // we could possibly convert to long in 16 ops and then do the and/or
-      // and count on the long values more efficiently but I am not sure
-      for(int i=0; i<len; i++)
-      {  andBitCount += BYTEBitcount[ fp_1[i]  & fp_2[i]  & 0xFF ];
-      }
-
-
-//System.err.printf("and=%d or=%d ", andBitCount, orBitCount);
       return ( (double) andBitCount )/(Math.max(this.nBits, other.getNBits()) * 2 - andBitCount);
    }
 
@@ -179,18 +168,6 @@ final public class ByteFingerprint implements Fingerprint
    {  return nBits;
    }
 
-   /** for each of the 256 byte values store the number of bits set to 1 */
-   static final int[] BYTEBitcount = new int[]
-   {  0,1,1,2,1,2,2,3, 1,2,2,3,2,3,3,4,  1,2,2,3,2,3,3,4, 2,3,3,4,3,4,4,5,
-      1,2,2,3,2,3,3,4, 2,3,3,4,3,4,4,5,  2,3,3,4,3,4,4,5, 3,4,4,5,4,5,5,6,
-      1,2,2,3,2,3,3,4, 2,3,3,4,3,4,4,5,  2,3,3,4,3,4,4,5, 3,4,4,5,4,5,5,6,
-      2,3,3,4,3,4,4,5, 3,4,4,5,4,5,5,6,  3,4,4,5,4,5,5,6, 4,5,5,6,5,6,6,7,
-      1,2,2,3,2,3,3,4, 2,3,3,4,3,4,4,5,  2,3,3,4,3,4,4,5, 3,4,4,5,4,5,5,6,
-      2,3,3,4,3,4,4,5, 3,4,4,5,4,5,5,6,  3,4,4,5,4,5,5,6, 4,5,5,6,5,6,6,7,
-      2,3,3,4,3,4,4,5, 3,4,4,5,4,5,5,6,  3,4,4,5,4,5,5,6, 4,5,5,6,5,6,6,7,
-      3,4,4,5,4,5,5,6, 4,5,5,6,5,6,6,7,  4,5,5,6,5,6,6,7, 5,6,6,7,6,7,7,8
-   };
-
    public static void main(String ... args)
    {  ByteFingerprint fp1 = new ByteFingerprint("fffffaff8b10979880014b000803110010800040002060081000000002000000000000000c0410100400081e08007000070000000004068020010804004912040010008220180810000000000000008808000000000020400200800000200000000020000000000000000000000000000000000000000000000000000000000000000400800000000002000000000000000050000200000080000000000000000000020000800000000000008000000000000000000000000000000000000000000400000004000000000000000000000000000000000000004004000000000000000000000108008020000000000000000000000021");
       ByteFingerprint fp2 = new ByteFingerprint("fffffaff2b821f9880214a0088038100100100c004216008104000000200100000000000040010100400081e08007000070000000004068020010804004912040011000220080810000000000002008808040000000020400200800000200000000020008000004000000000000000000000000000000000000000000000000000000400800000000002000000000000000050000200000080000000000000000000020000800000000000008000000000000000000000000000000000000000000400000004000000000000000000000000000000000000004004000000000000000000000108008020000000000000000000000021");
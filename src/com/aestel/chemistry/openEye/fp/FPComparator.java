@@ -30,6 +30,14 @@ public class FPComparator implements SimComparator<FPComparator>, Cloneable
       this.fp = new LongFingerprint(fpStr);
    }
 
+   public FPComparator(LongFingerprint fp)
+   {  this.fp = fp;
+   }
+
+   public LongFingerprint getFingerprint()
+   {  return fp;
+   }
+
    @Override
    public double similarity(FPComparator otherFP)
    {   return fp.tanimoto(otherFP.fp);
@@ -41,11 +49,22 @@ public class FPComparator implements SimComparator<FPComparator>, Cloneable
    }
 
    /**
-    * Default implementation to be improved.
+    * Returns 0 without comparing the fingerprints if the bit counts alone
+    * prove that the similarity is below minSim.
     */
    @Override
    public double similarity(SimComparator<FPComparator> other, double minSim)
-   { return similarity(other);
+   {  if( getSimilarityBound(((FPComparator) other).fp.getNBits()) < minSim )
+         return 0D;
+
+      return similarity(other);
+   }
+
+   /**
+    * @return upper bound of the similarity of this to a fingerprint with nBits set.
+    */
+   protected double getSimilarityBound(int nBits)
+   {  return LongFingerprint.tanimotoBound(fp.getNBits(), nBits);
    }
 
    @Override
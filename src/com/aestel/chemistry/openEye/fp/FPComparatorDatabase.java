@@ -0,0 +1,42 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye.fp;
+
+import java.util.List;
+
+import com.aestel.chemistry.openEye.SimComparatorDatabase;
+
+/**
+ * {@link FPComparatorStore} on the memory mapped fingerprints of a {@link FingerprintDatabase}.
+ *
+ * @author albertgo
+ */
+public class FPComparatorDatabase extends FPComparatorStore
+                                  implements SimComparatorDatabase<FPComparator, FPComparator>
+{  private final List<String> ids;
+
+   public FPComparatorDatabase(boolean doMaxTanimoto, FingerprintDatabase db)
+   {  super(doMaxTanimoto, db.getStore(), db.getOldIdx(), db.getPosOfIdx());
+      this.ids = db.getIds();
+   }
+
+   @Override
+   public List<String> getIds()
+   {  return ids;
+   }
+}
@@ -17,11 +17,17 @@ Contact: aestelSW@gmail.com
 */
 package com.aestel.chemistry.openEye.fp;
 
+import java.io.IOException;
+
 import openeye.oechem.OEMolBase;
 
+import com.aestel.chemistry.openEye.SimComparatorDatabase;
 import com.aestel.chemistry.openEye.SimComparatorFactory;
+import com.aestel.chemistry.openEye.SimComparatorStore;
+import com.aestel.chemistry.openEye.SimComparatorStoreFactory;
 
-public class FPComparatorFact implements SimComparatorFactory<OEMolBase, FPComparator, FPComparator>
+public class FPComparatorFact implements SimComparatorFactory<OEMolBase, FPComparator, FPComparator>,
+                                         SimComparatorStoreFactory<FPComparator, FPComparator>
 {  private final String fpTag;
    private final boolean doMaxTanimoto;
 
@@ -43,6 +49,39 @@ public class FPComparatorFact implements SimComparatorFactory<OEMolBase, FPCompa
    }
 
 
+   /**
+    * Fingerprints are stored in a {@link PackedFingerprintStore}.
+    */
+   public SimComparatorStore<FPComparator, FPComparator> createStore(int initialCapacity)
+   {  return new FPComparatorStore(doMaxTanimoto, initialCapacity);
+   }
+
+
+   /**
+    * Fingerprints are stored in buckets by number of bits set.
+    */
+   public SimComparatorStore<FPComparator, FPComparator> createIndex(int initialCapacity)
+   {  return new FPComparatorIndex(doMaxTanimoto, initialCapacity);
+   }
+
+
+   /**
+    * @return true if fileName has the {@link FingerprintDatabase} extension.
+    */
+   public boolean isDatabase(String fileName)
+   {  return FingerprintDatabase.isDatabaseFile(fileName);
+   }
+
+
+   public SimComparatorDatabase<FPComparator, FPComparator> openDatabase(String fileName)
+   {  try
+      {  return new FPComparatorDatabase(doMaxTanimoto, new FingerprintDatabase(fileName));
+      } catch (IOException e)
+      {  throw new Error(e);
+      }
+   }
+
+
    public void close()
    {  // nothing to do
    }
@@ -0,0 +1,201 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+
+package com.aestel.chemistry.openEye.fp;
+
+import java.util.Arrays;
+
+import com.aestel.chemistry.openEye.SimComparatorStore;
+import com.aestel.chemistry.openEye.SimilarityCollector;
+
+/**
+ * Stores the fingerprints of {@link FPComparator}s in one {@link PackedFingerprintStore}
+ * per number of bits set.
+ *
+ * Unlike {@link FPComparatorStore} fingerprints may be added after searches
+ * were performed. This is used e.g. for the centroids in
+ * {@link com.aestel.chemistry.openEye.SphereExclusion}.
+ *
+ * The searches start with the bucket whose bit count equals the bit count of
+ * the query and stop as soon as the bit counts prove that the remaining
+ * buckets can not reach {@link SimilarityCollector#getMinSimilarity()}.
+ *
+ * Searches may run concurrently with each other but not concurrently with
+ * {@link #add(FPComparator)}.
+ *
+ * @author albertgo
+ */
+public class FPComparatorIndex implements SimComparatorStore<FPComparator, FPComparator>
+{  /** number of fingerprints in a bucket scored against the query at once */
+   private static final int BLOCKSize = 64;
+
+   private final boolean doMaxTanimoto;
+   /** fingerprints by number of bits set, null for empty buckets */
+   private PackedFingerprintStore[] buckets;
+   /** for each bucket the index as passed to {@link #add(FPComparator)} */
+   private int[][] bucketIdx;
+   /** for each index the number of bits set, this is also the bucket */
+   private int[] nBitsOfIdx;
+   /** for each index the position in its bucket */
+   private int[] posOfIdx;
+   private int size;
+
+   /**
+    * @param doMaxTanimoto if true use {@link LongFingerprint#mtanimoto(Fingerprint)}
+    *        as {@link FPMTaniComparator} does.
+    */
+   public FPComparatorIndex(boolean doMaxTanimoto, int initialCapacity)
+   {  initialCapacity = Math.max(1, initialCapacity);
+      this.doMaxTanimoto = doMaxTanimoto;
+      this.buckets = new PackedFingerprintStore[0];
+      this.bucketIdx = new int[0][];
+      this.nBitsOfIdx = new int[initialCapacity];
+      this.posOfIdx = new int[initialCapacity];
+      this.size = 0;
+   }
+
+   @Override
+   public void add(FPComparator comparator)
+   {  LongFingerprint fp = comparator.getFingerprint();
+      int nBits = fp.getNBits();
+
+      if( nBits >= buckets.length )
+      {  int newLen = Math.max(nBits + 1, buckets.length + (buckets.length >> 1));
+         buckets = Arrays.copyOf(buckets, newLen);
+         bucketIdx = Arrays.copyOf(bucketIdx, newLen);
+      }
+      if( buckets[nBits] == null )
+      {  buckets[nBits] = new PackedFingerprintStore(16);
+         bucketIdx[nBits] = new int[16];
+      }
+
+      int pos = buckets[nBits].add(fp);
+      if( pos == bucketIdx[nBits].length )
+         bucketIdx[nBits] = Arrays.copyOf(bucketIdx[nBits], pos * 2);
+      bucketIdx[nBits][pos] = size;
+
+      if( size == posOfIdx.length )
+      {  int newLen = size + (size >> 1) + 1;
+         posOfIdx = Arrays.copyOf(posOfIdx, newLen);
+         nBitsOfIdx = Arrays.copyOf(nBitsOfIdx, newLen);
+      }
+      nBitsOfIdx[size] = nBits;
+      posOfIdx[size] = pos;
+      size++;
+
+      comparator.close();
+   }
+
+   @Override
+   public int size()
+   {  return size;
+   }
+
+   @Override
+   public double similarity(int idx, FPComparator query)
+   {  return similarityAt(buckets[nBitsOfIdx[idx]], posOfIdx[idx], query.getFingerprint());
+   }
+
+   /**
+    * minSim is ignored, computing the similarity is faster than the bound.
+    */
+   @Override
+   public double similarity(int idx, FPComparator query, double minSim)
+   {  return similarity(idx, query);
+   }
+
+   @Override
+   public double similarity(int idx1, int idx2)
+   {  LongFingerprint fp2 = buckets[nBitsOfIdx[idx2]].getFingerprint(posOfIdx[idx2]);
+      return similarityAt(buckets[nBitsOfIdx[idx1]], posOfIdx[idx1], fp2);
+   }
+
+   private double similarityAt(PackedFingerprintStore bucket, int pos, LongFingerprint query)
+   {  if( doMaxTanimoto )
+         return bucket.mtanimoto(pos, query);
+
+      return bucket.tanimoto(pos, query);
+   }
+
+   private double getSimilarityBound(int nBits1, int nBits2)
+   {  if( doMaxTanimoto )
+         return LongFingerprint.mtanimotoBound(nBits1, nBits2);
+
+      return LongFingerprint.tanimotoBound(nBits1, nBits2);
+   }
+
+   @Override
+   public void search(FPComparator query, SimilarityCollector collector)
+   {  search(query.getFingerprint(), collector);
+   }
+
+   @Override
+   public void search(int queryIdx, SimilarityCollector collector)
+   {  search(buckets[nBitsOfIdx[queryIdx]].getFingerprint(posOfIdx[queryIdx]), collector);
+   }
+
+   /**
+    * Walk outwards from the bucket with the same bit count as query
+    * always continuing on the side with the higher similarity bound.
+    * Stop when the higher bound is below the minimum similarity of the collector.
+    * The fingerprints in a bucket are scored in blocks.
+    */
+   private void search(LongFingerprint query, SimilarityCollector collector)
+   {  int[] counts = new int[BLOCKSize];
+      double[] sims = new double[BLOCKSize];
+      int qBits = query.getNBits();
+      int n = buckets.length;
+      int up = qBits;
+      int down = Math.min(qBits, n) - 1;
+
+      while( up < n || down >= 0 )
+      {  double upBound   = up < n    ? getSimilarityBound(qBits, up)   : -1D;
+         double downBound = down >= 0 ? getSimilarityBound(qBits, down) : -1D;
+
+         int nBits;
+         if( upBound >= downBound )
+         {  if( upBound < collector.getMinSimilarity() ) break;
+            nBits = up++;
+         }else
+         {  if( downBound < collector.getMinSimilarity() ) break;
+            nBits = down--;
+         }
+
+         PackedFingerprintStore bucket = buckets[nBits];
+         if( bucket == null ) continue;
+
+         int[] idx = bucketIdx[nBits];
+         int bucketSize = bucket.size();
+         for( int from=0; from<bucketSize; from+=BLOCKSize )
+         {  int to = Math.min(bucketSize, from+BLOCKSize);
+            if( doMaxTanimoto )
+               bucket.mtanimoto(from, to, query, counts, sims);
+            else
+               bucket.tanimoto(from, to, query, counts, sims);
+
+            for( int pos=from; pos<to; pos++ )
+               collector.collect(idx[pos], sims[pos-from]);
+         }
+      }
+   }
+
+   @Override
+   public void close()
+   {  // nothing to do
+   }
+}
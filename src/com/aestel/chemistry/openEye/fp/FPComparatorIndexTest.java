@@ -0,0 +1,219 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye.fp;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import openeye.oechem.OEMolBase;
+
+import org.testng.annotations.Test;
+
+import com.aestel.chemistry.openEye.SimComparatorFactory;
+import com.aestel.chemistry.openEye.SimilarityCollector;
+import com.aestel.chemistry.openEye.SphereExclusion;
+
+/**
+ * Compare the searches of {@link FPComparatorIndex} and the sphere exclusion
+ * using it to a linear scan over the fingerprints of the sdfFingerprinter test.
+ */
+public class FPComparatorIndexTest
+{  private static final String FP_FILE = "test/sdfFingerprinter/100.refout.sdf";
+   private static final String FP_TAG  = "linear7*4_folded512";
+   private static final double[] MINSims = { 0D, 0.3D, 0.5D, 0.7D, 0.9D, 1D };
+
+   /**
+    * @return the fingerprints in FP_TAG, the file is read as text so that no
+    *         OEChem license is needed.
+    */
+   private static List<LongFingerprint> readFingerprints() throws IOException
+   {  List<LongFingerprint> fps = new ArrayList<LongFingerprint>();
+      BufferedReader in = new BufferedReader(new FileReader(FP_FILE));
+      String line;
+      while( (line = in.readLine()) != null )
+      {  if( line.startsWith("> ") && line.endsWith("<" + FP_TAG + ">") )
+            fps.add(new LongFingerprint(in.readLine().trim()));
+      }
+      in.close();
+
+      assert fps.size() == 100 : "fingerprints in " + FP_FILE + ": " + fps.size();
+      return fps;
+   }
+
+   private static double similarity(boolean doMaxTanimoto, LongFingerprint fp1, LongFingerprint fp2)
+   {  if( doMaxTanimoto ) return fp1.mtanimoto(fp2);
+      return fp1.tanimoto(fp2);
+   }
+
+   private static FPComparator createComparator(boolean doMaxTanimoto, LongFingerprint fp)
+   {  if( doMaxTanimoto ) return new FPMTaniComparator(fp);
+      return new FPComparator(fp);
+   }
+
+   /**
+    * @return idx and similarity of all fingerprints reported by the index
+    *         with sim >= minSim.
+    */
+   private static Map<Integer,Double> search(FPComparatorIndex index, FPComparator query,
+                                             final double minSim)
+   {  final Map<Integer,Double> hits = new TreeMap<Integer,Double>();
+      index.search(query, new SimilarityCollector()
+      {  @Override
+         public void collect(int idx, double sim)
+         {  assert ! hits.containsKey(idx) : "reported twice: " + idx;
+            if( sim >= minSim ) hits.put(idx, sim);
+         }
+
+         @Override
+         public double getMinSimilarity()
+         {  return minSim;
+         }
+      });
+      return hits;
+   }
+
+   @Test()
+   public void testSearch() throws IOException
+   {  List<LongFingerprint> fps = readFingerprints();
+
+      for( boolean doMaxTanimoto : new boolean[] { false, true } )
+      {  FPComparatorIndex index = new FPComparatorIndex(doMaxTanimoto, 2);
+         for( LongFingerprint fp : fps )
+            index.add(createComparator(doMaxTanimoto, fp));
+         assert index.size() == fps.size();
+
+         for( int q=0; q<fps.size(); q++ )
+         {  FPComparator query = createComparator(doMaxTanimoto, fps.get(q));
+            for( double minSim : MINSims )
+            {  Map<Integer,Double> expected = new TreeMap<Integer,Double>();
+               for( int i=0; i<fps.size(); i++ )
+               {  double sim = similarity(doMaxTanimoto, fps.get(i), fps.get(q));
+                  if( sim >= minSim ) expected.put(i, sim);
+               }
+
+               Map<Integer,Double> hits = search(index, query, minSim);
+               assert hits.equals(expected)
+                  : "maxTani=" + doMaxTanimoto + " q=" + q + " minSim=" + minSim
+                    + "\n" + hits + "\n" + expected;
+               assert index.similarity(q, query) == 1D;
+            }
+         }
+      }
+   }
+
+   /**
+    * Pick sphere exclusion centroids in input order once with the index,
+    * which is searched while growing, and once by comparing to all centroids.
+    */
+   @Test()
+   public void testSphereExclusionPicks() throws IOException
+   {  List<LongFingerprint> fps = readFingerprints();
+
+      for( boolean doMaxTanimoto : new boolean[] { false, true } )
+      {  for( double radius : new double[] { 0.3D, 0.5D, 0.7D } )
+         {  FPComparatorIndex index = new FPComparatorIndex(doMaxTanimoto, 2);
+            List<Integer> indexPicks = new ArrayList<Integer>();
+            List<Integer> linearPicks = new ArrayList<Integer>();
+
+            for( int i=0; i<fps.size(); i++ )
+            {  FPComparator cand = createComparator(doMaxTanimoto, fps.get(i));
+               if( search(index, cand, radius).isEmpty() )
+               {  index.add(cand);
+                  indexPicks.add(i);
+               }
+
+               boolean isMember = false;
+               for( int c : linearPicks )
+                  isMember |= similarity(doMaxTanimoto, fps.get(c), fps.get(i)) >= radius;
+               if( ! isMember ) linearPicks.add(i);
+            }
+
+            assert indexPicks.equals(linearPicks)
+               : "maxTani=" + doMaxTanimoto + " radius=" + radius
+                 + "\n" + indexPicks + "\n" + linearPicks;
+            assert indexPicks.size() > 1 && indexPicks.size() < fps.size();
+         }
+      }
+   }
+
+   /**
+    * Run {@link SphereExclusion} on the indexed and on the linear centroid
+    * store and compare the output files.
+    */
+   @Test()
+   public void testSphereExclusion() throws IOException
+   {  for( int nCpu : new int[] { 1, 3 } )
+      {  for( boolean reverse : new boolean[] { false, true } )
+         {  final FPComparatorFact fact = new FPComparatorFact(true, FP_TAG);
+            // does not implement SimComparatorStoreFactory: linear scan
+            SimComparatorFactory<OEMolBase, FPComparator, FPComparator> linearFact
+               = new SimComparatorFactory<OEMolBase, FPComparator, FPComparator>()
+            {  @Override
+               public FPComparator createComparator(FPComparator comparable)
+               {  return fact.createComparator(comparable);
+               }
+
+               @Override
+               public FPComparator createComparable(OEMolBase in)
+               {  return fact.createComparable(in);
+               }
+
+               @Override
+               public void close()
+               {  fact.close();
+               }
+            };
+
+            String indexOut = runSphereExclusion(fact, reverse, nCpu);
+            String linearOut = runSphereExclusion(linearFact, reverse, nCpu);
+            assert indexOut.length() > 0;
+            assert indexOut.equals(linearOut) : "nCpu=" + nCpu + " reverse=" + reverse;
+         }
+      }
+   }
+
+   private static String runSphereExclusion(
+            SimComparatorFactory<OEMolBase, FPComparator, FPComparator> fact,
+            boolean reverse, int nCpu) throws IOException
+   {  File out = File.createTempFile("sphereEx", ".sdf");
+      out.deleteOnExit();
+
+      SphereExclusion<FPComparator, FPComparator> sphereEx
+         = new SphereExclusion<FPComparator, FPComparator>(fact, null, out.getPath(),
+                  0.6D, reverse, false, true, nCpu);
+      sphereEx.run(FP_FILE);
+      sphereEx.close();
+
+      // skip the time stamp in the header of each record
+      StringBuilder sb = new StringBuilder();
+      BufferedReader in = new BufferedReader(new FileReader(out));
+      String line;
+      while( (line = in.readLine()) != null )
+      {  if( ! line.startsWith("  -OEChem-") )
+            sb.append(line).append('\n');
+      }
+      in.close();
+      return sb.toString();
+   }
+}
@@ -0,0 +1,257 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye.fp;
+
+import com.aestel.chemistry.openEye.SimilarityCollector;
+import com.aestel.chemistry.openEye.SymmetricSimComparatorStore;
+
+/**
+ * Stores the fingerprints of {@link FPComparator}s in a {@link PackedFingerprintStore}
+ * instead of keeping one comparator object per reference.
+ *
+ * Before the first comparison the fingerprints are sorted by the number of bits
+ * set. The searches start with the fingerprints whose bit count is closest to
+ * the query and stop as soon as the bit counts prove that the remaining
+ * fingerprints can not reach {@link SimilarityCollector#getMinSimilarity()}.
+ *
+ * The positions used by {@link SymmetricSimComparatorStore} are the positions
+ * in the sorted store. Tiles of fingerprints with very different bit counts
+ * can therefore be skipped using {@link #getSimilarityBound(int, int, int, int)}.
+ *
+ * @author albertgo
+ */
+public class FPComparatorStore implements SymmetricSimComparatorStore<FPComparator, FPComparator>
+{  /** assumed size of the L2 cache in bytes */
+   private static final int L2CACHESize = 256 * 1024;
+
+   /** null if the fingerprints were not added to this store but read from a file */
+   private final PackedFingerprintStore packedStore;
+   private final AbstractFingerprintStore store;
+   private final boolean doMaxTanimoto;
+   /** index in store to index as passed to {@link #add(FPComparator)} */
+   private int[] oldIdx;
+   /** index as passed to {@link #add(FPComparator)} to index in store, null until sorted */
+   private volatile int[] posOfIdx;
+
+   /**
+    * @param doMaxTanimoto if true use {@link LongFingerprint#mtanimoto(Fingerprint)}
+    *        as {@link FPMTaniComparator} does.
+    */
+   public FPComparatorStore(boolean doMaxTanimoto, int initialCapacity)
+   {  this.packedStore = new PackedFingerprintStore(initialCapacity);
+      this.store = packedStore;
+      this.doMaxTanimoto = doMaxTanimoto;
+   }
+
+   /**
+    * Create a store on fingerprints which are already sorted by the number of bits set.
+    *
+    * @param oldIdx for each fingerprint in sortedStore the index used to access it.
+    * @param posOfIdx for each index the position in sortedStore.
+    */
+   protected FPComparatorStore(boolean doMaxTanimoto, AbstractFingerprintStore sortedStore,
+                               int[] oldIdx, int[] posOfIdx)
+   {  this.packedStore = null;
+      this.store = sortedStore;
+      this.doMaxTanimoto = doMaxTanimoto;
+      this.oldIdx = oldIdx;
+      this.posOfIdx = posOfIdx;
+   }
+
+   @Override
+   public void add(FPComparator comparator)
+   {  if( posOfIdx != null )
+         throw new Error("Fingerprints may not be added after the first comparison");
+
+      packedStore.add(comparator.getFingerprint());
+      comparator.close();
+   }
+
+   @Override
+   public int size()
+   {  return store.size();
+   }
+
+   /**
+    * Sort the fingerprints by bit count, done once before the first comparison.
+    */
+   private void ensureSorted()
+   {  if( posOfIdx != null ) return;
+
+      synchronized(this)
+      {  if( posOfIdx != null ) return;
+
+         packedStore.trimToSize();
+         int[] old = packedStore.sortByNBits();
+         int[] pos = new int[old.length];
+         for(int i=0; i<old.length; i++)
+            pos[old[i]] = i;
+
+         oldIdx = old;
+         posOfIdx = pos;
+      }
+   }
+
+   @Override
+   public double similarity(int idx, FPComparator query)
+   {  ensureSorted();
+      return similarityAt(posOfIdx[idx], query.getFingerprint());
+   }
+
+   /**
+    * minSim is ignored, computing the similarity is faster than the bound.
+    */
+   @Override
+   public double similarity(int idx, FPComparator query, double minSim)
+   {  return similarity(idx, query);
+   }
+
+   @Override
+   public double similarity(int idx1, int idx2)
+   {  ensureSorted();
+      int[] pos = posOfIdx;
+      return similarityAt(pos[idx1], pos[idx2]);
+   }
+
+   private double similarityAt(int pos1, int pos2)
+   {  if( doMaxTanimoto )
+         return store.mtanimoto(pos1, pos2);
+
+      return store.tanimoto(pos1, pos2);
+   }
+
+   private double similarityAt(int pos, LongFingerprint query)
+   {  if( doMaxTanimoto )
+         return store.mtanimoto(pos, query);
+
+      return store.tanimoto(pos, query);
+   }
+
+   private double getSimilarityBound(int nBits1, int nBits2)
+   {  if( doMaxTanimoto )
+         return LongFingerprint.mtanimotoBound(nBits1, nBits2);
+
+      return LongFingerprint.tanimotoBound(nBits1, nBits2);
+   }
+
+   @Override
+   public void search(FPComparator query, SimilarityCollector collector)
+   {  ensureSorted();
+      search(query.getFingerprint(), collector);
+   }
+
+   @Override
+   public void search(int queryIdx, SimilarityCollector collector)
+   {  ensureSorted();
+      search(store.getFingerprint(posOfIdx[queryIdx]), collector);
+   }
+
+   /**
+    * Walk outwards from the fingerprints with the same bit count as query
+    * always continuing on the side with the higher similarity bound.
+    * Stop when the higher bound is below the minimum similarity of the collector.
+    */
+   private void search(LongFingerprint query, SimilarityCollector collector)
+   {  int[] old = oldIdx;
+      int qBits = query.getNBits();
+      int n = store.size();
+      int up = store.getFirstIndexWithNBits(qBits);
+      int down = up - 1;
+
+      while( up < n || down >= 0 )
+      {  double upBound   = up < n    ? getSimilarityBound(qBits, store.getNBits(up))   : -1D;
+         double downBound = down >= 0 ? getSimilarityBound(qBits, store.getNBits(down)) : -1D;
+
+         int pos;
+         if( upBound >= downBound )
+         {  if( upBound < collector.getMinSimilarity() ) break;
+            pos = up++;
+         }else
+         {  if( downBound < collector.getMinSimilarity() ) break;
+            pos = down--;
+         }
+
+         collector.collect(old[pos], similarityAt(pos, query));
+      }
+   }
+
+   /**
+    * Two tiles of fingerprints and the tile of similarities should fit into L2.
+    */
+   @Override
+   public int getTileSize()
+   {  int fpBytes = store.getStride() * 8 + 4;
+      int tileSize = 256;
+      while( tileSize > 16 && 2 * tileSize * fpBytes + tileSize * tileSize * 8 > L2CACHESize )
+         tileSize /= 2;
+
+      return tileSize;
+   }
+
+   @Override
+   public int getIndexAt(int pos)
+   {  ensureSorted();
+      return oldIdx[pos];
+   }
+
+   /**
+    * Uses the bit counts of the first and last fingerprint of each tile
+    * since the fingerprints are sorted by bit count.
+    */
+   @Override
+   public double getSimilarityBound(int from1, int to1, int from2, int to2)
+   {  ensureSorted();
+      if( to1 <= from2 )
+         return getSimilarityBound(store.getNBits(to1-1), store.getNBits(from2));
+      if( to2 <= from1 )
+         return getSimilarityBound(store.getNBits(to2-1), store.getNBits(from1));
+
+      return 1D;
+   }
+
+   @Override
+   public void similarity(int from1, int to1, double[] minSim1,
+                          int from2, int to2, double[] minSim2, double[] sims)
+   {  ensureSorted();
+      int n2 = to2 - from2;
+      int[] counts = new int[n2];
+      for( int p=from1; p<to1; p++ )
+      {  int off = (p - from1) * n2 - from2;
+         int nBits1 = store.getNBits(p);
+         double pMinSim = minSim1[p - from1];
+
+         // score the whole row as a block, most pairs in a tile are not skipped
+         store.andBitCounts(from2, to2, p, counts);
+         for( int q=from2; q<to2; q++ )
+         {  double minSim = Math.min(pMinSim, minSim2[q - from2]);
+            int nBits2 = store.getNBits(q);
+            if( getSimilarityBound(nBits1, nBits2) < minSim )
+               sims[off + q] = -1D;
+            else if( doMaxTanimoto )
+               sims[off + q] = AbstractFingerprintStore.mtanimoto(nBits1, nBits2, counts[q - from2]);
+            else
+               sims[off + q] = AbstractFingerprintStore.tanimoto(nBits1, nBits2, counts[q - from2]);
+         }
+      }
+   }
+
+   @Override
+   public void close()
+   {  // nothing to do
+   }
+}
@@ -75,7 +75,7 @@ public class FPDictionarySorter
       boolean updateDictionaryFile = false;
       boolean hashUnknownFrag = false;
       Fingerprinter fprinter = Fingerprinter.createFingerprinter(type, 
-                                          updateDictionaryFile, hashUnknownFrag);
+                                          updateDictionaryFile, hashUnknownFrag, false);
       OEMolBase mol = new OEGraphMol();
 
       String inFile  = cmd.getOptionValue("i");
@@ -30,6 +30,10 @@ public class FPMTaniComparator extends FPComparator
    {  super(thisMol, fpTag);
    }
 
+   public FPMTaniComparator(LongFingerprint fp)
+   {  super(fp);
+   }
+
    public double similarity(FPMTaniComparator otherFP)
    {   return fp.mtanimoto(otherFP.fp);
    }
@@ -37,4 +41,9 @@ public class FPMTaniComparator extends FPComparator
    public double similarity(SimComparator<FPComparator> other)
    {  return similarity((FPMTaniComparator) other);
    }
+
+   @Override
+   protected double getSimilarityBound(int nBits)
+   {  return LongFingerprint.mtanimotoBound(fp.getNBits(), nBits);
+   }
 }
@@ -0,0 +1,259 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye.fp;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * Binary file with precomputed fingerprints which is memory mapped when opened.
+ *
+ * Opening a database does not parse any fingerprints, the operating system
+ * pages the file in as needed and multiple processes share the same pages.
+ *
+ * The file contains, all numbers in big endian byte order:
+ * <pre>
+ * long    magic number "AEFPDB" + version
+ * int     stride: number of longs per fingerprint
+ * int     count: number of fingerprints
+ * long    number of bytes in the id section or -1 if no ids are stored
+ * long[count*stride]  fingerprints sorted by ascending number of bits set
+ * int[count]          number of bits set in each fingerprint
+ * int[count]          index in the input file of each fingerprint
+ * int[count]          position in this file of each input record
+ * int[count+1]        offset of the id of each input record in the id section
+ * byte[]              UTF-8 encoded ids in input order
+ * </pre>
+ *
+ * @author albertgo
+ */
+public final class FingerprintDatabase
+{  public static final String FILE_EXTENSION = ".fpdb";
+
+   private static final long MAGIC = 0x4145465044420001L;
+   private static final int HEADER_SIZE = 24;
+   private static final Charset UTF8 = Charset.forName("UTF-8");
+
+   private final MappedFingerprintStore store;
+   private final int[] oldIdx;
+   private final int[] posOfIdx;
+   private final List<String> ids;
+
+   /**
+    * Memory map an existing database file.
+    */
+   public FingerprintDatabase(String fileName) throws IOException
+   {  RandomAccessFile raf = new RandomAccessFile(fileName, "r");
+      try
+      {  FileChannel ch = raf.getChannel();
+         ByteBuffer header = map(ch, 0, HEADER_SIZE);
+         if( header.getLong() != MAGIC )
+            throw new IOException("Not a fingerprint database: " + fileName);
+
+         int stride = header.getInt();
+         int count  = header.getInt();
+         long idBytes = header.getLong();
+         long pos = HEADER_SIZE;
+
+         long fpBytes = (long)count * stride * 8;
+         ByteBuffer fps = map(ch, pos, fpBytes);
+         pos += fpBytes;
+
+         ByteBuffer columns = map(ch, pos, 3L * count * 4);
+         pos += 3L * count * 4;
+
+         IntBuffer nBits = slice(columns, 0, count).asIntBuffer();
+         oldIdx = new int[count];
+         slice(columns, count * 4, count).asIntBuffer().get(oldIdx);
+         posOfIdx = new int[count];
+         slice(columns, count * 8, count).asIntBuffer().get(posOfIdx);
+
+         store = new MappedFingerprintStore(fps.asLongBuffer(), nBits, stride, count);
+
+         if( idBytes < 0 )
+         {  ids = null;
+         }else
+         {  IntBuffer idOffsets = map(ch, pos, (count+1L) * 4).asIntBuffer();
+            pos += (count+1L) * 4;
+            ids = new IdList(idOffsets, map(ch, pos, idBytes), count);
+         }
+      } finally
+      {  raf.close();
+      }
+   }
+
+   private static ByteBuffer map(FileChannel ch, long pos, long size) throws IOException
+   {  if( size > Integer.MAX_VALUE )
+         throw new IOException("Fingerprint database section too large: " + size);
+      if( pos + size > ch.size() )
+         throw new IOException("Truncated fingerprint database");
+
+      return ch.map(MapMode.READ_ONLY, pos, size);
+   }
+
+   private static ByteBuffer slice(ByteBuffer buf, int pos, int nInts)
+   {  ByteBuffer dup = buf.duplicate();
+      dup.position(pos);
+      dup.limit(pos + nInts * 4);
+      return dup.slice();
+   }
+
+   public static boolean isDatabaseFile(String fileName)
+   {  return fileName != null && fileName.toLowerCase().endsWith(FILE_EXTENSION);
+   }
+
+   /**
+    * @return fingerprints ordered by ascending number of bits set.
+    */
+   public AbstractFingerprintStore getStore()
+   {  return store;
+   }
+
+   /**
+    * @return the index in the input file for each fingerprint in {@link #getStore()}
+    */
+   public int[] getOldIdx()
+   {  return oldIdx;
+   }
+
+   /**
+    * @return the index in {@link #getStore()} for each record of the input file.
+    */
+   public int[] getPosOfIdx()
+   {  return posOfIdx;
+   }
+
+   /**
+    * @return the ids in order of the input file or null if the database has no ids.
+    */
+   public List<String> getIds()
+   {  return ids;
+   }
+
+
+   /**
+    * Write the fingerprints in store into a new database file.
+    * This reorders the fingerprints in store.
+    *
+    * @param ids id for each fingerprint in store or null.
+    */
+   public static void write(String fileName, PackedFingerprintStore store, List<String> ids)
+   throws IOException
+   {  int count = store.size();
+      int stride = store.getStride();
+      if( ids != null && ids.size() != count )
+         throw new Error(String.format("%d ids for %d fingerprints", ids.size(), count));
+
+      byte[][] idBytes = null;
+      long idBytesLength = -1;
+      if( ids != null )
+      {  idBytes = new byte[count][];
+         idBytesLength = 0;
+         for(int i=0; i<count; i++)
+         {  String id = ids.get(i);
+            idBytes[i] = id == null ? new byte[0] : id.getBytes(UTF8);
+            idBytesLength += idBytes[i].length;
+         }
+         if( idBytesLength > Integer.MAX_VALUE )
+            throw new Error("Ids to large for fingerprint database: " + idBytesLength);
+      }
+
+      int[] oldIdx = store.sortByNBits();
+
+      DataOutputStream out = new DataOutputStream(
+                  new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16));
+      try
+      {  out.writeLong(MAGIC);
+         out.writeInt(stride);
+         out.writeInt(count);
+         out.writeLong(idBytesLength);
+
+         for(int i=0; i<count; i++)
+            for(int w=0; w<stride; w++)
+               out.writeLong(store.getWord(i, w));
+
+         for(int i=0; i<count; i++)
+            out.writeInt(store.getNBits(i));
+
+         for(int i=0; i<count; i++)
+            out.writeInt(oldIdx[i]);
+
+         int[] posOfIdx = new int[count];
+         for(int i=0; i<count; i++)
+            posOfIdx[oldIdx[i]] = i;
+         for(int i=0; i<count; i++)
+            out.writeInt(posOfIdx[i]);
+
+         if( idBytes != null )
+         {  int offset = 0;
+            for(int i=0; i<count; i++)
+            {  out.writeInt(offset);
+               offset += idBytes[i].length;
+            }
+            out.writeInt(offset);
+
+            for(int i=0; i<count; i++)
+               out.write(idBytes[i]);
+         }
+      } finally
+      {  out.close();
+      }
+   }
+
+
+   /** decodes the ids from the mapped id section on access */
+   private static class IdList extends AbstractList<String>
+   {  private final IntBuffer offsets;
+      private final ByteBuffer bytes;
+      private final int size;
+
+      IdList(IntBuffer offsets, ByteBuffer bytes, int size)
+      {  this.offsets = offsets;
+         this.bytes = bytes;
+         this.size = size;
+      }
+
+      @Override
+      public String get(int idx)
+      {  if( idx < 0 || idx >= size )
+            throw new IndexOutOfBoundsException("Index: " + idx + ", Size: " + size);
+
+         int start = offsets.get(idx);
+         byte[] b = new byte[offsets.get(idx+1) - start];
+         ByteBuffer dup = bytes.duplicate();
+         dup.position(start);
+         dup.get(b);
+         return new String(b, UTF8);
+      }
+
+      @Override
+      public int size()
+      {  return size;
+      }
+   }
+}
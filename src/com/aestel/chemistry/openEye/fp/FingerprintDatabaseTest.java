@@ -0,0 +1,81 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye.fp;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+public class FingerprintDatabaseTest
+{
+   private static final String[] FPS =
+   {  "FFA", "7FA", "FFA1", "7F8", "0", "00000000000000001",
+      "fffffaff8b10979880014b000803110010800040002060081000000002000000000000000c041",
+      "fffffaff2b821f9880214a0088038100100100c004216008104000000200100000000000040010"
+   };
+
+   @Test()
+   public void testWriteRead() throws IOException
+   {  File f = File.createTempFile("fpdb", FingerprintDatabase.FILE_EXTENSION);
+      f.deleteOnExit();
+
+      PackedFingerprintStore store = new PackedFingerprintStore(2);
+      for(String s : FPS)
+         store.add(new LongFingerprint(s));
+      List<String> ids = Arrays.asList("a", "b", "c", "d", "", "f", "\u00e4g", "h");
+      FingerprintDatabase.write(f.getPath(), store, ids);
+
+      assert FingerprintDatabase.isDatabaseFile(f.getPath());
+      FingerprintDatabase db = new FingerprintDatabase(f.getPath());
+      AbstractFingerprintStore mapped = db.getStore();
+      assert mapped.size() == FPS.length;
+      assert db.getIds().equals(ids) : db.getIds();
+
+      for(int i=0; i<FPS.length; i++)
+      {  int pos = db.getPosOfIdx()[i];
+         assert db.getOldIdx()[pos] == i;
+         if( pos > 0 ) assert mapped.getNBits(pos-1) <= mapped.getNBits(pos);
+
+         LongFingerprint fp1 = new LongFingerprint(FPS[i]);
+         assert mapped.getNBits(pos) == fp1.getNBits();
+         for(int j=0; j<FPS.length; j++)
+         {  LongFingerprint fp2 = new LongFingerprint(FPS[j]);
+            assert mapped.tanimoto(pos, fp2) == fp1.tanimoto(fp2);
+            assert mapped.mtanimoto(pos, db.getPosOfIdx()[j]) == fp1.mtanimoto(fp2);
+         }
+      }
+   }
+
+   @Test()
+   public void testNoIds() throws IOException
+   {  File f = File.createTempFile("fpdb", FingerprintDatabase.FILE_EXTENSION);
+      f.deleteOnExit();
+
+      PackedFingerprintStore store = new PackedFingerprintStore(2);
+      store.add(new LongFingerprint("FFA"));
+      FingerprintDatabase.write(f.getPath(), store, null);
+
+      FingerprintDatabase db = new FingerprintDatabase(f.getPath());
+      assert db.getIds() == null;
+      assert db.getStore().size() == 1;
+      assert db.getStore().getNBits(0) == 10;
+   }
+}
@@ -24,8 +24,9 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
 
-import openeye.oechem.OEGraphMol;
 import openeye.oechem.OEMolBase;
 import openeye.oechem.oechem;
 import openeye.oechem.oemolistream;
@@ -38,6 +39,8 @@ import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.PosixParser;
 
+import com.aestel.chemistry.openEye.MultiThreadBatchAlgorithm;
+import com.aestel.chemistry.openEye.MultiThreadBatchRunner;
 import com.aestel.utility.IntArrayList;
 
 /**
@@ -51,8 +54,17 @@ import com.aestel.utility.IntArrayList;
  * {@link StructureCodeNameIterator}.
  * The mapping onto the bit position is done by the {@link StructureCodeMapper}.
  *
+ * If both support it the {@link LongStructureCodeNameIterator} and the
+ * {@link LongStructureCodeMapper} exchange 64 bit codes instead of code name
+ * Strings.
+ *
  * This gets about 1M maccs fingerprints into 64MB memory in 1425sec on windows.
  *
+ * With -nCpu the fingerprints are computed in parallel, each thread uses its
+ * own {@link StructureCodeNameIterator} while the {@link StructureCodeMapper}
+ * is shared read only. The main thread reads the input, the output is
+ * written in input order by the worker threads, see {@link MultiThreadBatchRunner}.
+ *
  * To recreate the dictionary files for the linear7 linear7*4 fingerprints:
  * - remove existing dictionary file *Map.tab from config/fp.
  * - run with the following options:
@@ -63,23 +75,43 @@ import com.aestel.utility.IntArrayList;
  * Note: that after this operation newly created fingerprints will not be
  *       backward compatible.
  *
+ * Dictionaries compiled with {@link BinaryDictionaryStructureCodeMapper#main}
+ * (ant fpDictionaries) are memory mapped instead of parsing the tab separated
+ * file, recompile them after changing a dictionary.
+ *
  * @author albertgo
  *
  */
 public class Fingerprinter
 {  private final StructureCodeNameIterator sCodeIter;
    private final StructureCodeMapper mapper;
+   /** true if codes are passed from sCodeIter to mapper instead of names */
+   private final boolean useCodes;
 
 
    public Fingerprinter(StructureCodeNameIterator sCodeIter, StructureCodeMapper mapper)
    {  this.sCodeIter = sCodeIter;
       this.mapper = mapper;
+      this.useCodes = sCodeIter instanceof LongStructureCodeNameIterator
+                   && mapper instanceof LongStructureCodeMapper
+                   && ((LongStructureCodeMapper)mapper).isCodeSupported();
    }
 
 
    public Fingerprint getFingerprint(OEMolBase mol)
    {  sCodeIter.init(mol);
       IntArrayList bits = new IntArrayList(200);
+      if( useCodes )
+      {  LongStructureCodeNameIterator codeIter = (LongStructureCodeNameIterator)sCodeIter;
+         LongStructureCodeMapper codeMapper = (LongStructureCodeMapper)mapper;
+         while(codeIter.hasNext())
+         {  int pos = codeMapper.getIndex(codeIter.getType(), codeIter.nextCode());
+            if(pos >= 0)
+               bits.add(pos);
+         }
+         return new SparseFingerprint(bits.toArray());
+      }
+
       while(sCodeIter.hasNext())
       {  String sCodeName = sCodeIter.next();
          int pos = mapper.getIndex(sCodeIter.getType(), sCodeName);
@@ -93,7 +125,7 @@ public class Fingerprinter
    {  return mapper;
    }
 
-   private void writeDictionary()
+   private static void writeDictionary(StructureCodeMapper mapper)
    {  if(!(mapper instanceof LearningStrcutureCodeMapper))
          throw new Error("-writeCodeMap may not be used with this mapper!");
       ((LearningStrcutureCodeMapper)mapper).writeDictionary();
@@ -109,26 +141,48 @@ public class Fingerprinter
     */
    public static Fingerprinter createFingerprinter(String type,
          boolean addNewFragments, boolean hashNewFragments)
-   {  StructureCodeNameIterator generator;
-      StructureCodeMapper mapper;
+   {  return createFingerprinter(type, addNewFragments, hashNewFragments, true);
+   }
+
+   /**
+    * @param useCompiled if false the tab separated dictionaries are used even
+    *        if a compiled dictionary is available, e.g. to resort them.
+    */
+   static Fingerprinter createFingerprinter(String type,
+         boolean addNewFragments, boolean hashNewFragments, boolean useCompiled)
+   {  StructureCodeNameIterator generator = createCodeNameIterator(type);
+      StructureCodeMapper mapper = createMapper(type, addNewFragments, hashNewFragments,
+                                                useCompiled);
+      return new Fingerprinter(generator, mapper);
+   }
+
+   /**
+    * @return a new {@link StructureCodeMapper} for fingerprints of type,
+    *         the parameters are as in {@link #createFingerprinter(String, boolean, boolean)}.
+    */
+   static StructureCodeMapper createMapper(String type,
+         boolean addNewFragments, boolean hashNewFragments)
+   {  return createMapper(type, addNewFragments, hashNewFragments, true);
+   }
+
+   private static StructureCodeMapper createMapper(String type,
+         boolean addNewFragments, boolean hashNewFragments, boolean useCompiled)
+   {  StructureCodeMapper mapper;
       if ("maccs".equals(type))
-      {  generator = SmartsCodeNameIterator.createFromXML(Constants.MACCSSmartsFile);
-         if(hashNewFragments) throw new Error("hashNewFragments not supported for maccs");
-         mapper = new TABDictionaryStructureCodeMapper("maccsMap.tab", addNewFragments, false);
+      {  if(hashNewFragments) throw new Error("hashNewFragments not supported for maccs");
+         mapper = createDictionaryMapper("maccsMap.tab", addNewFragments, false,
+                                         useCompiled);
 
       } else if ("linear7".equals(type))
-      {  generator = new LinearCodeNameGenerator("lin7", 7, 99);
-         mapper = new TABDictionaryStructureCodeMapper("linear7Map.tab",
-                                             addNewFragments, hashNewFragments);
+      {  mapper = createDictionaryMapper("linear7Map.tab", addNewFragments, hashNewFragments,
+                                         useCompiled);
 
       } else if ("linear7*4".equals(type))
-      {  generator = new LinearCodeNameGenerator("lin74", 7, 4);
-         mapper = new TABDictionaryStructureCodeMapper("linear74Map.tab",
-                                             addNewFragments, hashNewFragments);
+      {  mapper = createDictionaryMapper("linear74Map.tab", addNewFragments, hashNewFragments,
+                                         useCompiled);
 
       } else if ("HashLinear7*4".equals(type))
-      {  generator = new LinearCodeNameGenerator("HLin74", 7, 4);
-         if(hashNewFragments) throw new Error("hashNewFragments not supported for HLin74");
+      {  if(hashNewFragments) throw new Error("hashNewFragments not supported for HLin74");
          if(addNewFragments)  throw new Error("addNewFragments not supported for HLin74");
          mapper = new HashStructureCodeMapper(0, 16348);
 
@@ -136,7 +190,41 @@ public class Fingerprinter
       {  throw new Error("Unknown fingerprint type: " + type);
       }
 
-      return new Fingerprinter(generator, mapper);
+      return mapper;
+   }
+
+   /**
+    * @return the compiled {@link BinaryDictionaryStructureCodeMapper} if
+    *         available, requested and the dictionary is not extended, else a
+    *         {@link TABDictionaryStructureCodeMapper}.
+    */
+   private static StructureCodeMapper createDictionaryMapper(String fileName,
+         boolean addNewFragments, boolean hashNewFragments, boolean useCompiled)
+   {  if(useCompiled && ! addNewFragments)
+      {  StructureCodeMapper mapper
+               = BinaryDictionaryStructureCodeMapper.openCompiled(fileName, hashNewFragments);
+         if( mapper != null ) return mapper;
+      }
+      return new TABDictionaryStructureCodeMapper(fileName, addNewFragments, hashNewFragments);
+   }
+
+   /**
+    * @return a new {@link StructureCodeNameIterator} for fingerprints of type.
+    */
+   static StructureCodeNameIterator createCodeNameIterator(String type)
+   {  if ("maccs".equals(type))
+         return SmartsCodeNameIterator.createFromXML(Constants.MACCSSmartsFile);
+
+      if ("linear7".equals(type))
+         return new LinearCodeNameGenerator("lin7", 7, 99);
+
+      if ("linear7*4".equals(type))
+         return new LinearCodeNameGenerator("lin74", 7, 4);
+
+      if ("HashLinear7*4".equals(type))
+         return new LinearCodeNameGenerator("HLin74", 7, 4);
+
+      throw new Error("Unknown fingerprint type: " + type);
    }
 
 
@@ -147,10 +235,7 @@ public class Fingerprinter
 
 
    public static void main(String...args) throws IOException
-   {  long start = System.currentTimeMillis();
-      long iCounter = 0;
-
-      // create command line Options object
+   {  // create command line Options object
       Options options = new Options();
       Option opt = new Option("in",true, "input file [.ism,.sdf,...]");
       opt.setRequired(true);
@@ -186,6 +271,15 @@ public class Fingerprinter
       opt.setRequired(false);
       options.addOption(opt);
 
+      opt = new Option("nCpu",true, "number of CPU's used in parallel, dafault 1");
+      opt.setRequired(false);
+      options.addOption(opt);
+
+      opt = new Option("batchSize",true, "number of molecules passed to a thread at once, default "
+                                         + MultiThreadBatchRunner.DEFAULT_BATCHSIZE);
+      opt.setRequired(false);
+      options.addOption(opt);
+
       CommandLineParser parser = new PosixParser();
       CommandLine cmd = null;
       try
@@ -216,55 +310,113 @@ public class Fingerprinter
       if( type.equals("HashLinear7*4") ) hashUnknownFrag = false;
       if( type.equals("maccs") )         hashUnknownFrag = false;
       if( updateDictionaryFile )         hashUnknownFrag = false;
-      Fingerprinter fprinter = createFingerprinter(type,
-                                          updateDictionaryFile, hashUnknownFrag);
-      OEMolBase mol = new OEGraphMol();
+
+      int nCpu = 1;
+      String d = cmd.getOptionValue("nCpu");
+      if( d != null ) nCpu = Integer.parseInt(d);
+      int batchSize = MultiThreadBatchRunner.DEFAULT_BATCHSIZE;
+      d = cmd.getOptionValue("batchSize");
+      if( d != null ) batchSize = Integer.parseInt(d);
+      // the dictionary is extended while fingerprinting
+      if( updateDictionaryFile && nCpu > 1 )
+      {  System.err.println("-writeCodeMap can not be used with -nCpu > 1");
+         exitWithHelp(options);
+      }
+
+      // each thread creates its own StructureCodeNameIterator
+      StructureCodeMapper mapper = createMapper(type, updateDictionaryFile, hashUnknownFrag);
 
       String inFile  = cmd.getOptionValue("in");
       String outFile = cmd.getOptionValue("out");
       oemolistream ifs = new oemolistream(inFile);
 
-      Runtime rt = Runtime.getRuntime();
       Outputter out;
       if( outFile.endsWith(".txt") || outFile.endsWith(".tab"))
-         out = new TabOutputter(fprinter.getMapper(), outFile, outformat);
+         out = new TabOutputter(mapper, outFile, outformat);
       else
-         out = new OEOutputter(fprinter.getMapper(), outFile, type, outformat);
+         out = new OEOutputter(mapper, outFile, type, outformat);
+
+      FingerprintAlgorithm alg = new FingerprintAlgorithm(type, mapper, ifs, out, idTag);
+      MultiThreadBatchRunner<Fingerprint> runner
+            = new MultiThreadBatchRunner<Fingerprint>(alg, nCpu, batchSize);
+      runner.run();
+      runner.close();
+
+      if(updateDictionaryFile ) writeDictionary(mapper);
+      out.close();
+      mapper.close();
+   }
+
+   private static void exitWithHelp(Options options) {
+      HelpFormatter formatter = new HelpFormatter();
+      formatter.printHelp( "fingerprinter", options );
+      System.exit(1);
+   }
+
+   /**
+    * Computes the fingerprints on the worker threads of a {@link MultiThreadBatchRunner}.
+    * Each thread has its own {@link Fingerprinter} with its own
+    * {@link StructureCodeNameIterator}, all share the mapper.
+    */
+   private static class FingerprintAlgorithm implements MultiThreadBatchAlgorithm<Fingerprint>
+   {  private final oemolistream ifs;
+      private final Outputter out;
+      private final String idTag;
+      /** all per thread fingerprinters so that their iterators can be closed */
+      private final List<Fingerprinter> threadFingerprinters = new ArrayList<Fingerprinter>();
+      private final ThreadLocal<Fingerprinter> threadFingerprinter;
+
+      FingerprintAlgorithm(final String type, final StructureCodeMapper mapper,
+                           oemolistream ifs, Outputter out, String idTag)
+      {  this.ifs = ifs;
+         this.out = out;
+         this.idTag = idTag;
+         this.threadFingerprinter = new ThreadLocal<Fingerprinter>()
+         {  @Override
+            protected Fingerprinter initialValue()
+            {  Fingerprinter fprinter = new Fingerprinter(createCodeNameIterator(type), mapper);
+               synchronized(threadFingerprinters)
+               {  threadFingerprinters.add(fprinter);
+               }
+               return fprinter;
+            }
+         };
+      }
 
-      while(oechem.OEReadMolecule(ifs, mol))
-      {  iCounter++;
-         Fingerprint fp = fprinter.getFingerprint(mol);
+      @Override
+      public boolean read(OEMolBase mol)
+      {  return oechem.OEReadMolecule(ifs, mol);
+      }
 
-         String id;
+      @Override
+      public Fingerprint process(OEMolBase mol)
+      {  return threadFingerprinter.get().getFingerprint(mol);
+      }
+
+      @Override
+      public void consume(OEMolBase mol, Fingerprint fp)
+      {  String id;
          if(idTag == null)
             id = mol.GetTitle();
          else
             id = oechem.OEGetSDData(mol, idTag);
 
-         if(iCounter % 100 == 0) System.err.print(".");
-         if(iCounter % 4000 == 0)
-         {  System.err.printf( " %d %dsec\tt=%d f=%d u=%d m=%d tf=%d\n",
-                  iCounter, (System.currentTimeMillis()-start)/1000,
-                  rt.totalMemory()/1024, rt.freeMemory()/1024,
-                  (rt.totalMemory() - rt.freeMemory())/1024, rt.maxMemory()/1024,
-                  (rt.freeMemory() + (rt.maxMemory() - rt.totalMemory())) / 1024 );
-         }
-
          out.output(id, mol, fp);
       }
 
-      System.err.printf("Fingerprinter: Read %d structures in %d sec\n",
-            iCounter, (System.currentTimeMillis()-start)/1000);
-
-      if(updateDictionaryFile ) fprinter.writeDictionary();
-      out.close();
-      fprinter.close();
-   }
-
-   private static void exitWithHelp(Options options) {
-      HelpFormatter formatter = new HelpFormatter();
-      formatter.printHelp( "fingerprinter", options );
-      System.exit(1);
+      /**
+       * Closes the input and the iterators of the per thread fingerprinters,
+       * the shared mapper is left open.
+       */
+      @Override
+      public void close()
+      {  ifs.close();
+         synchronized(threadFingerprinters)
+         {  for(Fingerprinter fprinter : threadFingerprinters)
+               fprinter.sCodeIter.close();
+            threadFingerprinters.clear();
+         }
+      }
    }
 }
 
@@ -29,7 +29,7 @@ import com.aestel.chemistry.openEye.fp.tools.GeneralHashFunctionLibrary;
  * @author albertgo
  *
  */
-public class HashStructureCodeMapper implements StructureCodeMapper
+public class HashStructureCodeMapper implements LongStructureCodeMapper
 {  private final int numIdexes;
    private final int minIdx;
 
@@ -55,6 +55,16 @@ public class HashStructureCodeMapper implements StructureCodeMapper
          GeneralHashFunctionLibrary.BKDRHash(codeName), numIdexes)+minIdx;
    }
 
+   @Override
+   public boolean isCodeSupported()
+   {  return true;
+   }
+
+   @Override
+   public int getIndex(String type, long code)
+   {  return GeneralHashFunctionLibrary.toInt(code, numIdexes)+minIdx;
+   }
+
    /**
     * Returns the highest position number to be returned by {@link #getIndex}.
     */
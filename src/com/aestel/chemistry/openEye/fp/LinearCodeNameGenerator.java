@@ -27,15 +27,25 @@ import com.aestel.chemistry.openEye.tools.OEAtomBondPath;
 
 /**
  * Generate linear fingerprint codes by dept first search from each atom in the molecule.
+ *
+ * The codes are available as canonical path String from {@link #next()} or
+ * as 64 bit hash of that String from {@link #nextCode()}. The latter does not
+ * create any Strings.
+ *
  * @author albertgo
  *
  */
-public class LinearCodeNameGenerator implements StructureCodeNameIterator
+public class LinearCodeNameGenerator implements LongStructureCodeNameIterator
 {  private final String type;
 
-   // for rings we are returning two code names; one with stars and one with atom types
-   private String secondRingCodeName = null;
-   private String matchedCodeName;
+   // for rings we are returning two codes; one with stars and one with atom types
+   private boolean secondRingCode = false;
+   private boolean hasPendingCode = false;
+   private boolean pendingCodeIsStar;
+   private OEAtomBondPath path;
+   private OEAtomBondPath canonicalPath;
+   private boolean coderLoaded;
+   private final LinearPathCoder coder = new LinearPathCoder();
    private DFSIterator dfsIterator = null;
    private OEAtomBaseIter atIter;
    private final int depth;
@@ -66,11 +76,12 @@ public class LinearCodeNameGenerator implements StructureCodeNameIterator
     */
    @Override
    public boolean hasNext()
-   {  if( matchedCodeName != null ) return true; // last one was not fetched
-      if( secondRingCodeName != null)
+   {  if( hasPendingCode ) return true; // last one was not fetched
+      if( secondRingCode )
       {  // we found a ring and are flagging this by adding a second bit
-         matchedCodeName = secondRingCodeName;
-         secondRingCodeName = null;
+         pendingCodeIsStar = false;
+         hasPendingCode = true;
+         secondRingCode = false;
          return true;
       }
 
@@ -93,15 +104,16 @@ public class LinearCodeNameGenerator implements StructureCodeNameIterator
          dfsIterator = new DFSIterator(at,depth);
       }
 
-      OEAtomBondPath path = dfsIterator.next();
+      path = dfsIterator.next();
+      canonicalPath = null;
+      coderLoaded = false;
       if(path.getNVertices() >= starAtomDepth)
-      {  matchedCodeName = DFSIterator.getCannonicalPath(path)
-                        .toString(StarAtomTyper.INSTANCE, SmilesTyper.INSTANCE);
-         if(isRing(path))
-            secondRingCodeName = DFSIterator.getCannonicalPath(path).toString();
+      {  pendingCodeIsStar = true;
+         secondRingCode = isRing(path);
       } else
-      {  matchedCodeName = DFSIterator.getCannonicalPath(path).toString();
+      {  pendingCodeIsStar = false;
       }
+      hasPendingCode = true;
 
       return true;
    }
@@ -122,9 +134,53 @@ public class LinearCodeNameGenerator implements StructureCodeNameIterator
    {  if(! hasNext() )
          throw new NoSuchElementException();
 
-      String tmp = matchedCodeName;
-      matchedCodeName = null;
-      return tmp;
+      hasPendingCode = false;
+      if( canonicalPath == null )
+         canonicalPath = DFSIterator.getCannonicalPath(path);
+
+      if( pendingCodeIsStar )
+         return canonicalPath.toString(StarAtomTyper.INSTANCE, SmilesTyper.INSTANCE);
+      return canonicalPath.toString();
+   }
+
+   @Override
+   public long nextCode()
+   {  if(! hasNext() )
+         throw new NoSuchElementException();
+
+      hasPendingCode = false;
+      if( ! coderLoaded )
+      {  loadCoder();
+         coderLoaded = true;
+      }
+
+      return coder.getCode(pendingCodeIsStar);
+   }
+
+   /**
+    * Pass the smiles symbols of the current path to the coder and find the
+    * canonical orientation as {@link DFSIterator#getCannonicalPath} does.
+    */
+   private void loadCoder()
+   {  OEAtomBase[] atoms = path.getNodeSequence();
+      OEBondBase[] bonds = path.getVertexSequence();
+      SmilesTyper typer = SmilesTyper.INSTANCE;
+
+      coder.init(atoms.length, bonds.length);
+      for(int i=0; i<atoms.length; i++)
+         coder.setAtom(i, typer.getType(atoms[i]));
+      for(int i=0; i<bonds.length; i++)
+         coder.setBond(i, typer.getType(bonds[i]));
+
+      int firstRingAtIdx = 0;
+      if( atoms.length == bonds.length )
+      {  // find index of first ring atom in path, this is the atom bound to the last bond.
+         OEAtomBase lastAt = atoms[atoms.length-1];
+         int firstRingAtOEIdx = bonds[bonds.length-1].GetNbr(lastAt).GetIdx();
+         while(atoms[firstRingAtIdx].GetIdx() != firstRingAtOEIdx)
+            firstRingAtIdx++;
+      }
+      coder.canonicalize(firstRingAtIdx);
    }
 
    @Override
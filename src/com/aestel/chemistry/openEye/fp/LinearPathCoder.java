@@ -0,0 +1,206 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye.fp;
+
+import com.aestel.chemistry.openEye.fp.tools.GeneralHashFunctionLibrary;
+
+/**
+ * Computes the 64 bit code of a linear path from the symbols of its atoms and
+ * bonds without creating Strings.
+ *
+ * The code is {@link GeneralHashFunctionLibrary#BKDRHash(CharSequence)} of the
+ * path String returned by
+ * {@link com.aestel.chemistry.openEye.tools.DFSIterator#getCannonicalPath}
+ * so that code names from a dictionary can be converted into codes.
+ * The orientations of the path are compared in reusable char buffers.
+ *
+ * Instances are not thread safe.
+ *
+ * @author albertgo
+ */
+final class LinearPathCoder
+{  private static final String STARAtom = "*";
+
+   private String[] atSyms = new String[16];
+   private String[] bdSyms = new String[16];
+   private int nAtoms;
+   private int nBonds;
+
+   /** atom and bond indexes of the orientation being tested */
+   private int[] atOrder = new int[16];
+   private int[] bdOrder = new int[16];
+   private char[] chars = new char[64];
+   private int nChars;
+
+   /** atom and bond indexes of the smallest orientation found so far */
+   private int[] bestAtOrder = new int[16];
+   private int[] bestBdOrder = new int[16];
+   private char[] bestChars = new char[64];
+   private int nBestChars;
+
+   /**
+    * Start a new path, followed by calls to {@link #setAtom} and {@link #setBond}.
+    * @param nBonds nAtoms if the last bond closes a ring else nAtoms-1.
+    */
+   void init(int nAtoms, int nBonds)
+   {  assert nBonds == nAtoms || nBonds == nAtoms - 1;
+
+      if( nAtoms > atSyms.length )
+      {  int len = Math.max(nAtoms, atSyms.length * 2);
+         atSyms = new String[len];
+         bdSyms = new String[len];
+         atOrder = new int[len];
+         bdOrder = new int[len];
+         bestAtOrder = new int[len];
+         bestBdOrder = new int[len];
+      }
+      this.nAtoms = nAtoms;
+      this.nBonds = nBonds;
+   }
+
+   void setAtom(int idx, String symbol)
+   {  atSyms[idx] = symbol;
+   }
+
+   void setBond(int idx, String symbol)
+   {  bdSyms[idx] = symbol;
+   }
+
+   /**
+    * Find the orientation giving the lexically smallest path, this must be
+    * called before {@link #getCode(boolean)}.
+    *
+    * @param firstRingAtIdx if the last bond closes a ring, the position of the
+    *        atom it closes to. Ignored for paths without ring closure.
+    */
+   void canonicalize(int firstRingAtIdx)
+   {  int len = 0;
+      for(int i=0; i<nAtoms; i++) len += atSyms[i].length();
+      for(int i=0; i<nBonds; i++) len += bdSyms[i].length();
+      if( len > chars.length )
+      {  chars = new char[Math.max(len, chars.length * 2)];
+         bestChars = new char[chars.length];
+      }
+
+      for(int i=0; i<nAtoms; i++)  bestAtOrder[i] = i;
+      for(int i=0; i<nBonds; i++)  bestBdOrder[i] = i;
+      nBestChars = fill(bestAtOrder, bestBdOrder, false, bestChars);
+
+      if( nAtoms == nBonds && firstRingAtIdx == 0 )
+      {  // pure ring: start at each atom in both directions
+         // rotation by r moves the element at i to (i+r)%n
+         for(int rot=1; rot<nAtoms; rot++)
+         {  for(int i=0; i<nAtoms; i++)
+            {  atOrder[i] = (i - rot + nAtoms) % nAtoms;
+               bdOrder[i] = atOrder[i];
+            }
+            testOrder();
+         }
+
+         // reversed direction is atoms 0,n-1,...,1 and bonds n-1,...,0
+         for(int rot=0; rot<nAtoms; rot++)
+         {  for(int i=0; i<nAtoms; i++)
+            {  int j = (i - rot + nAtoms) % nAtoms;
+               atOrder[i] = (nAtoms - j) % nAtoms;
+               bdOrder[i] = nAtoms - 1 - j;
+            }
+            testOrder();
+         }
+
+      } else if( nAtoms == nBonds )
+      {  // reverse the atoms in the ring: C-C1=N:O-1 to C-C1-O:N=1
+         for(int i=0; i<nAtoms; i++)
+            atOrder[i] = i <= firstRingAtIdx ? i : nAtoms - i + firstRingAtIdx;
+         for(int i=0; i<nBonds; i++)
+            bdOrder[i] = i < firstRingAtIdx ? i : nBonds - 1 - i + firstRingAtIdx;
+         testOrder();
+
+      } else
+      {  for(int i=0; i<nAtoms; i++)  atOrder[i] = nAtoms - 1 - i;
+         for(int i=0; i<nBonds; i++)  bdOrder[i] = nBonds - 1 - i;
+         testOrder();
+      }
+   }
+
+   /**
+    * Make the current order the best order if it is lexically smaller.
+    */
+   private void testOrder()
+   {  nChars = fill(atOrder, bdOrder, false, chars);
+      if( compare(chars, nChars, bestChars, nBestChars) >= 0 ) return;
+
+      int[] tmp = bestAtOrder; bestAtOrder = atOrder; atOrder = tmp;
+      tmp = bestBdOrder; bestBdOrder = bdOrder; bdOrder = tmp;
+      char[] tmpC = bestChars; bestChars = chars; chars = tmpC;
+      nBestChars = nChars;
+   }
+
+   /**
+    * @param starAtoms if true all atoms are written as * but the orientation
+    *        is still the one of the smallest path with atom symbols.
+    * @return the code of the canonical path.
+    */
+   long getCode(boolean starAtoms)
+   {  if( ! starAtoms )
+         return GeneralHashFunctionLibrary.BKDRHash(bestChars, nBestChars);
+
+      nChars = fill(bestAtOrder, bestBdOrder, true, chars);
+      return GeneralHashFunctionLibrary.BKDRHash(chars, nChars);
+   }
+
+   /**
+    * @return the canonical path as String, for debugging and testing.
+    */
+   String getCodeName(boolean starAtoms)
+   {  if( ! starAtoms ) return new String(bestChars, 0, nBestChars);
+
+      nChars = fill(bestAtOrder, bestBdOrder, true, chars);
+      return new String(chars, 0, nChars);
+   }
+
+   /**
+    * Write the symbols of the path in the given order into buf as
+    * {@link com.aestel.chemistry.openEye.tools.OEAtomBondPath#toString} does.
+    * @return number of chars written
+    */
+   private int fill(int[] atOrd, int[] bdOrd, boolean starAtoms, char[] buf)
+   {  int n = 0;
+      for(int i=0; i<nAtoms; i++)
+      {  String sym = starAtoms ? STARAtom : atSyms[atOrd[i]];
+         sym.getChars(0, sym.length(), buf, n);
+         n += sym.length();
+
+         if( i < nBonds )
+         {  sym = bdSyms[bdOrd[i]];
+            sym.getChars(0, sym.length(), buf, n);
+            n += sym.length();
+         }
+      }
+      return n;
+   }
+
+   /**
+    * @return same sign as String.compareTo.
+    */
+   private static int compare(char[] a, int nA, char[] b, int nB)
+   {  int n = Math.min(nA, nB);
+      for(int i=0; i<n; i++)
+         if( a[i] != b[i] ) return a[i] - b[i];
+      return nA - nB;
+   }
+}
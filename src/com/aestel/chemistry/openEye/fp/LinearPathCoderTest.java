@@ -0,0 +1,166 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye.fp;
+
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import com.aestel.chemistry.openEye.fp.tools.GeneralHashFunctionLibrary;
+
+/**
+ * Compares {@link LinearPathCoder} to a String based copy of
+ * {@link com.aestel.chemistry.openEye.tools.DFSIterator#getCannonicalPath}.
+ */
+public class LinearPathCoderTest
+{  private static final String[] ATSymbols = { "C", "c", "N", "n", "O", "o", "S", "Cl", "Br", "Si" };
+   private static final String[] BDSymbols = { "-", "=", "#", ":", "~" };
+
+   @Test()
+   public void testLinear()
+   {  LinearPathCoder coder = new LinearPathCoder();
+      code(coder, new String[] {"O", "C"}, new String[] {"="}, 0);
+      assert "C=O".equals(coder.getCodeName(false));
+      assert "*=*".equals(coder.getCodeName(true));
+
+      code(coder, new String[] {"C"}, new String[0], 0);
+      assert "C".equals(coder.getCodeName(false));
+   }
+
+   @Test()
+   public void testRing()
+   {  LinearPathCoder coder = new LinearPathCoder();
+      // C-C1=N:O-1 to C-C1-O:N=1
+      code(coder, new String[] {"C", "C", "N", "O"}, new String[] {"-", "=", ":", "-"}, 1);
+      assert "C-C-O:N=".equals(coder.getCodeName(false));
+
+      // C1-N=O#1 -> C1#O=N-1
+      code(coder, new String[] {"C", "N", "O"}, new String[] {"-", "=", "#"}, 0);
+      assert "C#O=N-".equals(coder.getCodeName(false));
+   }
+
+   @Test()
+   public void testRandom()
+   {  Random rand = new Random(4711);
+      LinearPathCoder coder = new LinearPathCoder();
+      for(int n=0; n<20000; n++)
+      {  int nAtoms = 1 + rand.nextInt(n < 100 ? 20 : 8);
+         boolean cycle = nAtoms > 2 && rand.nextBoolean();
+         String[] ats = new String[nAtoms];
+         String[] bds = new String[cycle ? nAtoms : nAtoms-1];
+         // few symbols to get many ties
+         int nSyms = 1 + rand.nextInt(3);
+         for(int i=0; i<ats.length; i++) ats[i] = ATSymbols[rand.nextInt(nSyms * 3)];
+         for(int i=0; i<bds.length; i++) bds[i] = BDSymbols[rand.nextInt(nSyms)];
+         int firstRingAtIdx = cycle ? rand.nextInt(nAtoms-2) : 0;
+
+         code(coder, ats, bds, firstRingAtIdx);
+
+         String[][] canPath = getCannonicalPath(ats, bds, firstRingAtIdx);
+         String smi  = toString(canPath[0], canPath[1], false);
+         String star = toString(canPath[0], canPath[1], true);
+         assert smi.equals(coder.getCodeName(false)) : smi + " " + coder.getCodeName(false);
+         assert star.equals(coder.getCodeName(true)) : star + " " + coder.getCodeName(true);
+         assert coder.getCode(false) == GeneralHashFunctionLibrary.BKDRHash(smi);
+         assert coder.getCode(true)  == GeneralHashFunctionLibrary.BKDRHash(star);
+      }
+   }
+
+   private static void code(LinearPathCoder coder, String[] ats, String[] bds, int firstRingAtIdx)
+   {  coder.init(ats.length, bds.length);
+      for(int i=0; i<ats.length; i++) coder.setAtom(i, ats[i]);
+      for(int i=0; i<bds.length; i++) coder.setBond(i, bds[i]);
+      coder.canonicalize(firstRingAtIdx);
+   }
+
+   /**
+    * Same algorithm as DFSIterator.getCannonicalPath working on symbols.
+    * @return {atoms, bonds}
+    */
+   private static String[][] getCannonicalPath(String[] inAts, String[] inBds, int firstRingAtIdx)
+   {  String[] atoms = inAts.clone();
+      String[] bonds = inBds.clone();
+      if( atoms.length == bonds.length )
+      {  if( firstRingAtIdx == 0 )
+            return getCannonicalRing(atoms, bonds);
+
+         reverse(atoms, firstRingAtIdx+1, atoms.length);
+         reverse(bonds, firstRingAtIdx, bonds.length);
+      } else
+      {  reverse(atoms, 0, atoms.length);
+         reverse(bonds, 0, bonds.length);
+      }
+
+      if( toString(inAts, inBds, false).compareTo(toString(atoms, bonds, false)) > 0 )
+         return new String[][] { atoms, bonds };
+      return new String[][] { inAts, inBds };
+   }
+
+   private static String[][] getCannonicalRing(String[] atoms, String[] bonds)
+   {  String smallestPath = toString(atoms, bonds, false);
+      String[] smallPathAts = atoms.clone();
+      String[] smallPathBds = bonds.clone();
+      for(int i=1; i<atoms.length; i++)
+      {  rotate(atoms);
+         rotate(bonds);
+         String nPath = toString(atoms, bonds, false);
+         if(nPath.compareTo(smallestPath) < 0)
+         {  smallestPath = nPath;
+            smallPathAts = atoms.clone();
+            smallPathBds = bonds.clone();
+         }
+      }
+      reverse(atoms, 1, atoms.length);
+      reverse(bonds, 0, bonds.length);
+
+      for(int i=0; i<atoms.length; i++)
+      {  rotate(atoms);
+         rotate(bonds);
+         String nPath = toString(atoms, bonds, false);
+         if(nPath.compareTo(smallestPath) < 0)
+         {  smallestPath = nPath;
+            smallPathAts = atoms.clone();
+            smallPathBds = bonds.clone();
+         }
+      }
+      return new String[][] { smallPathAts, smallPathBds };
+   }
+
+   private static void rotate(String[] arr)
+   {  String last = arr[arr.length-1];
+      System.arraycopy(arr, 0, arr, 1, arr.length-1);
+      arr[0] = last;
+   }
+
+   private static void reverse(String[] array, int start, int end)
+   {  for (int left=start, right=end-1; left<right; left++, right--)
+      {  String temp = array[left];
+         array[left] = array[right];
+         array[right] = temp;
+      }
+   }
+
+   private static String toString(String[] ats, String[] bds, boolean starAtoms)
+   {  StringBuilder sb = new StringBuilder();
+      for(int i=0; i<ats.length; i++)
+      {  sb.append(starAtoms ? "*" : ats[i]);
+         if( i < bds.length ) sb.append(bds[i]);
+      }
+      return sb.toString();
+   }
+}
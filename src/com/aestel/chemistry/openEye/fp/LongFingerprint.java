@@ -24,7 +24,9 @@ package com.aestel.chemistry.openEye.fp;
  * @author albertgo
  */
 final public class LongFingerprint implements Fingerprint
-{  private final long[] longs;
+{  private static final TanimotoKernel KERNEL = TanimotoKernel.getInstance();
+
+   private final long[] longs;
    private final int nBits;
 
    public LongFingerprint(String hex)
@@ -64,6 +66,13 @@ final public class LongFingerprint implements Fingerprint
       this.nBits = nb;
    }
 
+   /**
+    * @return the internal array, must not be modified.
+    */
+   long[] getLongs()
+   {  return longs;
+   }
+
    @Override
    public double tanimoto(Fingerprint other)
    {  if( ! (other instanceof LongFingerprint) )
@@ -74,17 +83,8 @@ final public class LongFingerprint implements Fingerprint
       long[] fp_1 = this.longs;
       long[] fp_2 = ((LongFingerprint) other).longs;
 
-      int andBitCount = 0;  // number of bits present in both
-
-      int i=0;
-      int len;
-      len = Math.min(fp_1.length, fp_2.length);
-
-      // we could possibly convert to long in 16 ops and then do the and/or
-      // and count on the long values more efficiently but I am not sure
-      for( ; i<len; i++)
-      {  andBitCount += Long.bitCount(fp_1[i] & fp_2[i]);
-      }
+      // number of bits present in both
+      int andBitCount = KERNEL.andBitCount(fp_1, 0, fp_2, 0, Math.min(fp_1.length, fp_2.length));
 
       return ( (double) andBitCount )/(this.nBits+other.getNBits()-andBitCount);
    }
@@ -102,21 +102,31 @@ final public class LongFingerprint implements Fingerprint
       long[] fp_1 = this.longs;
       long[] fp_2 = ((LongFingerprint) other).longs;
 
-      int andBitCount = 0;
-
-      int len = Math.min(fp_1.length, fp_2.length);
+      int andBitCount = KERNEL.andBitCount(fp_1, 0, fp_2, 0, Math.min(fp_1.length, fp_2.length));
 
-      // we could possibly convert to long in 16 ops and then do the and/or
-      // and count on the long values more efficiently but I am not sure
-      for(int i=0; i<len; i++)
-      {  andBitCount += Long.bitCount(fp_1[i]  & fp_2[i]);
-      }
+      return ( (double) andBitCount )/(Math.max(this.nBits, other.getNBits()) * 2 - andBitCount);
+   }
 
 
-//System.err.printf("and=%d or=%d ", andBitCount, orBitCount);
-      return ( (double) andBitCount )/(Math.max(this.nBits, other.getNBits()) * 2 - andBitCount);
+   /**
+    * Upper bound for {@link #tanimoto(Fingerprint)} of two fingerprints with
+    * nBits1 and nBits2 bits set (Swamidass and Baldi).
+    */
+   public static double tanimotoBound(int nBits1, int nBits2)
+   {  if( nBits1 == nBits2 ) return 1;
+      if( nBits1 < nBits2 ) return ( (double) nBits1 )/nBits2;
+      return ( (double) nBits2 )/nBits1;
    }
 
+   /**
+    * Upper bound for {@link #mtanimoto(Fingerprint)} of two fingerprints with
+    * nBits1 and nBits2 bits set.
+    */
+   public static double mtanimotoBound(int nBits1, int nBits2)
+   {  if( nBits1 == nBits2 ) return 1;
+      int min = Math.min(nBits1, nBits2);
+      return ( (double) min )/(Math.max(nBits1, nBits2) * 2 - min);
+   }
 
    @Override
    public Fingerprint fold(int size)
@@ -165,6 +165,25 @@ public class LongFingerprintTest
 //   }
 
 
+   @Test()
+   public void testBound()
+   {  String[] fps = { "0", "FFA", "7FA", "FFA1", "7F8", "00008001080", "1", "FFFFFFFFFFFFFFFFFF" };
+      for(String s1 : fps)
+      {  LongFingerprint fp1 = new LongFingerprint(s1);
+         for(String s2 : fps)
+         {  LongFingerprint fp2 = new LongFingerprint(s2);
+            assert fp1.tanimoto(fp2) <= LongFingerprint.tanimotoBound(fp1.getNBits(), fp2.getNBits())
+               : s1 + " " + s2;
+            assert fp1.mtanimoto(fp2) <= LongFingerprint.mtanimotoBound(fp1.getNBits(), fp2.getNBits())
+               : s1 + " " + s2;
+         }
+      }
+
+      assert LongFingerprint.tanimotoBound(0, 0) == 1D;
+      assert LongFingerprint.tanimotoBound(3, 4) == 3D/4D;
+      assert LongFingerprint.mtanimotoBound(4, 3) == 3D/5D;
+   }
+
    @Test()
    public void testCount()
    {  assert new LongFingerprint("FFA").getNBits()== 10;
@@ -0,0 +1,32 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye.fp;
+
+/**
+ * A {@link StructureCodeNameIterator} which can also return the codes as 64 bit
+ * hash of the code name without creating the code name String.
+ *
+ * For each element either {@link #next()} or {@link #nextCode()} may be called.
+ */
+public interface LongStructureCodeNameIterator extends StructureCodeNameIterator
+{  /**
+    * @return {@link com.aestel.chemistry.openEye.fp.tools.GeneralHashFunctionLibrary#BKDRHash(CharSequence)}
+    *         of the String that would have been returned by {@link #next()}.
+    */
+   public long nextCode();
+}
@@ -0,0 +1,87 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye.fp;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * {@link AbstractFingerprintStore} reading the fingerprints directly from
+ * a memory mapped {@link FingerprintDatabase} file.
+ *
+ * @author albertgo
+ */
+final class MappedFingerprintStore extends AbstractFingerprintStore
+{  private final LongBuffer words;
+   private final IntBuffer nBits;
+   private final int stride;
+   private final int size;
+
+   MappedFingerprintStore(LongBuffer words, IntBuffer nBits, int stride, int size)
+   {  this.words = words;
+      this.nBits = nBits;
+      this.stride = stride;
+      this.size = size;
+   }
+
+   @Override
+   public int size()
+   {  return size;
+   }
+
+   @Override
+   public int getStride()
+   {  return stride;
+   }
+
+   @Override
+   public int getNBits(int idx)
+   {  return nBits.get(idx);
+   }
+
+   @Override
+   public long getWord(int idx, int wordIdx)
+   {  return words.get(idx*stride + wordIdx);
+   }
+
+   @Override
+   public int andBitCount(int idx, long[] query)
+   {  LongBuffer w = words;
+      int off = idx*stride;
+      int len = Math.min(stride, query.length);
+
+      int andBitCount = 0;
+      for(int i=0; i<len; i++)
+         andBitCount += Long.bitCount(w.get(off+i) & query[i]);
+
+      return andBitCount;
+   }
+
+   @Override
+   public int andBitCount(int idx1, int idx2)
+   {  LongBuffer w = words;
+      int off1 = idx1*stride;
+      int off2 = idx2*stride;
+
+      int andBitCount = 0;
+      for(int i=0; i<stride; i++)
+         andBitCount += Long.bitCount(w.get(off1+i) & w.get(off2+i));
+
+      return andBitCount;
+   }
+}
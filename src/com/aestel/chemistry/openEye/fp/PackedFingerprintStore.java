@@ -0,0 +1,180 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye.fp;
+
+import java.util.Arrays;
+
+/**
+ * Stores many {@link LongFingerprint}s in one contiguous long array with a
+ * fixed number of longs per fingerprint and a parallel array with the number
+ * of bits set in each fingerprint.
+ *
+ * Compared to keeping one {@link LongFingerprint} object per fingerprint this
+ * avoids the object overhead and allows the similarity searches to scan
+ * the memory sequentially.
+ *
+ * Fingerprints shorter than the stride are padded with 0.
+ *
+ * The bits are counted with {@link TanimotoKernel#getInstance()}.
+ *
+ * @author albertgo
+ */
+public final class PackedFingerprintStore extends AbstractFingerprintStore
+{  private static final TanimotoKernel KERNEL = TanimotoKernel.getInstance();
+
+   private long[] words;
+   private int[] nBits;
+   private int stride;
+   private int size;
+
+   public PackedFingerprintStore(int initialCapacity)
+   {  initialCapacity = Math.max(1, initialCapacity);
+      words = new long[0];
+      nBits = new int[initialCapacity];
+      stride = 0;
+      size = 0;
+   }
+
+   /**
+    * Append fp at index {@link #size()}.
+    * @return index of fp in this store.
+    */
+   public int add(LongFingerprint fp)
+   {  long[] fpWords = fp.getLongs();
+      if( fpWords.length > stride ) setStride(fpWords.length);
+      ensureCapacity(size+1);
+
+      System.arraycopy(fpWords, 0, words, size*stride, fpWords.length);
+      nBits[size] = fp.getNBits();
+      return size++;
+   }
+
+   private void ensureCapacity(int minCapacity)
+   {  if( nBits.length < minCapacity )
+         nBits = Arrays.copyOf(nBits, Math.max(minCapacity, nBits.length + (nBits.length >> 1)));
+
+      long len = (long)nBits.length * stride;
+      if( len > Integer.MAX_VALUE - 8 )
+      {  if( (long)minCapacity * stride > Integer.MAX_VALUE - 8 )
+            throw new Error(String.format(
+                  "Too many fingerprints for PackedFingerprintStore: %d * %d longs",
+                  minCapacity, stride));
+         len = Integer.MAX_VALUE - 8;
+      }
+      if( words.length < minCapacity * stride )
+         words = Arrays.copyOf(words, (int)len);
+   }
+
+   /** change the number of longs per fingerprint, only growing is supported */
+   private void setStride(int newStride)
+   {  assert newStride > stride;
+
+      long[] newWords = new long[Math.max(1,size) * newStride];
+      for(int i=0; i<size; i++)
+         System.arraycopy(words, i*stride, newWords, i*newStride, stride);
+      words = newWords;
+      stride = newStride;
+   }
+
+   /**
+    * Release the capacity which is not needed to store the fingerprints added so far.
+    */
+   public void trimToSize()
+   {  nBits = Arrays.copyOf(nBits, Math.max(1,size));
+      words = Arrays.copyOf(words, size*stride);
+   }
+
+   /**
+    * Reorder the fingerprints by ascending number of bits set.
+    * Fingerprints with the same number of bits keep their relative order.
+    *
+    * @return array with the previous index of the fingerprint now at each index.
+    */
+   public int[] sortByNBits()
+   {  int maxNBits = 0;
+      for(int i=0; i<size; i++)
+         if( nBits[i] > maxNBits ) maxNBits = nBits[i];
+
+      // counting sort
+      int[] bandStart = new int[maxNBits+2];
+      for(int i=0; i<size; i++)
+         bandStart[nBits[i]+1]++;
+      for(int nb=1; nb<bandStart.length; nb++)
+         bandStart[nb] += bandStart[nb-1];
+
+      int[] oldIdx = new int[size];
+      long[] newWords = new long[Math.max(words.length, size*stride)];
+      int[] newNBits = new int[nBits.length];
+      for(int i=0; i<size; i++)
+      {  int newIdx = bandStart[nBits[i]]++;
+         oldIdx[newIdx] = i;
+         newNBits[newIdx] = nBits[i];
+         System.arraycopy(words, i*stride, newWords, newIdx*stride, stride);
+      }
+
+      words = newWords;
+      nBits = newNBits;
+      return oldIdx;
+   }
+
+   @Override
+   public int size()
+   {  return size;
+   }
+
+   @Override
+   public int getStride()
+   {  return stride;
+   }
+
+   @Override
+   public int getNBits(int idx)
+   {  return nBits[idx];
+   }
+
+   @Override
+   public long getWord(int idx, int wordIdx)
+   {  return words[idx*stride + wordIdx];
+   }
+
+   @Override
+   public int andBitCount(int idx, long[] query)
+   {  return KERNEL.andBitCount(words, idx*stride, query, 0, Math.min(stride, query.length));
+   }
+
+   @Override
+   public int andBitCount(int idx1, int idx2)
+   {  return KERNEL.andBitCount(words, idx1*stride, words, idx2*stride, stride);
+   }
+
+   @Override
+   public void andBitCounts(int from, int to, long[] query, int[] counts)
+   {  KERNEL.andBitCounts(query, 0, Math.min(stride, query.length),
+                          words, from*stride, stride, to-from, counts);
+   }
+
+   @Override
+   public void andBitCounts(int from, int to, int idx, int[] counts)
+   {  KERNEL.andBitCounts(words, idx*stride, stride, words, from*stride, stride, to-from, counts);
+   }
+
+   @Override
+   public LongFingerprint getFingerprint(int idx)
+   {  return new LongFingerprint(Arrays.copyOfRange(words, idx*stride, (idx+1)*stride));
+   }
+}
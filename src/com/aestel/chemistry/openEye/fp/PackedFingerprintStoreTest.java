@@ -0,0 +1,109 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye.fp;
+
+import org.testng.annotations.Test;
+
+public class PackedFingerprintStoreTest
+{
+   private static final String[] FPS =
+   {  "FFA", "7FA", "FFA1", "7F8", "0", "00000000000000001",
+      "fffffaff8b10979880014b000803110010800040002060081000000002000000000000000c041",
+      "fffffaff2b821f9880214a0088038100100100c004216008104000000200100000000000040010"
+   };
+
+   @Test()
+   public void testTanimoto()
+   {  PackedFingerprintStore store = new PackedFingerprintStore(2);
+      LongFingerprint[] fps = new LongFingerprint[FPS.length];
+      for(int i=0; i<FPS.length; i++)
+      {  fps[i] = new LongFingerprint(FPS[i]);
+         assert store.add(fps[i]) == i;
+      }
+      assert store.size() == FPS.length;
+
+      for(int i=0; i<fps.length; i++)
+      {  assert store.getNBits(i) == fps[i].getNBits();
+         assert store.getFingerprint(i).getNBits() == fps[i].getNBits();
+
+         for(int j=0; j<fps.length; j++)
+         {  assert store.tanimoto(i, fps[j]) == fps[i].tanimoto(fps[j])
+               : "tanimoto " + i + " " + j;
+            assert store.tanimoto(i, j) == fps[i].tanimoto(fps[j])
+               : "tanimoto " + i + " " + j;
+            assert store.mtanimoto(i, fps[j]) == fps[i].mtanimoto(fps[j])
+               : "mtanimoto " + i + " " + j;
+            assert store.mtanimoto(i, j) == fps[i].mtanimoto(fps[j])
+               : "mtanimoto " + i + " " + j;
+         }
+      }
+
+      store.trimToSize();
+      assert store.tanimoto(0, 1) == 9D/10D;
+   }
+
+   @Test()
+   public void testSort()
+   {  PackedFingerprintStore store = new PackedFingerprintStore(FPS.length);
+      for(String s : FPS)
+         store.add(new LongFingerprint(s));
+
+      int[] oldIdx = store.sortByNBits();
+      assert oldIdx.length == FPS.length;
+
+      for(int i=0; i<FPS.length; i++)
+      {  LongFingerprint fp = new LongFingerprint(FPS[oldIdx[i]]);
+         assert store.getNBits(i) == fp.getNBits();
+         assert store.tanimoto(i, fp) == 1D;
+         if( i > 0 ) assert store.getNBits(i-1) <= store.getNBits(i);
+      }
+
+      // "0" has no bits set
+      assert oldIdx[0] == 4;
+      assert store.getFirstIndexWithNBits(0) == 0;
+      assert store.getFirstIndexWithNBits(1) == 1;
+      assert store.getNBits(store.getFirstIndexWithNBits(10)) == 10;
+      assert store.getFirstIndexWithNBits(10000) == FPS.length;
+   }
+
+   @Test()
+   public void testBlock()
+   {  PackedFingerprintStore store = new PackedFingerprintStore(FPS.length);
+      LongFingerprint[] fps = new LongFingerprint[FPS.length];
+      for(int i=0; i<FPS.length; i++)
+      {  fps[i] = new LongFingerprint(FPS[i]);
+         store.add(fps[i]);
+      }
+
+      int[] counts = new int[FPS.length];
+      double[] sims = new double[FPS.length];
+      for(int j=0; j<fps.length; j++)
+      {  store.tanimoto(1, FPS.length, fps[j], counts, sims);
+         for(int i=1; i<FPS.length; i++)
+            assert sims[i-1] == fps[i].tanimoto(fps[j]) : "tanimoto " + i + " " + j;
+
+         store.mtanimoto(0, FPS.length, fps[j], counts, sims);
+         for(int i=0; i<FPS.length; i++)
+            assert sims[i] == fps[i].mtanimoto(fps[j]) : "mtanimoto " + i + " " + j;
+
+         store.andBitCounts(2, FPS.length, j, counts);
+         for(int i=2; i<FPS.length; i++)
+            assert counts[i-2] == store.andBitCount(i, j) : "andBitCount " + i + " " + j;
+      }
+   }
+}
@@ -0,0 +1,48 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye.fp;
+
+/**
+ * {@link TanimotoKernel} using {@link Long#bitCount(long)} which the jit
+ * compiles to the popcnt instruction. The loop is unrolled by four so that
+ * the counts are summed in independent registers.
+ *
+ * @author albertgo
+ */
+final class ScalarTanimotoKernel extends TanimotoKernel
+{  @Override
+   public String getName()
+   {  return "scalar";
+   }
+
+   @Override
+   public int andBitCount(long[] a, int aOff, long[] b, int bOff, int len)
+   {  int c0 = 0, c1 = 0, c2 = 0, c3 = 0;
+      int i = 0;
+      for(int end=len-3; i<end; i+=4)
+      {  c0 += Long.bitCount(a[aOff+i]   & b[bOff+i]);
+         c1 += Long.bitCount(a[aOff+i+1] & b[bOff+i+1]);
+         c2 += Long.bitCount(a[aOff+i+2] & b[bOff+i+2]);
+         c3 += Long.bitCount(a[aOff+i+3] & b[bOff+i+3]);
+      }
+      for( ; i<len; i++)
+         c0 += Long.bitCount(a[aOff+i] & b[bOff+i]);
+
+      return c0 + c1 + c2 + c3;
+   }
+}
@@ -25,6 +25,7 @@ import java.util.regex.Pattern;
 
 import com.aestel.Settings;
 import com.aestel.chemistry.openEye.fp.tools.GeneralHashFunctionLibrary;
+import com.aestel.chemistry.openEye.fp.tools.LongIntHashMap;
 import com.aestel.utility.LogHelper;
 import com.aestel.utility.Message;
 import com.aestel.utility.Message.Level;
@@ -36,16 +37,26 @@ import com.aestel.utility.exception.AestelError;
  *
  * The dictionary can contain bits of various types to create combined fingerprints.
  *
+ * If addNewCodes is false the dictionary can also be searched by the 64 bit
+ * codes returned by {@link LongStructureCodeNameIterator#nextCode()}. This is
+ * disabled if two names of one type have the same code.
+ *
  * @author albertgo
  *
  */
-public class TABDictionaryStructureCodeMapper implements LearningStrcutureCodeMapper
+public class TABDictionaryStructureCodeMapper
+       implements LearningStrcutureCodeMapper, LongStructureCodeMapper
 {  /**
     * Map from the type of a StructureCodeIterator to a Map which contains the
     * position of the bit keyed by the StructureCodeName.
     */
    private final Map<String,Map<String,Integer>> typeToNameMapMap
                                           = new HashMap<String, Map<String, Integer>>();
+   /**
+    * Map from the type of a StructureCodeIterator to the position of the bit
+    * keyed by the code of the StructureCodeName, null if not supported.
+    */
+   private Map<String,LongIntHashMap> typeToCodeMapMap = null;
    private final String fileName;
    private final boolean addNewCodes;
    private final boolean hashNewCodes;
@@ -135,6 +146,8 @@ public class TABDictionaryStructureCodeMapper implements LearningStrcutureCodeMa
          numHashIdexes = (maxIdx-minIdx)/3;
       }
 
+      if(! addNewCodes) buildCodeMaps();
+
 //      for(Entry<String,Integer> e : typeToNameMapMap.get("lin74").entrySet())
 //         System.err.println(e.getKey() + " " + e.getValue());
    }
@@ -177,6 +190,51 @@ public class TABDictionaryStructureCodeMapper implements LearningStrcutureCodeMa
       }
    }
 
+   /**
+    * Create {@link #typeToCodeMapMap} from {@link #typeToNameMapMap}.
+    */
+   private void buildCodeMaps()
+   {  Map<String,LongIntHashMap> codeMapMap = new HashMap<String, LongIntHashMap>();
+      for(Entry<String, Map<String, Integer>> typeEntry : typeToNameMapMap.entrySet())
+      {  LongIntHashMap codeToIdxMap = new LongIntHashMap(typeEntry.getValue().size());
+         for(Entry<String, Integer> nameIdx : typeEntry.getValue().entrySet())
+         {  long code = GeneralHashFunctionLibrary.BKDRHash(nameIdx.getKey());
+            if( codeToIdxMap.put(code, nameIdx.getValue()) != LongIntHashMap.NOValue )
+            {  LogHelper.LOG.warning(String.format(
+                  "Code collision in %s for %s, searching by code disabled",
+                  fileName, nameIdx.getKey()));
+               typeToCodeMapMap = null;
+               return;
+            }
+         }
+         codeMapMap.put(typeEntry.getKey(), codeToIdxMap);
+      }
+      typeToCodeMapMap = codeMapMap;
+   }
+
+   @Override
+   public boolean isCodeSupported()
+   {  return typeToCodeMapMap != null;
+   }
+
+   /**
+    * Same as {@link #getIndex(String, String)} for the name with the given code.
+    * Only valid if {@link #isCodeSupported()}.
+    */
+   @Override
+   public int getIndex(String type, long code)
+   {  LongIntHashMap codeToIdxMap = typeToCodeMapMap.get(type);
+      if( codeToIdxMap != null )
+      {  int idx = codeToIdxMap.get(code);
+         if( idx != LongIntHashMap.NOValue ) return idx;
+      }
+
+      // unknown fragment type or code
+      if(hashNewCodes)
+         return GeneralHashFunctionLibrary.toInt(code, numHashIdexes)+maxIdx+1;
+      return -1;
+   }
+
    /**
     * Writes the dictionary into the dictionary file.
     * The original file is renamed to .bak.
@@ -293,6 +351,7 @@ public class TABDictionaryStructureCodeMapper implements LearningStrcutureCodeMa
          Map<String, Integer> nameToIdxMap = typeToNameMapMap.get(code.type);
          nameToIdxMap.put(code.name, idx++);
       }
+      if( typeToCodeMapMap != null ) buildCodeMaps();
    }
 
    /**
@@ -0,0 +1,111 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye.fp;
+
+/**
+ * Computes the number of bits set in the and of two fingerprints stored as
+ * long arrays. This is the inner loop of all tanimoto computations on
+ * {@link LongFingerprint}s, {@link ByteFingerprint}s and {@link PackedFingerprintStore}s.
+ *
+ * The implementation is selected once with the system property
+ * {@value #KERNELProperty}:
+ * <ul>
+ * <li>scalar: default, one {@link Long#bitCount(long)} per long.
+ * <li>vector: several longs per instruction using the jdk.incubator.vector
+ *     module. This needs java 17 or newer started with
+ *     <code>--add-modules jdk.incubator.vector</code> and the classes from
+ *     srcVector. If it is not available a warning is printed and the scalar
+ *     kernel is used.
+ * </ul>
+ * Both kernels return identical counts.
+ *
+ * @author albertgo
+ */
+public abstract class TanimotoKernel
+{  public static final String KERNELProperty = "aestel.fp.kernel";
+   private static final String VECTORKernelClass
+         = "com.aestel.chemistry.openEye.fp.VectorTanimotoKernel";
+
+   private static final TanimotoKernel SCALAR = new ScalarTanimotoKernel();
+   private static final TanimotoKernel INSTANCE = createKernel(System.getProperty(KERNELProperty));
+
+   protected TanimotoKernel()
+   {
+   }
+
+   /**
+    * @return the kernel selected with {@value #KERNELProperty}.
+    */
+   public static TanimotoKernel getInstance()
+   {  return INSTANCE;
+   }
+
+   /**
+    * @return the scalar kernel regardless of {@value #KERNELProperty}.
+    */
+   public static TanimotoKernel getScalarInstance()
+   {  return SCALAR;
+   }
+
+   /**
+    * @param name scalar or vector, null for the default.
+    * @return the kernel with the given name, the scalar kernel if the vector
+    *         kernel can not be loaded.
+    */
+   public static TanimotoKernel createKernel(String name)
+   {  if( name == null || name.length() == 0 || "scalar".equalsIgnoreCase(name) )
+         return SCALAR;
+
+      if( ! "vector".equalsIgnoreCase(name) )
+         throw new Error(String.format("Unknown %s: %s, must be scalar or vector",
+                                       KERNELProperty, name));
+
+      try
+      {  return (TanimotoKernel)Class.forName(VECTORKernelClass).getDeclaredConstructor().newInstance();
+      } catch(Exception e)
+      {  System.err.printf("Vector tanimoto kernel not available, using scalar kernel: %s\n", e);
+      } catch(LinkageError e)
+      {  // class compiled for newer java or jdk.incubator.vector not added
+         System.err.printf("Vector tanimoto kernel not available, using scalar kernel: %s\n", e);
+      }
+      return SCALAR;
+   }
+
+   /**
+    * @return name of this kernel as used for {@value #KERNELProperty}.
+    */
+   public abstract String getName();
+
+   /**
+    * @return number of bits set in both a[aOff .. aOff+len-1] and b[bOff .. bOff+len-1].
+    */
+   public abstract int andBitCount(long[] a, int aOff, long[] b, int bOff, int len);
+
+   /**
+    * Score one query against a block of n fingerprints stored consecutively
+    * with stride longs per fingerprint starting at words[off].
+    *
+    * @param len number of longs to compare, must be &lt;= stride.
+    * @param counts set to the and bit count of query with each fingerprint in the block.
+    */
+   public void andBitCounts(long[] query, int qOff, int len, long[] words, int off, int stride,
+                            int n, int[] counts)
+   {  for(int i=0; i<n; i++, off+=stride)
+         counts[i] = andBitCount(query, qOff, words, off, len);
+   }
+}
@@ -0,0 +1,80 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye.fp;
+
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+public class TanimotoKernelTest
+{
+   @Test()
+   public void testScalar()
+   {  assertKernel(TanimotoKernel.getScalarInstance());
+   }
+
+   /**
+    * Falls back to the scalar kernel if jdk.incubator.vector is not available.
+    */
+   @Test()
+   public void testVector()
+   {  assertKernel(TanimotoKernel.createKernel("vector"));
+   }
+
+   @Test(expectedExceptions = Error.class)
+   public void testUnknown()
+   {  TanimotoKernel.createKernel("gpu");
+   }
+
+   private static void assertKernel(TanimotoKernel kernel)
+   {  Random rand = new Random(4711);
+      long[] a = new long[300];
+      long[] b = new long[300];
+      for(int i=0; i<a.length; i++)
+      {  a[i] = rand.nextLong();
+         b[i] = i % 7 == 0 ? -1L : rand.nextLong() & rand.nextLong();
+      }
+
+      // all lengths around the vector sizes and more than 31 vectors
+      for(int len=0; len<=290; len++)
+      {  int off = len % 5;
+         assert kernel.andBitCount(a, off, b, 3, len) == andBitCount(a, off, b, 3, len)
+            : kernel.getName() + " len=" + len;
+      }
+
+      for(int stride=1; stride<=20; stride++)
+      {  int n = (b.length - 1) / stride;
+         for(int len=stride/2; len<=stride; len++)
+         {  int[] counts = new int[n];
+            kernel.andBitCounts(a, 7, len, b, 1, stride, n, counts);
+            for(int i=0; i<n; i++)
+               assert counts[i] == andBitCount(a, 7, b, 1+i*stride, len)
+                  : kernel.getName() + " stride=" + stride + " len=" + len + " i=" + i;
+         }
+      }
+   }
+
+   private static int andBitCount(long[] a, int aOff, long[] b, int bOff, int len)
+   {  int count = 0;
+      for(int i=0; i<len; i++)
+         for(int bit=0; bit<64; bit++)
+            if( (a[aOff+i] & b[bOff+i] & (1L << bit)) != 0 ) count++;
+
+      return count;
+   }
+}
@@ -0,0 +1,144 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+
+package com.aestel.chemistry.openEye.fp.apps;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import openeye.oechem.OEGraphMol;
+import openeye.oechem.OEMolBase;
+import openeye.oechem.oechem;
+import openeye.oechem.oemolithread;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.PosixParser;
+
+import com.aestel.chemistry.openEye.fp.FingerprintDatabase;
+import com.aestel.chemistry.openEye.fp.LongFingerprint;
+import com.aestel.chemistry.openEye.fp.PackedFingerprintStore;
+
+/**
+ * Convert the fingerprints in an sdf file into a {@link FingerprintDatabase}
+ * which can be used as -ref file by {@link SDFFPNNFinder}.
+ *
+ * @author albertgo
+ *
+ */
+public class SDFFPDatabaseBuilder
+{
+   private SDFFPDatabaseBuilder()
+   {
+   }
+
+
+   public static void main(String...args) throws IOException
+   {  // create command line Options object
+      Options options = new Options();
+      Option opt = new Option("in",true, "input file [.sdf,...]");
+      opt.setRequired(true);
+      options.addOption(opt);
+
+      opt = new Option("out",true, "output file, must end with " + FingerprintDatabase.FILE_EXTENSION);
+      opt.setRequired(true);
+      options.addOption(opt);
+
+      opt = new Option("fpTag",true, "field containing fingerpPrint");
+      opt.setRequired(true);
+      options.addOption(opt);
+
+      opt = new Option("idTag",true, "field containing id, stored to create NNId fields when searching.");
+      opt.setRequired(false);
+      options.addOption(opt);
+
+      CommandLineParser parser = new PosixParser();
+      CommandLine cmd = null;
+      try
+      {  cmd = parser.parse( options, args);
+      } catch(Exception e)
+      {  System.err.println(e.getMessage());
+         exitWithHelp(options);
+      }
+      args = cmd.getArgs();
+
+      if(cmd.hasOption("d"))
+      {  System.err.println("Start debugger and press return:");
+         new BufferedReader(new InputStreamReader(System.in)).readLine();
+      }
+
+      String inFile  = cmd.getOptionValue("in");
+      String outFile = cmd.getOptionValue("out");
+      String fpTag   = cmd.getOptionValue("fpTag");
+      String idTag   = cmd.getOptionValue("idTag");
+
+      if( ! FingerprintDatabase.isDatabaseFile(outFile) )
+      {  System.err.println("out must end with " + FingerprintDatabase.FILE_EXTENSION);
+         exitWithHelp(options);
+      }
+
+      long start = System.currentTimeMillis();
+      PackedFingerprintStore store = new PackedFingerprintStore(2000);
+      List<String> ids = idTag == null ? null : new ArrayList<String>(2000);
+
+      OEMolBase mol = new OEGraphMol();
+      oemolithread ifs = new oemolithread(inFile);
+      int iCounter = 0;
+
+      while(oechem.OEReadMolecule(ifs, mol))
+      {  iCounter++;
+         String fpStr = oechem.OEGetSDData(mol, fpTag);
+         if( fpStr.length() == 0 )
+            throw new Error("Record " + iCounter + " has no fingerprint in " + fpTag);
+
+         store.add(new LongFingerprint(fpStr));
+         if( ids != null )
+         {  String id = oechem.OEGetSDData(mol, idTag);
+            if( id.length() == 0 )
+               System.err.println("empty id for record " + iCounter);
+            ids.add(id);
+         }
+
+         if(iCounter % 1000 == 0) System.err.print(".");
+         if(iCounter % 40000 == 0)
+         {  System.err.printf( " %d %dsec\n",
+                  iCounter, (System.currentTimeMillis()-start)/1000);
+         }
+      }
+      ifs.close();
+      ifs.delete();
+      mol.delete();
+
+      FingerprintDatabase.write(outFile, store, ids);
+
+      System.err.printf("\nSDFFPDatabaseBuilder: Wrote %d fingerprints to %s. %d sec\n",
+            iCounter, outFile, (System.currentTimeMillis()-start)/1000);
+   }
+
+   private static void exitWithHelp(Options options) {
+      HelpFormatter formatter = new HelpFormatter();
+      formatter.printHelp( "SDFFPDatabaseBuilder", options );
+      System.exit(1);
+   }
+}
@@ -29,6 +29,7 @@ import org.apache.commons.cli.*;
 import com.aestel.chemistry.openEye.*;
 import com.aestel.chemistry.openEye.fp.FPComparator;
 import com.aestel.chemistry.openEye.fp.FPComparatorFact;
+import com.aestel.chemistry.openEye.fp.FingerprintDatabase;
 import com.aestel.chemistry.openEye.nn.*;
 
 /**
@@ -49,7 +50,9 @@ public class SDFFPNNFinder
       opt.setRequired(true);
       options.addOption(opt);
 
-      opt = new Option("ref",true, "refrence file to be loaded before starting, default compare to input");
+      opt = new Option("ref",true, "refrence file to be loaded before starting, default compare to input."
+                                 + " This may be a fingerprint database (" + FingerprintDatabase.FILE_EXTENSION
+                                 + ") created by SDFFPDatabaseBuilder.");
       opt.setRequired(false);
       options.addOption(opt);
 
@@ -85,13 +88,21 @@ public class SDFFPNNFinder
       opt.setRequired(false);
       options.addOption(opt);
 
-      opt = new Option("tabOutput", true, "tab|vTab output as table NxN or vertical table with smiles.smiles<tab>NNSim");
+      opt = new Option("tabOutput", true, "tab|vTab|coo|triangle output as table NxN or vertical table with smiles.smiles<tab>NNSim"
+                                 + " or as binary sparse matrix in coordinate format or binary upper triangle matrix."
+                                 + " The binary formats are written row by row while the rows are computed,"
+                                 + " only the neighbors of the rows in progress are kept in memory.");
       opt.setRequired(false);
       options.addOption(opt);
 
       opt = new Option("nCpu",true, "number of CPU's used in parallel, dafault 1");
       opt.setRequired(false);
       options.addOption(opt);
+
+      opt = new Option("batchSize",true, "number of molecules passed to a thread at once when"
+                        + " searching -ref, default " + MultiThreadBatchRunner.DEFAULT_BATCHSIZE);
+      opt.setRequired(false);
+      options.addOption(opt);
    }
 
 
@@ -129,6 +140,10 @@ public class SDFFPNNFinder
       String d     = cmd.getOptionValue("nCpu");
       if( d != null ) nCpu = Integer.parseInt(d);
 
+      int batchSize = MultiThreadBatchRunner.DEFAULT_BATCHSIZE;
+      d            = cmd.getOptionValue("batchSize");
+      if( d != null ) batchSize = Integer.parseInt(d);
+
       d            = cmd.getOptionValue("maxNeighbors");
       if( d != null ) maxNeighbors = Integer.parseInt(d);
 
@@ -150,11 +165,13 @@ public class SDFFPNNFinder
       if( outputDuplicates && refFile == null )
          exitWithHelp("-outputDuplicates requires -ref ");
 
-      if( "tab".equalsIgnoreCase(tabOutput) && refFile != null )
-         exitWithHelp("-tabOutput tab: does not work with reference file");
+      boolean matrixOutput = "tab".equalsIgnoreCase(tabOutput) || "coo".equalsIgnoreCase(tabOutput)
+                          || "triangle".equalsIgnoreCase(tabOutput);
+      if( matrixOutput && refFile != null )
+         exitWithHelp("-tabOutput " + tabOutput + ": does not work with reference file");
 
-      if( "tab".equalsIgnoreCase(tabOutput) && maxNeighbors == 1 )
-         exitWithHelp("-tabOutput tab: does not make sense with -maxNeighbors = 1");
+      if( matrixOutput && maxNeighbors == 1 )
+         exitWithHelp("-tabOutput " + tabOutput + ": does not make sense with -maxNeighbors = 1");
 
       if( cmd.hasOption("countSimilarAbove") && tabOutput != null )
          exitWithHelp("-countSimilarAbove not supported for tab or vTab output");
@@ -175,7 +192,7 @@ public class SDFFPNNFinder
 
       }else
       {  performReferenceSearch(inFile, refFile, outFile, tabOutput, compFact,
-               minSim, maxNeighbors, idTag, nCpu, countAboveSimilarityStr,
+               minSim, maxNeighbors, idTag, nCpu, batchSize, countAboveSimilarityStr,
                outputDuplicates, printAll);
       }
 
@@ -201,6 +218,10 @@ public class SDFFPNNFinder
             c = new MultiNNMatrixFinderVTConsumer(outFile, idTag);
          else if( "tab".equalsIgnoreCase(tabOutput) )
             c = new MultiNNMatrixFinderTabConsumer(outFile, idTag);
+         else if( "coo".equalsIgnoreCase(tabOutput) )
+            c = new MultiNNMatrixFinderCOOConsumer(outFile, idTag);
+         else if( "triangle".equalsIgnoreCase(tabOutput) )
+            c = new MultiNNMatrixFinderTriangleConsumer(outFile, idTag);
          else
             c = new MultiNNMatrixFinderConsumer(outFile, countAboveSimilarityStr);
 
@@ -209,6 +230,8 @@ public class SDFFPNNFinder
 
          if( "tab".equalsIgnoreCase(tabOutput) )
             ((MultiNNMatrixFinderTabConsumer)c).setMatrixSize(alg.getObjectCount());
+         else if( c instanceof MultiNNMatrixFinderBinaryConsumer )
+            ((MultiNNMatrixFinderBinaryConsumer)c).setMatrixSize(alg.getObjectCount());
       }else
       {  NNMatrixFinderConsumerInterface c;
          if( "vTab".equalsIgnoreCase(tabOutput) )
@@ -233,14 +256,14 @@ public class SDFFPNNFinder
    private static void performReferenceSearch(
             String inFile, String refFile, String outFile, String tabOutput,
             SimComparatorFactory<OEMolBase, FPComparator, FPComparator> compFact,
-            double minSim, int maxNeighbors, String idTag, int nCpu,
+            double minSim, int maxNeighbors, String idTag, int nCpu, int batchSize,
             String countAboveSimilarityStr, boolean outputDuplicates, boolean printAll)
    throws IOException
    {  double countAboveSimilarity = Double.MAX_VALUE;
       if( countAboveSimilarityStr != null )
          countAboveSimilarity = Double.parseDouble(countAboveSimilarityStr);
 
-      MultiThreadAlgortihm nnAlg;
+      MultiThreadBatchAlgorithm<?> nnAlg;
 
       if( maxNeighbors > 1 || minSim > 0 )
       {  NNMultiFinderConsumerInterface c;
@@ -265,7 +288,7 @@ public class SDFFPNNFinder
                                           inFile, c, compFact,refFile, idTag, countAboveSimilarity );
       }
 
-      MultiThreadRunner runner = new MultiThreadRunner(nnAlg, nCpu);
+      MultiThreadBatchRunner<?> runner = MultiThreadBatchRunner.create(nnAlg, nCpu, batchSize);
       runner.run();
       runner.close();
    }
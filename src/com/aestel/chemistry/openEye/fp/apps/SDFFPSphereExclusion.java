@@ -89,6 +89,10 @@ public class SDFFPSphereExclusion
       opt = new Option("printAll",false, "print all molecule, check includeIdx tag");
       options.addOption(opt);
 
+      opt = new Option("nCpu",true, "number of CPU's used in parallel, dafault 1");
+      opt.setRequired(false);
+      options.addOption(opt);
+
       CommandLineParser parser = new PosixParser();
       CommandLine cmd = null;
       try
@@ -109,6 +113,9 @@ public class SDFFPSphereExclusion
       boolean printSphereMatchCount = cmd.hasOption("printSphereMatchCount");
       boolean reverseMatch = ! cmd.hasOption("checkSpheresInOrder") && ! printSphereMatchCount;
       boolean printAll = cmd.hasOption("printAll") || printSphereMatchCount;
+      int nCpu = 1;
+      String d = cmd.getOptionValue("nCpu");
+      if( d != null ) nCpu = Integer.parseInt(d);
       boolean doMaxTanimoto = cmd.hasOption("maxTanimoto");
       String fpTag = cmd.getOptionValue("fpTag");
       double radius = Double.parseDouble(cmd.getOptionValue("radius"));
@@ -120,7 +127,7 @@ public class SDFFPSphereExclusion
          = new FPComparatorFact(doMaxTanimoto, fpTag);
       SphereExclusion<FPComparator, FPComparator> alg =
          new SphereExclusion<FPComparator, FPComparator>(compFact, refFile,
-                     outFile, radius, reverseMatch, printSphereMatchCount, printAll);
+                     outFile, radius, reverseMatch, printSphereMatchCount, printAll, nCpu);
       alg.run(inFile);
       alg.close();
    }
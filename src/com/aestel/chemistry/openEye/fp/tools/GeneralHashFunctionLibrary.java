@@ -124,6 +124,19 @@ public class GeneralHashFunctionLibrary
 
       return hash;
    }
+
+   /**
+    * Same as {@link #BKDRHash(CharSequence)} for the first len chars of str.
+    */
+   public static long BKDRHash(char[] str, int len)
+   {  long seed = 131;
+      long hash = 0;
+
+      for(int i = 0; i < len; i++)
+         hash = (hash * seed) + str[i];
+
+      return hash;
+   }
    /* End Of BKDR Hash Function */
 
 
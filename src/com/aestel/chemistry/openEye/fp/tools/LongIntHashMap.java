@@ -0,0 +1,114 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye.fp.tools;
+
+import java.util.Arrays;
+
+/**
+ * Map from long keys to non negative int values using open addressing with
+ * linear probing. Compared to a HashMap&lt;Long,Integer&gt; no objects are
+ * created for the keys and values.
+ *
+ * Lookups are thread safe as long as no entries are added concurrently.
+ *
+ * @author albertgo
+ */
+public final class LongIntHashMap
+{  /** returned by get() and put() if the key is not in the map */
+   public static final int NOValue = -1;
+
+   private long[] keys;
+   private int[] values;
+   private int size;
+   /** resize when size exceeds this */
+   private int maxSize;
+   private int mask;
+
+   public LongIntHashMap(int expectedSize)
+   {  int capacity = 16;
+      while( capacity * 3 / 4 < expectedSize )
+         capacity <<= 1;
+      allocate(capacity);
+   }
+
+   private void allocate(int capacity)
+   {  keys = new long[capacity];
+      values = new int[capacity];
+      Arrays.fill(values, NOValue);
+      mask = capacity - 1;
+      maxSize = capacity * 3 / 4;
+      size = 0;
+   }
+
+   private int slot(long key)
+   {  return (int)((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+   }
+
+   /**
+    * @return the value of key or -1 if key is not in this map.
+    */
+   public int get(long key)
+   {  int i = slot(key);
+      while( values[i] != NOValue )
+      {  if( keys[i] == key ) return values[i];
+         i = (i + 1) & mask;
+      }
+      return NOValue;
+   }
+
+   public boolean containsKey(long key)
+   {  return get(key) != NOValue;
+   }
+
+   /**
+    * @param value must be &gt;= 0
+    * @return the previous value of key or -1 if key was not in this map.
+    */
+   public int put(long key, int value)
+   {  if( value < 0 )
+         throw new IllegalArgumentException("value must be >= 0: " + value);
+
+      int i = slot(key);
+      while( values[i] != NOValue )
+      {  if( keys[i] == key )
+         {  int old = values[i];
+            values[i] = value;
+            return old;
+         }
+         i = (i + 1) & mask;
+      }
+
+      keys[i] = key;
+      values[i] = value;
+      if( ++size > maxSize ) rehash();
+      return NOValue;
+   }
+
+   private void rehash()
+   {  long[] oldKeys = keys;
+      int[] oldValues = values;
+      allocate(oldKeys.length * 2);
+      for(int i=0; i<oldKeys.length; i++)
+         if( oldValues[i] != NOValue )
+            put(oldKeys[i], oldValues[i]);
+   }
+
+   public int size()
+   {  return size;
+   }
+}
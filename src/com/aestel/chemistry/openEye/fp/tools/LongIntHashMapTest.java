@@ -0,0 +1,61 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye.fp.tools;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+public class LongIntHashMapTest
+{
+   @Test()
+   public void testPutGet()
+   {  LongIntHashMap map = new LongIntHashMap(2);
+      assert map.get(0L) == -1;
+      assert map.put(0L, 5) == -1;
+      assert map.put(Long.MIN_VALUE, 0) == -1;
+      assert map.put(0L, 6) == 5;
+      assert map.get(0L) == 6;
+      assert map.get(Long.MIN_VALUE) == 0;
+      assert map.size() == 2;
+   }
+
+   @Test()
+   public void testRandom()
+   {  Random rand = new Random(42);
+      Map<Long,Integer> ref = new HashMap<Long,Integer>();
+      LongIntHashMap map = new LongIntHashMap(10);
+      for(int i=0; i<50000; i++)
+      {  // small keys give collisions in the slots
+         long key = i % 3 == 0 ? rand.nextInt(1000) << 20 : rand.nextLong();
+         int val = rand.nextInt(Integer.MAX_VALUE);
+         Integer old = ref.put(key, val);
+         assert map.put(key, val) == (old == null ? -1 : old.intValue());
+      }
+
+      assert map.size() == ref.size();
+      for(Map.Entry<Long,Integer> e : ref.entrySet())
+         assert map.get(e.getKey()) == e.getValue().intValue();
+      for(int i=0; i<1000; i++)
+      {  long key = rand.nextLong();
+         if( ! ref.containsKey(key) ) assert ! map.containsKey(key);
+      }
+   }
+}
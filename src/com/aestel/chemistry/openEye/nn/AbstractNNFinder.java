@@ -25,7 +25,11 @@ import openeye.oechem.*;
 
 import com.aestel.chemistry.openEye.MultiThreadAlgortihm;
 import com.aestel.chemistry.openEye.SimComparator;
+import com.aestel.chemistry.openEye.SimComparatorDatabase;
+import com.aestel.chemistry.openEye.SimComparatorDatabaseFactory;
 import com.aestel.chemistry.openEye.SimComparatorFactory;
+import com.aestel.chemistry.openEye.SimComparatorList;
+import com.aestel.chemistry.openEye.SimComparatorStore;
 
 /**
  * Common methods for all NearNeighbor Finder
@@ -34,22 +38,42 @@ import com.aestel.chemistry.openEye.SimComparatorFactory;
  * @param <Y> comparator the type of the references
  */
 public abstract class AbstractNNFinder<T, Y extends SimComparator<T>> implements MultiThreadAlgortihm
-{  protected final List<Y> reference;
-   protected final ArrayList<String> referenceIds;
+{  protected final SimComparatorStore<T, Y> reference;
+   protected final List<String> referenceIds;
    protected final SimComparatorFactory<OEMolBase, T, Y> comparableFact;
 
    /**
     * @param compFact factory to create comparable and comaparator objects.
-    * @param refFile reference file, find near neighbors in this list
+    * @param refFile reference file, find near neighbors in this list.
+    *        This may also be a file with precomputed comparators if compFact
+    *        implements {@link SimComparatorDatabaseFactory}.
     * @param idTagName tag name in reference record that is reported as near neighbor ID
     */
+   @SuppressWarnings("unchecked")
    public AbstractNNFinder(SimComparatorFactory<OEMolBase, T, Y> compFact,
                            String refFile, String idTagName)
-   {  reference = new ArrayList<Y>(2000);
-      referenceIds = new ArrayList<String>(2000);
-      comparableFact = compFact;
+   {  comparableFact = compFact;
 
-      readReferenceFile(refFile, idTagName);
+      if( compFact instanceof SimComparatorDatabaseFactory
+          && ((SimComparatorDatabaseFactory<T, Y>) compFact).isDatabase(refFile) )
+      {  SimComparatorDatabase<T, Y> db
+            = ((SimComparatorDatabaseFactory<T, Y>) compFact).openDatabase(refFile);
+         reference = db;
+         if( idTagName != null )
+         {  if( db.getIds() == null )
+               throw new Error("idTag given but reference file has no ids: " + refFile);
+            referenceIds = db.getIds();
+         }else
+         {  referenceIds = new ArrayList<String>(0);
+         }
+         System.err.printf("%d reference records mapped.\n", reference.size());
+
+      }else
+      {  reference = SimComparatorList.createStore(compFact, 2000);
+         referenceIds = new ArrayList<String>(2000);
+
+         readReferenceFile(refFile, idTagName);
+      }
    }
 
 
@@ -82,7 +106,8 @@ public abstract class AbstractNNFinder<T, Y extends SimComparator<T>> implements
 
    @Override
    public void close()
-   {  comparableFact.close();
+   {  reference.close();
+      comparableFact.close();
    }
 
    @Override
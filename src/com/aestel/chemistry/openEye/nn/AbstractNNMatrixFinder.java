@@ -25,6 +25,8 @@ import openeye.oechem.*;
 import com.aestel.chemistry.openEye.MultiThreadMatrixAlgortihm;
 import com.aestel.chemistry.openEye.SimComparator;
 import com.aestel.chemistry.openEye.SimComparatorFactory;
+import com.aestel.chemistry.openEye.SimComparatorList;
+import com.aestel.chemistry.openEye.SimComparatorStore;
 /**
  * common methods to do an all by all comparison of records in one input file.
  *
@@ -34,7 +36,7 @@ import com.aestel.chemistry.openEye.SimComparatorFactory;
 abstract public class AbstractNNMatrixFinder<T, Y extends SimComparator<T>> implements MultiThreadMatrixAlgortihm
 {  protected final SimComparatorFactory<OEMolBase, T, Y> comparableFact;
    protected List<OEMolBase> mols;
-   protected List<Y> comparators;
+   protected SimComparatorStore<T, Y> comparators;
 
    /**
     * @param compFact for converting the input into a comparable and or comparator.
@@ -44,7 +46,7 @@ abstract public class AbstractNNMatrixFinder<T, Y extends SimComparator<T>> impl
                                  String inFile)
    {  comparableFact = compFact;
       mols = readMolecules(inFile);
-      comparators = new ArrayList<Y>(2000);
+      comparators = SimComparatorList.createStore(compFact, mols.size());
       for( OEMolBase m : mols)
       {  T cmp = compFact.createComparable(m);
          comparators.add(compFact.createComparator(cmp));
@@ -77,11 +79,15 @@ abstract public class AbstractNNMatrixFinder<T, Y extends SimComparator<T>> impl
    {  return comparators.size();
    }
 
+   @Override
+   public int getTaskCount()
+   {  return getObjectCount();
+   }
+
    @Override
    public void close()
    {  for( OEMolBase m: mols)
          m.delete();
-      for( Y c: comparators )
-         c.close();
+      comparators.close();
    }
 }
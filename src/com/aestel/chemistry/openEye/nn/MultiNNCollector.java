@@ -0,0 +1,95 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye.nn;
+
+import com.aestel.chemistry.openEye.SimilarityCollector;
+
+/**
+ * Keeps the maxNeighbors most similar neighbors with similarity >= minSimilarity
+ * and counts the neighbors with a similarity above a threshold.
+ *
+ * Ties are resolved in favor of the lower index so that the result does not
+ * depend on the order in which the neighbors are reported.
+ *
+ * A collector may be reused for the next query after calling {@link #reset(int)}.
+ *
+ * @author albertgo
+ */
+class MultiNNCollector implements SimilarityCollector
+{  private final NeighborHeap nnHeap;
+   private final double minSimilarity;
+   private final double countSimilarityTheshold;
+   private int excludeIdx;
+   private int countSim = 0;
+
+   /**
+    * @param maxNeighbors do not keep more neighbors
+    * @param minSimilarity do not keep neighbors with lower similarity
+    * @param countSimilarityTheshold count neighbors with similarity above this threshold
+    * @param excludeIdx ignore neighbor with this index, -1 to include all
+    */
+   MultiNNCollector(int maxNeighbors, double minSimilarity,
+                    double countSimilarityTheshold, int excludeIdx)
+   {  this.minSimilarity = minSimilarity;
+      this.countSimilarityTheshold = countSimilarityTheshold;
+      this.excludeIdx = excludeIdx;
+      this.nnHeap = new NeighborHeap(maxNeighbors);
+   }
+
+   /**
+    * Prepare for collecting the neighbors of the next query.
+    * @param newExcludeIdx ignore neighbor with this index, -1 to include all
+    */
+   void reset(int newExcludeIdx)
+   {  nnHeap.clear();
+      countSim = 0;
+      excludeIdx = newExcludeIdx;
+   }
+
+   @Override
+   public void collect(int idx, double sim)
+   {  if( idx == excludeIdx ) return;
+
+      if( sim >= countSimilarityTheshold ) countSim++;
+      if( sim < minSimilarity ) return;
+
+      nnHeap.add(idx, sim);
+   }
+
+   @Override
+   public double getMinSimilarity()
+   {  double minSim = minSimilarity;
+      if( nnHeap.isFull() )
+         minSim = Math.max(minSim, nnHeap.getWorstSim());
+
+      return Math.min(minSim, countSimilarityTheshold);
+   }
+
+   /**
+    * @return the neighbors sorted from best to worst, no neighbors may be collected
+    *         afterwards until {@link #reset(int)} is called.
+    */
+   NeighborHeap getNeighbors()
+   {  nnHeap.sort();
+      return nnHeap;
+   }
+
+   int getCountSim()
+   {  return countSim;
+   }
+}
@@ -17,12 +17,12 @@ Contact: aestelSW@gmail.com
 */
 package com.aestel.chemistry.openEye.nn;
 
-import java.util.TreeSet;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorCompletionService;
 
 import openeye.oechem.*;
 
+import com.aestel.chemistry.openEye.MultiThreadBatchAlgorithm;
 import com.aestel.chemistry.openEye.SimComparator;
 import com.aestel.chemistry.openEye.SimComparatorFactory;
 /**
@@ -32,12 +32,15 @@ import com.aestel.chemistry.openEye.SimComparatorFactory;
  * @param <Y> comparator
  */
 public class MultiNNFinder<T, Y extends SimComparator<T>> extends AbstractNNFinder<T, Y>
+                                                          implements MultiThreadBatchAlgorithm<MultiNNFinder.Result>
 {  final int maxNeighbors;
    final double minSimilarity;
    final oemolithread ifs;
    final NNMultiFinderConsumerInterface consumer;
    private final double countSimilarityTheshold;
    private final boolean printAll;
+   /** collector of each thread, reused for all queries */
+   private final ThreadLocal<MultiNNCollector> collectors;
 
    /**
     * Find multiple NN in each compound in inFile.
@@ -66,6 +69,14 @@ public class MultiNNFinder<T, Y extends SimComparator<T>> extends AbstractNNFind
       this.printAll = printAll;
 
       if( maxNeighbors < 1 ) throw new Error("maxneighbors must be > 0");
+
+      this.collectors = new ThreadLocal<MultiNNCollector>()
+      {  @Override
+         protected MultiNNCollector initialValue()
+         {  return new MultiNNCollector(MultiNNFinder.this.maxNeighbors,
+                        MultiNNFinder.this.minSimilarity, MultiNNFinder.this.countSimilarityTheshold, -1);
+         }
+      };
    }
 
 
@@ -74,50 +85,72 @@ public class MultiNNFinder<T, Y extends SimComparator<T>> extends AbstractNNFind
    {  completionService.submit(new NNFindMulti());
    }
 
+   @Override
+   public boolean read(OEMolBase mol)
+   {  return oechem.OEReadMolecule(ifs, mol);
+   }
+
+   @Override
+   public Result process(OEMolBase mol)
+   {  return search(mol, true);
+   }
+
+   /**
+    * Compare one molecule to all references.
+    * @param copy if false the neighbors are only valid until the next search on this thread.
+    */
+   private Result search(OEMolBase mol, boolean copy)
+   {  Y comp = comparableFact.createComparator(comparableFact.createComparable(mol));
+
+      // NN search
+      MultiNNCollector nnCollector = collectors.get();
+      nnCollector.reset(-1);
+      reference.search(comp, nnCollector);
+      comp.close();
+
+      NeighborHeap nnList = nnCollector.getNeighbors();
+      if( copy ) nnList = nnList.copy();
+      return new Result(nnList, nnCollector.getCountSim());
+   }
+
+   @Override
+   public void consume(OEMolBase mol, Result res)
+   {  try
+      {  if( printAll || res.nnList.size() > 0 )
+            consumer.consumeResult(mol, res.nnList, referenceIds, res.countSim);
+      } catch (InterruptedException e)
+      {  e.printStackTrace();
+
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   /**
+    * Neighbors of one input molecule.
+    */
+   public static class Result
+   {  final NeighborHeap nnList;
+      final int countSim;
+
+      Result(NeighborHeap nnList, int countSim)
+      {  this.nnList = nnList;
+         this.countSim = countSim;
+      }
+   }
+
    /** inner class to perform multi threaded nn finding **/
    class NNFindMulti implements Callable<Boolean>
    {  /** read one molecule and compare to all references */
       @Override
       public Boolean call()
       {  OEMolBase mol = new OEGraphMol();
-         if( ! oechem.OEReadMolecule(ifs, mol) )
+         if( ! read(mol) )
          {  mol.delete();
             return Boolean.FALSE;
          }
 
-         TreeSet<Neighbor> nnSet = new TreeSet<Neighbor>();
-         Y comp = comparableFact.createComparator(comparableFact.createComparable(mol));
-         double minKnownSim = 10D;
-         int countSim = 0;
-
-         // NN search
-         for( int i=0; i< reference.size(); i++)
-         {  Y c = reference.get(i);
-            double sim = c.similarity(comp);
-            if( sim >= countSimilarityTheshold ) countSim++;
-            if( sim < minSimilarity ) continue;
-
-            if( nnSet.size() < maxNeighbors )
-            {  if( sim < minKnownSim) minKnownSim=sim;
-               nnSet.add(new Neighbor(i, sim));
-            } else if( sim > minKnownSim )
-            {  nnSet.remove(nnSet.last());
-               nnSet.add(new Neighbor(i, sim));
-               minKnownSim=nnSet.last().neighBorSim;
-            }
-         }
-
-         try
-         {  if( printAll || nnSet.size() > 0 )
-               consumer.consumeResult(mol, nnSet, referenceIds, countSim);
-         } catch (InterruptedException e)
-         {  e.printStackTrace();
-
-            Thread.currentThread().interrupt();
-         }finally
-         {  mol.delete();
-            comp.close();
-         }
+         consume(mol, search(mol, false));
+         mol.delete();
 
          return Boolean.TRUE;
       }
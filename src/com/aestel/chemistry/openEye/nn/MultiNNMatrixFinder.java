@@ -15,28 +15,58 @@
 
 Contact: aestelSW@gmail.com
 */
+
 package com.aestel.chemistry.openEye.nn;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.TreeSet;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import openeye.oechem.OEMolBase;
 
 import com.aestel.chemistry.openEye.SimComparator;
 import com.aestel.chemistry.openEye.SimComparatorFactory;
+import com.aestel.chemistry.openEye.SymmetricSimComparatorStore;
 /**
  * A nearest Neighbor Finder which compares a full matrix.
+ *
+ * If the comparators are kept in a {@link SymmetricSimComparatorStore} only the
+ * upper triangle of the matrix is computed tile by tile and each similarity
+ * is passed to the neighbor lists of both compounds. The results are output
+ * in input order once all tiles are complete, so the neighbor lists of all
+ * compounds are kept in memory until then.
+ *
+ * A {@link MultiNNMatrixFinderBinaryConsumer} is meant to write rows while
+ * they are computed, for it the matrix is always computed row by row. This
+ * computes each similarity twice but only keeps one neighbor list per thread.
  */
 public class MultiNNMatrixFinder<T, Y extends SimComparator<T>> extends AbstractNNMatrixFinder<T, Y>
-{  private final List<TreeSet<Neighbor>> neighborSets;
+{  /** number of tile pairs compared in one task */
+   private static final int TILESPerTask = 16;
+
    private final int maxNeighbors;
    private final double minSimilarity;
    private final MultiNNMatrixFinderConsumerInterface consumer;
    private final double countSimilarityTheshold;
    private final boolean printAll;
+   /** collector of each thread, reused for all rows if not using tiles */
+   private final ThreadLocal<MultiNNCollector> rowCollectors;
+
+   /** null if the similarity matrix is computed row by row */
+   private final SymmetricSimComparatorStore<T, Y> tiledStore;
+   private final int tileSize;
+   private final int nTiles;
+   private final int nTasks;
+   /** for each task the diagonal of the tile matrix, 0 is the main diagonal */
+   private int[] taskDiagonal;
+   /** for each task the first tile in the diagonal */
+   private int[] taskFirstTile;
+   /** collector for the comparator at each position in tiledStore */
+   private MultiNNCollector[] collectors;
+   /** {@link MultiNNCollector#getMinSimilarity()} of each collector, readable without locking */
+   private AtomicLongArray minSims;
+   private final AtomicInteger nTasksDone = new AtomicInteger();
 
 
    /**
@@ -51,6 +81,18 @@ public class MultiNNMatrixFinder<T, Y extends SimComparator<T>> extends Abstract
    public MultiNNMatrixFinder(String inFile, MultiNNMatrixFinderConsumerInterface c,
             SimComparatorFactory<OEMolBase, T, Y> compFact,
             int maxNeighbors, double minSimilarity, boolean printAll, double countSimilarityTheshold)
+   {  this(inFile, c, compFact, maxNeighbors, minSimilarity, printAll, countSimilarityTheshold, 0);
+   }
+
+   /**
+    * @param tileSize number of comparators per tile, 0 to use
+    *        {@link SymmetricSimComparatorStore#getTileSize()}.
+    */
+   @SuppressWarnings("unchecked")
+   MultiNNMatrixFinder(String inFile, MultiNNMatrixFinderConsumerInterface c,
+            SimComparatorFactory<OEMolBase, T, Y> compFact,
+            int maxNeighbors, double minSimilarity, boolean printAll, double countSimilarityTheshold,
+            int tileSize)
    {  super(compFact, inFile);
       this.consumer = c;
       this.maxNeighbors = maxNeighbors;
@@ -58,12 +100,75 @@ public class MultiNNMatrixFinder<T, Y extends SimComparator<T>> extends Abstract
       this.countSimilarityTheshold = countSimilarityTheshold;
       this.printAll = printAll;
 
-      neighborSets = new ArrayList<TreeSet<Neighbor>>( mols.size() );
+      rowCollectors = new ThreadLocal<MultiNNCollector>()
+      {  @Override
+         protected MultiNNCollector initialValue()
+         {  return new MultiNNCollector(MultiNNMatrixFinder.this.maxNeighbors,
+                        MultiNNMatrixFinder.this.minSimilarity,
+                        MultiNNMatrixFinder.this.countSimilarityTheshold, -1);
+         }
+      };
+
+      if( comparators instanceof SymmetricSimComparatorStore
+          && ! (c instanceof MultiNNMatrixFinderBinaryConsumer) )
+      {  tiledStore = (SymmetricSimComparatorStore<T, Y>) comparators;
+         this.tileSize = tileSize > 0 ? tileSize : tiledStore.getTileSize();
+         nTiles = (comparators.size() + this.tileSize - 1) / this.tileSize;
+
+         double initialMinSim = Math.min(minSimilarity, countSimilarityTheshold);
+         collectors = new MultiNNCollector[comparators.size()];
+         for( int pos=0; pos<collectors.length; pos++ )
+            collectors[pos] = new MultiNNCollector(maxNeighbors, minSimilarity,
+                                    countSimilarityTheshold, tiledStore.getIndexAt(pos));
+         minSims = new AtomicLongArray(collectors.length);
+         for( int pos=0; pos<collectors.length; pos++ )
+            minSims.set(pos, Double.doubleToLongBits(initialMinSim));
+         nTasks = createTasks();
+      }else
+      {  tiledStore = null;
+         this.tileSize = 1;
+         nTiles = comparators.size();
+         nTasks = nTiles;
+      }
+   }
+
+   /**
+    * The tiles are processed by diagonals of the tile matrix starting with
+    * the main diagonal. Since the positions in tiledStore are expected to place
+    * similar comparators close to each other the min similarity of the collectors
+    * increases quickly and allows skipping most tiles far from the diagonal.
+    *
+    * @return number of tasks.
+    */
+   private int createTasks()
+   {  int count = 0;
+      for( int d=0; d<nTiles; d++ )
+         count += (nTiles - d + TILESPerTask - 1) / TILESPerTask;
+
+      taskDiagonal = new int[count];
+      taskFirstTile = new int[count];
+      int t = 0;
+      for( int d=0; d<nTiles; d++ )
+         for( int first=0; first<nTiles-d; first += TILESPerTask )
+         {  taskDiagonal[t] = d;
+            taskFirstTile[t] = first;
+            t++;
+         }
+
+      return count;
+   }
+
+   @Override
+   public int getTaskCount()
+   {  return nTasks;
    }
 
    @Override
    public void submitTask(ExecutorCompletionService<Boolean> completionService, int idx)
-   {  completionService.submit(new MultiNNMatrixFind(idx));
+   {  if( tiledStore != null )
+         completionService.submit(new MultiNNTileFind(idx));
+      else
+         completionService.submit(new MultiNNMatrixFind(idx));
    }
 
 
@@ -73,46 +178,25 @@ public class MultiNNMatrixFinder<T, Y extends SimComparator<T>> extends Abstract
     *
     */
    class MultiNNMatrixFind implements Callable<Boolean>
-   {  final Y baseMol;
-      final int baseMolIdx;
+   {  final int baseMolIdx;
 
       MultiNNMatrixFind(int baseMolIdx)
-      {  this.baseMol = comparators.get(baseMolIdx);
-         this.baseMolIdx = baseMolIdx;
+      {  this.baseMolIdx = baseMolIdx;
       }
 
       @Override
       public Boolean call()
-      {  int countSimilar = 0;
-         double minKnownSim = 10D;
-         TreeSet<Neighbor> nnSet = new TreeSet<Neighbor>();
-
-         // NNSearch
-         for( int i=0; i< comparators.size(); i++)
-         {  if( i == baseMolIdx ) continue;
-
-            Y c = comparators.get(i);
-            double sim = baseMol.similarity(c);
-
-            if( sim >= countSimilarityTheshold ) countSimilar++;
-            if( sim < minSimilarity ) continue;
-
-            if( nnSet.size() < maxNeighbors )
-            {  if( sim < minKnownSim) minKnownSim=sim;
-               nnSet.add(new Neighbor(i, sim));
-            } else if( sim > minKnownSim )
-            {  nnSet.remove(nnSet.last());
-               nnSet.add(new Neighbor(i, sim));
-               minKnownSim=nnSet.last().neighBorSim;
-            }
-         }
-
-         neighborSets.add(nnSet);
+      {  // NNSearch
+         MultiNNCollector nnCollector = rowCollectors.get();
+         nnCollector.reset(baseMolIdx);
+         comparators.search(baseMolIdx, nnCollector);
+         NeighborHeap nnList = nnCollector.getNeighbors();
+         int countSimilar = nnCollector.getCountSim();
 
          OEMolBase mol = mols.get(baseMolIdx);
          try
-         {  if( printAll || nnSet.size() > 0 )
-               consumer.consumeResult(mol, baseMolIdx, nnSet, countSimilar);
+         {  if( printAll || nnList.size() > 0 )
+               consumer.consumeResult(mol, baseMolIdx, nnList, countSimilar);
          } catch (InterruptedException e)
          {  e.printStackTrace();
             Thread.currentThread().interrupt();
@@ -122,6 +206,133 @@ public class MultiNNMatrixFinder<T, Y extends SimComparator<T>> extends Abstract
       }
    }
 
+
+   /**
+    * Compare up to TILESPerTask pairs of tiles on one diagonal of the tile matrix.
+    * Each similarity is passed to the collectors of both compounds.
+    */
+   class MultiNNTileFind implements Callable<Boolean>
+   {  final int taskIdx;
+
+      MultiNNTileFind(int taskIdx)
+      {  this.taskIdx = taskIdx;
+      }
+
+      @Override
+      public Boolean call()
+      {  int n = collectors.length;
+         int diagonal = taskDiagonal[taskIdx];
+         int firstTile = taskFirstTile[taskIdx];
+         int lastTile = Math.min(firstTile + TILESPerTask, nTiles - diagonal);
+         double[] sims = new double[tileSize * tileSize];
+         double[] minSim1 = new double[tileSize];
+         double[] minSim2 = new double[tileSize];
+
+         for( int tile1 = firstTile; tile1 < lastTile; tile1++ )
+         {  int from1 = tile1 * tileSize;
+            int to1 = Math.min(n, from1 + tileSize);
+            int from2 = (tile1 + diagonal) * tileSize;
+            int to2 = Math.min(n, from2 + tileSize);
+
+            // skip tile if no similarity can be of interest to either side
+            double minSim = Math.min(getMinSims(from1, to1, minSim1),
+                                     getMinSims(from2, to2, minSim2));
+            if( tiledStore.getSimilarityBound(from1, to1, from2, to2) < minSim )
+               continue;
+
+            tiledStore.similarity(from1, to1, minSim1, from2, to2, minSim2, sims);
+            collectTile(from1, to1, minSim1, from2, to2, minSim2, sims);
+         }
+
+         if( nTasksDone.incrementAndGet() == nTasks )
+            outputResults();
+
+         return Boolean.TRUE;
+      }
+   }
+
+
+   /**
+    * Pass similarities of tile1 x tile2 to the collectors of both tiles.
+    * On the diagonal tile sims contains the full square so that only the
+    * collectors of tile1 need to be updated. Skipped pairs have a similarity of -1.
+    *
+    * Similarities below the min similarity of a collector are not passed to it.
+    */
+   private void collectTile(int from1, int to1, double[] minSim1,
+                            int from2, int to2, double[] minSim2, double[] sims)
+   {  int n2 = to2 - from2;
+
+      for( int p=from1; p<to1; p++ )
+      {  MultiNNCollector col = collectors[p];
+         int off = (p - from1) * n2 - from2;
+         double minSim = minSim1[p - from1];
+         synchronized(col)
+         {  for( int q=from2; q<to2; q++ )
+            {  double sim = sims[off + q];
+               if( sim >= 0 && sim >= minSim )
+                  col.collect(tiledStore.getIndexAt(q), sim);
+            }
+            minSims.set(p, Double.doubleToLongBits(col.getMinSimilarity()));
+         }
+      }
+      if( from1 == from2 ) return;
+
+      for( int q=from2; q<to2; q++ )
+      {  MultiNNCollector col = collectors[q];
+         double minSim = minSim2[q - from2];
+         synchronized(col)
+         {  for( int p=from1; p<to1; p++ )
+            {  double sim = sims[(p - from1) * n2 + q - from2];
+               if( sim >= 0 && sim >= minSim )
+                  col.collect(tiledStore.getIndexAt(p), sim);
+            }
+            minSims.set(q, Double.doubleToLongBits(col.getMinSimilarity()));
+         }
+      }
+   }
+
+
+   /**
+    * Copy the min similarity of the collectors at positions [from,to) into minSim.
+    * The values may be out of date but since they never decrease they are
+    * still a valid lower bound.
+    *
+    * @return smallest min similarity.
+    */
+   private double getMinSims(int from, int to, double[] minSim)
+   {  double min = Double.MAX_VALUE;
+      for( int pos=from; pos<to; pos++ )
+      {  double ms = Double.longBitsToDouble(minSims.get(pos));
+         minSim[pos - from] = ms;
+         if( ms < min ) min = ms;
+      }
+      return min;
+   }
+
+
+   /**
+    * Output the neighbors of all compounds in input order.
+    */
+   private void outputResults()
+   {  MultiNNCollector[] byIdx = new MultiNNCollector[collectors.length];
+      for( int pos=0; pos<collectors.length; pos++ )
+         byIdx[tiledStore.getIndexAt(pos)] = collectors[pos];
+      collectors = null;
+
+      try
+      {  for( int idx=0; idx<byIdx.length; idx++ )
+         {  NeighborHeap nnList = byIdx[idx].getNeighbors();
+            if( printAll || nnList.size() > 0 )
+               consumer.consumeResult(mols.get(idx), idx, nnList, byIdx[idx].getCountSim());
+            byIdx[idx] = null;
+         }
+      } catch (InterruptedException e)
+      {  e.printStackTrace();
+         Thread.currentThread().interrupt();
+      }
+   }
+
    @Override
    public void close()
    {  super.close();
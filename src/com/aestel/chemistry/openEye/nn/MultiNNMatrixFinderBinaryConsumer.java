@@ -0,0 +1,106 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye.nn;
+
+import java.io.*;
+
+import openeye.oechem.OEMolBase;
+import openeye.oechem.oechem;
+
+/**
+ * Base class for consumers writing the similarity matrix to a binary file
+ * while the rows are being computed.
+ *
+ * Unlike {@link MultiNNMatrixFinderTabConsumer} no matrix is kept in memory.
+ * All numbers are written in big endian byte order so that the file can be
+ * memory mapped eg. with numpy.memmap(dtype='>f4') or R's mmap package.
+ *
+ * If an idTag is given the ids are written in input order one per line
+ * to a text file with the name of the output file plus {@link #ID_FILE_EXTENSION}.
+ *
+ * @author albertgo
+ */
+public abstract class MultiNNMatrixFinderBinaryConsumer implements MultiNNMatrixFinderConsumerInterface
+{  public static final String ID_FILE_EXTENSION = ".ids";
+
+   protected final String outFile;
+   private final String idTag;
+   private String[] ids;
+   protected int matrixSize = -1;
+
+   protected MultiNNMatrixFinderBinaryConsumer(String outFile, String idTag)
+   {  if( outFile.startsWith(".") )
+         throw new Error("Binary matrix output can not be written to stdout");
+
+      this.outFile = outFile;
+      this.idTag = idTag;
+   }
+
+   /** must be called exactly once before calling consumeResult */
+   public void setMatrixSize(int matrixSize)
+   {  this.matrixSize = matrixSize;
+      if( idTag != null ) ids = new String[matrixSize];
+
+      try
+      {  open(matrixSize);
+      } catch (IOException e)
+      {  throw new Error(e);
+      }
+   }
+
+   /** create the output file for a matrix of size nxn */
+   protected abstract void open(int n) throws IOException;
+
+   /** write the similarities of row baseMolIdx */
+   protected abstract void writeRow(int baseMolIdx, NeighborHeap nnList) throws IOException;
+
+   /** finish and close the output file */
+   protected abstract void closeFile() throws IOException;
+
+   /**
+    * countSimilar is ignored for the binary output.
+    */
+   @Override
+   public void consumeResult(OEMolBase mol, int baseMolIdx, NeighborHeap nnList, int countSimilar)
+            throws InterruptedException
+   {  if( idTag != null ) ids[baseMolIdx] = oechem.OEGetSDData(mol, idTag);
+
+      try
+      {  writeRow(baseMolIdx, nnList);
+      } catch (IOException e)
+      {  throw new Error(e);
+      }
+   }
+
+   @Override
+   public void close()
+   {  try
+      {  closeFile();
+
+         if( ids != null )
+         {  PrintStream out = new PrintStream(new BufferedOutputStream(
+                        new FileOutputStream(outFile + ID_FILE_EXTENSION)), false, "UTF-8");
+            for( int i=0; i<ids.length; i++)
+               out.println(ids[i] == null ? "" : ids[i]);
+            out.close();
+         }
+      } catch (IOException e)
+      {  throw new Error(e);
+      }
+   }
+}
@@ -0,0 +1,144 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye.nn;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+/**
+ * Write rows with the binary matrix consumers and read the files back.
+ */
+public class MultiNNMatrixFinderBinaryConsumerTest
+{  private static final int N = 5;
+
+   /**
+    * Asymmetric neighbor lists: sim(1,3) = 0.5 but sim(3,1) = 0.75,
+    * (0,4) is only found from row 4, row 2 has no neighbors.
+    */
+   private static final int[][] NBR_IDX =
+   {  { 1, 2 },
+      { 3, 0 },
+      { },
+      { 1 },
+      { 0, 3 }
+   };
+   private static final double[][] NBR_SIM =
+   {  { 0.9, 0.25 },
+      { 0.5, 0.9 },
+      { },
+      { 0.75 },
+      { 0.6, 0.125 }
+   };
+
+   private static NeighborHeap getNeighbors(int row)
+   {  NeighborHeap heap = new NeighborHeap(N);
+      for(int i=0; i<NBR_IDX[row].length; i++)
+         heap.add(NBR_IDX[row][i], NBR_SIM[row][i]);
+      heap.sort();
+      return heap;
+   }
+
+   private static void writeRows(MultiNNMatrixFinderBinaryConsumer c, int[] rowOrder)
+            throws InterruptedException
+   {  c.setMatrixSize(N);
+      for(int row : rowOrder)
+         c.consumeResult(null, row, getNeighbors(row), 0);
+      c.close();
+   }
+
+   private static DataInputStream openFile(File f) throws IOException
+   {  return new DataInputStream(new BufferedInputStream(new FileInputStream(f)));
+   }
+
+   @Test()
+   public void testCOO() throws IOException, InterruptedException
+   {  File f = File.createTempFile("nnMat", ".coo");
+      f.deleteOnExit();
+      writeRows(new MultiNNMatrixFinderCOOConsumer(f.getPath(), null), new int[] { 3, 0, 4, 2, 1 });
+
+      Map<String,Float> expected = new HashMap<String,Float>();
+      for(int row=0; row<N; row++)
+         for(int i=0; i<NBR_IDX[row].length; i++)
+            expected.put(row + "," + NBR_IDX[row][i], (float)NBR_SIM[row][i]);
+
+      DataInputStream in = openFile(f);
+      assert in.readLong() == 0x41454E4E434F4F01L;
+      assert in.readInt() == N;
+      assert in.readInt() == 0;
+      long nRecords = in.readLong();
+      assert nRecords == expected.size() : "nRecords " + nRecords;
+
+      Map<String,Float> found = new HashMap<String,Float>();
+      for(long r=0; r<nRecords; r++)
+         found.put(in.readInt() + "," + in.readInt(), in.readFloat());
+      assert in.read() == -1;
+      in.close();
+
+      assert f.length() == MultiNNMatrixFinderCOOConsumer.HEADER_SIZE
+                         + nRecords * MultiNNMatrixFinderCOOConsumer.RECORD_SIZE;
+      assert found.equals(expected) : found;
+   }
+
+   /**
+    * The larger of sim(i,j) and sim(j,i) must be stored independent of the
+    * order in which the rows are written.
+    */
+   @Test()
+   public void testTriangle() throws IOException, InterruptedException
+   {  float[][] expected = new float[N][N];
+      for(int row=0; row<N; row++)
+         for(int i=0; i<NBR_IDX[row].length; i++)
+         {  int col = NBR_IDX[row][i];
+            int r = Math.min(row, col);
+            int c = Math.max(row, col);
+            expected[r][c] = Math.max(expected[r][c], (float)NBR_SIM[row][i]);
+         }
+      assert expected[1][3] == 0.75f;
+      assert expected[0][4] == 0.6f;
+
+      int[][] rowOrders = { { 0, 1, 2, 3, 4 }, { 4, 3, 2, 1, 0 }, { 3, 0, 4, 2, 1 } };
+      // 1GB, one element per chunk and a chunk boundary inside the header
+      int[] chunkShifts = { 30, 2, 3 };
+      for(int[] rowOrder : rowOrders)
+         for(int chunkShift : chunkShifts)
+         {  File f = File.createTempFile("nnMat", ".tri");
+            f.deleteOnExit();
+            writeRows(new MultiNNMatrixFinderTriangleConsumer(f.getPath(), null, chunkShift), rowOrder);
+
+            DataInputStream in = openFile(f);
+            assert in.readLong() == 0x41454E4E54524901L;
+            assert in.readInt() == N;
+            assert in.readInt() == 0;
+            for(int i=0; i<N; i++)
+               for(int j=i+1; j<N; j++)
+               {  // elements are read in the order of getElementIndex()
+                  float sim = in.readFloat();
+                  assert sim == expected[i][j] : i + "," + j + ": " + sim;
+               }
+            assert in.read() == -1;
+            in.close();
+         }
+   }
+}
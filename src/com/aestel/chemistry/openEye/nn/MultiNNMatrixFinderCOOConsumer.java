@@ -0,0 +1,86 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye.nn;
+
+import java.io.*;
+
+/**
+ * Output NN results as sparse matrix in binary coordinate (COO) format.
+ *
+ * Each neighbor found is appended as (row, column, similarity) record as soon
+ * as its row has been computed, so the rows are not in input order.
+ * Only neighbors kept by the NN search are written, thus -minSimilarity and
+ * -maxNeighbors determine the number of entries. The diagonal is not written.
+ *
+ * The file contains:
+ * <pre>
+ * long    magic number "AENNCOO" + version
+ * int     number of rows and columns
+ * int     0, reserved
+ * long    number of records
+ * (int row, int column, float similarity)[number of records]
+ * </pre>
+ *
+ * @author albertgo
+ */
+public class MultiNNMatrixFinderCOOConsumer extends MultiNNMatrixFinderBinaryConsumer
+{  public static final int HEADER_SIZE = 24;
+   public static final int RECORD_SIZE = 12;
+   private static final long MAGIC = 0x41454E4E434F4F01L;
+
+   private DataOutputStream out;
+   private long nRecords = 0;
+
+   public MultiNNMatrixFinderCOOConsumer(String outFile, String idTag)
+   {  super(outFile, idTag);
+   }
+
+   @Override
+   protected void open(int n) throws IOException
+   {  out = new DataOutputStream(new BufferedOutputStream(
+                                 new FileOutputStream(outFile), 1 << 16));
+      out.writeLong(MAGIC);
+      out.writeInt(n);
+      out.writeInt(0);
+      out.writeLong(0L); // updated in closeFile()
+   }
+
+   @Override
+   protected synchronized void writeRow(int baseMolIdx, NeighborHeap nnList)
+   throws IOException
+   {  for(int i=0; i<nnList.size(); i++)
+      {  out.writeInt(baseMolIdx);
+         out.writeInt(nnList.getIdx(i));
+         out.writeFloat((float)nnList.getSim(i));
+      }
+      nRecords += nnList.size();
+   }
+
+   @Override
+   protected synchronized void closeFile() throws IOException
+   {  out.close();
+
+      RandomAccessFile raf = new RandomAccessFile(outFile, "rw");
+      try
+      {  raf.seek(16);
+         raf.writeLong(nRecords);
+      } finally
+      {  raf.close();
+      }
+   }
+}
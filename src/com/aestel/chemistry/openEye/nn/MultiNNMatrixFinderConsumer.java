@@ -17,8 +17,6 @@ Contact: aestelSW@gmail.com
 */
 package com.aestel.chemistry.openEye.nn;
 
-import java.util.TreeSet;
-
 import openeye.oechem.OEMolBase;
 import openeye.oechem.oechem;
 import openeye.oechem.oemolothread;
@@ -39,21 +37,21 @@ public class MultiNNMatrixFinderConsumer implements MultiNNMatrixFinderConsumerI
    }
 
    @Override
-   public void consumeResult(OEMolBase mol, int molBaseIdx, TreeSet<Neighbor> nnSet, int countSimilar)
-   {  StringBuilder sb = new StringBuilder(nnSet.size()*10);
+   public void consumeResult(OEMolBase mol, int molBaseIdx, NeighborHeap nnList, int countSimilar)
+   {  StringBuilder sb = new StringBuilder(nnList.size()*10);
 
-      if( nnSet.size() > 0)
-      {  for(Neighbor n : nnSet)
-         {  sb.append(String.format("%.4f,",n.neighBorSim));
+      if( nnList.size() > 0)
+      {  for(int i=0; i<nnList.size(); i++)
+         {  sb.append(String.format("%.4f,",nnList.getSim(i)));
          }
          sb.setLength(sb.length()-1);
       }
       oechem.OESetSDData(mol, "NNSim", sb.toString());
 
       sb.setLength(0);
-      if( nnSet.size() > 0)
-      {  for(Neighbor n : nnSet)
-         {  sb.append(n.neighBorIdx).append(',');
+      if( nnList.size() > 0)
+      {  for(int i=0; i<nnList.size(); i++)
+         {  sb.append(nnList.getIdx(i)).append(',');
          }
          sb.setLength(sb.length()-1);
       }
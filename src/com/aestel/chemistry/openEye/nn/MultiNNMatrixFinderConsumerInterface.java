@@ -17,8 +17,6 @@ Contact: aestelSW@gmail.com
 */
 package com.aestel.chemistry.openEye.nn;
 
-import java.util.TreeSet;
-
 import openeye.oechem.OEMolBase;
 
 public interface MultiNNMatrixFinderConsumerInterface
@@ -27,11 +25,12 @@ public interface MultiNNMatrixFinderConsumerInterface
     * Output result of neighbor search with one compound
     * @param mol query
     * @param baseMolIdx index of query in input
-    * @param nnSet set of nearest neighbors to query
+    * @param nnList nearest neighbors to query sorted by decreasing similarity,
+    *        only valid during this call
     * @param countSimilar count of nearest neighbors above threshold
     */
    public abstract void consumeResult(OEMolBase mol, int baseMolIdx,
-                                      TreeSet<Neighbor> nnSet, int countSimilar)
+                                      NeighborHeap nnList, int countSimilar)
           throws InterruptedException;
 
    public abstract void close();
@@ -18,7 +18,6 @@ Contact: aestelSW@gmail.com
 package com.aestel.chemistry.openEye.nn;
 
 import java.io.*;
-import java.util.TreeSet;
 
 import openeye.oechem.OEMolBase;
 import openeye.oechem.oechem;
@@ -62,12 +61,12 @@ public class MultiNNMatrixFinderTabConsumer  implements MultiNNMatrixFinderConsu
    /**
     * countSimilar is ignored for the tab output
     */
-   public void consumeResult(OEMolBase mol, int baseMolIdx, TreeSet<Neighbor> nnSet, int countSimilar)
+   public void consumeResult(OEMolBase mol, int baseMolIdx, NeighborHeap nnList, int countSimilar)
             throws InterruptedException
    {  if(idTag != null) ids[baseMolIdx] = oechem.OEGetSDData(mol, idTag);
 
-      for(Neighbor nn: nnSet)
-      {  outMatrix[baseMolIdx][nn.neighBorIdx] = (float)nn.neighBorSim;
+      for(int i=0; i<nnList.size(); i++)
+      {  outMatrix[baseMolIdx][nnList.getIdx(i)] = (float)nnList.getSim(i);
       }
    }
 
@@ -0,0 +1,169 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye.nn;
+
+import openeye.oechem.OEMolBase;
+
+import org.testng.annotations.Test;
+
+import com.aestel.chemistry.openEye.MultiThreadMatrixRunner;
+import com.aestel.chemistry.openEye.SimComparatorFactory;
+import com.aestel.chemistry.openEye.fp.FPComparator;
+import com.aestel.chemistry.openEye.fp.FPComparatorFact;
+
+/**
+ * Compare the tiled upper triangle search of {@link MultiNNMatrixFinder} to
+ * the row by row search.
+ */
+public class MultiNNMatrixFinderTest
+{  private static final String FP_FILE = "test/sdfFingerprinter/100.refout.sdf";
+   private static final String FP_TAG  = "linear7*4_folded512";
+   /** does not divide the 100 molecules in FP_FILE */
+   private static final int TILESize = 7;
+
+   /**
+    * Records the neighbors of each compound as text.
+    */
+   private static class RecordingConsumer implements MultiNNMatrixFinderConsumerInterface
+   {  final String[] results = new String[100];
+
+      @Override
+      public synchronized void consumeResult(OEMolBase mol, int baseMolIdx,
+                                             NeighborHeap nnList, int countSimilar)
+      {  assert results[baseMolIdx] == null : "reported twice: " + baseMolIdx;
+
+         StringBuilder sb = new StringBuilder();
+         sb.append(countSimilar).append(':');
+         for(int i=0; i<nnList.size(); i++)
+            sb.append(' ').append(nnList.getIdx(i)).append('=').append(nnList.getSim(i));
+         results[baseMolIdx] = sb.toString();
+      }
+
+      @Override
+      public void close()
+      {  // nothing to do
+      }
+   }
+
+   /**
+    * Records the rows passed to {@link #writeRow(int, NeighborHeap)}.
+    */
+   private static class RecordingBinaryConsumer extends MultiNNMatrixFinderBinaryConsumer
+   {  final RecordingConsumer rows = new RecordingConsumer();
+
+      RecordingBinaryConsumer()
+      {  super("unused", null);
+      }
+
+      @Override
+      protected void open(int n)
+      {  // nothing to do
+      }
+
+      @Override
+      protected void writeRow(int baseMolIdx, NeighborHeap nnList)
+      {  rows.consumeResult(null, baseMolIdx, nnList, 0);
+      }
+
+      @Override
+      protected void closeFile()
+      {  // nothing to do
+      }
+   }
+
+   private static String[] run(SimComparatorFactory<OEMolBase, FPComparator, FPComparator> fact,
+                               int maxNeighbors, double minSim, int tileSize, int nCpu)
+   {  RecordingConsumer consumer = new RecordingConsumer();
+      MultiNNMatrixFinder<FPComparator, FPComparator> alg
+         = new MultiNNMatrixFinder<FPComparator, FPComparator>(FP_FILE, consumer, fact,
+                  maxNeighbors, minSim, true, 0.5D, tileSize);
+      MultiThreadMatrixRunner<FPComparator, FPComparator> runner
+         = new MultiThreadMatrixRunner<FPComparator, FPComparator>(alg, nCpu);
+      runner.run();
+      runner.close();
+
+      return consumer.results;
+   }
+
+   @Test()
+   public void testTiledSameAsRows()
+   {  for( boolean doMaxTanimoto : new boolean[] { false, true } )
+      {  final FPComparatorFact fact = new FPComparatorFact(doMaxTanimoto, FP_TAG);
+         // does not implement SimComparatorStoreFactory: row by row search
+         SimComparatorFactory<OEMolBase, FPComparator, FPComparator> rowFact
+            = new SimComparatorFactory<OEMolBase, FPComparator, FPComparator>()
+         {  @Override
+            public FPComparator createComparator(FPComparator comparable)
+            {  return fact.createComparator(comparable);
+            }
+
+            @Override
+            public FPComparator createComparable(OEMolBase in)
+            {  return fact.createComparable(in);
+            }
+
+            @Override
+            public void close()
+            {  fact.close();
+            }
+         };
+
+         for( int maxNeighbors : new int[] { 1, 5 } )
+         {  for( int nCpu : new int[] { 1, 3 } )
+            {  String[] rows  = run(rowFact, maxNeighbors, 0.3D, 0, nCpu);
+               String[] tiled = run(fact, maxNeighbors, 0.3D, TILESize, nCpu);
+
+               for( int i=0; i<rows.length; i++ )
+               {  assert rows[i] != null;
+                  assert rows[i].equals(tiled[i])
+                     : "maxTani=" + doMaxTanimoto + " maxNeighbors=" + maxNeighbors
+                       + " nCpu=" + nCpu + " idx=" + i + "\n" + rows[i] + "\n" + tiled[i];
+               }
+            }
+         }
+      }
+   }
+
+   /**
+    * A binary consumer is passed one row per task as the rows are computed,
+    * even if the comparators are kept in a symmetric store.
+    */
+   @Test()
+   public void testBinaryConsumerRowByRow()
+   {  FPComparatorFact fact = new FPComparatorFact(false, FP_TAG);
+      RecordingBinaryConsumer consumer = new RecordingBinaryConsumer();
+      MultiNNMatrixFinder<FPComparator, FPComparator> alg
+         = new MultiNNMatrixFinder<FPComparator, FPComparator>(FP_FILE, consumer, fact,
+                  5, 0.3D, true, 0.5D, TILESize);
+      assert alg.getTaskCount() == alg.getObjectCount() : "tasks " + alg.getTaskCount();
+
+      consumer.setMatrixSize(alg.getObjectCount());
+      MultiThreadMatrixRunner<FPComparator, FPComparator> runner
+         = new MultiThreadMatrixRunner<FPComparator, FPComparator>(alg, 3);
+      runner.run();
+      runner.close();
+
+      String[] tiled = run(fact, 5, 0.3D, TILESize, 3);
+      for( int i=0; i<tiled.length; i++ )
+      {  // countSimilar is not passed to writeRow
+         String nbrs = tiled[i].substring(tiled[i].indexOf(':'));
+         assert consumer.rows.results[i].endsWith(nbrs)
+            : "idx=" + i + "\n" + consumer.rows.results[i] + "\n" + tiled[i];
+      }
+   }
+}
@@ -0,0 +1,134 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye.nn;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Output NN results as binary upper triangle of the similarity matrix.
+ *
+ * The file is created with its final size when the matrix size is known and
+ * memory mapped in chunks of at most 1GB. Each
+ * similarity is written to its position as soon as its row has been
+ * computed. The operating system does not allocate disk blocks for the
+ * zero filled regions on most file systems.
+ *
+ * Element (i,j) with i &lt; j is set if j was found as neighbor of i or i as
+ * neighbor of j. If both were found the larger similarity is stored, so the
+ * file does not depend on the order in which the rows are computed. All
+ * other elements are 0, the diagonal is not stored.
+ *
+ * Only the upper triangle is stored, so the similarity must be symmetric.
+ * For an asymmetric similarity, e.g. the MCSS QueryRatio, use
+ * {@link MultiNNMatrixFinderCOOConsumer}, which keeps both directions.
+ *
+ * The file contains:
+ * <pre>
+ * long    magic number "AENNTRI" + version
+ * int     number of rows and columns n
+ * int     0, reserved
+ * float[n*(n-1)/2]  rows of the strict upper triangle,
+ *                   element (i,j) is at index i*(2n-i-1)/2 + j-i-1
+ * </pre>
+ *
+ * @author albertgo
+ */
+public class MultiNNMatrixFinderTriangleConsumer extends MultiNNMatrixFinderBinaryConsumer
+{  public static final int HEADER_SIZE = 16;
+   private static final long MAGIC = 0x41454E4E54524901L;
+   private static final int DEFAULT_CHUNK_SHIFT = 30;
+
+   /** log2 of the bytes per mapped chunk, >= 2 so that no float spans two chunks */
+   private final int chunkShift;
+   private final long chunkSize;
+   private RandomAccessFile raf;
+   private MappedByteBuffer[] chunks;
+
+   public MultiNNMatrixFinderTriangleConsumer(String outFile, String idTag)
+   {  this(outFile, idTag, DEFAULT_CHUNK_SHIFT);
+   }
+
+   /**
+    * @param chunkShift log2 of the size of the mapped chunks in bytes.
+    */
+   MultiNNMatrixFinderTriangleConsumer(String outFile, String idTag, int chunkShift)
+   {  super(outFile, idTag);
+      if( chunkShift < 2 || chunkShift > 30 )
+         throw new IllegalArgumentException("chunkShift must be in [2,30]: " + chunkShift);
+      this.chunkShift = chunkShift;
+      this.chunkSize = 1L << chunkShift;
+   }
+
+   /** @return the index in the float array of element (i,j) with i &lt; j */
+   public static long getElementIndex(int n, int i, int j)
+   {  return (long)i * (2L*n - i - 1) / 2 + (j - i - 1);
+   }
+
+   @Override
+   protected void open(int n) throws IOException
+   {  raf = new RandomAccessFile(outFile, "rw");
+      raf.setLength(0);
+      raf.writeLong(MAGIC);
+      raf.writeInt(n);
+      raf.writeInt(0);
+      long length = HEADER_SIZE + 4L * getElementIndex(n, n-1, n);
+      raf.setLength(length);
+
+      FileChannel channel = raf.getChannel();
+      chunks = new MappedByteBuffer[(int)((length + chunkSize - 1) >> chunkShift)];
+      for(int c=0; c<chunks.length; c++)
+      {  long start = (long)c << chunkShift;
+         chunks[c] = channel.map(FileChannel.MapMode.READ_WRITE, start,
+                                 Math.min(chunkSize, length - start));
+      }
+   }
+
+   /**
+    * Rows (i,j) and (j,i) go to the same element, which keeps the larger
+    * similarity. Synchronized as the read and the write of an element must
+    * not be interleaved with another row.
+    */
+   @Override
+   protected synchronized void writeRow(int baseMolIdx, NeighborHeap nnList)
+   {  for(int i=0; i<nnList.size(); i++)
+      {  int idx = nnList.getIdx(i);
+         if( idx == baseMolIdx ) continue;
+
+         long pos = idx > baseMolIdx ? getElementIndex(matrixSize, baseMolIdx, idx)
+                                     : getElementIndex(matrixSize, idx, baseMolIdx);
+         pos = HEADER_SIZE + 4L * pos;
+         MappedByteBuffer chunk = chunks[(int)(pos >> chunkShift)];
+         int off = (int)(pos & (chunkSize - 1));
+
+         float sim = (float)nnList.getSim(i);
+         if( chunk.getFloat(off) < sim )
+            chunk.putFloat(off, sim);
+      }
+   }
+
+   @Override
+   protected synchronized void closeFile() throws IOException
+   {  for(MappedByteBuffer chunk : chunks)
+         chunk.force();
+      chunks = null;
+      raf.close();
+   }
+}
@@ -18,7 +18,6 @@ Contact: aestelSW@gmail.com
 package com.aestel.chemistry.openEye.nn;
 
 import java.io.IOException;
-import java.util.TreeSet;
 
 import openeye.oechem.OEMolBase;
 import openeye.oechem.oechem;
@@ -49,18 +48,18 @@ public class MultiNNMatrixFinderVTConsumer implements MultiNNMatrixFinderConsume
 
 
    /* (non-Javadoc)
-    * @see MultiNNMatrixFinderConsumerInterface#consumeResult(openeye.oechem.OEMolBase, java.util.TreeSet)
+    * @see MultiNNMatrixFinderConsumerInterface#consumeResult(openeye.oechem.OEMolBase, int, NeighborHeap, int)
     * countSimilar is ignored for the VTab output
     */
    @Override
-   public void consumeResult(OEMolBase mol, int baseMolIdx, TreeSet<Neighbor> nnSet, int countSimilar)
+   public void consumeResult(OEMolBase mol, int baseMolIdx, NeighborHeap nnList, int countSimilar)
    throws InterruptedException
-   {  for(Neighbor n : nnSet)
+   {  for(int i=0; i<nnList.size(); i++)
       {  String id1 = idTag == null ? 
                           OETools.molToCanSmi(mol, true)
                         : oechem.OEGetSDData(mol, idTag);
-         String id2 = Integer.toString(n.neighBorIdx);
-         out.println(id1 + '\t' + id2 + '\t' + String.format("%.4f",n.neighBorSim));
+         String id2 = Integer.toString(nnList.getIdx(i));
+         out.println(id1 + '\t' + id2 + '\t' + String.format("%.4f",nnList.getSim(i)));
       }
    }
 
@@ -0,0 +1,75 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye.nn;
+
+import com.aestel.chemistry.openEye.SimilarityCollector;
+
+/**
+ * Keeps track of the nearest neighbor and of the number of neighbors with
+ * a similarity above a threshold.
+ *
+ * Ties are resolved in favor of the lower index so that the result does not
+ * depend on the order in which the neighbors are reported.
+ *
+ * @author albertgo
+ */
+class NNCollector implements SimilarityCollector
+{  private final double countSimilarityTheshold;
+   private final int excludeIdx;
+   private double maxSim = -1;
+   private int nnIdx = -1;
+   private int countSim = 0;
+
+   /**
+    * @param countSimilarityTheshold count neighbors with similarity above this threshold
+    * @param excludeIdx ignore neighbor with this index, -1 to include all
+    */
+   NNCollector(double countSimilarityTheshold, int excludeIdx)
+   {  this.countSimilarityTheshold = countSimilarityTheshold;
+      this.excludeIdx = excludeIdx;
+   }
+
+   @Override
+   public void collect(int idx, double sim)
+   {  if( idx == excludeIdx ) return;
+
+      if( sim > maxSim || (sim == maxSim && idx < nnIdx) )
+      {  maxSim=sim;
+         nnIdx = idx;
+      }
+
+      if( sim >= countSimilarityTheshold ) countSim++;
+   }
+
+   @Override
+   public double getMinSimilarity()
+   {  return Math.min(maxSim, countSimilarityTheshold);
+   }
+
+   double getMaxSim()
+   {  return maxSim;
+   }
+
+   int getNNIdx()
+   {  return nnIdx;
+   }
+
+   int getCountSim()
+   {  return countSim;
+   }
+}
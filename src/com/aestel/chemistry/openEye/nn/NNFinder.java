@@ -22,6 +22,7 @@ import java.util.concurrent.ExecutorCompletionService;
 
 import openeye.oechem.*;
 
+import com.aestel.chemistry.openEye.MultiThreadBatchAlgorithm;
 import com.aestel.chemistry.openEye.SimComparator;
 import com.aestel.chemistry.openEye.SimComparatorFactory;
 /**
@@ -29,6 +30,7 @@ import com.aestel.chemistry.openEye.SimComparatorFactory;
  * @param <Y> comparator
  */
 public class NNFinder<T, Y extends SimComparator<T>> extends AbstractNNFinder<T, Y>
+                                                     implements MultiThreadBatchAlgorithm<NNFinder.Result>
 {  final oemolithread ifs;
    final NNFinderConsumerInterface consumer;
    private final double countSimilarityTheshold;
@@ -60,6 +62,46 @@ public class NNFinder<T, Y extends SimComparator<T>> extends AbstractNNFinder<T,
    {  completionService.submit(new NNFind());
    }
 
+   @Override
+   public boolean read(OEMolBase mol)
+   {  return oechem.OEReadMolecule(ifs, mol);
+   }
+
+   @Override
+   public Result process(OEMolBase mol)
+   {  Y comp = comparableFact.createComparator(comparableFact.createComparable(mol));
+
+      // NNSearch
+      NNCollector nnCollector = new NNCollector(countSimilarityTheshold, -1);
+      reference.search(comp, nnCollector);
+      comp.close();
+
+      return new Result(nnCollector.getMaxSim(), nnCollector.getNNIdx(), nnCollector.getCountSim());
+   }
+
+   @Override
+   public void consume(OEMolBase mol, Result res)
+   {  String id = null;
+      if(referenceIds.size() > res.nnIdx && res.nnIdx != -1) id = referenceIds.get(res.nnIdx);
+
+      consumer.consumeResult(mol, res.maxSim, res.nnIdx, id, res.countSim);
+   }
+
+   /**
+    * Nearest neighbor of one input molecule.
+    */
+   public static class Result
+   {  final double maxSim;
+      final int nnIdx;
+      final int countSim;
+
+      Result(double maxSim, int nnIdx, int countSim)
+      {  this.maxSim = maxSim;
+         this.nnIdx = nnIdx;
+         this.countSim = countSim;
+      }
+   }
+
    /**
     * Inner class for multi threaded comparison.
     * Read one moleucle form ifs and comare to all references.
@@ -70,34 +112,14 @@ public class NNFinder<T, Y extends SimComparator<T>> extends AbstractNNFinder<T,
    {  @Override
       public Boolean call()
       {  OEMolBase mol = new OEGraphMol();
-         if( ! oechem.OEReadMolecule(ifs, mol) )
+         if( ! read(mol) )
          {  mol.delete();
             return Boolean.FALSE;
          }
 
-         int countSim = 0;
-         Y comp = comparableFact.createComparator(comparableFact.createComparable(mol));
-         double maxSim = -1;
-         int nnIdx = -1;
-         // NNSearch
-         for( int i=0; i< reference.size(); i++)
-         {  Y c = reference.get(i);
-            double sim = c.similarity(comp);
-            if( sim > maxSim )
-            {  maxSim=sim;
-               nnIdx = i;
-            }
-
-            if( sim >= countSimilarityTheshold ) countSim++;
-         }
-
-         String id = null;
-         if(referenceIds.size() > nnIdx && nnIdx != -1) id = referenceIds.get(nnIdx);
-
-         consumer.consumeResult(mol, maxSim, nnIdx, id, countSim);
+         consume(mol, process(mol));
 
          mol.delete();
-         comp.close();
 
          return Boolean.TRUE;
       }
@@ -60,34 +60,20 @@ public class NNMatrixFinder<T, Y extends SimComparator<T>> extends AbstractNNMat
     *
     */
    class NNMatrixFind implements Callable<Boolean>
-   {  final Y baseMol;
-      final int baseMolIdx;
+   {  final int baseMolIdx;
 
       NNMatrixFind(int baseMolIdx)
-      {  this.baseMol = comparators.get(baseMolIdx);
-         this.baseMolIdx = baseMolIdx;
+      {  this.baseMolIdx = baseMolIdx;
       }
 
       @Override
       public Boolean call()
-      {  double maxSim = -1;
-         int nnIdx = -1;
-         int countSimilar = 0;
-
-         // NNSearch
-         for( int i=0; i< comparators.size(); i++)
-         {  if( i == baseMolIdx ) continue;
-
-            Y c = comparators.get(i);
-            double sim = baseMol.similarity(c);
-            if( sim > maxSim )
-            {  maxSim=sim;
-               nnIdx = i;
-            }
-
-            if( sim >= countSimilarityTheshold )
-               countSimilar++;
-         }
+      {  // NNSearch
+         NNCollector nnCollector = new NNCollector(countSimilarityTheshold, baseMolIdx);
+         comparators.search(baseMolIdx, nnCollector);
+         double maxSim = nnCollector.getMaxSim();
+         int nnIdx = nnCollector.getNNIdx();
+         int countSimilar = nnCollector.getCountSim();
 
          if( nnIdx  != -1 )
             nearNeighbors[baseMolIdx] = new Neighbor(nnIdx, maxSim);
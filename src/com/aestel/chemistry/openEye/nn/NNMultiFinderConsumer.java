@@ -18,7 +18,6 @@ Contact: aestelSW@gmail.com
 package com.aestel.chemistry.openEye.nn;
 
 import java.util.List;
-import java.util.TreeSet;
 
 import openeye.oechem.OEMolBase;
 import openeye.oechem.oechem;
@@ -41,20 +40,20 @@ public class NNMultiFinderConsumer implements NNMultiFinderConsumerInterface
    }
 
 
-   public void consumeResult(OEMolBase mol, TreeSet<Neighbor> nnSet, List<String> referenceIds, int countSim)
-   {  StringBuilder sb = new StringBuilder(nnSet.size()*9);
-      if( nnSet.size() > 0)
-      {  for(Neighbor n : nnSet)
-         {  sb.append(String.format("%.4f,",n.neighBorSim));
+   public void consumeResult(OEMolBase mol, NeighborHeap nnList, List<String> referenceIds, int countSim)
+   {  StringBuilder sb = new StringBuilder(nnList.size()*9);
+      if( nnList.size() > 0)
+      {  for(int i=0; i<nnList.size(); i++)
+         {  sb.append(String.format("%.4f,",nnList.getSim(i)));
          }
          sb.setLength(sb.length()-1);
       }
       oechem.OESetSDData(mol, "NNSim", sb.toString());
 
       sb.setLength(0);
-      if( nnSet.size() > 0)
-      {  for(Neighbor n : nnSet)
-         {  sb.append(n.neighBorIdx).append(',');
+      if( nnList.size() > 0)
+      {  for(int i=0; i<nnList.size(); i++)
+         {  sb.append(nnList.getIdx(i)).append(',');
          }
          sb.setLength(sb.length()-1);
       }
@@ -62,9 +61,9 @@ public class NNMultiFinderConsumer implements NNMultiFinderConsumerInterface
 
       if( printIds )
       {  sb.setLength(0);
-         if( nnSet.size() > 0)
-         {  for(Neighbor n : nnSet)
-            {  sb.append(referenceIds.get(n.neighBorIdx)).append(',');
+         if( nnList.size() > 0)
+         {  for(int i=0; i<nnList.size(); i++)
+            {  sb.append(referenceIds.get(nnList.getIdx(i))).append(',');
             }
             sb.setLength(sb.length()-1);
          }
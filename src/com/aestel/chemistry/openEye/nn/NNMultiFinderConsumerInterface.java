@@ -18,7 +18,6 @@ Contact: aestelSW@gmail.com
 package com.aestel.chemistry.openEye.nn;
 
 import java.util.List;
-import java.util.TreeSet;
 
 import openeye.oechem.OEMolBase;
 
@@ -33,12 +32,13 @@ public interface NNMultiFinderConsumerInterface
    /**
     * 
     * @param mol query
-    * @param nnSet set of nearest neighbors
+    * @param nnList nearest neighbors sorted by decreasing similarity,
+    *        only valid during this call
     * @param referenceIds ids of nearest neighbors
     * @param countSim number of compounds with similarity above threshold
     * @throws InterruptedException
     */
-   public abstract void consumeResult(OEMolBase mol, TreeSet<Neighbor> nnSet,
+   public abstract void consumeResult(OEMolBase mol, NeighborHeap nnList,
                         List<String> referenceIds, int countSim) throws InterruptedException;
 
    public abstract void close();
@@ -18,7 +18,6 @@ Contact: aestelSW@gmail.com
 package com.aestel.chemistry.openEye.nn;
 
 import java.util.List;
-import java.util.TreeSet;
 
 import openeye.oechem.OEMolBase;
 import openeye.oechem.oechem;
@@ -44,18 +43,18 @@ public class NNMultiFinderDuplConsumer implements NNMultiFinderConsumerInterface
    }
 
    
-   public void consumeResult(OEMolBase mol, TreeSet<Neighbor> nnSet, List<String> referenceIds, int countSim)
+   public void consumeResult(OEMolBase mol, NeighborHeap nnList, List<String> referenceIds, int countSim)
    {  if( countSimilarityTheshold != null )
          oechem.OESetSDData(mol, "NNCount_"+countSimilarityTheshold, Integer.toString(countSim));
 
-      if( nnSet.size() > 0)
+      if( nnList.size() > 0)
       {  int count=0;
-         for(Neighbor n : nnSet)
-         {  oechem.OESetSDData(mol, "NNSim", String.format("%.4f",n.neighBorSim));
-            oechem.OESetSDData(mol, "NNIdx", Integer.toString(n.neighBorIdx));
+         for(int i=0; i<nnList.size(); i++)
+         {  oechem.OESetSDData(mol, "NNSim", String.format("%.4f",nnList.getSim(i)));
+            oechem.OESetSDData(mol, "NNIdx", Integer.toString(nnList.getIdx(i)));
             oechem.OESetSDData(mol, "NNMatchRank", Integer.toString(++count));
             if( printIds )
-               oechem.OESetSDData(mol, "NNId", referenceIds.get(n.neighBorIdx));
+               oechem.OESetSDData(mol, "NNId", referenceIds.get(nnList.getIdx(i)));
 
             oechem.OEWriteMolecule(ofs, mol);
          }
@@ -19,7 +19,6 @@ package com.aestel.chemistry.openEye.nn;
 
 import java.io.IOException;
 import java.util.List;
-import java.util.TreeSet;
 
 import openeye.oechem.OEMolBase;
 import openeye.oechem.oechem;
@@ -55,19 +54,19 @@ public class NNMultiFinderVTConsumer implements NNMultiFinderConsumerInterface
     * CountSim is ignored for VTab output
     */
    @Override
-   public void consumeResult(OEMolBase mol, TreeSet<Neighbor> nnSet, List<String> referenceIds, int countSim)
+   public void consumeResult(OEMolBase mol, NeighborHeap nnList, List<String> referenceIds, int countSim)
       throws InterruptedException
-   {  for(Neighbor n : nnSet)
+   {  for(int i=0; i<nnList.size(); i++)
       {  String id1 = idTag == null ?
                           OETools.molToCanSmi(mol, true)
                         : oechem.OEGetSDData(mol, idTag);
          String id2;
          if( ! printIds )
-            id2  = Integer.toString(n.neighBorIdx);
+            id2  = Integer.toString(nnList.getIdx(i));
          else
-            id2 = referenceIds.get(n.neighBorIdx);
+            id2 = referenceIds.get(nnList.getIdx(i));
 
-         out.println(id1 + '\t' + id2 + '\t' + String.format("%.4f",n.neighBorSim));
+         out.println(id1 + '\t' + id2 + '\t' + String.format("%.4f",nnList.getSim(i)));
       }
    }
 
@@ -0,0 +1,192 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+
+package com.aestel.chemistry.openEye.nn;
+
+import java.util.Arrays;
+
+/**
+ * Bounded heap of neighbors kept in primitive arrays.
+ *
+ * Neighbors are ordered as in {@link Neighbor#compareTo(Neighbor)}: by descending
+ * similarity and ascending index. The root of the heap is the worst neighbor
+ * so that it can be replaced when a better one is added to a full heap.
+ *
+ * After calling {@link #sort()} the neighbors can be accessed in order
+ * from best to worst using {@link #getIdx(int)} and {@link #getSim(int)}.
+ * A heap may be reused after calling {@link #clear()}.
+ *
+ * @author albertgo
+ */
+class NeighborHeap
+{  private final int capacity;
+   private int[] idxs;
+   private double[] sims;
+   private int size;
+   private boolean sorted;
+
+   /**
+    * @param capacity maximum number of neighbors kept.
+    */
+   NeighborHeap(int capacity)
+   {  this.capacity = capacity;
+      int initialSize = Math.max(1, Math.min(capacity, 16));
+      this.idxs = new int[initialSize];
+      this.sims = new double[initialSize];
+      this.size = 0;
+      this.sorted = false;
+   }
+
+   private NeighborHeap(int[] idxs, double[] sims, int size, boolean sorted)
+   {  this.capacity = size;
+      this.idxs = Arrays.copyOf(idxs, Math.max(1, size));
+      this.sims = Arrays.copyOf(sims, Math.max(1, size));
+      this.size = size;
+      this.sorted = sorted;
+   }
+
+   /**
+    * @return sorted copy of this heap which stays valid when this heap is reused.
+    */
+   NeighborHeap copy()
+   {  sort();
+      return new NeighborHeap(idxs, sims, size, true);
+   }
+
+   void clear()
+   {  size = 0;
+      sorted = false;
+   }
+
+   int size()
+   {  return size;
+   }
+
+   boolean isFull()
+   {  return size >= capacity;
+   }
+
+   /**
+    * @return similarity of the worst neighbor, only valid if size() > 0.
+    */
+   double getWorstSim()
+   {  assert ! sorted;
+      return sims[0];
+   }
+
+   /**
+    * Add neighbor if the heap is not full or if it is better than the worst
+    * neighbor which is then removed.
+    */
+   void add(int idx, double sim)
+   {  assert ! sorted;
+
+      if( size < capacity )
+      {  if( size == idxs.length )
+         {  int newLen = (int)Math.min(capacity, 2L * size);
+            idxs = Arrays.copyOf(idxs, newLen);
+            sims = Arrays.copyOf(sims, newLen);
+         }
+         siftUp(size++, idx, sim);
+
+      } else if( compare(idx, sim, idxs[0], sims[0]) < 0 )
+      {  siftDown(0, idx, sim);
+      }
+   }
+
+   /**
+    * Order the neighbors from best to worst, no neighbors may be added afterwards.
+    */
+   void sort()
+   {  if( sorted ) return;
+
+      // heap sort: move the worst to the end
+      for( int last = size-1; last > 0; last-- )
+      {  int idx = idxs[last];
+         double sim = sims[last];
+         idxs[last] = idxs[0];
+         sims[last] = sims[0];
+         siftDown(0, last, idx, sim);
+      }
+      sorted = true;
+   }
+
+   /**
+    * @return index of neighbor i, only valid after calling {@link #sort()}.
+    */
+   int getIdx(int i)
+   {  assert sorted;
+      return idxs[i];
+   }
+
+   /**
+    * @return similarity of neighbor i, only valid after calling {@link #sort()}.
+    */
+   double getSim(int i)
+   {  assert sorted;
+      return sims[i];
+   }
+
+   /**
+    * Same order as {@link Neighbor#compareTo(Neighbor)}.
+    * @return positive if neighbor 1 is worse than neighbor 2.
+    */
+   private static int compare(int idx1, double sim1, int idx2, double sim2)
+   {  int v = Double.compare(sim2, sim1);
+      if( v == 0 )
+         return idx1 - idx2;
+      return v;
+   }
+
+   private void siftUp(int pos, int idx, double sim)
+   {  while( pos > 0 )
+      {  int parent = (pos - 1) >>> 1;
+         if( compare(idx, sim, idxs[parent], sims[parent]) <= 0 ) break;
+
+         idxs[pos] = idxs[parent];
+         sims[pos] = sims[parent];
+         pos = parent;
+      }
+      idxs[pos] = idx;
+      sims[pos] = sim;
+   }
+
+   private void siftDown(int pos, int idx, double sim)
+   {  siftDown(pos, size, idx, sim);
+   }
+
+   /**
+    * Place neighbor at pos or below in the heap consisting of the first len elements.
+    */
+   private void siftDown(int pos, int len, int idx, double sim)
+   {  int half = len >>> 1;
+      while( pos < half )
+      {  int child = 2 * pos + 1;
+         int right = child + 1;
+         if( right < len && compare(idxs[right], sims[right], idxs[child], sims[child]) > 0 )
+            child = right;
+         if( compare(idx, sim, idxs[child], sims[child]) >= 0 ) break;
+
+         idxs[pos] = idxs[child];
+         sims[pos] = sims[child];
+         pos = child;
+      }
+      idxs[pos] = idx;
+      sims[pos] = sim;
+   }
+}
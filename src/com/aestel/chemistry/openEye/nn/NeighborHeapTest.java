@@ -0,0 +1,65 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+
+package com.aestel.chemistry.openEye.nn;
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.testng.annotations.Test;
+
+public class NeighborHeapTest
+{
+   @Test()
+   public void testSameAsTreeSet()
+   {  Random rand = new Random(42);
+      NeighborHeap heap = new NeighborHeap(7);
+
+      for(int run=0; run<20; run++)
+      {  heap.clear();
+         TreeSet<Neighbor> nnSet = new TreeSet<Neighbor>();
+
+         int n = rand.nextInt(40);
+         for(int idx=0; idx<n; idx++)
+         {  // few distinct values to test tie breaking
+            double sim = rand.nextInt(5) / 4D;
+            heap.add(idx, sim);
+
+            Neighbor nb = new Neighbor(idx, sim);
+            if( nnSet.size() < 7 )
+            {  nnSet.add(nb);
+            } else if( nb.compareTo(nnSet.last()) < 0 )
+            {  nnSet.pollLast();
+               nnSet.add(nb);
+            }
+            assert heap.isFull() == (nnSet.size() == 7);
+            assert heap.getWorstSim() == nnSet.last().neighBorSim;
+         }
+
+         heap.sort();
+         assert heap.size() == nnSet.size();
+         Iterator<Neighbor> it = nnSet.iterator();
+         for(int i=0; i<heap.size(); i++)
+         {  Neighbor nb = it.next();
+            assert heap.getIdx(i) == nb.neighBorIdx : "run " + run + " pos " + i;
+            assert heap.getSim(i) == nb.neighBorSim : "run " + run + " pos " + i;
+         }
+      }
+   }
+}
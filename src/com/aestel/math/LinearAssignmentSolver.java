@@ -0,0 +1,156 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.math;
+
+import java.util.Arrays;
+
+/**
+ * Solve the rectangular linear assignment problem: assign each of nRows rows
+ * to a distinct one of nCols >= nRows columns such that the sum of the costs
+ * is minimal.
+ *
+ * This uses the shortest augmenting path algorithm with row and column
+ * potentials (Jonker-Volgenant style, O(nRows^2 * nCols)). Contrary to
+ * {@link HungarianAlgorithm} it does not need a square matrix padded with
+ * dummy rows and it keeps its work arrays between calls. An instance is
+ * therefore not thread safe, use one instance per thread.
+ *
+ * @author albertgo
+ *
+ */
+public class LinearAssignmentSolver
+{  private double[] u = new double[0];
+   private double[] v = new double[0];
+   private double[] minV = new double[0];
+   private int[] colToRow = new int[0];
+   private int[] way = new int[0];
+   private boolean[] used = new boolean[0];
+
+   public LinearAssignmentSolver()
+   {
+   }
+
+   /**
+    * Compute the assignment with minimum total cost.
+    *
+    * @param cost row major cost matrix of nRows x nCols, cost[r*nCols+c].
+    * @param rowToCol filled with the column assigned to each row, must have
+    *        at least nRows elements.
+    * @return the sum of the costs of the assignment.
+    */
+   public double solve(double[] cost, int nRows, int nCols, int[] rowToCol)
+   {  if( nRows > nCols )
+         throw new Error("More rows than columns: " + nRows + " > " + nCols);
+      ensureCapacity(nCols+1);
+
+      // 1 based indexes, column 0 is a virtual column used as augmenting start
+      double[] u = this.u;
+      double[] v = this.v;
+      double[] minV = this.minV;
+      int[] colToRow = this.colToRow;
+      int[] way = this.way;
+      boolean[] used = this.used;
+      Arrays.fill(u, 0, nRows+1, 0D);
+      Arrays.fill(v, 0, nCols+1, 0D);
+      Arrays.fill(colToRow, 0, nCols+1, 0);
+
+      for(int row=1; row<=nRows; row++)
+      {  colToRow[0] = row;
+         int col0 = 0;
+         Arrays.fill(minV, 0, nCols+1, Double.POSITIVE_INFINITY);
+         Arrays.fill(used, 0, nCols+1, false);
+
+         // grow alternating tree until a free column is reached
+         do
+         {  used[col0] = true;
+            int row0 = colToRow[col0];
+            int rowOffset = (row0-1)*nCols - 1;
+            double uRow0 = u[row0];
+            double delta = Double.POSITIVE_INFINITY;
+            int col1 = 0;
+            for(int col=1; col<=nCols; col++)
+            {  if( used[col] ) continue;
+
+               double cur = cost[rowOffset+col] - uRow0 - v[col];
+               if( cur < minV[col] )
+               {  minV[col] = cur;
+                  way[col] = col0;
+               }
+               if( minV[col] < delta )
+               {  delta = minV[col];
+                  col1 = col;
+               }
+            }
+            for(int col=0; col<=nCols; col++)
+            {  if( used[col] )
+               {  u[colToRow[col]] += delta;
+                  v[col] -= delta;
+               } else
+               {  minV[col] -= delta;
+               }
+            }
+            col0 = col1;
+         } while( colToRow[col0] != 0 );
+
+         // flip the augmenting path
+         do
+         {  int col1 = way[col0];
+            colToRow[col0] = colToRow[col1];
+            col0 = col1;
+         } while( col0 != 0 );
+      }
+
+      double sum = 0D;
+      for(int col=1; col<=nCols; col++)
+      {  int row = colToRow[col];
+         if( row == 0 ) continue;
+
+         rowToCol[row-1] = col-1;
+         sum += cost[(row-1)*nCols + col-1];
+      }
+      return sum;
+   }
+
+   /**
+    * Convenience method for a rectangular double[nRows][nCols] matrix.
+    *
+    * @return array with the column assigned to each row.
+    */
+   public int[] solve(double[][] cost)
+   {  int nRows = cost.length;
+      int nCols = nRows == 0 ? 0 : cost[0].length;
+      double[] flat = new double[nRows*nCols];
+      for(int r=0; r<nRows; r++)
+         System.arraycopy(cost[r], 0, flat, r*nCols, nCols);
+
+      int[] rowToCol = new int[nRows];
+      solve(flat, nRows, nCols, rowToCol);
+      return rowToCol;
+   }
+
+   private void ensureCapacity(int size)
+   {  if( colToRow.length >= size ) return;
+
+      u = new double[size];
+      v = new double[size];
+      minV = new double[size];
+      colToRow = new int[size];
+      way = new int[size];
+      used = new boolean[size];
+   }
+}
@@ -0,0 +1,81 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+
+package com.aestel.math;
+
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+public class LinearAssignmentSolverTest
+{
+   @Test
+   public void testSmall()
+   {  double[][] cost = { { 4, 1, 3 },
+                          { 2, 0, 5 },
+                          { 3, 2, 2 } };
+      int[] assign = new LinearAssignmentSolver().solve(cost);
+      assert assign[0] == 1;
+      assert assign[1] == 0;
+      assert assign[2] == 2;
+   }
+
+   @Test
+   public void testAgainstHungarian()
+   {  Random rand = new Random(4711);
+      LinearAssignmentSolver solver = new LinearAssignmentSolver();
+
+      for(int t=0; t<200; t++)
+      {  int nRows = 1 + rand.nextInt(20);
+         int nCols = nRows + rand.nextInt(5);
+
+         // pad to square matrix as done previously in AAPathComparator4
+         double[][] square = new double[nCols][nCols];
+         double[] flat = new double[nRows*nCols];
+         for(int r=0; r<nCols; r++)
+            for(int c=0; c<nCols; c++)
+            {  if( r < nRows )
+               {  // coarse values to create ties
+                  square[r][c] = rand.nextInt(10) / 10D;
+                  flat[r*nCols+c] = square[r][c];
+               } else
+               {  square[r][c] = 2D;
+               }
+            }
+
+         int[][] hg = HungarianAlgorithm.hgAlgorithm(square, "min");
+         double hgSum = 0D;
+         for(int r=0; r<nRows; r++)
+            hgSum += square[hg[r][0]][hg[r][1]];
+
+         int[] rowToCol = new int[nRows];
+         double sum = solver.solve(flat, nRows, nCols, rowToCol);
+
+         assert Math.abs(sum - hgSum) < 1e-9 : sum + " != " + hgSum;
+
+         boolean[] colUsed = new boolean[nCols];
+         double check = 0D;
+         for(int r=0; r<nRows; r++)
+         {  assert ! colUsed[rowToCol[r]];
+            colUsed[rowToCol[r]] = true;
+            check += flat[r*nCols+rowToCol[r]];
+         }
+         assert Math.abs(sum - check) < 1e-9;
+      }
+   }
+}
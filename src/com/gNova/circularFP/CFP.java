@@ -18,11 +18,17 @@
 package com.gNova.circularFP;
 
 import java.util.*;
-import java.util.Map.Entry;
 
 import openeye.oechem.*;
 
 /**
+ * Extended connectivity (circular) fingerprints following Rogers &amp; Hahn.
+ *
+ * The atom identifiers are kept in int arrays and the counts of the
+ * identifiers in an {@link IntIntHashMap}, the arrays are reused for each
+ * molecule so an instance should be reused but not shared between threads.
+ * The results are identical to the former implementation based on boxed
+ * Integer collections including the iteration order of {@link #getCounts(int)}.
  *
  * @author tjodonnell
  *
@@ -30,8 +36,10 @@ import openeye.oechem.*;
 public class CFP
 {  private final boolean debug;
 
-   private final HashMap<Integer, Integer> fp;
-   private final List<BondIdxPerAtom> bondIdxListsPerLevel = new ArrayList<BondIdxPerAtom>();
+   /** count of each atom identifier in insertion order */
+   private final IntIntHashMap fp = new IntIntHashMap(64);
+   /** capacity the former HashMap used for fp would have, 0 if never used */
+   private int fpMapCapacity = 0;
 
    int maxAtomIdx;
 
@@ -47,9 +55,43 @@ public class CFP
    private List<String>Smarts;
    private OESubSearch[] functionalQuery;
 
+   /*
+    * Snapshot of the molecule taken at the start of generate().
+    * Position is the position of an atom in the iteration of mol.GetAtoms(),
+    * the identifiers are stored by position but looked up by atom index as
+    * in the original implementation.
+    */
+   private int nAtoms;
+   /** atom index by position */
+   private int[] atIdxAtPos = new int[64];
+   /** hydrogen flag by position */
+   private boolean[] hydrogenAtPos = new boolean[64];
+   /** hydrogen flag by atom index, true for unused atom indexes */
+   private boolean[] hydrogenByIdx = new boolean[64];
+   /** neighbors of atom index i are in nbrIdx[nbrStart[i]] to nbrIdx[nbrEnd[i]-1] */
+   private int[] nbrStart = new int[64];
+   private int[] nbrEnd = new int[64];
+   private int[] nbrIdx = new int[128];
+   private int[] nbrBondIdx = new int[128];
+   /** bond order 1-3 or 4 for aromatic */
+   private int[] nbrBondOrder = new int[128];
+   private int nBondWords;
+
+   /** identifiers of the previous and current level by position */
+   private int[] oldAtIds = new int[64];
+   private int[] newAtIds = new int[64];
+
+   /** buffer for the values hashed into one identifier */
+   private int[] hashBuf = new int[32];
+   /** atom identifiers of the neighbors by bond order 1-4 */
+   private final int[][] bondTypeIds = new int[4][8];
+   private final int[] nBondTypeIds = new int[4];
+
+   /** fragment bonds for each level */
+   private final List<BondSets> bondSetsPerLevel = new ArrayList<BondSets>();
+
    public CFP(boolean debug)
    {  this.debug = debug;
-      this.fp  = new HashMap<Integer,Integer>();
    }
 
    public void initializeSmarts(List<String>smarts)
@@ -72,25 +114,75 @@ public class CFP
    {  this.fp.clear();
    }
 
-/*
-   private int hash(List<Integer>alist) {
-   return alist.hashCode();
-   }
-*/
-   private int hash(List<Integer> value)
-   {
-      if (value == null)
-         return 0;
-
-      long aprime = 2868947;
+   private static int hash(int[] value, int len)
+   {  long aprime = 2868947;
       long result = 0;
-      for (int v : value)
-      {  result = result*aprime + v;
+      for (int i=0; i<len; i++)
+      {  result = result*aprime + value[i];
       }
       return (int)result;
-  }
+   }
+
+   private static String toString(int[] value, int len)
+   {  return Arrays.toString(Arrays.copyOf(value, len));
+   }
+
+   /**
+    * Read atoms and bonds of mol into the snapshot arrays.
+    */
+   private void readMolecule(OEMolBase mol)
+   {  maxAtomIdx = mol.GetMaxAtomIdx();
+      int nIdx = maxAtomIdx+1;
+      if( hydrogenByIdx.length < nIdx )
+      {  hydrogenByIdx = new boolean[nIdx];
+         nbrStart = new int[nIdx];
+         nbrEnd = new int[nIdx];
+      }
+      Arrays.fill(hydrogenByIdx, 0, nIdx, true);
+      Arrays.fill(nbrStart, 0, nIdx, 0);
+      Arrays.fill(nbrEnd, 0, nIdx, 0);
+      nBondWords = (mol.GetMaxBondIdx() >> 6) + 1;
 
-   private List<Integer> initialFunctionalIdentifiers(OEGraphMol mol)
+      nAtoms = 0;
+      int nNbr = 0;
+      OEAtomBaseIter aIt = mol.GetAtoms();
+      while( aIt.hasNext() )
+      {  OEAtomBase atom = aIt.next();
+         if( nAtoms == atIdxAtPos.length )
+         {  atIdxAtPos = Arrays.copyOf(atIdxAtPos, nAtoms*2);
+            hydrogenAtPos = Arrays.copyOf(hydrogenAtPos, nAtoms*2);
+         }
+         int atIdx = atom.GetIdx();
+         boolean isH = atom.IsHydrogen();
+         atIdxAtPos[nAtoms] = atIdx;
+         hydrogenAtPos[nAtoms++] = isH;
+         hydrogenByIdx[atIdx] = isH;
+
+         nbrStart[atIdx] = nNbr;
+         OEBondBaseIter bit = atom.GetBonds();
+         while( bit.hasNext() )
+         {  OEBondBase bd = bit.next();
+            if( nNbr == nbrIdx.length )
+            {  nbrIdx = Arrays.copyOf(nbrIdx, nNbr*2);
+               nbrBondIdx = Arrays.copyOf(nbrBondIdx, nNbr*2);
+               nbrBondOrder = Arrays.copyOf(nbrBondOrder, nNbr*2);
+            }
+            nbrIdx[nNbr] = bd.GetNbr(atom).GetIdx();
+            nbrBondIdx[nNbr] = bd.GetIdx();
+            nbrBondOrder[nNbr++] = bd.IsAromatic() ? 4 : bd.GetOrder();
+         }
+         bit.delete();
+         nbrEnd[atIdx] = nNbr;
+      }
+      aIt.delete();
+
+      if( oldAtIds.length < Math.max(nAtoms, nIdx) )
+      {  oldAtIds = new int[Math.max(nAtoms, nIdx)];
+         newAtIds = new int[oldAtIds.length];
+      }
+   }
+
+   private void initialFunctionalIdentifiers(OEMolBase mol, int[] atomid)
    {  int[] aid =  new int[maxAtomIdx+1];
       int imatch = 0;
       //this.initializeSmarts(null);
@@ -126,187 +218,130 @@ public class CFP
          ++imatch;
       }
 
-      List<Integer> atomid = new ArrayList<Integer>(maxAtomIdx+1);
-      OEAtomBaseIter aIt = mol.GetAtoms();
-      while( aIt.hasNext() )
-      {  OEAtomBase atom = aIt.next();
-         if (atom.IsHydrogen())
-            atomid.add(null);
-         else
-            atomid.add(aid[atom.GetIdx()]);
+      for(int pos=0; pos<nAtoms; pos++)
+      {  if( ! hydrogenAtPos[pos] )
+            atomid[pos] = aid[atIdxAtPos[pos]];
       }
-      aIt.delete();
-
-      return atomid;
    }
 
-   private List<Integer> initialAtomicIdentifiers(OEGraphMol mol)
-   {
-      List<Integer> atomid = new ArrayList<Integer>(maxAtomIdx+1);
-      List<Integer> afp = new ArrayList<Integer>();
+   private void initialAtomicIdentifiers(OEMolBase mol, int[] atomid)
+   {  int[] afp = hashBuf;
       int i = 0;
+      int pos = 0;
       OEAtomBaseIter aIt = mol.GetAtoms();
       while( aIt.hasNext() )
       {  OEAtomBase atom = aIt.next();
 
-         afp.clear();
-         if (atom.IsHydrogen())
-         {  atomid.add(null);
-
-         } else
+         if (! atom.IsHydrogen())
          {  int hcount = (atom.GetExplicitHCount() + atom.GetImplicitHCount());
             int atnum = atom.GetAtomicNum();
-            afp.add((atom.IsInRing()   ? 1 : 0));
-            afp.add((atom.IsAromatic() ? 1 : 0));
+            afp[0] = atom.IsInRing()   ? 1 : 0;
+            afp[1] = atom.IsAromatic() ? 1 : 0;
             //afp.add(atom.GetExplicitDegree());
-            afp.add(atom.GetHvyDegree());
-            afp.add(atom.GetHvyValence());
-            afp.add(hcount);
-            afp.add(atom.GetFormalCharge());
-            afp.add(atom.GetAtomicNum());
-            afp.add(Math.round(oechem.OEGetDefaultMass(atnum)));
-   /*
-            int atomID;
-            atomID = (((((((
-                  (atom.IsInRing() ? 1 : 0)
-               *  2) + (atom.IsAromatic() ? 1 : 0)
-               *  5) + atom.GetExplicitDegree()
-               *  5) + atom.GetHvyValence()
-               *  4) + hcount
-               *  5) + (atom.GetFormalCharge()+2)
-               * 54) + atom.GetAtomicNum()
-               *128) + Math.round(oechem.OEGetDefaultMass(atnum));
-            atomid.add(atomID);
-            if (this.debug) System.err.println(atomID);
-   */
-            if (this.debug) System.err.println(++i+" "+afp+" "+this.hash(afp));
-            atomid.add(this.hash(afp));
+            afp[2] = atom.GetHvyDegree();
+            afp[3] = atom.GetHvyValence();
+            afp[4] = hcount;
+            afp[5] = atom.GetFormalCharge();
+            afp[6] = atom.GetAtomicNum();
+            afp[7] = Math.round(oechem.OEGetDefaultMass(atnum));
+
+            if (this.debug) System.err.println(++i+" "+toString(afp, 8)+" "+hash(afp, 8));
+            atomid[pos] = hash(afp, 8);
          }
+         pos++;
       }
       aIt.delete();
-
-      return atomid;
    }
 
    /**
     * Generate the FP0 initial identifier for each atom
     * @param mol
     * @param type
-    * @return list of atomIDs for derived only from atom and its bonds, one id
-    *         per atom index by atomIndex.
+    * @param atomid filled with one id per atom indexed by position, the
+    *        value for hydrogens is undefined.
     */
-   private List<Integer> initialAtomIdentifiers(OEGraphMol mol, String type)
-   {  List<Integer> atomid;
-      if (type.equals("functional"))
-      {  atomid = initialFunctionalIdentifiers(mol);
+   private void initialAtomIdentifiers(OEMolBase mol, String type, int[] atomid)
+   {  if (type.equals("functional"))
+      {  initialFunctionalIdentifiers(mol, atomid);
 
       } else
-      {  atomid = initialAtomicIdentifiers(mol);
+      {  initialAtomicIdentifiers(mol, atomid);
       }
-      return atomid;
    }
 
    /** Compute atom identifiers for this iteration (iter).
     * This follows description on page 744 of Rogers & Hahn paper.
-    * @param mol molecule object on which to compute next iterations atom identifiers.
-    * @param oldAtIds list of atom identifiers of previous iteration.
+    * @param oldIds atom identifiers of previous iteration.
+    * @param newIds filled with the atom identifiers of this iteration.
     * @param level cfp iteration number
-    * @return list of atom identifier for this iteration
     */
-   private List<Integer> iterativeAtomIdentifiers(OEGraphMol mol, List<Integer> oldAtIds, int level)
-   {  List<Integer> newAtIds = new ArrayList<Integer>(maxAtomIdx+1);
-
-      /** list of neighbor bondOrder AtIds to be hashed into new atID for current atom*/
-      List<Integer> oid = new ArrayList<Integer>();
-
-      /** bondid list of atomIdx by bond orders 0,1,2,4(aromatic) */
-      int single = 0;
-      int dble = 1;
-      int tripple = 2;
-      int arom = 3;
-
-      List<List<Integer>> bondid = new ArrayList<List<Integer>>();
-      bondid.add(new ArrayList<Integer>());
-      bondid.add(new ArrayList<Integer>());
-      bondid.add(new ArrayList<Integer>());
-      bondid.add(new ArrayList<Integer>());
-      int iatom = 0;
-
-      OEAtomBaseIter aIt = mol.GetAtoms();
-      while( aIt.hasNext() )
-      {  OEAtomBase atom = aIt.next();
-
-         if (atom.IsHydrogen())
-         {  newAtIds.add(null);
-            continue;
+   private void iterativeAtomIdentifiers(int[] oldIds, int[] newIds, int level)
+   {  int iatom = 0;
+
+      for(int pos=0; pos<nAtoms; pos++)
+      {  if( hydrogenAtPos[pos] ) continue;
+         int atIdx = atIdxAtPos[pos];
+
+         Arrays.fill(nBondTypeIds, 0);
+         for(int n=nbrStart[atIdx]; n<nbrEnd[atIdx]; n++)
+         {  if( hydrogenByIdx[nbrIdx[n]] ) continue;
+
+            int bdType = nbrBondOrder[n]-1;
+            int[] ids = bondTypeIds[bdType];
+            if( nBondTypeIds[bdType] == ids.length )
+               ids = bondTypeIds[bdType] = Arrays.copyOf(ids, ids.length*2);
+            ids[nBondTypeIds[bdType]++] = oldIds[nbrIdx[n]];
          }
 
-         oid.clear();
-         oid.add(level);
-         oid.add(oldAtIds.get(atom.GetIdx()));
+         // list of neighbor bondOrder AtIds to be hashed into new atID for current atom
+         int len = 2;
+         for (int bdType=0; bdType<4; ++bdType)
+            len += 2 * nBondTypeIds[bdType];
+         if( hashBuf.length < len ) hashBuf = new int[len*2];
+         int[] oid = hashBuf;
 
-         bondid.get(single).clear();
-         bondid.get(dble).clear();
-         bondid.get(tripple).clear();
-         bondid.get(arom).clear();
-
-         OEBondBaseIter bit = atom.GetBonds();
-         while( bit.hasNext() )
-         {  OEBondBase bd = bit.next();
-            OEAtomBase nbr = bd.GetNbr(atom);
-            if (!nbr.IsHydrogen())
-            {  int bo = bd.IsAromatic() ? 4 : bd.GetOrder();
-               bondid.get(bo-1).add(oldAtIds.get(nbr.GetIdx()));
-            }
-         }
-         bit.delete();
+         oid[0] = level;
+         oid[1] = oldIds[atIdx];
+         len = 2;
 
          // compute list of neighbors atomIDs by bond orders
          for (int bdType=0; bdType<4; ++bdType)
-         {  if (bondid.get(bdType).size() > 0)
-            {  Collections.sort(bondid.get(bdType));
+         {  int[] ids = bondTypeIds[bdType];
+            int nIds = nBondTypeIds[bdType];
+            Arrays.sort(ids, 0, nIds);
 
-               for (Integer xid : bondid.get(bdType) )
-               {  oid.add(bdType+1);
-                  oid.add(xid);
-               }
+            for (int i=0; i<nIds; i++)
+            {  oid[len++] = bdType+1;
+               oid[len++] = ids[i];
             }
          }
-         if (this.debug) System.err.println((iatom++)+" "+oid+" "+this.hash(oid));
+         if (this.debug) System.err.println((iatom++)+" "+toString(oid, len)+" "+hash(oid, len));
          // has list of atomids and bond orders into next atomID
-         newAtIds.add(hash(oid));
+         newIds[pos] = hash(oid, len);
       }
-      aIt.delete();
-
-      return newAtIds;
    }
 
    /**
     * Check for fragments which are duplicates in terms of containing the same
     * bonds.
     * This is described on page 745 of the Rogers & Hahn paper.
-    *
-    * This could be possibly much simpler based purley on bondifexes??
     */
-   private void addNonDuplicates(int level, List<List<Integer>> atomid)
+   private void addNonDuplicates(int level, int[] aid)
    {  int nnew = 0;
-      List<Integer> aid = atomid.get(level);
-      List<Set<Integer>> curBondIdxByAtomIdx = bondIdxListsPerLevel.get(level).bondIdxPerAtomIdx;
+      BondSets curBondSets = bondSetsPerLevel.get(level);
 
       if (this.debug)
       {  System.err.println("Iteration "+level);
-         System.err.println(curBondIdxByAtomIdx);
+         System.err.println(curBondSets);
       }
 
-      for(int atIdx=0; atIdx < curBondIdxByAtomIdx.size(); atIdx++)
-      {  Set<Integer> atomBondSet = curBondIdxByAtomIdx.get(atIdx);
-         if( atomBondSet == null ) continue; //hydrogen or null
+      for(int atIdx=0; atIdx <= maxAtomIdx; atIdx++)
+      {  if( hydrogenByIdx[atIdx] ) continue; //hydrogen or null
 
          // check if bondset was present in previous level
          boolean isDuplicate = false;
          for( int prevLevel = level-1; prevLevel >=0; prevLevel-- )
-         {  BondIdxPerAtom prevBondIdxByAtomIdx = bondIdxListsPerLevel.get(prevLevel);
-            if( prevBondIdxByAtomIdx.contains(atomBondSet))
+         {  if( bondSetsPerLevel.get(prevLevel).contains(curBondSets, atIdx))
             {  if (debug) System.err.println("dup from previous iteration " + prevLevel);
                isDuplicate = true;
                break;
@@ -316,21 +351,21 @@ public class CFP
          if( isDuplicate ) continue; // duplicate due to previous level
 
          // check for duplicates in this iteration
-         Integer minAtId = aid.get(atIdx);
-         for(int atIdx2=0; atIdx2 < curBondIdxByAtomIdx.size(); atIdx2++)
+         int minAtId = aid[atIdx];
+         for(int atIdx2=0; atIdx2 <= maxAtomIdx; atIdx2++)
          {  if( atIdx2 == atIdx ) continue;
 
-            if( atomBondSet.equals( curBondIdxByAtomIdx.get(atIdx2)))
-            {  Integer otherAtId = aid.get(atIdx2);
+            if( curBondSets.equals(atIdx, curBondSets, atIdx2) )
+            {  int otherAtId = aid[atIdx2];
 
-               if( minAtId.intValue() > otherAtId.intValue() )
+               if( minAtId > otherAtId )
                {  if (debug)
                      System.err.println("Identical ignored:"+ minAtId +" > than " + otherAtId );
 
                   isDuplicate = true;
                   break;
 
-               } else if( minAtId.intValue() == otherAtId.intValue() )
+               } else if( minAtId == otherAtId )
                {  if( atIdx > atIdx2 )
                   {  if (debug)
                         System.err.println("Identical ignored:"+ minAtId +" == " + otherAtId );
@@ -344,7 +379,7 @@ public class CFP
                   if( debug )
                      System.err.println("new with dupl "+ otherAtId +" == " + minAtId);
 
-               } else if( debug && minAtId.intValue() < otherAtId.intValue() )
+               } else if( debug && minAtId < otherAtId )
                {  System.err.println("new dupl "+ minAtId + " < " + otherAtId );
                }
             }
@@ -352,66 +387,80 @@ public class CFP
 
          if( isDuplicate ) continue; // duplicate due to previous level
 
-         Integer orgCount = fp.get(minAtId);
-         if( orgCount == null )
-            fp.put(minAtId, Integer.valueOf(1));
-         else
-            fp.put(minAtId, ++orgCount);
+         fp.add(minAtId, 1);
 
          ++nnew;
       }
 
       if (this.debug)
-      {  HashSet<Integer>uniq = new HashSet<Integer>(aid);
-         System.err.println(nnew + " new" + " " + uniq.size() + " unique");
-         System.err.println("fp:"+this.fp.size()+" "+this.fp);
+      {  System.err.println(nnew + " new");
+         System.err.println("fp:"+this.fp.size()+" "+getCounts(0));
       }
    }
 
-   public void generate(OEGraphMol mol, int level, String fptype)
-   {  maxAtomIdx                  = mol.GetMaxAtomIdx();
-      List<List<Integer>> atomid  = new ArrayList<List<Integer>>(level);
-      atomid.add(initialAtomIdentifiers(mol, fptype));
+   public void generate(OEMolBase mol, int level, String fptype)
+   {  readMolecule(mol);
+      initialAtomIdentifiers(mol, fptype, oldAtIds);
 
       fp.clear();
-      bondIdxListsPerLevel.clear();
+      bondSetsPerLevel.clear();
 
-      incrementCounts(atomid.get(0));
+      for(int pos=0; pos<nAtoms; pos++)
+      {  if( ! hydrogenAtPos[pos] )  // hydrogen or deleted atom
+            fp.add(oldAtIds[pos], 1);
+      }
       if (this.debug)
       {  System.err.println("Iteration 0");
-         System.err.println(" fp:"+this.fp);
+         System.err.println(" fp:"+getCounts(0));
       }
 
       // keep list of bonds of fragments at this level
-      BondIdxPerAtom curBondListByAtomIdx = BondIdxPerAtom.createLevel0(mol, debug);
-      bondIdxListsPerLevel.add(curBondListByAtomIdx);
+      BondSets curBondSets = BondSets.createLevel0(this);
+      bondSetsPerLevel.add(curBondSets);
 
       for (int iter=1; iter<=level; ++iter)
-      {
-         atomid.add( iterativeAtomIdentifiers(mol, atomid.get(iter-1), iter));
+      {  iterativeAtomIdentifiers(oldAtIds, newAtIds, iter);
+         int[] tmp = oldAtIds; oldAtIds = newAtIds; newAtIds = tmp;
 
-         curBondListByAtomIdx = curBondListByAtomIdx.createNextLevel();
-         bondIdxListsPerLevel.add(curBondListByAtomIdx);
+         curBondSets = curBondSets.createNextLevel(this);
+         bondSetsPerLevel.add(curBondSets);
 
-         if (iter > 0) addNonDuplicates(iter, atomid);
+         addNonDuplicates(iter, oldAtIds);
       }
+
+      if( fp.size() > 0 )
+         fpMapCapacity = HashMapOrder.grow(Math.max(fpMapCapacity, 16), fp.size());
    }
 
-   private void incrementCounts(List<Integer> atIds)
-   {  for( Integer atId : atIds)
-      {  if( atId == null ) continue;  // hydrogen or deleted atom
+   /**
+    * @return number of distinct atom identifiers in the last generated fingerprint.
+    */
+   int getNAtomIds()
+   {  return fp.size();
+   }
 
-         Integer orgCount = fp.get(atId);
-         if( orgCount == null )
-            fp.put(atId, Integer.valueOf(1));
-         else
-            fp.put(atId, ++orgCount);
-      }
+   /**
+    * @return positions of the atom identifiers for {@link #getAtomId(int)} in
+    *         the iteration order of the HashMap used by the former implementation.
+    */
+   int[] getAtomIdOrder()
+   {  int n = fp.size();
+      int[] ids = new int[n];
+      for(int i=0; i<n; i++)
+         ids[i] = fp.getKey(i);
+      return HashMapOrder.order(ids, n, fpMapCapacity);
+   }
+
+   int getAtomId(int pos)
+   {  return fp.getKey(pos);
+   }
+
+   int getAtomIdCount(int pos)
+   {  return fp.getValue(pos);
    }
 
    public Set<Integer> get()
-   {  //return new HashSet<Integer>(this.fp);
-      return fp.keySet();
+   {  return getCounts(0).keySet();
    }
 
    /**
@@ -419,163 +468,188 @@ public class CFP
     * @param foldToSize if 0 no folding, if > 0 folded into [0, foldToSize-1].
     */
    public Map<Integer, Integer> getCounts(int foldToSize)
-   {  if( foldToSize == 0 )
-         return Collections.unmodifiableMap(fp);
+   {  int[] order = getAtomIdOrder();
+      if( foldToSize == 0 )
+      {  Map<Integer,Integer> counts = new HashMap<Integer, Integer>(Math.max(fpMapCapacity, 1));
+         for( int pos : order )
+            counts.put(fp.getKey(pos), fp.getValue(pos));
+         return Collections.unmodifiableMap(counts);
+      }
 
       Map<Integer,Integer> folded = new HashMap<Integer, Integer>(fp.size());
-      for( Entry<Integer, Integer> frag : fp.entrySet())
-      {  int atId = frag.getKey();
+      for( int pos : order )
+      {  int atId = fp.getKey(pos);
          atId = Math.abs(atId) % foldToSize;
          Integer orgVal = folded.get(atId);
          if( orgVal != null )
-            folded.put(atId, orgVal + frag.getValue());
+            folded.put(atId, orgVal + fp.getValue(pos));
          else
-            folded.put(atId, frag.getValue());
+            folded.put(atId, fp.getValue(pos));
       }
       return folded;
    }
-}
 
-
-/**
- * Helper class containing for each atom in a molecule and a given cfp level
- * all bonds for each fragment indexed by atomIdx.
- *
- * @author albertgo
- *
- */
-class BondIdxPerAtom
-{  /** bondIdxPerAtomIdx.get(n) =
-    * list of sets of bond indexes included in fragment of with atomIdx = n.
-    *
-    * It also contains a list of terminal atoms per atomIdx centered fragment
-    * so that in {@see #createNextLevel()) we can add the next level of bonds.
-    */
-   final List<Set<Integer>> bondIdxPerAtomIdx;
-
-   /** terminalAtomsByAtIdx.get(atomIdx) :list of terminal atoms centered around
-    * atomIdx generated by the breath first search at this level.
-    */
-   final List<Set<OEAtomBase>> terminalAtomsByAtIdx;
-   final int level;
-   private final int maxAtomIdx;
-   private final boolean debug;
-
-   private BondIdxPerAtom(int level, int maxAtomIdx, boolean debug)
-   {  this.level = level;
-      this.maxAtomIdx = maxAtomIdx;
-      this.debug = debug;
-      bondIdxPerAtomIdx = new ArrayList<Set<Integer>>(maxAtomIdx+1);
-      terminalAtomsByAtIdx = new ArrayList<Set<OEAtomBase>>(maxAtomIdx+1);
-   }
-
-   /** used to create a deep copy of the BondIdxPerAtom object
+   /**
+    * @return the counts of the last generated fingerprint folded into
+    *         [0, foldToSize-1] as {@link #getCounts(int)}.
     */
-   private BondIdxPerAtom(int level, BondIdxPerAtom src )
-   {  this.level = src.level;
-      this.maxAtomIdx = src.maxAtomIdx;
-      this.debug = src.debug;
-      bondIdxPerAtomIdx = new ArrayList<Set<Integer>>(maxAtomIdx+1);
-      terminalAtomsByAtIdx = new ArrayList<Set<OEAtomBase>>(maxAtomIdx+1);
-
-      bondIdxPerAtomIdx.addAll( src.bondIdxPerAtomIdx );
-      terminalAtomsByAtIdx.addAll( src.terminalAtomsByAtIdx);
-
-      for( int atIdx = 0; atIdx < src.bondIdxPerAtomIdx.size(); atIdx++ )
-      {  Set<Integer> srcBSet = src.bondIdxPerAtomIdx.get(atIdx);
-         if(srcBSet == null ) continue;
-
-
-         HashSet<Integer> newBSet = new HashSet<Integer>();
-         newBSet.addAll(srcBSet);
-         bondIdxPerAtomIdx.set(atIdx, newBSet);
-
-         Set<OEAtomBase> srcTSet = src.terminalAtomsByAtIdx.get(atIdx);
-         HashSet<OEAtomBase> newTSet = new HashSet<OEAtomBase>();
-         newTSet.addAll(srcTSet);
-         terminalAtomsByAtIdx.set(atIdx, newTSet);
+   public int[] getFoldedCounts(int foldToSize)
+   {  int[] folded = new int[foldToSize];
+      for( int pos=0; pos<fp.size(); pos++ )
+      {  int atId = Math.abs(fp.getKey(pos)) % foldToSize;
+         if( atId >= 0 )  // Math.abs(Integer.MIN_VALUE) is negative
+            folded[atId] += fp.getValue(pos);
       }
+      return folded;
    }
 
+
    /**
-    * Create empty list of bonds with atoms themselfs as terminal atoms.
+    * For each heavy atom of a molecule and a given cfp level the set of bonds
+    * of the fragment centered on the atom as bit set by atom index, and the
+    * terminal atoms of the breadth first search at this level.
     *
+    * @author albertgo
     */
-   static BondIdxPerAtom createLevel0(OEGraphMol mol, boolean debug)
-   {  BondIdxPerAtom newBondIdxPerAtomIdxList
-         = new BondIdxPerAtom(0, mol.GetMaxAtomIdx(), debug);
+   private static class BondSets
+   {  private final int nWords;
+      /** bond bits of atom index i are in words i*nWords to (i+1)*nWords-1 */
+      private final long[] bondWords;
+      /** hash of the bond set of each atom index */
+      private final long[] setHash;
+      /** terminal atoms of atom index i are terminals[termStart[i] to termEnd[i]-1] */
+      private final int[] termStart;
+      private final int[] termEnd;
+      private final int[] terminals;
+      private final boolean[] isHydrogen;
+
+      private BondSets(CFP cfp, int nTerminals)
+      {  int nIdx = cfp.maxAtomIdx+1;
+         nWords = cfp.nBondWords;
+         bondWords = new long[nIdx * nWords];
+         setHash = new long[nIdx];
+         termStart = new int[nIdx];
+         termEnd = new int[nIdx];
+         terminals = new int[nTerminals];
+         isHydrogen = cfp.hydrogenByIdx;
+      }
 
-      OEAtomBaseIter aIt = mol.GetAtoms();
-      while( aIt.hasNext() )
-      {  OEAtomBase at = aIt.next();
-         if( at.IsHydrogen() ) continue;
+      /**
+       * Create empty sets of bonds with atoms themselves as terminal atoms.
+       */
+      static BondSets createLevel0(CFP cfp)
+      {  BondSets sets = new BondSets(cfp, cfp.maxAtomIdx+1);
+         int n = 0;
+         for(int atIdx=0; atIdx<=cfp.maxAtomIdx; atIdx++)
+         {  sets.termStart[atIdx] = n;
+            if( ! cfp.hydrogenByIdx[atIdx] ) sets.terminals[n++] = atIdx;
+            sets.termEnd[atIdx] = n;
+         }
+         return sets;
+      }
 
-         int atIdx = at.GetIdx();
+      BondSets createNextLevel(CFP cfp)
+      {  int nIdx = cfp.maxAtomIdx+1;
+         // each terminal atom can add at most all its neighbors
+         int nTerminals = 0;
+         for(int atIdx=0; atIdx<nIdx; atIdx++)
+            for(int t=termStart[atIdx]; t<termEnd[atIdx]; t++)
+               nTerminals += cfp.nbrEnd[terminals[t]] - cfp.nbrStart[terminals[t]];
+
+         BondSets next = new BondSets(cfp, nTerminals);
+         System.arraycopy(bondWords, 0, next.bondWords, 0, bondWords.length);
+         // marks terminal atoms already added for the current center atom
+         int[] seen = new int[nIdx];
+
+         int n = 0;
+         for(int atIdx=0; atIdx<nIdx; atIdx++)
+         {  next.termStart[atIdx] = n;
+            if( isHydrogen[atIdx] )
+            {  next.termEnd[atIdx] = n;
+               continue;
+            }
 
-         // ensure capacity
-         while( newBondIdxPerAtomIdxList.bondIdxPerAtomIdx.size() <= atIdx )
-         {  newBondIdxPerAtomIdxList.bondIdxPerAtomIdx.add(null);  // hydrogen or empty atomIdx
-            newBondIdxPerAtomIdxList.terminalAtomsByAtIdx.add(null);
+            int wordOffset = atIdx * nWords;
+            for(int t=termStart[atIdx]; t<termEnd[atIdx]; t++)
+            {  int tAtom = terminals[t];
+               for(int nb=cfp.nbrStart[tAtom]; nb<cfp.nbrEnd[tAtom]; nb++)
+               {  int bIdx = cfp.nbrBondIdx[nb];
+                  int w = wordOffset + (bIdx >> 6);
+                  long bit = 1L << bIdx;
+                  if( (next.bondWords[w] & bit) != 0 ) continue;
+
+                  // add new bond to bondlist for this atom
+                  next.bondWords[w] |= bit;
+                  int nbr = cfp.nbrIdx[nb];
+                  if( seen[nbr] != atIdx+1 )
+                  {  seen[nbr] = atIdx+1;
+                     next.terminals[n++] = nbr;
+                  }
+               }
+            }
+            next.termEnd[atIdx] = n;
+            next.setHash[atIdx] = hash(next.bondWords, wordOffset, nWords);
          }
 
-         HashSet<Integer>    bSet   = new HashSet<Integer>(0); // no bonds for 0 level
-         newBondIdxPerAtomIdxList.bondIdxPerAtomIdx.add(atIdx, bSet);
+         if( cfp.debug )
+            for(int atIdx=0; atIdx<nIdx; atIdx++)
+            {  if( isHydrogen[atIdx] ) continue;
+               System.err.println("AtIdx "+ atIdx);
+               System.err.println("\tbd  "+ next.getBonds(atIdx));
+               System.err.println("\ttat "+ Arrays.toString(
+                     Arrays.copyOfRange(next.terminals, next.termStart[atIdx], next.termEnd[atIdx])));
+            }
 
-         HashSet<OEAtomBase> tAtoms = new HashSet<OEAtomBase>(1); // just itself
-         tAtoms.add(at);
-         newBondIdxPerAtomIdxList.terminalAtomsByAtIdx.add(atIdx,tAtoms);
+         return next;
       }
-      aIt.delete();
 
-      return newBondIdxPerAtomIdxList;
-   }
-
-
-   BondIdxPerAtom createNextLevel()
-   {  BondIdxPerAtom newBondIdxPerAtom = new BondIdxPerAtom(level+1, this);
-      List<Set<OEAtomBase>> newTerminalAtomsByAtIdx = newBondIdxPerAtom.terminalAtomsByAtIdx;
-      List<Set<Integer>> newBondIdxPerAtomIdx = newBondIdxPerAtom.bondIdxPerAtomIdx;
+      private static long hash(long[] words, int offset, int len)
+      {  long h = 0;
+         for(int i=offset; i<offset+len; i++)
+            h = h * 0x9E3779B97F4A7C15L + words[i];
+         return h;
+      }
 
-      for( int atIdx=0; atIdx < terminalAtomsByAtIdx.size(); atIdx++)
-      {  Set<OEAtomBase> tAtomSet = terminalAtomsByAtIdx.get(atIdx);
-         if( tAtomSet == null ) continue; // null or hydrogen
-         Set<OEAtomBase> newTAtomSet = new HashSet<OEAtomBase>();
+      /**
+       * True if the bond set of atIdx in this equals the set of atIdx2 in other.
+       */
+      boolean equals(int atIdx, BondSets other, int atIdx2)
+      {  if( isHydrogen[atIdx] || other.isHydrogen[atIdx2] ) return false;
+         if( setHash[atIdx] != other.setHash[atIdx2] ) return false;
+
+         int off = atIdx * nWords;
+         int off2 = atIdx2 * nWords;
+         for(int i=0; i<nWords; i++)
+            if( bondWords[off+i] != other.bondWords[off2+i] ) return false;
+         return true;
+      }
 
-         Set<Integer> bSet = newBondIdxPerAtomIdx.get(atIdx);
+      /*
+       * True if the bond set of atIdx in bSets is present on any of the atoms
+       * in this BondSets.
+       */
+      boolean contains(BondSets bSets, int atIdx)
+      {  for(int thisIdx=0; thisIdx<setHash.length; thisIdx++)
+            if( equals(thisIdx, bSets, atIdx) ) return true;
 
-         for( OEAtomBase tAtom : tAtomSet )
-         {  OEBondBaseIter bIt = tAtom.GetBonds();
-            while( bIt.hasNext() )
-            {  OEBondBase bd = bIt.next();
-               Integer bIdx = bd.GetIdx();
-               if( bSet.contains(bIdx) )  continue;
+         return false;
+      }
 
-               // add new bond to bondlist for this atom
-               bSet.add(bIdx);
-               newTAtomSet.add(bd.GetNbr(tAtom));
-            }
-            bIt.delete();
-         }
+      private List<Integer> getBonds(int atIdx)
+      {  List<Integer> bonds = new ArrayList<Integer>();
+         for(int i=0; i<nWords*64; i++)
+            if( (bondWords[atIdx*nWords + (i>>6)] & 1L << i) != 0 ) bonds.add(i);
+         return bonds;
+      }
 
-         // update terminalAtomList
-         newTerminalAtomsByAtIdx.set(atIdx, newTAtomSet);
-         if( debug )
-         {  System.err.println("AtIdx "+ atIdx);
-            System.err.println("\tbd  "+ newBondIdxPerAtom.bondIdxPerAtomIdx.get(atIdx));
-            System.err.println("\ttat "+ newBondIdxPerAtom.terminalAtomsByAtIdx.get(atIdx));
+      @Override
+      public String toString()
+      {  StringBuilder sb = new StringBuilder("[");
+         for(int atIdx=0; atIdx<setHash.length; atIdx++)
+         {  if( atIdx > 0 ) sb.append(", ");
+            sb.append(isHydrogen[atIdx] ? null : getBonds(atIdx));
          }
+         return sb.append(']').toString();
       }
-
-      return newBondIdxPerAtom;
-   }
-
-   /*
-    * True if bSet is present on any of the atoms in this BondIdxPerAtom
-    */
-   boolean contains(Set<Integer> bSet)
-   {  for(Set<Integer> thisBSet : bondIdxPerAtomIdx )
-         if(bSet.equals(thisBSet)) return true;
-
-      return false;
    }
 }
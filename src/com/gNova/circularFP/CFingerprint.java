@@ -21,6 +21,11 @@ import java.util.*;
 import java.util.Map.Entry;
 
 /**
+ * Circular fingerprint stored as array of distinct atom identifiers.
+ *
+ * The atom identifiers are kept in the order in which the former HashSet
+ * based implementation iterated them so that {@link #getAtomIDString()} and
+ * {@link #getBitNums()} are unchanged.
  *
  * @author tjodonnell
  *
@@ -28,86 +33,107 @@ import java.util.Map.Entry;
 
 public class CFingerprint implements Fingerprint
 {  enum CFPCountType { NOCount, LOGCount, LINCount }
-   private Set<Integer> fp;
+   /** distinct atom identifiers in HashSet iteration order */
+   private final int[] fp;
    private int length;
 
    public static CFingerprint createCFingerprint(Map<Integer,Integer>fp, int length, CFPCountType countType)
+   {  int[] atIds = new int[fp.size()];
+      int[] counts = new int[fp.size()];
+      int n = 0;
+      for(Entry<Integer, Integer> e : fp.entrySet())
+      {  atIds[n] = e.getKey();
+         counts[n++] = e.getValue();
+      }
+      return createCFingerprint(atIds, counts, n, length, countType);
+   }
+
+   /**
+    * Create fingerprint from the atom identifiers of the last fingerprint
+    * generated by cfp.
+    */
+   public static CFingerprint createCFingerprint(CFP cfp, int length, CFPCountType countType)
+   {  int[] order = cfp.getAtomIdOrder();
+      int n = order.length;
+      int[] atIds = new int[n];
+      int[] counts = new int[n];
+      for(int i=0; i<n; i++)
+      {  atIds[i] = cfp.getAtomId(order[i]);
+         counts[i] = cfp.getAtomIdCount(order[i]);
+      }
+      return createCFingerprint(atIds, counts, n, length, countType);
+   }
+
+   /**
+    * @param atIds atom identifiers in the iteration order of the map of counts.
+    * @param counts count of each atom identifier.
+    */
+   private static CFingerprint createCFingerprint(int[] atIds, int[] counts, int n,
+                                                  int length, CFPCountType countType)
    {  switch(countType)
       {  case NOCount:
-            return new CFingerprint(fp.keySet(), length);
+            return new CFingerprint(atIds, n, length);
          case LINCount:
-            return createLinCountFP(fp, length);
+            return createCountFP(atIds, counts, n, length, false);
          case LOGCount:
-            return createLogCountFP(fp, length);
+            return createCountFP(atIds, counts, n, length, true);
          default:
             assert false;
       }
       return null;
    }
 
-   private CFingerprint(Set<Integer>fp, int length)
-   {  this.fp = new HashSet<Integer>(fp);
+   /**
+    * @param atIds distinct atom ids in the iteration order of their source.
+    */
+   private CFingerprint(int[] atIds, int n, int length)
+   {  this.fp = HashMapOrder.reorder(atIds, n, HashMapOrder.copyCapacity(n));
       this.length = length;
    }
 
    /**
-    * Create fingerprint that also includes bits for replicates of bits in log2 steps
-    * @param fp Map with atomIds and counts
+    * Create fingerprint that also includes bits for replicates of bits in
+    * log2 steps if logCount else in linear steps.
     * @param length
     */
-   private static CFingerprint createLogCountFP(Map<Integer,Integer>fp, int length)
-   {  HashSet<Integer> countfp = new HashSet<Integer>(fp.size()*2);
+   private static CFingerprint createCountFP(int[] atIds, int[] counts, int n,
+                                             int length, boolean logCount)
+   {  IntIntHashMap countfp = new IntIntHashMap(n*2);
       int mulitplier = Prime.getPrimeLargerEqThan(length*2+7);
 
-      for(Entry<Integer, Integer> e : fp.entrySet())
-      {  int count = e.getValue();
-         int pos = e.getKey();
+      for(int i=0; i<n; i++)
+      {  int count = counts[i];
+         int pos = atIds[i];
          while(count > 0)
-         {  countfp.add(pos);
+         {  countfp.add(pos, 1);
             pos = pos * mulitplier;    // compute new hash position
-            count /= 2;                // set additional bits doubling bit counts
+            if( logCount )
+               count /= 2;             // set additional bits doubling bit counts
+            else
+               count--;
          }
       }
-      return new CFingerprint(countfp,length);
-   }
 
-   /**
-    * Create fingerprint that also includes bits for replicates of bits in linear steps
-    * @param fp Map with atomIds and counts
-    * @param length
-    */
-   private static CFingerprint createLinCountFP(Map<Integer,Integer>fp, int length)
-   {  HashSet<Integer> countfp = new HashSet<Integer>(fp.size()*2);
-      int mulitplier = Prime.getPrimeLargerEqThan(length*2+7);
+      int nCount = countfp.size();
+      int[] countIds = new int[nCount];
+      for(int i=0; i<nCount; i++)
+         countIds[i] = countfp.getKey(i);
+      // the former implementation collected the ids in a HashSet(2*n)
+      int cap = HashMapOrder.grow(HashMapOrder.tableSizeFor(n*2), nCount);
+      countIds = HashMapOrder.reorder(countIds, nCount, cap);
 
-      for(Entry<Integer, Integer> e : fp.entrySet())
-      {  int count = e.getValue();
-         int pos = e.getKey();
-         while(count > 0)
-         {  countfp.add(pos);
-            pos = pos * mulitplier;    // compute new hash position
-            count--;                   // set additional bits doubling bit counts
-         }
-      }
-      return new CFingerprint(countfp,length);
+      return new CFingerprint(countIds, nCount, length);
    }
 
    public List<Integer> getBitNums()
    {
-      List<Integer> nums = new ArrayList<Integer>();
-      for (Integer bit : this.fp)
+      List<Integer> nums = new ArrayList<Integer>(fp.length);
+      for (int bit : this.fp)
       {
          int b = (bit&Integer.MAX_VALUE) % this.length;
          nums.add(b);
       }
 
-      // tests
-//      nums.clear();
-//      nums.add(0);
-//      nums.add(31);
-//      nums.add(32);
-//      nums.add(this.length-1);
-
       return nums;
    }
 
@@ -115,14 +141,10 @@ public class CFingerprint implements Fingerprint
    @Override
    public int[] getBits()
    {
-      List<Integer> nums = this.getBitNums();
-      Collections.sort(nums);
-      int[] x = new int[nums.size()];
-      int i=0;
-      for (Integer bit : nums)
-      {
-         x[i++] = bit;
-      }
+      int[] x = new int[fp.length];
+      for (int i=0; i<fp.length; i++)
+         x[i] = (fp[i]&Integer.MAX_VALUE) % this.length;
+      Arrays.sort(x);
       return x;
    }
 
@@ -130,9 +152,9 @@ public class CFingerprint implements Fingerprint
    public BitSet getBitSet()
    {
       BitSet bset = new BitSet(this.length);
-      for (Integer bit : this.getBitNums())
+      for (int bit : this.fp)
       {
-         bset.set(bit);
+         bset.set((bit&Integer.MAX_VALUE) % this.length);
       }
       return bset;
    }
@@ -141,7 +163,6 @@ public class CFingerprint implements Fingerprint
    public String getBitString()
    {
       BitSet nums = this.getBitSet();
-      //Collections.sort(nums);
       String x = nums.toString().replace(" ","");
       return x.substring(1, x.length()-1);
    }
@@ -152,23 +173,29 @@ public class CFingerprint implements Fingerprint
       // bit 0 on far left
       int nelem = (int)Math.ceil(this.length/32.);
       int[] a = new int[nelem];
-      for (Integer bit : this.getBitNums())
+      for (int atId : this.fp)
       {
+         int bit = (atId&Integer.MAX_VALUE) % this.length;
          a[bit/32] |=  1 << (31 - bit % 32);
       }
-      String hex = "";
+      StringBuilder hex = new StringBuilder(nelem*8);
       for (int i=0; i<nelem; ++i)
       {
-         hex += String.format("%08x", a[i]);
+         hex.append(String.format("%08x", a[i]));
       }
-      return hex;
+      return hex.toString();
    }
 
    @Override
    public String getAtomIDString()
    {
-      String x = this.fp.toString().replace(" ","");
-      return x.substring(1, x.length()-1);
+      StringBuilder sb = new StringBuilder(fp.length*12);
+      for (int i=0; i<fp.length; i++)
+      {
+         if( i > 0 ) sb.append(',');
+         sb.append(fp[i]);
+      }
+      return sb.toString();
    }
 
    @Override
@@ -204,7 +231,7 @@ public class CFingerprint implements Fingerprint
    @Override
    public int getNBits()
    {
-      return this.fp.size();
+      return this.fp.length;
    }
 
 }
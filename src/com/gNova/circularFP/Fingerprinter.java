@@ -20,13 +20,20 @@ package com.gNova.circularFP;
 import java.io.*;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import static com.gNova.circularFP.CFingerprint.CFPCountType;
 
 import openeye.oechem.*;
 
 import org.apache.commons.cli.*;
+
+import com.aestel.chemistry.openEye.MultiThreadBatchAlgorithm;
+import com.aestel.chemistry.openEye.MultiThreadBatchRunner;
 /**
+ * Command line program computing circular fingerprints.
+ *
+ * With -nCpu the fingerprints are computed in parallel, each thread has its
+ * own {@link CFP} instance. The main thread reads the input, the output is
+ * written in input order by the worker threads, see {@link MultiThreadBatchRunner}.
  *
  * @author tjodonnell
  *
@@ -45,6 +52,8 @@ public class Fingerprinter
    private static int nbits = 256;
    private static boolean verbose = false;
    private static CFPCountType countType;
+   private static int nCpu = 1;
+   private static int batchSize = MultiThreadBatchRunner.DEFAULT_BATCHSIZE;
 
    public static void usage(String msg, Options options)
    {  if( msg != null && msg.length()>0)
@@ -71,6 +80,9 @@ public class Fingerprinter
       options.addOption("count",   true,  "For atomId, bitlist and hex format: set additional bits for counts options: NOCount|LOGCount|LINCount");
       options.addOption("type",    true,  "fingerprint type: atomic, functional: default atomic");
       options.addOption("verbose", false, "verbose output, for debugging");
+      options.addOption("nCpu",    true,  "number of CPU's used in parallel, dafault 1");
+      options.addOption("batchSize", true, "number of molecules passed to a thread at once, default "
+                                           + MultiThreadBatchRunner.DEFAULT_BATCHSIZE);
       return options;
    }
 
@@ -119,6 +131,9 @@ public class Fingerprinter
          }
 
          nbits = Integer.parseInt(cmd.getOptionValue("nbits", "256"));
+         nCpu = Integer.parseInt(cmd.getOptionValue("nCpu", "1"));
+         batchSize = Integer.parseInt(cmd.getOptionValue("batchSize",
+                                      Integer.toString(MultiThreadBatchRunner.DEFAULT_BATCHSIZE)));
       } catch (Exception exp)
       {
          String msg = "Parsing failed: " + exp.getMessage();
@@ -133,10 +148,8 @@ public class Fingerprinter
 
       // option to fp.generate for verbose output
 
-      CFP ecfp = new CFP(verbose);
       oemolistream ifs = new oemolistream(Fingerprinter.infile);
       oemolostream ofs = new oemolostream(Fingerprinter.outfile);
-      OEGraphMol mol = new OEGraphMol();
 
    /*
       // read first molecule; Tanimoto of others uses this initial fp
@@ -150,55 +163,106 @@ public class Fingerprinter
    */
 
       String tag;
-       if (type.equals("functional"))
+      List<String> smarts = null;
+      if (type.equals("functional"))
       {  tag = "FFP";
-         List<String> smarts = null;
 
          if (smaFile != null)
             smarts = readSmartsFile();
-         ecfp.initializeSmarts(smarts);
 
       } else
       {  tag = "AFP";
       }
 
-      while (oechem.OEReadMolecule(ifs, mol))
-      {  Fingerprint fp;
-
-         for (int lvl : levels )
-         {  ecfp.clear();
-            ecfp.generate(mol, lvl, type);
-            if (format.equals("hex"))
-            {  fp = CFingerprint.createCFingerprint(ecfp.getCounts(0), nbits, countType);
-               oechem.OESetSDData(mol, tag+lvl, fp.getHexString());
-
-            } else if (format.equals("bitlist"))
-            {  fp = CFingerprint.createCFingerprint(ecfp.getCounts(0), nbits, countType);
-               oechem.OESetSDData(mol, tag+lvl, fp.getBitString());
-
-            } else if (format.equals("counts"))
-            {  Map<Integer,Integer> counts = ecfp.getCounts(nbits);
-               String myTag = tag+lvl + '_';
-               for(int i=0; i< nbits; i++)
-               {  Integer count = counts.get(i);
-                  if( count != null )
-                     oechem.OESetSDData(mol, (myTag + i), counts.get(i).toString());
-                  else
-                     oechem.OESetSDData(mol, (myTag + i), "0");
-               }
-            } else if (format.equals("atomID"))
-            {  fp = CFingerprint.createCFingerprint(ecfp.getCounts(0), nbits, countType);
-               oechem.OESetSDData(mol, tag+lvl, fp.getAtomIDString());
+      CFPAlgorithm alg = new CFPAlgorithm(ifs, ofs, tag, smarts);
+      MultiThreadBatchRunner<Void> runner = new MultiThreadBatchRunner<Void>(alg, nCpu, batchSize);
+      runner.run();
+      runner.close();
+   }
+
+   /**
+    * Computes the fingerprints of one molecule and stores them in tags.
+    * The output format is defined by the static options.
+    */
+   private static void generate(CFP ecfp, OEMolBase mol, String tag)
+   {  Fingerprint fp;
+
+      for (int lvl : levels )
+      {  ecfp.clear();
+         ecfp.generate(mol, lvl, type);
+         if (format.equals("hex"))
+         {  fp = CFingerprint.createCFingerprint(ecfp, nbits, countType);
+            oechem.OESetSDData(mol, tag+lvl, fp.getHexString());
+
+         } else if (format.equals("bitlist"))
+         {  fp = CFingerprint.createCFingerprint(ecfp, nbits, countType);
+            oechem.OESetSDData(mol, tag+lvl, fp.getBitString());
+
+         } else if (format.equals("counts"))
+         {  int[] counts = ecfp.getFoldedCounts(nbits);
+            String myTag = tag+lvl + '_';
+            for(int i=0; i< nbits; i++)
+               oechem.OESetSDData(mol, (myTag + i), Integer.toString(counts[i]));
+         } else if (format.equals("atomID"))
+         {  fp = CFingerprint.createCFingerprint(ecfp, nbits, countType);
+            oechem.OESetSDData(mol, tag+lvl, fp.getAtomIDString());
 
-            }
-            //tag = "CFPBits" + i;
-            //oechem.OESetSDData(mol, tag, Integer.toString(fp.getNBits()));
          }
-         oechem.OEWriteMolecule(ofs, mol);
-         mol.Clear();
+         //tag = "CFPBits" + i;
+         //oechem.OESetSDData(mol, tag, Integer.toString(fp.getNBits()));
+      }
+   }
+
+   /**
+    * Runs {@link Fingerprinter#generate} on the worker threads of a
+    * {@link MultiThreadBatchRunner} using one {@link CFP} per thread.
+    */
+   private static class CFPAlgorithm implements MultiThreadBatchAlgorithm<Void>
+   {  private final oemolistream ifs;
+      private final oemolostream ofs;
+      private final String tag;
+      private final ThreadLocal<CFP> threadCFP;
+
+      /**
+       * @param smarts null for atomic fingerprints, empty for the default
+       *        functional definitions.
+       */
+      CFPAlgorithm(oemolistream ifs, oemolostream ofs, String tag, final List<String> smarts)
+      {  this.ifs = ifs;
+         this.ofs = ofs;
+         this.tag = tag;
+         this.threadCFP = new ThreadLocal<CFP>()
+         {  @Override
+            protected CFP initialValue()
+            {  CFP ecfp = new CFP(verbose);
+               if (type.equals("functional"))
+                  ecfp.initializeSmarts(smarts);
+               return ecfp;
+            }
+         };
+      }
+
+      @Override
+      public boolean read(OEMolBase mol)
+      {  return oechem.OEReadMolecule(ifs, mol);
+      }
+
+      @Override
+      public Void process(OEMolBase mol)
+      {  generate(threadCFP.get(), mol, tag);
+         return null;
+      }
+
+      @Override
+      public void consume(OEMolBase mol, Void result)
+      {  oechem.OEWriteMolecule(ofs, mol);
+      }
+
+      @Override
+      public void close()
+      {  ifs.close();
+         ofs.close();
       }
-      ifs.close();
-      ofs.close();
    }
 
    private static List<String> readSmartsFile()
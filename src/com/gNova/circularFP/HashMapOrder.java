@@ -0,0 +1,98 @@
+/*
+   Copyright 2008-2015 Genentech Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+*/
+
+package com.gNova.circularFP;
+
+import java.util.Arrays;
+
+/**
+ * Computes the iteration order of Integer keys in java.util.HashMap and
+ * HashSet without creating them.
+ *
+ * The circular fingerprints used to be kept in HashMaps and HashSets, their
+ * iteration order determines the order of the atomID output format. A
+ * HashMap iterates its buckets in ascending order and the keys in one bucket
+ * in insertion order. This holds for the HashMap implementation of java 8
+ * to 18 except for buckets with 8 or more keys which are converted to trees.
+ *
+ * @author albertgo
+ */
+final class HashMapOrder
+{  private static final float LOADFactor = 0.75f;
+
+   private HashMapOrder()
+   {
+   }
+
+   /**
+    * @return the capacity of a HashMap created with capacity cap after
+    *         adding size keys.
+    */
+   static int grow(int cap, int size)
+   {  while( size > (int)(cap * LOADFactor) )
+         cap <<= 1;
+      return cap;
+   }
+
+   /**
+    * @return capacity of a new HashMap(initialCapacity) at its first put.
+    */
+   static int tableSizeFor(int initialCapacity)
+   {  int cap = 1;
+      while( cap < initialCapacity ) cap <<= 1;
+      return cap;
+   }
+
+   /**
+    * @return capacity of new HashSet(collection) for a collection of size keys.
+    */
+   static int copyCapacity(int size)
+   {  return tableSizeFor(Math.max((int)(size / LOADFactor) + 1, 16));
+   }
+
+   /**
+    * @param keys the first n elements are keys in insertion order.
+    * @param cap capacity of the HashMap.
+    * @return the positions in keys in the order of a HashMap iteration.
+    */
+   static int[] order(int[] keys, int n, int cap)
+   {  long[] bucketPos = new long[n];
+      for(int i=0; i<n; i++)
+      {  int h = keys[i];
+         long bucket = (h ^ (h >>> 16)) & (cap - 1);
+         bucketPos[i] = bucket << 32 | i;
+      }
+      Arrays.sort(bucketPos);
+
+      int[] pos = new int[n];
+      for(int i=0; i<n; i++)
+         pos[i] = (int)bucketPos[i];
+      return pos;
+   }
+
+   /**
+    * @return the first n keys reordered as they are iterated by a HashMap of
+    *         capacity cap after inserting them in the current order.
+    */
+   static int[] reorder(int[] keys, int n, int cap)
+   {  int[] pos = order(keys, n, cap);
+      int[] newKeys = new int[n];
+      for(int i=0; i<n; i++)
+         newKeys[i] = keys[pos[i]];
+      return newKeys;
+   }
+}
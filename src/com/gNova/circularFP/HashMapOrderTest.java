@@ -0,0 +1,93 @@
+/*
+   Copyright 2008-2015 Genentech Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+*/
+
+package com.gNova.circularFP;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+public class HashMapOrderTest
+{
+   private static int[] randomKeys(Random rand, int n)
+   {  Set<Integer> keys = new HashSet<Integer>();
+      int[] res = new int[n];
+      for(int i=0; i<n; )
+      {  int key = rand.nextInt();
+         if( keys.add(key) ) res[i++] = key;
+      }
+      return res;
+   }
+
+   private static void assertOrder(Iterable<Integer> it, int[] keys, int n, int cap)
+   {  int[] ordered = HashMapOrder.reorder(keys, n, cap);
+      int i = 0;
+      for(Integer key : it)
+         assert key.intValue() == ordered[i++];
+      assert i == n;
+   }
+
+   @Test()
+   public void testHashMap()
+   {  Random rand = new Random(42);
+      for(int n=0; n<300; n+=7)
+      {  int[] keys = randomKeys(rand, n);
+         Map<Integer,Integer> map = new HashMap<Integer,Integer>(50);
+         for(int i=0; i<n; i++)
+            map.put(keys[i], i);
+
+         assertOrder(map.keySet(), keys, n,
+                     HashMapOrder.grow(HashMapOrder.tableSizeFor(50), n));
+      }
+   }
+
+   @Test()
+   public void testClearedHashMap()
+   {  Random rand = new Random(42);
+      Map<Integer,Integer> map = new HashMap<Integer,Integer>(16);
+      int cap = HashMapOrder.tableSizeFor(16);
+      for(int n : new int[] { 200, 5, 40, 1000, 3 })
+      {  int[] keys = randomKeys(rand, n);
+         map.clear();
+         for(int i=0; i<n; i++)
+            map.put(keys[i], i);
+
+         // a cleared HashMap keeps its capacity
+         cap = HashMapOrder.grow(cap, n);
+         assertOrder(map.keySet(), keys, n, cap);
+      }
+   }
+
+   @Test()
+   public void testHashSetCopy()
+   {  Random rand = new Random(42);
+      for(int n=0; n<300; n+=11)
+      {  int[] keys = randomKeys(rand, n);
+         Map<Integer,Integer> map = new HashMap<Integer,Integer>();
+         for(int i=0; i<n; i++)
+            map.put(keys[i], i);
+         int[] mapOrder = HashMapOrder.reorder(keys, n, HashMapOrder.grow(16, n));
+
+         Set<Integer> set = new HashSet<Integer>(map.keySet());
+         assertOrder(set, mapOrder, n, HashMapOrder.copyCapacity(n));
+      }
+   }
+}
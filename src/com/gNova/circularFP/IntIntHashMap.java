@@ -0,0 +1,132 @@
+/*
+   Copyright 2008-2015 Genentech Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+*/
+
+package com.gNova.circularFP;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing map from int keys to int values which remembers the order
+ * in which keys were first added.
+ *
+ * Keys and values are stored in insertion order in two arrays, the hash table
+ * holds the position in these arrays. {@link #clear()} keeps the allocated
+ * arrays so that an instance can be reused for each molecule.
+ *
+ * @author albertgo
+ */
+final class IntIntHashMap
+{  private int[] keys;
+   private int[] values;
+   private int size;
+   /** position+1 of the key in keys, 0 for empty slots */
+   private int[] slots;
+   private int mask;
+
+   IntIntHashMap(int expectedSize)
+   {  int cap = 16;
+      while( cap < expectedSize * 2 ) cap <<= 1;
+      slots = new int[cap];
+      mask = cap - 1;
+      keys = new int[cap/2];
+      values = new int[cap/2];
+   }
+
+   private static int slot(int key, int mask)
+   {  return (key * 0x9E3779B9) >>> 16 & mask;
+   }
+
+   /**
+    * @return position of key in insertion order or -1.
+    */
+   int indexOf(int key)
+   {  int i = slot(key, mask);
+      int pos;
+      while( (pos = slots[i]) != 0 )
+      {  if( keys[pos-1] == key ) return pos-1;
+         i = (i + 1) & mask;
+      }
+      return -1;
+   }
+
+   boolean containsKey(int key)
+   {  return indexOf(key) >= 0;
+   }
+
+   /**
+    * @return value of key or 0 if key is not in this map.
+    */
+   int get(int key)
+   {  int pos = indexOf(key);
+      return pos < 0 ? 0 : values[pos];
+   }
+
+   /**
+    * Add delta to the value of key, a new key starts with 0.
+    * @return the new value.
+    */
+   int add(int key, int delta)
+   {  int i = slot(key, mask);
+      int pos;
+      while( (pos = slots[i]) != 0 )
+      {  if( keys[pos-1] == key ) return values[pos-1] += delta;
+         i = (i + 1) & mask;
+      }
+
+      if( size == keys.length )
+      {  grow();
+         return add(key, delta);
+      }
+
+      keys[size] = key;
+      values[size] = delta;
+      slots[i] = ++size;
+      return delta;
+   }
+
+   private void grow()
+   {  keys = Arrays.copyOf(keys, keys.length * 2);
+      values = Arrays.copyOf(values, values.length * 2);
+      slots = new int[slots.length * 2];
+      mask = slots.length - 1;
+      for(int pos=0; pos<size; pos++)
+      {  int i = slot(keys[pos], mask);
+         while( slots[i] != 0 ) i = (i + 1) & mask;
+         slots[i] = pos+1;
+      }
+   }
+
+   int size()
+   {  return size;
+   }
+
+   /** @return the key at position pos in insertion order */
+   int getKey(int pos)
+   {  return keys[pos];
+   }
+
+   /** @return the value at position pos in insertion order */
+   int getValue(int pos)
+   {  return values[pos];
+   }
+
+   void clear()
+   {  if( size == 0 ) return;
+      Arrays.fill(slots, 0);
+      size = 0;
+   }
+}
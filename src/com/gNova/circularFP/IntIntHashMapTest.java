@@ -0,0 +1,69 @@
+/*
+   Copyright 2008-2015 Genentech Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+*/
+
+package com.gNova.circularFP;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+public class IntIntHashMapTest
+{
+   @Test()
+   public void testAdd()
+   {  IntIntHashMap map = new IntIntHashMap(2);
+      assert map.get(7) == 0;
+      assert ! map.containsKey(7);
+      assert map.add(7, 1) == 1;
+      assert map.add(-3, 1) == 1;
+      assert map.add(7, 2) == 3;
+      assert map.size() == 2;
+      assert map.getKey(0) == 7 && map.getValue(0) == 3;
+      assert map.getKey(1) == -3 && map.getValue(1) == 1;
+      assert map.indexOf(-3) == 1;
+      assert map.indexOf(5) == -1;
+   }
+
+   @Test()
+   public void testRandomAndClear()
+   {  Random rand = new Random(42);
+      IntIntHashMap map = new IntIntHashMap(4);
+      for(int run=0; run<3; run++)
+      {  Map<Integer,Integer> ref = new LinkedHashMap<Integer,Integer>();
+         map.clear();
+         for(int i=0; i<20000; i++)
+         {  // small keys give collisions in the slots
+            int key = i % 3 == 0 ? rand.nextInt(1000) << 16 : rand.nextInt();
+            Integer old = ref.get(key);
+            int val = (old == null ? 0 : old) + 1;
+            ref.put(key, val);
+            assert map.add(key, 1) == val;
+         }
+
+         assert map.size() == ref.size();
+         int pos = 0;
+         for(Map.Entry<Integer,Integer> e : ref.entrySet())
+         {  assert map.getKey(pos) == e.getKey().intValue();
+            assert map.getValue(pos) == e.getValue().intValue();
+            assert map.get(e.getKey()) == e.getValue().intValue();
+            pos++;
+         }
+      }
+   }
+}
@@ -31,8 +31,9 @@ package com.gNova.circularFP;
 
 public class Prime
 {
-   private static int[] primes;
-   private static int   maxIndex;
+   // volatile: getPrime reads without lock, maxIndex is written after primes
+   private static volatile int[] primes;
+   private static volatile int   maxIndex;
 
    static
    {  primes = new int[50];
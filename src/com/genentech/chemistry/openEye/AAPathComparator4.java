@@ -21,7 +21,7 @@ import openeye.oechem.OEMolBase;
 import openeye.oechem.oechem;
 
 import com.aestel.chemistry.openEye.SimComparator;
-import com.aestel.math.HungarianAlgorithm;
+import com.aestel.math.LinearAssignmentSolver;
 import com.genentech.chemistry.openEye.AAPathComparatorFact.AAPathCompareType;
 
 /**
@@ -34,7 +34,7 @@ import com.genentech.chemistry.openEye.AAPathComparatorFact.AAPathCompareType;
  * Then each atom of the smaller molecule is matched to one atom of the other
  * based on maximum atom pair similarity.
  *
- * This implementation use the hungarian algorithm to find the optimal assignment
+ * This implementation uses a linear assignment solver to find the optimal assignment
  * of atoms and to compute the similarity of two atoms is changed as follows (same as comparator2):
  *    pathsInCommon / (2 * max(nPath(AtomMolA), nPath(AtomMolB)) - pathsInCommon)
  *
@@ -42,6 +42,12 @@ import com.genentech.chemistry.openEye.AAPathComparatorFact.AAPathCompareType;
  * The total similarity is computed as
  *    sum(Matched(atomPairSimilarity))/ (2 * max(nAtomsMolA, nAtomsMolB) - sum(Matched(atomPairSimilarity)))
  *
+ * Only matched pairs with a similarity >= minAtSim are summed. If several
+ * assignments have the same minimal total distance the solver may return a
+ * different one than {@link com.aestel.math.HungarianAlgorithm}. The sum of
+ * all matched pairs is the same but the thresholded sum, and therefore the
+ * similarity, can differ when minAtSim > 0.
+ *
  * @author albertgo 2012
  *
  */
@@ -49,6 +55,32 @@ public class AAPathComparator4 extends AAPathComparator2
 {  @SuppressWarnings("unused")
    private static final boolean DEBUG = false;
 
+   /** assignment solver and distance matrix are reused, one per thread */
+   private static final ThreadLocal<Workspace> WORKSPACE = new ThreadLocal<Workspace>()
+   {  @Override
+      protected Workspace initialValue()
+      {  return new Workspace();
+      }
+   };
+
+   /** arrays grow as needed so that no garbage is created per pair */
+   private static final class Workspace
+   {  final LinearAssignmentSolver solver = new LinearAssignmentSolver();
+      double[] distMat = new double[0];
+      int[] at1IdxMap  = new int[0];
+      int[] at2IdxMap  = new int[0];
+      int[] assignment = new int[0];
+
+      void ensureCapacity(int nRows, int nCols)
+      {  if( distMat.length < nRows * nCols ) distMat = new double[nRows * nCols];
+         if( at1IdxMap.length < nRows )
+         {  at1IdxMap  = new int[nRows];
+            assignment = new int[nRows];
+         }
+         if( at2IdxMap.length < nCols ) at2IdxMap = new int[nCols];
+      }
+   }
+
    AAPathComparator4(OEMolBase mol, int maxBonds, double minAtSim)
    {  super(mol, maxBonds, minAtSim);
    }
@@ -73,33 +105,26 @@ public class AAPathComparator4 extends AAPathComparator2
 
       // the oechem toolkit can have atom indexes which do not have atoms
       // ie. mol.GetMaxAtomIdx() returns more than mol.NumAtoms()
-      // for the hungarian algorithm we need a matrix which :
+      // for the assignment we need a matrix which :
       // - has one row per atoms in nAtoms1
       // - has one column per atoms in nAtoms2
-      // - is filled up with high costs to make a nAtoms2 x nAtoms2 matrix
-
-      // create square matrix with distances as hungarian algorithm needs
-      // square matrix and it needs to minimize the cost (=distance)
-      double[][] distMat;
-
-      distMat = new double[nAtoms2][nAtoms2];
-      // fill in non-square part of the distance matrix with costs 2 and up
-      // this will make the atoms not existing in atPath1 be asigned last
-      for (int i = nAtoms1; i < nAtoms2; i++)
-         for (int j = 0; j < nAtoms2; j++)
-            distMat[i][j] = 2D; // higher cost than similarity=0 (dist=1)
+      // nAtoms1 <= nAtoms2 so the rectangular solver can assign every row
 
       // map from indexes 0-nAtomsX indexes to
       // 0-atPathX.length which may have non-existing atoms to
-      int at1IdxMap[] = new int[nAtoms1];
-      int at2IdxMap[] = new int[nAtoms2];
+      Workspace ws = WORKSPACE.get();
+      ws.ensureCapacity(nAtoms1, nAtoms2);
+      int at1IdxMap[] = ws.at1IdxMap;
+      int at2IdxMap[] = ws.at2IdxMap;
+      double[] distMat = ws.distMat;
 
       // convert similarities to distance
       for (int i = 0, iAt = 0; i < atPath1.length; i++)
       {  if (atPath1[i] != null) // deal with empty atoms in oechem
-         {  for (int j = 0, jAt = 0; j < atPath2.length; j++)
+         {  int rowOffset = iAt * nAtoms2;
+            for (int j = 0, jAt = 0; j < atPath2.length; j++)
             {  if (atPath2[j] != null)
-               {  distMat[iAt][jAt] = 1 - atSims[i][j];
+               {  distMat[rowOffset + jAt] = 1 - atSims[i][j];
                   at2IdxMap[jAt] = j;
                   jAt++;
                }
@@ -109,15 +134,11 @@ public class AAPathComparator4 extends AAPathComparator2
          }
       }
 
-//      System.err.printf("\nMol1=%d %d\t mol2=%d %d\n", nAtoms1, atPath1.length,
-//               nAtoms2, atPath2.length);
-//      printMatrix(distMat);
-
-      int[][] assignment = HungarianAlgorithm.hgAlgorithm(distMat, "min");
+      int[] assignment = ws.assignment;
+      ws.solver.solve(distMat, nAtoms1, nAtoms2, assignment);
       double simSum = 0D;
       for (int i = 0; i < nAtoms1; i++)
-      {  double atSim = atSims[at1IdxMap[assignment[i][0]]][at2IdxMap[assignment[i][1]]];
-//         System.err.printf("%s\t%s\t%.2g\n",at1IdxMap[assignment[i][0]]+1,at2IdxMap[assignment[i][1]]+1,atSim);
+      {  double atSim = atSims[at1IdxMap[i]][at2IdxMap[assignment[i]]];
          if( atSim >= minAtSim )
             simSum += atSim;
       }
@@ -0,0 +1,190 @@
+/*
+   Copyright 2008-2014 Genentech Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+*/
+package com.genentech.chemistry.openEye;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import openeye.oechem.OEMolBase;
+
+import com.aestel.chemistry.openEye.SimComparator;
+import com.aestel.chemistry.openEye.SimComparatorDatabase;
+import com.aestel.chemistry.openEye.SimComparatorList;
+
+/**
+ * Reference set of {@link IAAPathComparatorChar} read from a binary file with
+ * precomputed atom paths. Loading does not need OEChem or path enumeration.
+ *
+ * The file contains, all numbers in big endian byte order:
+ * <pre>
+ * long    magic number "AEAAPD" + version
+ * int     maxBonds used to generate the paths
+ * int     count: number of records
+ * byte    1 if each record is followed by an id, 0 otherwise
+ * per record: descriptor as written by {@link IAAPathComparatorChar#writeDescriptor(java.io.DataOutput)}
+ *             followed by the modified UTF-8 id if ids are stored
+ * </pre>
+ *
+ * Files are written with {@link Writer}.
+ *
+ * @author albertgo
+ */
+public class AAPathComparatorDatabase extends SimComparatorList<OEMolBase, SimComparator<OEMolBase>>
+                                      implements SimComparatorDatabase<OEMolBase, SimComparator<OEMolBase>>
+{  public static final String FILE_EXTENSION = ".aapdb";
+
+   private static final long MAGIC = 0x4145414150440001L;
+   /** position of the record count in the file */
+   private static final int COUNT_POS = 12;
+
+   private final List<String> ids;
+
+   /**
+    * Read all comparators in fileName.
+    *
+    * @param maxBonds path length expected by the caller.
+    */
+   public AAPathComparatorDatabase(String fileName, HeadAtomComputer haComputer, int maxBonds)
+   throws IOException
+   {  super(2000);
+
+      DataInputStream in = new DataInputStream(
+                  new BufferedInputStream(new FileInputStream(fileName), 1 << 16));
+      try
+      {  if( in.readLong() != MAGIC )
+            throw new IOException("Not an AAPath database: " + fileName);
+
+         int fileMaxBonds = in.readInt();
+         if( fileMaxBonds != maxBonds )
+            throw new IOException(String.format(
+                     "AAPath database %s was created with path length %d not %d",
+                     fileName, fileMaxBonds, maxBonds));
+
+         int count = in.readInt();
+         boolean hasIds = in.readByte() != 0;
+         ids = hasIds ? new ArrayList<String>(count) : null;
+
+         for(int i=0; i<count; i++)
+         {  add(IAAPathComparatorChar.readDescriptor(in, haComputer));
+            if( hasIds ) ids.add(in.readUTF());
+         }
+      } finally
+      {  in.close();
+      }
+   }
+
+   /**
+    * @return true if fileName ends with {@link #FILE_EXTENSION}, used to
+    *         choose the format of new files.
+    */
+   public static boolean hasFileExtension(String fileName)
+   {  return fileName != null && fileName.toLowerCase().endsWith(FILE_EXTENSION);
+   }
+
+   /**
+    * @return true if fileName starts with the magic number of an AAPath database.
+    * @throws Error if fileName has the {@link #FILE_EXTENSION} but not the magic
+    *         number, e.g. if it was truncated or written by an other version.
+    */
+   public static boolean isDatabaseFile(String fileName)
+   {  if( fileName == null ) return false;
+
+      boolean hasMagic = false;
+      try
+      {  DataInputStream in = new DataInputStream(new FileInputStream(fileName));
+         try
+         {  hasMagic = in.readLong() == MAGIC;
+         } finally
+         {  in.close();
+         }
+      } catch (IOException e)
+      {  // not readable or shorter than the magic number
+      }
+
+      if( ! hasMagic && hasFileExtension(fileName) )
+         throw new Error("Not an AAPath database or unsupported version: " + fileName);
+
+      return hasMagic;
+   }
+
+   @Override
+   public List<String> getIds()
+   {  return ids;
+   }
+
+
+   /**
+    * Streams comparators into a new database file, the record count is
+    * written on {@link #close()}.
+    */
+   public static class Writer
+   {  private final String fileName;
+      private final DataOutputStream out;
+      private final int maxBonds;
+      private final boolean hasIds;
+      private int count = 0;
+
+      public Writer(String fileName, int maxBonds, boolean hasIds) throws IOException
+      {  this.fileName = fileName;
+         this.maxBonds = maxBonds;
+         this.hasIds = hasIds;
+         out = new DataOutputStream(
+                  new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16));
+         out.writeLong(MAGIC);
+         out.writeInt(maxBonds);
+         out.writeInt(0);
+         out.writeByte(hasIds ? 1 : 0);
+      }
+
+      /**
+       * @param id ignored if the file was created without ids.
+       */
+      public void add(IAAPathComparatorChar comp, String id) throws IOException
+      {  if( comp.getMaxBonds() != maxBonds )
+            throw new Error(String.format("Comparator path length %d does not match %d",
+                                          comp.getMaxBonds(), maxBonds));
+
+         comp.writeDescriptor(out);
+         if( hasIds ) out.writeUTF(id == null ? "" : id);
+         count++;
+      }
+
+      public int getCount()
+      {  return count;
+      }
+
+      public void close() throws IOException
+      {  out.close();
+
+         RandomAccessFile raf = new RandomAccessFile(fileName, "rw");
+         try
+         {  raf.seek(COUNT_POS);
+            raf.writeInt(count);
+         } finally
+         {  raf.close();
+         }
+      }
+   }
+}
@@ -16,10 +16,15 @@
 */
 package com.genentech.chemistry.openEye;
 
+import java.io.IOException;
+
 import openeye.oechem.OEGraphMol;
 import openeye.oechem.OEMolBase;
+import openeye.oechem.oechem;
 
 import com.aestel.chemistry.openEye.SimComparator;
+import com.aestel.chemistry.openEye.SimComparatorDatabase;
+import com.aestel.chemistry.openEye.SimComparatorDatabaseFactory;
 import com.aestel.chemistry.openEye.SimComparatorFactory;
 
 /**
@@ -30,10 +35,16 @@ import com.aestel.chemistry.openEye.SimComparatorFactory;
  * <code>
  *     AAPathComparatorFact(DEFAULT, DEFAULTVersion);
  * </code>
+ *
+ * Version 8 comparators can be read from precomputed descriptors, either from
+ * an sd tag written by {@link IAAPathComparatorChar#getDescriptorHex()} or
+ * from an {@link AAPathComparatorDatabase} file.
+ *
  * @author albertgo
  *
  */
-public class AAPathComparatorFact implements SimComparatorFactory<OEMolBase, OEMolBase, SimComparator<OEMolBase>>
+public class AAPathComparatorFact implements SimComparatorFactory<OEMolBase, OEMolBase, SimComparator<OEMolBase>>,
+                                             SimComparatorDatabaseFactory<OEMolBase, SimComparator<OEMolBase>>
 {  public static final int DEFAULTVersion = 8;
 
    public static enum AAPathCompareType
@@ -68,12 +79,25 @@ public class AAPathComparatorFact implements SimComparatorFactory<OEMolBase, OEM
    private final double minAtSim;
    private final int version;
    private final AAPathCompareType type;
+   private final String descriptorTag;
 
    public AAPathComparatorFact(AAPathCompareType type, int version)
+   {  this(type, version, null);
+   }
+
+   /**
+    * @param descriptorTag if not null and a molecule has this tag the comparator
+    *        is read from the precomputed descriptor in the tag. Requires version 8.
+    */
+   public AAPathComparatorFact(AAPathCompareType type, int version, String descriptorTag)
    {  this.pathLen = type.getPathLen();
       this.minAtSim = type.getMinAtSim();
       this.type = type;
       this.version = version;
+      this.descriptorTag = descriptorTag;
+
+      if( descriptorTag != null && version != 8 )
+         throw new Error("Precomputed AAPath descriptors are only supported in version 8");
    }
 
    /** returns new objects which should be deleted separately */
@@ -84,7 +108,13 @@ public class AAPathComparatorFact implements SimComparatorFactory<OEMolBase, OEM
 
    @Override
    public SimComparator<OEMolBase> createComparator(OEMolBase mol)
-   {  if( type.toString().startsWith("FUZZY") )
+   {  if( descriptorTag != null )
+      {  String descriptor = oechem.OEGetSDData(mol, descriptorTag);
+         if( descriptor.length() > 0 )
+            return createComparator(descriptor);
+      }
+
+      if( type.toString().startsWith("FUZZY") )
       {  if( version == 5) return new IAAPathComparator(mol, FuzzyHeadAtomComputer.INSTANCE, pathLen);
          if( version == 6) return new IAAPathComparatorInt(mol, FuzzyHeadAtomComputer.INSTANCE, pathLen);
          if( version == 7) return new IAAPathComparatorFP(mol, FuzzyHeadAtomComputer.INSTANCE, pathLen);
@@ -120,6 +150,44 @@ public class AAPathComparatorFact implements SimComparatorFactory<OEMolBase, OEM
                       + DEFAULTVersion);
    }
 
+   /**
+    * Create a comparator from the output of {@link IAAPathComparatorChar#getDescriptorHex()}.
+    */
+   public IAAPathComparatorChar createComparator(String descriptorHex)
+   {  IAAPathComparatorChar comp
+         = IAAPathComparatorChar.fromDescriptorHex(descriptorHex, getHeadAtomComputer());
+      if( comp.getMaxBonds() != pathLen )
+         throw new Error(String.format("AAPath descriptor has path length %d not %d",
+                                       comp.getMaxBonds(), pathLen));
+      return comp;
+   }
+
+   private HeadAtomComputer getHeadAtomComputer()
+   {  if( type.toString().startsWith("FUZZY") )
+         return FuzzyHeadAtomComputer.INSTANCE;
+      return HeadAtomComputer.INSTANCE;
+   }
+
+   /**
+    * @return true if fileName has the {@link AAPathComparatorDatabase} extension.
+    */
+   @Override
+   public boolean isDatabase(String fileName)
+   {  return AAPathComparatorDatabase.isDatabaseFile(fileName);
+   }
+
+   @Override
+   public SimComparatorDatabase<OEMolBase, SimComparator<OEMolBase>> openDatabase(String fileName)
+   {  if( version != 8 )
+         throw new Error("AAPath databases are only supported in version 8");
+
+      try
+      {  return new AAPathComparatorDatabase(fileName, getHeadAtomComputer(), pathLen);
+      } catch (IOException e)
+      {  throw new Error(e);
+      }
+   }
+
    @Override
    public void close()
    {  // nothing to do
@@ -20,6 +20,8 @@ import openeye.oechem.OEGraphMol;
 import openeye.oechem.OEMolBase;
 
 import com.aestel.chemistry.openEye.SimComparator;
+import com.aestel.chemistry.openEye.SimComparatorList;
+import com.aestel.chemistry.openEye.SimilarityCollector;
 import com.genentech.oechem.tools.OETools;
 
 public abstract class AbstractAAPathComparatorTest
@@ -53,6 +55,10 @@ public abstract class AbstractAAPathComparatorTest
 
    abstract protected AAPathComparatorFact getComparatorFact();
 
+   protected SimComparator<OEMolBase>[] getComparators()
+   {  return molComps;
+   }
+
    public void testComparator()
    {  // start with slightly more interesting case:
       int i1=1,j1=3;
@@ -75,6 +81,65 @@ public abstract class AbstractAAPathComparatorTest
       }
    }
 
+   /** similarity(other, minSim) may only return 0 if the similarity is below minSim */
+   public void testMinSimilarity()
+   {  double[] minSims = { 0D, .01D, .05D, .1D, .5D, 1D };
+      for(int i=0; i< molComps.length; i++)
+      {  for(int j=0; j<molComps.length; j++)
+         {  double sim = molComps[i].similarity(molComps[j]);
+            for(double minSim : minSims)
+            {  double boundedSim = molComps[i].similarity(molComps[j], minSim);
+               assert boundedSim == sim || (boundedSim == 0D && sim < minSim) :
+                  String.format("%2d,%2d\t%.4f != %.4f minSim=%.2f comparing %s\t%s\n",
+                                i,   j,
+                                boundedSim, sim, minSim,
+                                smis[i], smis[j]);
+            }
+         }
+      }
+   }
+
+   /** searching a {@link SimComparatorList} must give the pairwise similarities */
+   public void testSearch()
+   {  AAPathComparatorFact cFact = getComparatorFact();
+      SimComparatorList<OEMolBase, SimComparator<OEMolBase>> list
+         = new SimComparatorList<OEMolBase, SimComparator<OEMolBase>>(smis.length);
+      OEGraphMol mol = new OEGraphMol();
+      for( int i=0; i<smis.length; i++)
+      {  mol.Clear();
+         OETools.smiToMol(mol, smis[i]);
+         list.add(cFact.createComparator(mol));
+      }
+      cFact.close();
+
+      for(final double minSim : new double[] { 0D, .05D })
+      {  for(int q=0; q<smis.length; q++)
+         {  final double[] sims = new double[smis.length];
+            list.search(q, new SimilarityCollector()
+            {  @Override
+               public void collect(int idx, double sim)
+               {  sims[idx] = sim;
+               }
+
+               @Override
+               public double getMinSimilarity()
+               {  return minSim;
+               }
+            });
+
+            for(int i=0; i<smis.length; i++)
+            {  double sim = molComps[q].similarity(molComps[i], minSim);
+               assert sims[i] == sim :
+                  String.format("%2d,%2d\t%.4f != %.4f minSim=%.2f comparing %s\t%s\n",
+                                q,   i,
+                                sims[i], sim, minSim,
+                                smis[q], smis[i]);
+            }
+         }
+      }
+      list.close();
+   }
+
    public void close()
    {  for( int i=0; i<molComps.length; i++)
          molComps[i].close();
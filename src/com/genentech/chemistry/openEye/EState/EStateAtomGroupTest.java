@@ -0,0 +1,71 @@
+/*
+   Copyright 2008-2015 Genentech Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+*/
+package com.genentech.chemistry.openEye.EState;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Compare the decision table of {@link EStateAtomGroup} to the lookup by
+ * hash number it replaced.
+ */
+public class EStateAtomGroupTest
+{  private static final int MAXAtomicNum = 60;
+   private static final int MAXDelta = 12;
+
+   @Test
+   public void testDecisionTableMatchesHashLookup()
+   {  // groups by hash number as in the former ATOM_GROUP_MAP
+      Map<Integer,List<EStateAtomGroup>> hashMap = new HashMap<Integer,List<EStateAtomGroup>>();
+      for( EStateAtomGroup esag : EStateAtomGroup.getEStateAtomGroupList() )
+      {  List<EStateAtomGroup> groups = hashMap.get( esag.hashNumber );
+         if( groups == null )
+         {  groups = new ArrayList<EStateAtomGroup>();
+            hashMap.put( esag.hashNumber, groups );
+         }
+         groups.add( esag );
+      }
+
+      int nMatched = 0;
+      for( int z=0; z<=MAXAtomicNum; z++ )
+         for( int dv=-2; dv<=MAXDelta; dv++ )
+            for( int d=0; d<=MAXDelta; d++ )
+               for( boolean ar : new boolean[] { false, true } )
+               {  int hash = EStateAtomGroup.computeHashNumber( z, dv, d, dv+d, dv-d, ar );
+                  List<EStateAtomGroup> expected = hashMap.get( hash );
+                  EStateAtomGroup[] actual = EStateAtomGroup.getEStateAtomGroups( z, dv, d, ar );
+
+                  String msg = String.format( "Z=%d dv=%d d=%d ar=%b", z, dv, d, ar );
+                  if( expected == null )
+                  {  Assert.assertNull( actual, msg );
+                     continue;
+                  }
+                  Assert.assertNotNull( actual, msg );
+                  Assert.assertEquals( actual.length, expected.size(), msg );
+                  for( int i=0; i<actual.length; i++ )
+                     Assert.assertSame( actual[i], expected.get( i ), msg );
+                  nMatched++;
+               }
+
+      assert nMatched > 0;
+   }
+}
@@ -21,14 +21,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 import openeye.oechem.OEAtomBase;
 import openeye.oechem.OEAtomBaseIter;
-import openeye.oechem.OEBondBase;
-import openeye.oechem.OEBondBaseIter;
 import openeye.oechem.OEMatchBase;
 import openeye.oechem.OEMatchBaseIter;
 import openeye.oechem.OEMolBase;
@@ -37,6 +34,7 @@ import openeye.oechem.oechem;
 
 import com.aestel.chemistry.molecule.Atom;
 import com.aestel.utility.NameValuePair;
+import com.genentech.oechem.tools.MolGraph;
 
 
 
@@ -53,8 +51,16 @@ import com.aestel.utility.NameValuePair;
 public class EStateCalculator
 {
    OEMolBase mol;
-   List<EStateCalcResult> esCalcResultList;
-   EStateCalcResult[] esCalcResults;
+   MolGraph graph;
+   /** positions in graph of the non hydrogen atoms in the order of mol.GetAtoms() */
+   int[] heavyAtoms;
+   int nHeavyAtoms;
+   /** intrinsic state by atom position */
+   float[] intrinsicStates;
+   /** E-state index by atom position */
+   float[] eStateIndices;
+   /** assigned E-state atom group by atom position */
+   EStateAtomGroup[] atomGroups;
    float[] estateAtomGroupSums;
    int[] estateAtomGroupCounts;
    int notAssignedAtomCounter;
@@ -62,16 +68,20 @@ public class EStateCalculator
    
    
    public EStateCalculator()
-   {  esCalcResultList      = new ArrayList<EStateCalcResult>();
-      estateAtomGroupSums   = new float[ EStateAtomGroup.getEStateAtomGroupSize() ];
+   {  estateAtomGroupSums   = new float[ EStateAtomGroup.getEStateAtomGroupSize() ];
       estateAtomGroupCounts = new int[ EStateAtomGroup.getEStateAtomGroupSize() ];
+      heavyAtoms      = new int[0];
+      intrinsicStates = new float[0];
+      eStateIndices   = new float[0];
+      atomGroups      = new EStateAtomGroup[0];
       clear();
    }
    
    
    private void clear()
-   {  esCalcResultList.clear();
-      mol = null;
+   {  mol = null;
+      graph = null;
+      nHeavyAtoms = 0;
       for( int i=0; i<estateAtomGroupSums.length; i++ )
          estateAtomGroupSums[i] = 0.0f;
       for( int i=0; i<estateAtomGroupCounts.length; i++ )
@@ -82,8 +92,29 @@ public class EStateCalculator
    
    
    public void compute( OEMolBase mol, boolean doKeys, boolean printDetails )
+   {  compute( mol, MolGraph.create( mol ), doKeys, printDetails );
+   }
+
+
+   /**
+    * Same as {@link #compute(OEMolBase, boolean, boolean)} for callers that
+    * already hold a {@link MolGraph} of mol.
+    *
+    * @param graph created from mol, mol must not be modified while in use.
+    */
+   public void compute( OEMolBase mol, MolGraph graph, boolean doKeys, boolean printDetails )
    {  this.clear();
       this.mol = mol;
+      this.graph = graph;
+
+      int nAtoms = graph.getNumAtoms();
+      if( heavyAtoms.length < nAtoms )
+      {  heavyAtoms      = new int[ nAtoms ];
+         intrinsicStates = new float[ nAtoms ];
+         eStateIndices   = new float[ nAtoms ];
+         atomGroups      = new EStateAtomGroup[ nAtoms ];
+      }
+
       assignEStateAtomGroup( printDetails );
       //if( doKeys )
          computeEStateSums( printDetails );
@@ -92,9 +123,10 @@ public class EStateCalculator
    
    public String getEStateIndexSummary()
    {  StringBuilder sb = new StringBuilder();
-      for( EStateCalcResult result : esCalcResultList )
-      {  sb.append( result.getEStateIndex() ).append( " (" )
-           .append( result.getAtomLabel() ).append( "); " );
+      for( int i=0; i<nHeavyAtoms; i++ )
+      {  int at = heavyAtoms[i];
+         sb.append( eStateIndices[at] ).append( " (" )
+           .append( getAtomLabel( at ) ).append( "); " );
       }
       return sb.substring( 0, sb.length()-2 );
    }
@@ -115,15 +147,15 @@ public class EStateCalculator
          {
             OEAtomBase tAtom = targetIt.next();
             OEAtomBase pAtom = patternIt.next();
-            EStateCalcResult result = esCalcResults[ tAtom.GetIdx() ];
-            String estate = String.valueOf( result.getEStateIndex() );
+            int at = graph.getAtomPos( tAtom.GetIdx() );
+            String estate = String.valueOf( eStateIndices[ at ] );
             
             String tag = "Index_" + ( pAtom.GetIdx()+1 );
             nvp = new NameValuePair<String,String>( tag, estate );
             nvpList.add( nvp );
             
             tag = tag + "_atom";
-            nvp = new NameValuePair<String,String>( tag, result.getAtomLabel() );
+            nvp = new NameValuePair<String,String>( tag, getAtomLabel( at ) );
             nvpList.add( nvp );
             
             pAtom.delete();
@@ -173,27 +205,40 @@ public class EStateCalculator
    {  return this.notAssignedAtomSummary; }
 
    
+   /**
+    * @return the atom symbol plus the internal index in, e.g. following format C_1
+    */
+   private String getAtomLabel( int at )
+   {  String symbol =  oechem.OEGetAtomicSymbol( graph.getAtomicNum( at ) );
+      return symbol + "_" + ( graph.getAtomIdx( at )+1 );
+   }
+
+
    private void assignEStateAtomGroup( boolean printDetails )
    {  OEAtomBaseIter atomIterator = mol.GetAtoms();
-      esCalcResults = new EStateCalcResult[ mol.GetMaxAtomIdx() ];
       
       while( atomIterator.hasNext() )
       {  EStateAtomGroup esAtomGroup = null;
          OEAtomBase atom = atomIterator.next();
-         int atomicNum = atom.GetAtomicNum();
+         int at = graph.getAtomPos( atom.GetIdx() );
+         int atomicNum = graph.getAtomicNum( at );
          if( atomicNum == 1 )
             continue;
          
-         EStateCalcResult esCalcResult = new EStateCalcResult( atom, printDetails );
-         esCalcResultList.add( esCalcResult );
-         esCalcResults[ atom.GetIdx() ] = esCalcResult;
+         heavyAtoms[ nHeavyAtoms++ ] = at;
+         atomGroups[ at ] = null;
+
+         /* Simple Connectivity Value: 
+          * Single bonds minus H-bonds corresponds to number of heavy neighbor atom */
+         int delta  = graph.getHvyDegree( at );
+         /* Valence Connectivity Value: 
+          * Sum of sigma and pi bonds, lone pairs minus H-bonds */
+         int deltaV = Atom.SP_ELECTRONS[ atomicNum ] - graph.getTotalHCount( at );
+         boolean isAromatic = graph.isAromatic( at );
+         intrinsicStates[ at ] = computeIntrinsicState( at, atomicNum, deltaV, delta, printDetails );
          
-         int hash = EStateAtomGroup.computeHashNumber( 
-                  esCalcResult.getAtomicNumber(), esCalcResult.getDeltaValence(), 
-                  esCalcResult.getDeltaSimple(), esCalcResult.getSumOfDelta(), 
-                  esCalcResult.getDifferenceOfDelta(), esCalcResult.isAromatic() );
-         List<EStateAtomGroup> esAtomGroupList;
-         esAtomGroupList= EStateAtomGroup.getEStateAtomGroups( hash );
+         EStateAtomGroup[] esAtomGroupList
+            = EStateAtomGroup.getEStateAtomGroups( atomicNum, deltaV, delta, isAromatic );
          if( esAtomGroupList == null )
          {  ++notAssignedAtomCounter;
             String atomSymbol = oechem.OEGetAtomicSymbol( atomicNum );
@@ -202,19 +247,19 @@ public class EStateCalculator
             notAssignedAtomSummary = oldSummary + atomSymbol + seqNo + ";";
          
          } else
-         {  if( esAtomGroupList.size() == 1 )
-            {  esAtomGroup = esAtomGroupList.get( 0 );
-               esCalcResult.setEStateAtomGroup( esAtomGroup );
+         {  if( esAtomGroupList.length == 1 )
+            {  esAtomGroup = esAtomGroupList[ 0 ];
+               atomGroups[ at ] = esAtomGroup;
                int esAtomGroupIndex = esAtomGroup.atomGroupNumber-1;
                ++estateAtomGroupCounts[ esAtomGroupIndex ];
             
             } else
-            {  int esvSingleBondCount = esCalcResult.computeNumberOfSingleBonds();
-               for( int i=0; i<esAtomGroupList.size(); i++ )
-               {  esAtomGroup = esAtomGroupList.get( i );
+            {  int esvSingleBondCount = computeNumberOfSingleBonds( at );
+               for( int i=0; i<esAtomGroupList.length; i++ )
+               {  esAtomGroup = esAtomGroupList[ i ];
                   if( esAtomGroup.countSingleBonds && 
                       esAtomGroup.singleBonds == esvSingleBondCount )
-                  {  esCalcResult.setEStateAtomGroup( esAtomGroup );
+                  {  atomGroups[ at ] = esAtomGroup;
                      int esAtomGroupIndex = esAtomGroup.atomGroupNumber-1;
                      ++estateAtomGroupCounts[ esAtomGroupIndex ];
                      break;
@@ -222,8 +267,8 @@ public class EStateCalculator
                }
             }
          }
-         if( printDetails && esCalcResult.getEStateAtomGroup() != null )
-         {  EStateAtomGroup esag = esCalcResult.getEStateAtomGroup();
+         if( printDetails && atomGroups[ at ] != null )
+         {  EStateAtomGroup esag = atomGroups[ at ];
             System.err.println( "ES Atom Group Num___" + esag.atomGroupNumber );
             System.err.println( "ES Atom Group Sym___" + esag.atomGroupSymbol );
          }
@@ -232,20 +277,62 @@ public class EStateCalculator
    }
    
    
+   /**
+    * Intrincis Atomic State:
+    * Based on the Kier-Hall electronegativity and derived from the ratio of 
+    * that electronegativity to the number of skeletal sigma bonds for a given
+    * atom, i.e. I = ((2/N)^2 * deltaV + 1) / delta
+    */
+   private float computeIntrinsicState( int at, int atomicNum, int deltaV, int delta,
+                                        boolean printDetails )
+   {  int pqNumber = Atom.PERIOD[ atomicNum ];
+      float intrinsicState = (float)( ( Math.pow( 2D/pqNumber, 2D ) * deltaV + 1D ) 
+                             / (double)delta );
+      
+      if( printDetails )
+      {  String atomSymbol = oechem.OEGetAtomicSymbol( atomicNum );
+         int seqNo = graph.getAtomIdx( at ) + 1;
+         System.err.println( "\nAtom " + atomSymbol + seqNo );
+         System.err.println( "deltaV___" + deltaV );
+         System.err.println( "delta___" + delta );
+         System.err.println( "N___" + pqNumber );
+         System.err.println( "iState___" + intrinsicState +
+                             " = ( (2/" + pqNumber + ")^2 * " + deltaV + 
+                             " + 1 ) / " + delta );
+      }
+      return intrinsicState;
+   }
+
+
+   private int computeNumberOfSingleBonds( int at )
+   {  int singleBondCount = 0;
+      for( int k=graph.getNbrStart( at ); k<graph.getNbrEnd( at ); k++ )
+      {  int bd = graph.getNbrBond( k );
+         if( graph.getBondOrder( bd ) == 1 && !graph.isBondAromatic( bd ) )
+            ++singleBondCount;
+      }
+      return singleBondCount;
+   }
+   
+   
    private void computeEStateSums( boolean printDetails )
-   {  for( EStateCalcResult esCalcResult : esCalcResultList )
-      {  String atomSymbol = oechem.OEGetAtomicSymbol( esCalcResult.getAtomicNumber() );
-         int seqNo = esCalcResult.getAtomIndex() + 1;
+   {  int[][] distMat = nHeavyAtoms > 0 ? graph.getDistanceMatrix() : null;
+
+      for( int i=0; i<nHeavyAtoms; i++ )
+      {  int at = heavyAtoms[i];
          if( printDetails )
+         {  String atomSymbol = oechem.OEGetAtomicSymbol( graph.getAtomicNum( at ) );
+            int seqNo = graph.getAtomIdx( at ) + 1;
             System.err.println( "\nAtom " + atomSymbol + seqNo );
+         }
          
-         esCalcResult.computeEStateIndex( esCalcResultList, printDetails );
-         if( esCalcResult.getEStateAtomGroup() == null )
+         eStateIndices[ at ] = computeEStateIndex( at, distMat[ at ], printDetails );
+         if( atomGroups[ at ] == null )
             continue;
-         EStateAtomGroup esag = esCalcResult.getEStateAtomGroup();
+         EStateAtomGroup esag = atomGroups[ at ];
          int esAGIndex = esag.atomGroupNumber-1;
          float oldESSum = estateAtomGroupSums[ esAGIndex ];
-         float myESIndex = esCalcResult.getEStateIndex();
+         float myESIndex = eStateIndices[ at ];
          estateAtomGroupSums[ esAGIndex ] = oldESSum + myESIndex;
          
          if( printDetails )
@@ -255,16 +342,52 @@ public class EStateCalculator
          }
       }
    }
+
+
+   /**
+    * Calculate the E-state index of the given atom, i.e. 
+    *          S[i] = I[i] + sumOf( I[i] - I[j]) / r[ij]^2 )
+    * over all non hydrogen atoms j.
+    *
+    * @param dist topological distances from at as returned by OEGetPathLength
+    */
+   private float computeEStateIndex( int at, int[] dist, boolean printDetails )
+   {  float sumOfPertubation = 0;
+      float myState = intrinsicStates[ at ];
+      for( int i=0; i<nHeavyAtoms; i++ )
+      {  int other = heavyAtoms[i];
+         int rij = dist[ other ] + 1;
+         float oldSum = sumOfPertubation;
+         float otherState = intrinsicStates[ other ];
+         sumOfPertubation = (float) (oldSum + ( myState - otherState ) / (double)( rij * rij ));
+         
+         if( printDetails )
+         {  System.err.println( "sumOfPertubation___" + sumOfPertubation + 
+                     " = " + oldSum + " + (" + myState + " - " + otherState + 
+                     ") / " + rij + "^2" );
+         }
+      }
+      float eStateIndex = myState + sumOfPertubation;
+      if( printDetails )
+         System.err.println( "Estate index___" + eStateIndex );
+      return eStateIndex;
+   }
 }
 
 
 class EStateAtomGroup
-{  private static final EStateAtomGroup[] ATOM_GROUP_LIST;
-   private static final Map<Integer,List<EStateAtomGroup>> ATOM_GROUP_MAP;
+{  /** exclusive upper bound for deltaV and delta in the decision table */
+   private static final int MAXDelta = 10;
+   private static final EStateAtomGroup[] ATOM_GROUP_LIST;
+   /**
+    * Candidate groups in file order indexed by
+    * {@link #getTableIndex(int, int, int, boolean)}, null if there is none.
+    */
+   private static final EStateAtomGroup[][] DECISION_TABLE;
    static 
    {  String estateFile = "EStateAtomGroups.txt";
-      Map<Integer,List<EStateAtomGroup>> esagMap = new HashMap<Integer,List<EStateAtomGroup>>();
       List<EStateAtomGroup> esagList = new ArrayList<EStateAtomGroup>();
+      int maxAtomicNumber = 0;
       try
       {  InputStream strm = EStateAtomGroup.class.getResourceAsStream( estateFile );
          BufferedReader reader = new BufferedReader( new InputStreamReader( strm ) );
@@ -300,17 +423,49 @@ class EStateAtomGroup
                      groupNumber, atomicNumber, deltaV, delta, sumOfDelta, diffOfDelta,
                      isAromatic, countSBonds, singleBonds );
             esagList.add( esag );
-            
-            int hashNumber = esag.hashNumber;
-            if( !esagMap.containsKey( hashNumber ) )
-               esagMap.put( hashNumber, new ArrayList<EStateAtomGroup>() );
-            esagMap.get( hashNumber ).add( esag );
+            maxAtomicNumber = Math.max( maxAtomicNumber, atomicNumber );
          }
       } catch (IOException e)
       {  throw new Error(e);
       }
-      ATOM_GROUP_MAP   = esagMap;
       ATOM_GROUP_LIST  = esagList.toArray( new EStateAtomGroup[ esagList.size() ] );
+      DECISION_TABLE   = new EStateAtomGroup[ (maxAtomicNumber+1) * MAXDelta * MAXDelta * 2 ][];
+
+      for( EStateAtomGroup esag : ATOM_GROUP_LIST )
+      {  int idx = getTableIndex( esag.atomicNumber, esag.deltaV, esag.delta, esag.isAromatic );
+         
+         // groups whose dv+d or dv-d columns are inconsistent never matched an 
+         // atom by hash number, keep it that way
+         int atomHash = computeHashNumber( esag.atomicNumber, esag.deltaV, esag.delta,
+                  esag.deltaV + esag.delta, esag.deltaV - esag.delta, esag.isAromatic );
+         if( idx < 0 || atomHash != esag.hashNumber )
+            continue;
+         
+         EStateAtomGroup[] candidates = DECISION_TABLE[ idx ];
+         if( candidates == null )
+         {  candidates = new EStateAtomGroup[] { esag };
+         } else
+         {  candidates = Arrays.copyOf( candidates, candidates.length+1 );
+            candidates[ candidates.length-1 ] = esag;
+         }
+         DECISION_TABLE[ idx ] = candidates;
+      }
+   }
+   
+   
+   /**
+    * @return index into DECISION_TABLE or -1 if the invariants are out of range.
+    */
+   private static int getTableIndex( int atomicNumber, int deltaV, int delta, 
+                                     boolean isAromatic )
+   {  if( deltaV < 0 || deltaV >= MAXDelta || delta < 0 || delta >= MAXDelta 
+          || atomicNumber < 0 )
+         return -1;
+      int idx = ( ( atomicNumber * MAXDelta + deltaV ) * MAXDelta + delta ) * 2 
+                + ( isAromatic ? 1 : 0 );
+      if( idx >= DECISION_TABLE.length )
+         return -1;
+      return idx;
    }
    
    
@@ -318,6 +473,13 @@ class EStateAtomGroup
    {  return ATOM_GROUP_LIST.length; }
    
    
+   /**
+    * @return all groups in file order. The array must not be modified.
+    */
+   static EStateAtomGroup[] getEStateAtomGroupList()
+   {  return ATOM_GROUP_LIST; }
+   
+   
    static String[] getEStateAtomGroupSymbols()
    {  String[] symbols = new String[ ATOM_GROUP_LIST.length ];
       for( int i=0; i<symbols.length; i++ )
@@ -326,8 +488,16 @@ class EStateAtomGroup
    }
    
    
-   static List<EStateAtomGroup> getEStateAtomGroups( int hashNumber )
-   {  return ATOM_GROUP_MAP.get( hashNumber ); }
+   /**
+    * @return the groups matching the atom invariants in file order,
+    *         null if there are none. The array must not be modified.
+    */
+   static EStateAtomGroup[] getEStateAtomGroups( int atomicNumber, int deltaV, 
+                                                 int delta, boolean isAromatic )
+   {  int idx = getTableIndex( atomicNumber, deltaV, delta, isAromatic );
+      if( idx < 0 ) return null;
+      return DECISION_TABLE[ idx ];
+   }
    
    static int computeHashNumber( int atomicNumber, int deltaV, int delta,
             int sumOfDelta, int diffOfDelta, boolean isAromatic )
@@ -378,143 +548,3 @@ class EStateAtomGroup
                deltaV, delta, sumOfDelta, diffOfDelta, isAromatic );
    }   
 }
-
-
-
-class EStateCalcResult
-{  private OEAtomBase atom = null;
-   /*
-    * Simple Connectivity Value: 
-    * Single bonds minus H-bonds corresponds to number of heavy neighbor atom */
-   private int delta;
-   /*
-    * Valence Connectivity Value: 
-    * Sum of sigma and pi bonds, lone pairs minus H-bonds */
-   private int deltaV;
-   /*
-    * Intrincis Atomic State:
-    * Based on the Kier-Hall electronegativity and derived from the ratio of 
-    * that electronegativity to the number of skeletal sigma bonds for a given
-    * atom */
-   private float intrinsicState; 
-   private float eStateIndex;
-   private EStateAtomGroup atomGroup = null;
-
-   
-   EStateCalcResult( OEAtomBase atom, boolean printDetails )
-   {  if( atom == null )
-         throw new NullPointerException();
-      int atomicNum = atom.GetAtomicNum();
-      int pqNumber = Atom.PERIOD[ atomicNum ];
-   
-      this.atom = atom; 
-      delta  = atom.GetHvyDegree();
-      deltaV = Atom.SP_ELECTRONS[ atomicNum ] - atom.GetTotalHCount();
-      intrinsicState = (float)( ( Math.pow( 2D/pqNumber, 2D ) * deltaV + 1D ) 
-                       / (double)delta );
-      
-      if( printDetails )
-      {  String atomSymbol = oechem.OEGetAtomicSymbol( atom.GetAtomicNum() );
-         int seqNo = atom.GetIdx() + 1;
-         System.err.println( "\nAtom " + atomSymbol + seqNo );
-         System.err.println( "deltaV___" + deltaV );
-         System.err.println( "delta___" + delta );
-         System.err.println( "N___" + pqNumber );
-         System.err.println( "iState___" + intrinsicState +
-                             " = ( (2/" + pqNumber + ")^2 * " + deltaV + 
-                             " + 1 ) / " + delta );
-      }
-   }
-
-   
-   /**
-    * @return this index of the given atom in the molecule.
-    */
-   int getAtomIndex()
-   {  return atom.GetIdx(); }
-   
-   int getAtomicNumber()
-   {  return atom.GetAtomicNum(); }
-   
-   /**
-    * @return the atom symbol plus the internal index in, e.g. following format C_1
-    */
-   String getAtomLabel()
-   {  String symbol =  oechem.OEGetAtomicSymbol( atom.GetAtomicNum() );
-      return symbol + "_" + ( atom.GetIdx()+1 );
-   }
-   
-   int getDeltaSimple()
-   {  return delta; }
-   
-   int getDeltaValence()
-   {  return deltaV; }
-   
-   int getSumOfDelta()
-   {  return deltaV + delta; }
-   
-   int getDifferenceOfDelta()
-   {  return deltaV - delta; }
-   
-   boolean isAromatic()
-   {  return atom.IsAromatic(); }
-   
-   /**
-    * The intrinsic state of an atom, i.e. I = ((2/N)^2 * deltaV + 1) / delta
-    */
-   float getIntrinsicState()
-   {  return this.intrinsicState; }
-   
-   void setEStateAtomGroup( EStateAtomGroup atomGroup )
-   {  this.atomGroup = atomGroup; }
-   
-   EStateAtomGroup getEStateAtomGroup()
-   {  return this.atomGroup; }
-   
-   float getEStateIndex()
-   {  return this.eStateIndex; }
-   
-   
-   int computeNumberOfSingleBonds()
-   {  int singleBondCount = 0;
-      OEBondBaseIter bondIterator = atom.GetBonds();
-      while( bondIterator.hasNext() )
-      {
-         OEBondBase bond = bondIterator.next();
-         if( bond.GetOrder() == 1 && !bond.IsAromatic() )
-            ++singleBondCount;
-      }
-      bondIterator.delete();
-      return singleBondCount;
-   }
-   
-   
-   /**
-    * Calculate the E-state index of the given atom, i.e. 
-    *          S[i] = I[i] + sumOf( I[i] - I[j]) / r[ij]^2 )
-    * @param esCalcResults List of atoms in the same molecules with intrinsic state
-    *          for calculation of the E-state index of the given atom.
-    */
-   void computeEStateIndex( List<EStateCalcResult> esCalcResults,
-                            boolean printDetails )
-   {  float sumOfPertubation = 0;
-      float myState = this.getIntrinsicState();
-      for( EStateCalcResult other : esCalcResults )
-      {  int rij = oechem.OEGetPathLength(this.atom, other.atom ) + 1;
-         float oldSum = sumOfPertubation;
-         float otherState = other.getIntrinsicState();
-         sumOfPertubation = (float) (oldSum + ( myState - otherState ) / Math.pow( rij, 2 ));
-         
-         if( printDetails )
-         {  System.err.println( "sumOfPertubation___" + sumOfPertubation + 
-                     " = " + oldSum + " + (" + myState + " - " + otherState + 
-                     ") / " + rij + "^2" );
-         }
-      }
-      eStateIndex = myState + sumOfPertubation;
-      if( printDetails )
-         System.err.println( "Estate index___" + eStateIndex );
-   }
-}
-
-
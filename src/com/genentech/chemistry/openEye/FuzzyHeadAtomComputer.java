@@ -16,8 +16,6 @@
 */
 package com.genentech.chemistry.openEye;
 
-import openeye.oechem.OEAtomBase;
-
 /**
  * This HeadAtomComputer computes similarities of atom types that should be
  * intuitive to chemists.
@@ -67,33 +65,31 @@ public class FuzzyHeadAtomComputer extends HeadAtomComputer
          m1 = m2;
          m2 = md;
       }
-      OEAtomBase at1 = m1.getAtom(atIdx1);
-      OEAtomBase at2 = m2.getAtom(atIdx2);
-
       switch( atNum1 )
       {
-         case CARBON:   return computeCarbon(  at1, at2, aType1, aType2, atNum2);
-         case NITROGEN: return computeNitrogen(at1, at2, aType1, aType2, atNum2);
-         case OXYGEN:   return computeOxygen(  at1, at2, aType1, aType2, atNum2);
-         case FLOURINE: return computeFlourine(at1, at2, atNum2);
-         case SULPHOR:  return computeSulphor( at1, at2, atNum2);
-         case CHLORINE: return computeChlorine(at1, at2, atNum2);
-         case BROMINE:  return computeBromine( at1, at2, atNum2);
+         case CARBON:   return computeCarbon(  m1, atIdx1, m2, atIdx2, aType1, aType2, atNum2);
+         case NITROGEN: return computeNitrogen(m1, atIdx1, m2, atIdx2, aType1, aType2, atNum2);
+         case OXYGEN:   return computeOxygen(  m1, atIdx1, m2, atIdx2, aType1, aType2, atNum2);
+         case FLOURINE: return computeFlourine(m1, atIdx1, m2, atIdx2, atNum2);
+         case SULPHOR:  return computeSulphor( m1, atIdx1, m2, atIdx2, atNum2);
+         case CHLORINE: return computeChlorine(m1, atIdx1, m2, atIdx2, atNum2);
+         case BROMINE:  return computeBromine( m1, atIdx1, m2, atIdx2, atNum2);
 
          default:
             if(aType1 == aType2) return 1D;
-            return at1.GetHvyDegree() == at2.GetHvyDegree() ? 0.2D : 0D;
+            return m1.getHvyDegree(atIdx1) == m2.getHvyDegree(atIdx2) ? 0.2D : 0D;
       }
    }
 
 
-   private static double computeCarbon(OEAtomBase at1, OEAtomBase at2, int aType1,
+   private static double computeCarbon(IAAPathComputerInterface m1, int at1,
+            IAAPathComputerInterface m2, int at2, int aType1,
             int aType2, int atNum2)
    {  if( atNum2 != CARBON )
       {  if( IAAPathGenerator.isAromatic(aType1) == IAAPathGenerator.isAromatic(aType2))
             return 0.3D;
 
-         return at1.GetHvyDegree() == at2.GetHvyDegree() ? 0.2D : 0D;
+         return m1.getHvyDegree(at1) == m2.getHvyDegree(at2) ? 0.2D : 0D;
       }
 
       /////// CARBON - CARBON
@@ -104,7 +100,8 @@ public class FuzzyHeadAtomComputer extends HeadAtomComputer
    }
 
 
-   private static double computeNitrogen(OEAtomBase at1, OEAtomBase at2, int aType1,
+   private static double computeNitrogen(IAAPathComputerInterface m1, int at1,
+            IAAPathComputerInterface m2, int at2, int aType1,
             int aType2, int atNum2)
    {  if( atNum2 != NITROGEN )
       {  if( atNum2 == OXYGEN )
@@ -118,23 +115,24 @@ public class FuzzyHeadAtomComputer extends HeadAtomComputer
          if( IAAPathGenerator.isAromatic(aType1) == IAAPathGenerator.isAromatic(aType2))
             return 0.3D;
 
-         return at1.GetHvyDegree() == at2.GetHvyDegree() ? 0.2D : 0D;
+         return m1.getHvyDegree(at1) == m2.getHvyDegree(at2) ? 0.2D : 0D;
       }
 
       /////// Nitrogen Nitrogen
-      if( aType1 == aType2 && at1.GetValence() == at2.GetValence() )
+      if( aType1 == aType2 && m1.getValence(at1) == m2.getValence(at2) )
          return 1D;
 
       return 0.6D;
    }
 
 
-   private static double computeOxygen(OEAtomBase at1, OEAtomBase at2, int aType1,
+   private static double computeOxygen(IAAPathComputerInterface m1, int at1,
+            IAAPathComputerInterface m2, int at2, int aType1,
             int aType2, int atNum2)
    {  if( atNum2 != OXYGEN )
       {  if( atNum2 == SULPHOR )
          {  if( IAAPathGenerator.isAromatic(aType1) == IAAPathGenerator.isAromatic(aType2)
-                && at1.GetValence() == at2.GetValence() )
+                && m1.getValence(at1) == m2.getValence(at2) )
                return 0.5D;
 
             return 0.0D;
@@ -143,7 +141,7 @@ public class FuzzyHeadAtomComputer extends HeadAtomComputer
          if( IAAPathGenerator.isAromatic(aType1) == IAAPathGenerator.isAromatic(aType2))
             return  0.3D;
 
-         return at1.GetHvyDegree() == at2.GetHvyDegree() ? 0.2D : 0D;
+         return m1.getHvyDegree(at1) == m2.getHvyDegree(at2) ? 0.2D : 0D;
       }
 
 
@@ -155,13 +153,14 @@ public class FuzzyHeadAtomComputer extends HeadAtomComputer
    }
 
 
-   private static double computeFlourine(OEAtomBase at1, OEAtomBase at2, int atNum2)
+   private static double computeFlourine(IAAPathComputerInterface m1, int at1,
+            IAAPathComputerInterface m2, int at2, int atNum2)
    {
       if( atNum2 != FLOURINE )
-      {  if( atNum2 == CHLORINE && at1.GetValence() == at2.GetValence() )
+      {  if( atNum2 == CHLORINE && m1.getValence(at1) == m2.getValence(at2) )
             return 0.5D;
 
-         return at1.GetHvyDegree() == at2.GetHvyDegree() ? 0.2D : 0D;
+         return m1.getHvyDegree(at1) == m2.getHvyDegree(at2) ? 0.2D : 0D;
       }
 
       /////// FLOURINE FLOURINE
@@ -169,13 +168,14 @@ public class FuzzyHeadAtomComputer extends HeadAtomComputer
    }
 
 
-   private static double computeSulphor(OEAtomBase at1, OEAtomBase at2, int atNum2)
+   private static double computeSulphor(IAAPathComputerInterface m1, int at1,
+            IAAPathComputerInterface m2, int at2, int atNum2)
    {
       if( atNum2 != SULPHOR )
-         return at1.GetHvyDegree() == at2.GetHvyDegree() ? 0.2D : 0D;
+         return m1.getHvyDegree(at1) == m2.getHvyDegree(at2) ? 0.2D : 0D;
 
-      int v1 = at1.GetValence();
-      int v2 = at2.GetValence();
+      int v1 = m1.getValence(at1);
+      int v2 = m2.getValence(at2);
       if( v1 == v2 ) return 1D;
       if( v1 > 2 && v2 > 2 ) return 0.8;
 
@@ -183,34 +183,36 @@ public class FuzzyHeadAtomComputer extends HeadAtomComputer
    }
 
 
-   private static double computeChlorine(OEAtomBase at1, OEAtomBase at2, int atNum2)
+   private static double computeChlorine(IAAPathComputerInterface m1, int at1,
+            IAAPathComputerInterface m2, int at2, int atNum2)
    {
       if( atNum2 != CHLORINE )
       {  if( atNum2 == BROMINE )
-         {  if( at1.GetValence() == at2.GetValence() )
+         {  if( m1.getValence(at1) == m2.getValence(at2) )
                return 0.6D;
             else
                return 0D;
          }
 
-         return at1.GetHvyDegree() == at2.GetHvyDegree() ? 0.2D : 0D;
+         return m1.getHvyDegree(at1) == m2.getHvyDegree(at2) ? 0.2D : 0D;
       }
 
       /////// CHLORINE CHLORINE
-      if( at1.GetValence() == at2.GetValence() )
+      if( m1.getValence(at1) == m2.getValence(at2) )
          return 1D;
 
       return 0.0D;
    }
 
 
-   private static double computeBromine(OEAtomBase at1, OEAtomBase at2, int atNum2)
+   private static double computeBromine(IAAPathComputerInterface m1, int at1,
+            IAAPathComputerInterface m2, int at2, int atNum2)
    {
       if( atNum2 != BROMINE )
-         return at1.GetHvyDegree() == at2.GetHvyDegree() ? 0.2D : 0D;
+         return m1.getHvyDegree(at1) == m2.getHvyDegree(at2) ? 0.2D : 0D;
 
       /////// BROMINE BROMINE
-      if( at1.GetValence() == at2.GetValence() )
+      if( m1.getValence(at1) == m2.getValence(at2) )
          return 1D;
 
       return 0.0D;
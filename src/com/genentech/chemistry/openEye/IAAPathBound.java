@@ -0,0 +1,92 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.genentech.chemistry.openEye;
+
+import java.util.Arrays;
+
+/**
+ * Upper bounds for the similarity computed by the IAAPathComparators.
+ *
+ * The head atom similarity is at most 1 and the atom similarity
+ * h * (common + h) / (2 * max(nPath1, nPath2) - common + h)
+ * increases with h and with common which is at most min(nPath1, nPath2).
+ * The molecule similarity simSum / (2 * max(nAtoms1, nAtoms2) - simSum)
+ * increases with the sum of the similarities of the assigned atoms.
+ *
+ * @author albertgo
+ */
+final class IAAPathBound
+{  /** tolerance to avoid pruning pairs with similarity equal to minSim */
+   private static final double EPSILON = 1e-9;
+
+   private IAAPathBound()
+   {
+   }
+
+   /**
+    * @return the sum of the atom similarities needed to reach minSim,
+    *         nAtoms2 must be the number of atoms in the larger molecule.
+    */
+   static double getMinSimSum(int nAtoms2, double minSim)
+   {  return 2D * nAtoms2 * minSim / (1D + minSim) - EPSILON;
+   }
+
+   /**
+    * @return the maximum similarity of two atoms with the given number of paths.
+    */
+   static double getAtomSimBound(int nPaths1, int nPaths2)
+   {  // atoms without paths see IAAPathComparatorInt.atomSimilarity()
+      if( nPaths1 == 0 ) return 1D / (1D + nPaths2);
+      if( nPaths2 == 0 ) return 1D / (1D + nPaths1);
+
+      int min = Math.min(nPaths1, nPaths2);
+      int max = Math.max(nPaths1, nPaths2);
+      return (min + 1D) / (2D * max - min + 1D);
+   }
+
+   /**
+    * The atom similarity bound is highest for the atoms in molecule 2 with the
+    * closest number of paths. Each atom in molecule 1 is assumed to be
+    * assigned to its best atom even if that is used more than once.
+    *
+    * @param sortedPathCounts1 number of paths of each atom in the smaller molecule in ascending order.
+    * @param sortedPathCounts2 number of paths of each atom in the larger molecule in ascending order.
+    * @return the maximum sum of the atom similarities
+    */
+   static double getSimSumBound(int[] sortedPathCounts1, int[] sortedPathCounts2)
+   {  if( sortedPathCounts2.length == 0 ) return 0D;
+
+      double simSum = 0D;
+      for(int nPaths1 : sortedPathCounts1)
+      {  int pos = Arrays.binarySearch(sortedPathCounts2, nPaths1);
+         if( pos >= 0 )
+         {  simSum += getAtomSimBound(nPaths1, nPaths1);
+            continue;
+         }
+
+         pos = -pos - 1; // first element larger than nPaths1
+         double bound = 0D;
+         if( pos > 0 )
+            bound = getAtomSimBound(nPaths1, sortedPathCounts2[pos-1]);
+         if( pos < sortedPathCounts2.length )
+            bound = Math.max(bound, getAtomSimBound(nPaths1, sortedPathCounts2[pos]));
+         simSum += bound;
+      }
+      return simSum;
+   }
+}
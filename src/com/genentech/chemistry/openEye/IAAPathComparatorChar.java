@@ -16,11 +16,21 @@
 */
 package com.genentech.chemistry.openEye;
 
-import java.util.ArrayList;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
 import openeye.oechem.*;
 
+import com.aestel.chemistry.openEye.BatchSimComparator;
 import com.aestel.chemistry.openEye.SimComparator;
 import com.genentech.oechem.tools.OETools;
 
@@ -35,20 +45,31 @@ import com.genentech.oechem.tools.OETools;
  *
  * This implementation uses char as the type to store the hascode for a path.
  *
+ * The generated paths can be serialized with {@link #writeDescriptor(DataOutput)}
+ * and {@link #getDescriptorHex()}. Comparators read back with
+ * {@link #readDescriptor(DataInput, HeadAtomComputer)} do not need OEChem.
+ *
  * @author albertgo
  *
  */
-public class IAAPathComparatorChar implements SimComparator<OEMolBase>, IAAPathComputerInterface
+public class IAAPathComparatorChar implements BatchSimComparator<OEMolBase>, IAAPathComputerInterface
 {  private static final boolean DEBUG = false;
+   private static final int DESCRIPTOR_VERSION = 1;
 
    protected final int maxBonds;
    protected final int[] atomTypes;
+   /** null if read from a descriptor */
    protected final OEAtomBase[] atoms;
 
+   /** null if read from a descriptor */
    private final OEMolBase mol;
    private final int nAtoms;
    private final char[][] atPath;
+   private final int[] hvyDegrees;
+   private final int[] valences;
    private final HeadAtomComputer headAtomComputer;
+   /** number of paths of each atom in ascending order */
+   private final int[] sortedPathCounts;
 
 
 
@@ -71,6 +92,39 @@ public class IAAPathComparatorChar implements SimComparator<OEMolBase>, IAAPathC
       IAAPathGeneratorChar apGenerator = new IAAPathGeneratorChar(this.mol, maxBonds);
       this.atPath = getAtomPaths(apGenerator);
       this.atomTypes = apGenerator.getAtomTypes();
+
+      this.hvyDegrees = new int[atoms.length];
+      this.valences = new int[atoms.length];
+      for(int i=0; i<atoms.length; i++)
+      {  if( atoms[i] == null ) continue;
+         hvyDegrees[i] = atoms[i].GetHvyDegree();
+         valences[i] = atoms[i].GetValence();
+      }
+
+      this.sortedPathCounts = getSortedPathCounts(atPath, nAtoms);
+   }
+
+   private IAAPathComparatorChar(HeadAtomComputer haComputer, int maxBonds, int nAtoms,
+                                 char[][] atPath, int[] atomTypes, int[] hvyDegrees, int[] valences)
+   {  this.mol = null;
+      this.atoms = null;
+      this.headAtomComputer = haComputer;
+      this.maxBonds = maxBonds;
+      this.nAtoms = nAtoms;
+      this.atPath = atPath;
+      this.atomTypes = atomTypes;
+      this.hvyDegrees = hvyDegrees;
+      this.valences = valences;
+      this.sortedPathCounts = getSortedPathCounts(atPath, nAtoms);
+   }
+
+   private static int[] getSortedPathCounts(char[][] atPath, int nAtoms)
+   {  int[] sortedPathCounts = new int[nAtoms];
+      int n = 0;
+      for(char[] p : atPath)
+         if( p != null ) sortedPathCounts[n++] = p.length;
+      Arrays.sort(sortedPathCounts);
+      return sortedPathCounts;
    }
 
    private char[][] getAtomPaths(IAAPathGeneratorChar apGenerator)
@@ -112,15 +166,27 @@ public class IAAPathComparatorChar implements SimComparator<OEMolBase>, IAAPathC
 
 
    /**
-    * Default implementation to be improved.
+    * Returns 0 as soon as an upper bound of the similarity is below minSim.
     */
    @Override
    public double similarity(SimComparator<OEMolBase> other, double minSim)
    {  IAAPathComparatorChar o = (IAAPathComparatorChar)other;
-      if((Math.min(this.nAtoms,o.nAtoms)*10000)/Math.max(this.nAtoms,o.nAtoms)<(int)(minSim*10000D))
-      {  return 0D;
-      }
-      return similarity(other);
+      return similarity(this, o, minSim);
+   }
+
+   /**
+    * All comparisons use the workspace of the current thread.
+    */
+   @Override
+   public double[] similarities(List<? extends SimComparator<OEMolBase>> others, double minSim,
+                                double[] sims)
+   {  if( sims == null || sims.length < others.size() ) sims = new double[others.size()];
+
+      IAAPathWorkspace ws = IAAPathWorkspace.get();
+      for(int i=0; i<others.size(); i++)
+         sims[i] = similarity(this, (IAAPathComparatorChar)others.get(i), minSim, ws);
+
+      return sims;
    }
 
    /* idea to improve mapping for tied atoms:
@@ -144,6 +210,18 @@ public class IAAPathComparatorChar implements SimComparator<OEMolBase>, IAAPathC
 
 
    protected double similarity(IAAPathComparatorChar m1, IAAPathComparatorChar m2)
+   {  return similarity(m1, m2, 0D);
+   }
+
+   /**
+    * @return 0 if the similarity is below minSim
+    */
+   protected double similarity(IAAPathComparatorChar m1, IAAPathComparatorChar m2, double minSim)
+   {  return similarity(m1, m2, minSim, IAAPathWorkspace.get());
+   }
+
+   private double similarity(IAAPathComparatorChar m1, IAAPathComparatorChar m2, double minSim,
+                             IAAPathWorkspace ws)
    {  // make sure nAtoms1 < nAtoms2
       if( m1.nAtoms > m2.nAtoms )
       {  IAAPathComparatorChar d = m1;
@@ -151,62 +229,93 @@ public class IAAPathComparatorChar implements SimComparator<OEMolBase>, IAAPathC
          m2 = d;
       }
 
-      // atPairs are sorted by similarity
-      AtomPair[] atPairs = getAtomSimilarities(m1, m2);
+      double minSimSum = 0D;
+      if( minSim > 0D )
+      {  minSimSum = IAAPathBound.getMinSimSum(m2.nAtoms, minSim);
+
+         // at most m1.nAtoms pairs with similarity <= 1 can be assigned
+         if( m1.nAtoms < minSimSum ) return 0D;
+         if( IAAPathBound.getSimSumBound(m1.sortedPathCounts, m2.sortedPathCounts) < minSimSum )
+            return 0D;
+      }
+
+      int nPairs = getAtomSimilarities(m1, m2, ws);
+      ws.sortPairs(nPairs);
+      // positions of atom pairs in order of similarity
+      int[] order = ws.pairOrder;
       if( DEBUG )
       {  System.err.printf("%s\t%s\n",
                OETools.molToCanSmi(m1.mol,true), OETools.molToCanSmi(m2.mol,true));
-         for( AtomPair ap : atPairs ) System.err.println(ap);
+         for(int i=0; i<nPairs; i++)
+            System.err.printf("%2d %2d %.4f\n",
+                  ws.pairAt1[order[i]], ws.pairAt2[order[i]], ws.pairSims[order[i]]);
       }
-      int[] a1IsAssignedTo = new int[m1.atPath.length];
-      int[] a2IsAssignedTo = new int[m2.atPath.length];
-      Arrays.fill(a1IsAssignedTo, -1);
-      Arrays.fill(a2IsAssignedTo, -1);
+      ws.ensureAssignmentCapacity(m1.atPath.length, m2.atPath.length);
+      int[] a1IsAssignedTo = ws.a1IsAssignedTo;
+      int[] a2IsAssignedTo = ws.a2IsAssignedTo;
+      Arrays.fill(a1IsAssignedTo, 0, m1.atPath.length, -1);
+      Arrays.fill(a2IsAssignedTo, 0, m2.atPath.length, -1);
 
       double simSum = 0D;
-      for(int mostSimilarIdx = 0; mostSimilarIdx < atPairs.length; mostSimilarIdx++)
-      {  int a1 = atPairs[mostSimilarIdx].at1Idx;
+      int nAssigned = 0;
+      for(int mostSimilarIdx = 0; mostSimilarIdx < nPairs; mostSimilarIdx++)
+      {  int pair = order[mostSimilarIdx];
+         int a1 = ws.pairAt1[pair];
          if( a1IsAssignedTo[a1] != -1 ) continue;
 
-         int a2 = atPairs[mostSimilarIdx].at2Idx;
+         int a2 = ws.pairAt2[pair];
          if( a2IsAssignedTo[a2] != -1 ) continue;
 
-         double sim = atPairs[mostSimilarIdx].sim;
+         double sim = ws.pairSims[pair];
          simSum += sim;
+         nAssigned++;
 
          a1IsAssignedTo[a1] = a2;
          a2IsAssignedTo[a2] = a1;
+
+         // pairs are sorted so the remaining assignments can not be more similar
+         if( minSim > 0D && simSum + (m1.nAtoms - nAssigned) * sim < minSimSum )
+            return 0D;
       }
 
       return computeMoleculeSimilarity(m1.nAtoms, m2.nAtoms, simSum);
    }
 
 
-   /** @return array of atom pairs with similarity > 0 */
-   protected AtomPair[] getAtomSimilarities(IAAPathComparatorChar m1, IAAPathComparatorChar m2)
+   /**
+    * Store the atom pairs with similarity > 0 in the pair arrays of ws.
+    * The pairs are added ordered by atom index in m2 and then by atom index in m1.
+    * @return number of pairs
+    */
+   private int getAtomSimilarities(IAAPathComparatorChar m1, IAAPathComparatorChar m2,
+                                   IAAPathWorkspace ws)
    {  char[][] atPath1 = m1.atPath;
       char[][] atPath2 = m2.atPath;
 
-      ArrayList<AtomPair> atPairs = new ArrayList<AtomPair>(atPath1.length * atPath2.length);
+      ws.ensurePairCapacity(atPath1.length * atPath2.length);
+      int[] pairAt1 = ws.pairAt1;
+      int[] pairAt2 = ws.pairAt2;
+      double[] pairSims = ws.pairSims;
 
-      for(int a1=0; a1<atPath1.length; a1++)
-      {  if( atPath1[a1] == null )   // oechem might have atom indexes which do not exist
+      int nPairs = 0;
+      for(int a2=0; a2<atPath2.length; a2++)
+      {  if( atPath2[a2] == null )   // oechem might have atom indexes which do not exist
             continue;
 
-         for(int a2=0; a2<atPath2.length; a2++)
-         {  double sim;
-            if( atPath2[a2] != null )
-            {  sim = atomSimilarity(a1, m1, a2, m2);
+         for(int a1=0; a1<atPath1.length; a1++)
+         {  if( atPath1[a1] != null )
+            {  double sim = atomSimilarity(a1, m1, a2, m2);
                if( sim > 0D )
-                  atPairs.add(new AtomPair(a1, a2, sim));
+               {  pairAt1[nPairs] = a1;
+                  pairAt2[nPairs] = a2;
+                  pairSims[nPairs] = sim;
+                  nPairs++;
+               }
             }
          }
       }
 
-
-      AtomPair[] ret = atPairs.toArray(new AtomPair[atPairs.size()]);
-      Arrays.sort(ret);
-      return ret;
+      return nPairs;
    }
 
    private double atomSimilarity(int atIdx1, IAAPathComparatorChar m1, int atIdx2, IAAPathComparatorChar m2)
@@ -272,7 +381,21 @@ public class IAAPathComparatorChar implements SimComparator<OEMolBase>, IAAPathC
 
    @Override
    public OEAtomBase getAtom(int aIdx)
-   {  return atoms[aIdx];
+   {  return atoms == null ? null : atoms[aIdx];
+   }
+
+   @Override
+   public int getHvyDegree(int aIdx)
+   {  return hvyDegrees[aIdx];
+   }
+
+   @Override
+   public int getValence(int aIdx)
+   {  return valences[aIdx];
+   }
+
+   public int getMaxBonds()
+   {  return maxBonds;
    }
 
    @Override
@@ -281,37 +404,139 @@ public class IAAPathComparatorChar implements SimComparator<OEMolBase>, IAAPathC
    }
 
 
-   @Override
-   public void close()
-   {  mol.delete();
+   /**
+    * Write the atom paths and atom properties needed to recreate this comparator.
+    *
+    * The format is, all numbers in big endian byte order:
+    * <pre>
+    * byte    format version
+    * byte    maxBonds
+    * int     number of atom indexes, including indexes without atom
+    * int     number of path lists, atoms in the same symmetry class share one list
+    * per path list:  int nPaths, char[nPaths]
+    * per atom index: int index of path list or -1 if the index has no atom
+    *                 followed for atoms by: short atomType, byte hvyDegree, byte valence
+    * </pre>
+    */
+   public void writeDescriptor(DataOutput out) throws IOException
+   {  Map<char[], Integer> pathListIdx = new IdentityHashMap<char[], Integer>();
+      char[][] pathLists = new char[nAtoms][];
+      int nPathLists = 0;
+      for(char[] p : atPath)
+      {  if( p == null || pathListIdx.containsKey(p) ) continue;
+         pathListIdx.put(p, nPathLists);
+         pathLists[nPathLists++] = p;
+      }
+
+      out.writeByte(DESCRIPTOR_VERSION);
+      out.writeByte(maxBonds);
+      out.writeInt(atPath.length);
+      out.writeInt(nPathLists);
+      for(int i=0; i<nPathLists; i++)
+      {  char[] p = pathLists[i];
+         out.writeInt(p.length);
+         for(char c : p)
+            out.writeChar(c);
+      }
+
+      for(int aIdx=0; aIdx<atPath.length; aIdx++)
+      {  if( atPath[aIdx] == null )
+         {  out.writeInt(-1);
+            continue;
+         }
+         out.writeInt(pathListIdx.get(atPath[aIdx]));
+         out.writeShort(atomTypes[aIdx]);
+         out.writeByte(hvyDegrees[aIdx]);
+         out.writeByte(valences[aIdx]);
+      }
    }
-}
 
-class AtomPair implements Comparable<AtomPair>
-{  AtomPair(int at1Idx, int at2Idx, double sim)
-   {  this.at1Idx = at1Idx;
-      this.at2Idx = at2Idx;
-      this.sim = sim;
+   /**
+    * Read a comparator written by {@link #writeDescriptor(DataOutput)}.
+    */
+   public static IAAPathComparatorChar readDescriptor(DataInput in, HeadAtomComputer haComputer)
+   throws IOException
+   {  int version = in.readUnsignedByte();
+      if( version != DESCRIPTOR_VERSION )
+         throw new IOException("Unsupported AAPath descriptor version: " + version);
+
+      int maxBonds = in.readUnsignedByte();
+      int nAtomIdx = in.readInt();
+      char[][] pathLists = new char[in.readInt()][];
+      for(int i=0; i<pathLists.length; i++)
+      {  char[] p = new char[in.readInt()];
+         for(int j=0; j<p.length; j++)
+            p[j] = in.readChar();
+         pathLists[i] = p;
+      }
+
+      char[][] atPath = new char[nAtomIdx][];
+      int[] atomTypes = new int[nAtomIdx];
+      int[] hvyDegrees = new int[nAtomIdx];
+      int[] valences = new int[nAtomIdx];
+      int nAtoms = 0;
+      for(int aIdx=0; aIdx<nAtomIdx; aIdx++)
+      {  int pIdx = in.readInt();
+         if( pIdx < 0 ) continue;
+
+         atPath[aIdx] = pathLists[pIdx];
+         atomTypes[aIdx] = in.readUnsignedShort();
+         hvyDegrees[aIdx] = in.readUnsignedByte();
+         valences[aIdx] = in.readUnsignedByte();
+         nAtoms++;
+      }
+
+      return new IAAPathComparatorChar(haComputer, maxBonds, nAtoms,
+                                       atPath, atomTypes, hvyDegrees, valences);
    }
 
-   int at1Idx;
-   int at2Idx;
-   double sim;
+   /**
+    * @return hexadecimal encoding of {@link #writeDescriptor(DataOutput)} to be
+    *         stored in an sd tag.
+    */
+   public String getDescriptorHex()
+   {  ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+      try
+      {  writeDescriptor(new DataOutputStream(bytes));
+      } catch (IOException e)
+      {  throw new Error(e);
+      }
+
+      byte[] b = bytes.toByteArray();
+      StringBuilder sb = new StringBuilder(b.length * 2);
+      for(byte by : b)
+      {  sb.append(Character.forDigit((by >> 4) & 0xF, 16));
+         sb.append(Character.forDigit(by & 0xF, 16));
+      }
+      return sb.toString();
+   }
 
+   /**
+    * Read a comparator from the output of {@link #getDescriptorHex()}.
+    */
+   public static IAAPathComparatorChar fromDescriptorHex(String hex, HeadAtomComputer haComputer)
+   {  if( hex.length() % 2 != 0 )
+         throw new Error("Invalid AAPath descriptor: odd number of hex digits");
+
+      byte[] b = new byte[hex.length()/2];
+      for(int i=0; i<b.length; i++)
+      {  int hi = Character.digit(hex.charAt(2*i), 16);
+         int lo = Character.digit(hex.charAt(2*i+1), 16);
+         if( hi < 0 || lo < 0 )
+            throw new Error("Invalid AAPath descriptor: not a hex string");
+         b[i] = (byte)((hi << 4) | lo);
+      }
 
-   @Override
-   public int compareTo(AtomPair o)
-   {  if( this.sim > o.sim ) return -1;
-      if( this.sim < o.sim ) return 1;
-      if( this.at2Idx < o.at2Idx ) return -1;
-      if( this.at2Idx > o.at2Idx ) return 1;
-      if( this.at1Idx < o.at1Idx ) return -1;
-      if( this.at1Idx > o.at1Idx ) return 1;
-      return 0;
+      try
+      {  return readDescriptor(new DataInputStream(new ByteArrayInputStream(b)), haComputer);
+      } catch (IOException e)
+      {  throw new Error("Invalid AAPath descriptor", e);
+      }
    }
 
+
    @Override
-   public String toString()
-   {  return String.format("%2d %2d %.4f", at1Idx, at2Idx, sim);
+   public void close()
+   {  if( mol != null ) mol.delete();
    }
 }
@@ -16,10 +16,16 @@
 */
 package com.genentech.chemistry.openEye;
 
+import java.io.File;
+import java.io.IOException;
+
+import openeye.oechem.OEMolBase;
+
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import com.aestel.chemistry.openEye.SimComparator;
 import com.genentech.chemistry.openEye.AAPathComparatorFact.AAPathCompareType;
 
 public class IAAPathComparatorCharTest extends AbstractAAPathComparatorTest
@@ -50,6 +56,63 @@ public class IAAPathComparatorCharTest extends AbstractAAPathComparatorTest
    {  super.testComparator();
    }
 
+   @Override
+   @Test
+   public void testMinSimilarity()
+   {  super.testMinSimilarity();
+   }
+
+   @Override
+   @Test
+   public void testSearch()
+   {  super.testSearch();
+   }
+
+   /** comparators read from descriptors must give the same similarities */
+   @Test
+   public void testDescriptor() throws IOException
+   {  SimComparator<OEMolBase>[] comps = getComparators();
+      AAPathComparatorFact cFact = getComparatorFact();
+      File f = File.createTempFile("aapath", AAPathComparatorDatabase.FILE_EXTENSION);
+      f.deleteOnExit();
+
+      AAPathComparatorDatabase.Writer out = new AAPathComparatorDatabase.Writer(
+               f.getPath(), AAPathCompareType.DEFAULT.getPathLen(), true);
+      IAAPathComparatorChar[] fromHex = new IAAPathComparatorChar[comps.length];
+      for(int i=0; i<comps.length; i++)
+      {  IAAPathComparatorChar c = (IAAPathComparatorChar)comps[i];
+         fromHex[i] = cFact.createComparator(c.getDescriptorHex());
+         out.add(c, "id" + i);
+      }
+      out.close();
+
+      assert cFact.isDatabase(f.getPath());
+      assert ! cFact.isDatabase("test/inputFiles/100.sdf");
+
+      // the extension alone does not make a database
+      File notDb = File.createTempFile("aapath", AAPathComparatorDatabase.FILE_EXTENSION);
+      notDb.deleteOnExit();
+      boolean rejected = false;
+      try
+      {  cFact.isDatabase(notDb.getPath());
+      } catch(Error e)
+      {  rejected = true;
+      }
+      assert rejected;
+      AAPathComparatorDatabase db = (AAPathComparatorDatabase)cFact.openDatabase(f.getPath());
+      assert db.size() == comps.length;
+
+      for(int i=0; i<comps.length; i++)
+      {  assert db.getIds().get(i).equals("id" + i);
+         for(int j=0; j<comps.length; j++)
+         {  double sim = comps[i].similarity(comps[j]);
+            assert fromHex[i].similarity(comps[j]) == sim : i + " " + j;
+            assert db.similarity(i, comps[j]) == sim : i + " " + j;
+         }
+      }
+      db.close();
+   }
+
    @Override
    @AfterClass
    public void close()
@@ -17,9 +17,11 @@
 package com.genentech.chemistry.openEye;
 
 import java.util.Arrays;
+import java.util.List;
 
 import openeye.oechem.*;
 
+import com.aestel.chemistry.openEye.BatchSimComparator;
 import com.aestel.chemistry.openEye.SimComparator;
 
 /**
@@ -36,7 +38,7 @@ import com.aestel.chemistry.openEye.SimComparator;
  * @author albertgo
  *
  */
-public class IAAPathComparatorInt implements SimComparator<OEMolBase>, IAAPathComputerInterface
+public class IAAPathComparatorInt implements BatchSimComparator<OEMolBase>, IAAPathComputerInterface
 {  private static final boolean DEBUG = false;
 
    protected final int maxBonds;
@@ -47,6 +49,8 @@ public class IAAPathComparatorInt implements SimComparator<OEMolBase>, IAAPathCo
    private final int nAtoms;
    private final int[][] atPath;
    private final HeadAtomComputer headAtomComputer;
+   /** number of paths of each atom in ascending order */
+   private final int[] sortedPathCounts;
 
 
 
@@ -69,6 +73,12 @@ public class IAAPathComparatorInt implements SimComparator<OEMolBase>, IAAPathCo
       IAAPathGeneratorInt apGenerator = new IAAPathGeneratorInt(this.mol, maxBonds);
       this.atPath = getAtomPaths(apGenerator);
       this.atomTypes = apGenerator.getAtomTypes();
+
+      this.sortedPathCounts = new int[nAtoms];
+      int n = 0;
+      for(int[] p : atPath)
+         if( p != null ) sortedPathCounts[n++] = p.length;
+      Arrays.sort(sortedPathCounts);
    }
 
    private int[][] getAtomPaths(IAAPathGeneratorInt apGenerator)
@@ -109,14 +119,42 @@ public class IAAPathComparatorInt implements SimComparator<OEMolBase>, IAAPathCo
    }
 
    /**
-    * Default implementation to be improved.
+    * Returns 0 as soon as an upper bound of the similarity is below minSim.
     */
    @Override
    public double similarity(SimComparator<OEMolBase> other, double minSim)
-   { return similarity(other);
+   {  IAAPathComparatorInt o = (IAAPathComparatorInt)other;
+      return similarity(this, o, minSim);
+   }
+
+   /**
+    * All comparisons use the workspace of the current thread.
+    */
+   @Override
+   public double[] similarities(List<? extends SimComparator<OEMolBase>> others, double minSim,
+                                double[] sims)
+   {  if( sims == null || sims.length < others.size() ) sims = new double[others.size()];
+
+      IAAPathWorkspace ws = IAAPathWorkspace.get();
+      for(int i=0; i<others.size(); i++)
+         sims[i] = similarity(this, (IAAPathComparatorInt)others.get(i), minSim, ws);
+
+      return sims;
    }
 
    protected double similarity(IAAPathComparatorInt m1, IAAPathComparatorInt m2)
+   {  return similarity(m1, m2, 0D);
+   }
+
+   /**
+    * @return 0 if the similarity is below minSim
+    */
+   protected double similarity(IAAPathComparatorInt m1, IAAPathComparatorInt m2, double minSim)
+   {  return similarity(m1, m2, minSim, IAAPathWorkspace.get());
+   }
+
+   private double similarity(IAAPathComparatorInt m1, IAAPathComparatorInt m2, double minSim,
+                             IAAPathWorkspace ws)
    {  // make sure nAtoms1 < nAtoms2
       if( m1.nAtoms > m2.nAtoms )
       {  IAAPathComparatorInt d = m1;
@@ -124,18 +162,33 @@ public class IAAPathComparatorInt implements SimComparator<OEMolBase>, IAAPathCo
          m2 = d;
       }
 
-      double[][] atSims = getAtomSimilarities(m1, m2);
-      int sortIdx[][] = new int[m1.atPath.length][];
-      int[] a1IsAssignedTo = new int[m1.atPath.length];
-      int[] a2IsAssignedTo = new int[m2.atPath.length];
-      Arrays.fill(a1IsAssignedTo, -1);
-      Arrays.fill(a2IsAssignedTo, -1);
+      double minSimSum = 0D;
+      if( minSim > 0D )
+      {  minSimSum = IAAPathBound.getMinSimSum(m2.nAtoms, minSim);
 
-      for( int a1=0; a1<m1.atPath.length; a1++)
+         // at most m1.nAtoms pairs with similarity <= 1 can be assigned
+         if( m1.nAtoms < minSimSum ) return 0D;
+         if( IAAPathBound.getSimSumBound(m1.sortedPathCounts, m2.sortedPathCounts) < minSimSum )
+            return 0D;
+      }
+
+      int n1 = m1.atPath.length;
+      int n2 = m2.atPath.length;
+      ws.ensureCapacity(n1, n2);
+      double[] atSims = ws.atSims;
+      getAtomSimilarities(m1, m2, atSims);
+
+      int[] sortIdx = ws.sortIdx;
+      int[] a1IsAssignedTo = ws.a1IsAssignedTo;
+      int[] a2IsAssignedTo = ws.a2IsAssignedTo;
+      Arrays.fill(a1IsAssignedTo, 0, n1, -1);
+      Arrays.fill(a2IsAssignedTo, 0, n2, -1);
+
+      for( int a1=0; a1<n1; a1++)
       {  if( m1.atPath[a1] == null ) continue;
 
          // indexes of atoms in atPath2 in order of similarity to a1
-         sortIdx[a1] = sortIdx(atSims[a1]);
+         ws.sortRow(a1, n2);
       }
 
       double simSum = 0D;
@@ -144,18 +197,19 @@ public class IAAPathComparatorInt implements SimComparator<OEMolBase>, IAAPathCo
          int a1 = -1;
          int a2 = -1;
 
-         for(int a1Try=0; a1Try<m1.atPath.length; a1Try++)
+         for(int a1Try=0; a1Try<n1; a1Try++)
          {  if( m1.atPath[a1Try] == null ) continue; // not an atom
 
             // find a1 which was not assigned yet and has highest similarity to a2
             if( a1IsAssignedTo[a1Try] != -1 ) continue;
 
             double sim = -1D;
-            for(int a2Rank=0; a2Rank<m2.atPath.length; a2Rank++)
-            {  int a2Try = sortIdx[a1Try][a2Rank];
+            int rowOffset = a1Try * n2;
+            for(int a2Rank=0; a2Rank<n2; a2Rank++)
+            {  int a2Try = sortIdx[rowOffset + a2Rank];
                if( a2IsAssignedTo[a2Try] >= 0 ) continue;
 
-               sim = atSims[a1Try][a2Try];
+               sim = atSims[rowOffset + a2Try];
 
                if( sim > maxSim )
                {  maxSim = sim;
@@ -172,35 +226,42 @@ public class IAAPathComparatorInt implements SimComparator<OEMolBase>, IAAPathCo
          a2IsAssignedTo[a2] = a1;
 
          simSum += maxSim;
+
+         // the remaining assignments can not be more similar than this one
+         if( minSim > 0D && simSum + (m1.nAtoms - nTryAssign - 1) * maxSim < minSimSum )
+            return 0D;
       }
 
       return computeMoleculeSimilarity(m1.nAtoms, m2.nAtoms, simSum);
    }
 
 
-   protected double[][] getAtomSimilarities(IAAPathComparatorInt m1, IAAPathComparatorInt m2)
+   /**
+    * Fill simMatrix with the atom similarities in row major order.
+    */
+   protected void getAtomSimilarities(IAAPathComparatorInt m1, IAAPathComparatorInt m2, double[] simMatrix)
    {  int[][] atPath1 = m1.atPath;
       int[][] atPath2 = m2.atPath;
 
-      double[][] simMatrix = new double[atPath1.length][atPath2.length];
+      int n2 = atPath2.length;
       for(int a1=0; a1<atPath1.length; a1++)
-      {  if( atPath1[a1] == null )   // oechem might have atom indexes which do not exist
-         {  Arrays.fill(simMatrix[a1], -.1D);
+      {  int rowOffset = a1 * n2;
+         if( atPath1[a1] == null )   // oechem might have atom indexes which do not exist
+         {  Arrays.fill(simMatrix, rowOffset, rowOffset + n2, -.1D);
             continue;
          }
 
-         for(int a2=0; a2<atPath2.length; a2++)
+         for(int a2=0; a2<n2; a2++)
          {  double sim;
             if( atPath2[a2] == null )
                sim = -.1D;
             else
                sim = atomSimilarity(a1, m1, a2, m2);
-            simMatrix[a1][a2] = sim;
+            simMatrix[rowOffset + a2] = sim;
          }
       }
 
-      if( DEBUG ) printMatrix(simMatrix);
-      return simMatrix;
+      if( DEBUG ) printMatrix(simMatrix, atPath1.length, n2);
    }
 
    private double atomSimilarity(int atIdx1, IAAPathComparatorInt m1, int atIdx2, IAAPathComparatorInt m2)
@@ -270,64 +331,18 @@ public class IAAPathComparatorInt implements SimComparator<OEMolBase>, IAAPathCo
    }
 
    @Override
-   public int getAtomNum(int atomType)
-   {  return IAAPathGenerator.atomTypeToAtomNum(atomType);
-   }
-
-   private static int[] sortIdx(double[] ds)
-   {  int[] indexes = new int[ds.length];
-      for(int i=0; i<indexes.length; i++)
-         indexes[i] = i;
-
-      double[] tmp = ds.clone(); // qs changes ds
-      quicksort(tmp, indexes, 0, indexes.length - 1);
-
-      return indexes;
-   }
-
-   // quicksort a[left] to a[right]
-   private static void quicksort(double[] a, int[] index, int left, int right)
-   {  if (right <= left)
-         return;
-      int i = partition(a, index, left, right);
-      quicksort(a, index, left, i - 1);
-      quicksort(a, index, i + 1, right);
+   public int getHvyDegree(int aIdx)
+   {  return atoms[aIdx].GetHvyDegree();
    }
 
-   // partition a[left] to a[right], assumes left < right
-   private static int partition(double[] a, int[] index, int left, int right)
-   {  int i = left - 1;
-      int j = right;
-      while (true)
-      {
-         while (less(a[++i], a[right]))
-            // find item on left to swap
-            ; // a[right] acts as sentinel
-         while (less(a[right], a[--j]))
-            // find item on right to swap
-            if (j == left)
-               break; // don't go out-of-bounds
-         if (i >= j)
-            break; // check if pointers cross
-         exch(a, index, i, j); // swap two elements into place
-      }
-      exch(a, index, i, right); // swap with partition element
-      return i;
-   }
-
-   // is x < y ?
-   private static boolean less(final double x, final double y)
-   {  return x > y;
+   @Override
+   public int getValence(int aIdx)
+   {  return atoms[aIdx].GetValence();
    }
 
-   // exchange a[i] and a[j]
-   private static void exch(double[] a, int[] index, int i, int j)
-   {  double swap = a[i];
-      a[i] = a[j];
-      a[j] = swap;
-      int b = index[i];
-      index[i] = index[j];
-      index[j] = b;
+   @Override
+   public int getAtomNum(int atomType)
+   {  return IAAPathGenerator.atomTypeToAtomNum(atomType);
    }
 
    public void printMatrix(double[][] m)
@@ -339,6 +354,14 @@ public class IAAPathComparatorInt implements SimComparator<OEMolBase>, IAAPathCo
       }
   }
 
+   private static void printMatrix(double[] m, int nRows, int nCols)
+   {  for (int i = 0; i < nRows; i++)
+      {  for (int j = 0; j < nCols; j++)
+            System.err.printf("%5.4f ", m[i*nCols + j]);
+         System.err.println();
+      }
+   }
+
    @Override
    public void close()
    {  mol.delete();
@@ -20,6 +20,12 @@ import openeye.oechem.OEAtomBase;
 
 public interface IAAPathComputerInterface
 {  int getAtomType(int aIdx);
+
+   /**
+    * @return the atom or null if the comparator was not created from a molecule.
+    */
    OEAtomBase getAtom(int aIdx);
    int getAtomNum(int atomType);
+   int getHvyDegree(int aIdx);
+   int getValence(int aIdx);
 }
@@ -23,6 +23,7 @@ import java.util.List;
 import openeye.oechem.*;
 
 import com.aestel.math.Prime;
+import com.genentech.oechem.tools.MolGraph;
 
 /**
  * Modified algorithm to compute AtomAtomPath similarity.
@@ -47,35 +48,40 @@ public class IAAPathGeneratorInt
    private final List<Integer> pathList = new ArrayList<Integer>();
    private int nBondsDepth;
    private int currentPath;
+   private final MolGraph graph;
+   /** by atom position in graph */
    private final boolean[] atomVisited;
+   /** by bond position in graph */
    private final boolean[] bondVisited;
 
    IAAPathGeneratorInt(OEMolBase mol, int maxBonds)
+   {  this(MolGraph.create(mol), maxBonds);
+   }
+
+   /**
+    * @param graph of the molecule, may be shared with other consumers of the
+    *        same molecule.
+    */
+   public IAAPathGeneratorInt(MolGraph graph, int maxBonds)
    {  this.maxBonds = maxBonds;
-      atomTypes = new int[mol.GetMaxAtomIdx()+1];
-      bondTypes = new int[mol.GetMaxBondIdx()+1];
-      atomVisited = new boolean[atomTypes.length];
+      this.graph = graph;
+      int nAtoms = graph.getNumAtoms();
+      atomTypes = new int[nAtoms == 0 ? 1 : graph.getAtomIdx(nAtoms-1)+1];
+      bondTypes = new int[graph.getNumBonds()];
+      atomVisited = new boolean[nAtoms];
       bondVisited = new boolean[bondTypes.length];
-      Arrays.fill(atomVisited, false);
-      Arrays.fill(bondVisited, false);
-
-      OEAtomBaseIter aIt = mol.GetAtoms();
-      while( aIt.hasNext() )
-      {  OEAtomBase a = aIt.next();
-         int aNum = a.GetAtomicNum();
-         if( a.IsAromatic() ) aNum = MAXAtomNum + aNum;
-         atomTypes[a.GetIdx()] = aNum;
+
+      for(int at=0; at<nAtoms; at++)
+      {  int aNum = graph.getAtomicNum(at);
+         if( graph.isAromatic(at) ) aNum = MAXAtomNum + aNum;
+         atomTypes[graph.getAtomIdx(at)] = aNum;
       }
-      aIt.delete();
-
-      OEBondBaseIter bIt = mol.GetBonds();
-      while(bIt.hasNext())
-      {  OEBondBase b = bIt.next();
-         int bNum=b.GetOrder();
-         if( b.IsAromatic() ) bNum = 4;
-         bondTypes[b.GetIdx()] = bNum;
+
+      for(int b=0; b<bondTypes.length; b++)
+      {  int bNum=graph.getBondOrder(b);
+         if( graph.isBondAromatic(b) ) bNum = 4;
+         bondTypes[b] = bNum;
       }
-      bIt.delete();
    }
 
    /**
@@ -86,22 +92,18 @@ public class IAAPathGeneratorInt
 
       // do not include this atom so that we can make Cl more like F later
       // loop over neighbors
-      int atIdx = at.GetIdx();
-      atomVisited[atIdx] = true;
+      int atPos = graph.getAtomPos(at.GetIdx());
+      atomVisited[atPos] = true;
       nBondsDepth = 1;
-      OEBondBaseIter bdIt = at.GetBonds();
-      while( bdIt.hasNext() )
-      {  OEBondBase bd = bdIt.next();
-         int bdIdx = bd.GetIdx();
-         currentPath = bondTypes[bdIdx]*MAXAtomType;
-         bondVisited[bdIdx] = true;
-         OEAtomBase nextAt = bd.GetNbr(at);
-
-         addPath(nextAt);
-         bondVisited[bdIdx] = false;
+      for(int k=graph.getNbrStart(atPos); k<graph.getNbrEnd(atPos); k++)
+      {  int bd = graph.getNbrBond(k);
+         currentPath = bondTypes[bd]*MAXAtomType;
+         bondVisited[bd] = true;
+
+         addPath(graph.getNbrAtom(k));
+         bondVisited[bd] = false;
       }
-      bdIt.delete();
-      atomVisited[atIdx] = false;
+      atomVisited[atPos] = false;
 
       int[] paths = new int[pathList.size()];
       for( int i=0; i<pathList.size(); i++ )
@@ -122,22 +124,18 @@ public class IAAPathGeneratorInt
     *
     * @return int of path which starts from this atom (at) including it.
     */
-   private void addPath(OEAtomBase at)
-   {  int aIdx = at.GetIdx();
-
-      atomVisited[aIdx] = true;
+   private void addPath(int at)
+   {  atomVisited[at] = true;
 
       int previousCurrentPath = currentPath;
       // unique hashing: make space in the left of currentPath for next bond
-      currentPath = (currentPath + atomTypes[aIdx]) * MAXBondType;
+      currentPath = (currentPath + atomTypes[graph.getAtomIdx(at)]) * MAXBondType;
       int thisCurrentPath = currentPath;
 
       if( nBondsDepth < maxBonds )
       {  nBondsDepth++;
-         OEBondBaseIter bIt = at.GetBonds();
-         while( bIt.hasNext() )
-         {  OEBondBase b = bIt.next();
-            int bIdx = b.GetIdx();
+         for(int k=graph.getNbrStart(at); k<graph.getNbrEnd(at); k++)
+         {  int bIdx = graph.getNbrBond(k);
 //System.err.printf("bidx=%d neigh=%d\n", bIdx, atomTypes[b.GetNbr(at).GetIdx()]);
             // avoid going back bonds we have traced before
             if( bondVisited[bIdx] ) continue;
@@ -145,8 +143,8 @@ public class IAAPathGeneratorInt
             // unique hashing: make space in the left of currentPath for next atom
             currentPath = (thisCurrentPath + bondTypes[bIdx]) * MAXAtomType;
 
-            OEAtomBase nextAt = b.GetNbr(at);
-            if( atomVisited[nextAt.GetIdx()] )
+            int nextAt = graph.getNbrAtom(k);
+            if( atomVisited[nextAt] )
                pathList.add(currentPath); // ring: path contains bond but not atom
             else
             {  bondVisited[bIdx] = true;
@@ -154,13 +152,12 @@ public class IAAPathGeneratorInt
                bondVisited[bIdx] = false;
             }
          }
-         bIt.delete();
          nBondsDepth--;
       }
 
       pathList.add(thisCurrentPath);
       currentPath = previousCurrentPath;
-      atomVisited[aIdx] = false;
+      atomVisited[at] = false;
    }
 
    public int[] getAtomTypes()
@@ -0,0 +1,191 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.genentech.chemistry.openEye;
+
+/**
+ * Scratch arrays used by the IAAPathComparators to compute the similarity
+ * of two molecules. The arrays grow as needed and are reused for all
+ * comparisons on the same thread so that no garbage is created per pair.
+ *
+ * The atom similarity matrix is stored in row major order with one row per
+ * atom index of the smaller molecule.
+ *
+ * @author albertgo
+ */
+final class IAAPathWorkspace
+{  private static final ThreadLocal<IAAPathWorkspace> LOCAL = new ThreadLocal<IAAPathWorkspace>()
+   {  @Override
+      protected IAAPathWorkspace initialValue()
+      {  return new IAAPathWorkspace();
+      }
+   };
+
+   /** atom similarity matrix */
+   double[] atSims = new double[0];
+   /** for each row the column indexes in order of descending similarity */
+   int[] sortIdx = new int[0];
+   int[] a1IsAssignedTo = new int[0];
+   int[] a2IsAssignedTo = new int[0];
+
+   /** atom pairs with similarity > 0, see {@link #sortPairs(int)} */
+   int[] pairAt1 = new int[0];
+   int[] pairAt2 = new int[0];
+   double[] pairSims = new double[0];
+   /** positions of the atom pairs in sort order */
+   int[] pairOrder = new int[0];
+
+   private double[] sortSims = new double[0];
+   private int[] mergeTmp = new int[0];
+
+   private IAAPathWorkspace()
+   {
+   }
+
+   /**
+    * @return the workspace of the current thread.
+    */
+   static IAAPathWorkspace get()
+   {  return LOCAL.get();
+   }
+
+   /**
+    * Make sure the arrays can hold a matrix of nRows x nCols.
+    */
+   void ensureCapacity(int nRows, int nCols)
+   {  int size = nRows * nCols;
+      if( atSims.length < size )
+      {  atSims   = new double[size];
+         sortIdx  = new int[size];
+         sortSims = new double[size];
+      }
+      ensureAssignmentCapacity(nRows, nCols);
+   }
+
+   /**
+    * Make sure the assignment arrays can hold nRows and nCols atoms, the
+    * similarity matrix is not allocated.
+    */
+   void ensureAssignmentCapacity(int nRows, int nCols)
+   {  if( a1IsAssignedTo.length < nRows ) a1IsAssignedTo = new int[nRows];
+      if( a2IsAssignedTo.length < nCols ) a2IsAssignedTo = new int[nCols];
+   }
+
+   /**
+    * Make sure the pair arrays can hold nPairs atom pairs.
+    */
+   void ensurePairCapacity(int nPairs)
+   {  if( pairSims.length < nPairs )
+      {  pairAt1   = new int[nPairs];
+         pairAt2   = new int[nPairs];
+         pairSims  = new double[nPairs];
+         pairOrder = new int[nPairs];
+         mergeTmp  = new int[nPairs];
+      }
+   }
+
+   /**
+    * Fill row of {@link #sortIdx} with the column indexes in order of
+    * descending similarity in {@link #atSims}.
+    */
+   void sortRow(int row, int nCols)
+   {  int offset = row * nCols;
+      for(int i=0; i<nCols; i++)
+      {  sortIdx[offset+i]  = i;
+         sortSims[offset+i] = atSims[offset+i];
+      }
+      quicksort(sortSims, sortIdx, offset, offset + nCols - 1);
+   }
+
+   /**
+    * Fill {@link #pairOrder} with the positions of the first nPairs pairs
+    * in order of descending similarity. Pairs with equal similarity keep
+    * the order in which they were added.
+    */
+   void sortPairs(int nPairs)
+   {  int[] src = pairOrder;
+      int[] dst = mergeTmp;
+      for(int i=0; i<nPairs; i++)
+         src[i] = i;
+
+      // bottom up merge sort
+      for(int width=1; width<nPairs; width*=2)
+      {  for(int left=0; left<nPairs; left+=2*width)
+         {  int mid = Math.min(left+width, nPairs);
+            int right = Math.min(left+2*width, nPairs);
+            int i = left;
+            int j = mid;
+            for(int k=left; k<right; k++)
+            {  if( i < mid && (j >= right || pairSims[src[i]] >= pairSims[src[j]]) )
+                  dst[k] = src[i++];
+               else
+                  dst[k] = src[j++];
+            }
+         }
+         int[] d = src;
+         src = dst;
+         dst = d;
+      }
+      pairOrder = src;
+      mergeTmp  = dst;
+   }
+
+   // quicksort a[left] to a[right] in descending order
+   private static void quicksort(double[] a, int[] index, int left, int right)
+   {  if (right <= left)
+         return;
+      int i = partition(a, index, left, right);
+      quicksort(a, index, left, i - 1);
+      quicksort(a, index, i + 1, right);
+   }
+
+   // partition a[left] to a[right], assumes left < right
+   private static int partition(double[] a, int[] index, int left, int right)
+   {  int i = left - 1;
+      int j = right;
+      while (true)
+      {
+         while (less(a[++i], a[right]))
+            // find item on left to swap
+            ; // a[right] acts as sentinel
+         while (less(a[right], a[--j]))
+            // find item on right to swap
+            if (j == left)
+               break; // don't go out-of-bounds
+         if (i >= j)
+            break; // check if pointers cross
+         exch(a, index, i, j); // swap two elements into place
+      }
+      exch(a, index, i, right); // swap with partition element
+      return i;
+   }
+
+   // is x < y ?
+   private static boolean less(final double x, final double y)
+   {  return x > y;
+   }
+
+   // exchange a[i] and a[j]
+   private static void exch(double[] a, int[] index, int i, int j)
+   {  double swap = a[i];
+      a[i] = a[j];
+      a[j] = swap;
+      int b = index[i];
+      index[i] = index[j];
+      index[j] = b;
+   }
+}
@@ -29,4 +29,11 @@ public enum MCSSCompareType
       
       throw new Error(String.format("Unknonw MCSSComapreType: %s", str));
    }
+
+   /**
+    * @return false if sim(a,b) may differ from sim(b,a).
+    */
+   public boolean isSymmetric()
+   {  return this != QUERYRatio;
+   }
 }
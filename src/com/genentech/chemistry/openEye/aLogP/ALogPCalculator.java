@@ -22,6 +22,7 @@ import java.util.*;
 import openeye.oechem.*;
 
 import com.genentech.oechem.tools.Atom;
+import com.genentech.oechem.tools.MolGraph;
 
 
 
@@ -40,9 +41,13 @@ import com.genentech.oechem.tools.Atom;
 public class ALogPCalculator
 {  public static final int ALOGPAtIdxTag = oechem.OEGetTag("ALOGPAtIdxTag");
 
-   private final Map<String,List<ALogPAtom>> atomTypesByAtomSym
-              = new HashMap<String,List<ALogPAtom>>(10);
-   private final List<ALogPAtom> allAtomTypes = new ArrayList<ALogPAtom>(130);
+   /** atom types sorted by match order indexed by the atomic number of the central atom */
+   private final ALogPAtom[][] atomTypesByAtomicNum;
+   /** hydrogen atom types sorted by match order, these are matched on the parent atom */
+   private final ALogPAtom[] hAtomTypes;
+   private final List<ALogPAtom> allAtomTypes;
+   /** true if an atom type needs to be matched against a molecule with explicit hydrogens */
+   private final boolean needExplicitHMol;
    private final int[] atomTypeCounts;
    private final OEGraphMol noExpHMol;
    private final OEGraphMol allExpHMol;
@@ -53,12 +58,65 @@ public class ALogPCalculator
 
 
    public ALogPCalculator( String smartFile, boolean validatedAssignment )
-   {  int maxAtomType = readSMARTS(smartFile);
-      atomTypeCounts = new int[maxAtomType+1];
+   {  this(readSMARTS(smartFile), validatedAssignment);
+   }
+
 
+   /**
+    * @param atomTypes sorted by match order
+    */
+   private ALogPCalculator( List<ALogPAtom> atomTypes, boolean validatedAssignment )
+   {  this.allAtomTypes = atomTypes;
       this.validatedAssignment = validatedAssignment;
+
+      int maxAtomType = 0;
+      boolean needExpH = false;
+      Map<Integer,List<ALogPAtom>> typesByAtomicNum = new HashMap<Integer,List<ALogPAtom>>();
+      for( ALogPAtom a : atomTypes)
+      {  if( a.getType() > maxAtomType ) maxAtomType = a.getType();
+         if( a.needsExplicitH() ) needExpH = true;
+
+         int atNum = oechem.OEGetAtomicNum(a.getAtomSymbol());
+         List<ALogPAtom> atTypeByAtList = typesByAtomicNum.get(atNum);
+         if( atTypeByAtList == null )
+         {  atTypeByAtList = new ArrayList<ALogPAtom>();
+            typesByAtomicNum.put(atNum, atTypeByAtList);
+         }
+         atTypeByAtList.add(a);
+      }
+
+      // atomic number 0 is used for unknown symbols which are never matched
+      typesByAtomicNum.remove(0);
+      List<ALogPAtom> hTypes = typesByAtomicNum.remove(1);
+      hAtomTypes = hTypes == null ? new ALogPAtom[0] : hTypes.toArray(new ALogPAtom[hTypes.size()]);
+
+      int maxAtomicNum = 0;
+      for( int atNum : typesByAtomicNum.keySet() )
+         maxAtomicNum = Math.max(maxAtomicNum, atNum);
+      atomTypesByAtomicNum = new ALogPAtom[maxAtomicNum+1][];
+      for( Map.Entry<Integer,List<ALogPAtom>> e : typesByAtomicNum.entrySet() )
+      {  List<ALogPAtom> types = e.getValue();
+         atomTypesByAtomicNum[e.getKey()] = types.toArray(new ALogPAtom[types.size()]);
+      }
+
+      atomTypeCounts = new int[maxAtomType+1];
+      needExplicitHMol = needExpH;
       noExpHMol = new OEGraphMol();
-      allExpHMol = new OEGraphMol();
+      allExpHMol = needExpH ? new OEGraphMol() : null;
+   }
+
+
+   /**
+    * An ALogPCalculator may only be used by one thread at a time.
+    *
+    * @return a new calculator with the same atom types for use by another thread.
+    */
+   public ALogPCalculator copy()
+   {  List<ALogPAtom> types = new ArrayList<ALogPAtom>(allAtomTypes.size());
+      for( ALogPAtom a : allAtomTypes)
+         types.add(a.copy());
+
+      return new ALogPCalculator(types, validatedAssignment);
    }
 
 
@@ -66,14 +124,13 @@ public class ALogPCalculator
    {  for(ALogPAtom  a : allAtomTypes)
          a.close();
 
-      allExpHMol.delete();
+      if( allExpHMol != null ) allExpHMol.delete();
       noExpHMol.delete();
    }
 
    public double computeALogP(OEMolBase mol)
    {  Arrays.fill(atomTypeCounts, 0);
       noExpHMol.Clear();
-      allExpHMol.Clear();
 
       if( validatedAssignment )
       {  atomWasAssigned = new boolean[mol.GetMaxAtomIdx()+1];
@@ -81,14 +138,49 @@ public class ALogPCalculator
          assignIndexTag(mol);
       }
 
-      oechem.OEAddMols(allExpHMol, mol, (String)null);
       oechem.OEAddMols(noExpHMol, mol, (String)null);
-      oechem.OEAddExplicitHydrogens(allExpHMol);
       oechem.OESuppressHydrogens(noExpHMol, false, false,false);
 
-      double aLogP = 0D;
-      aLogP += processAtoms(noExpHMol, false);
-      aLogP += processAtoms(allExpHMol, true);
+      return computeALogP(mol, noExpHMol, MolGraph.create(noExpHMol));
+   }
+
+
+   /**
+    * Same as {@link #computeALogP(OEMolBase)} for callers that already hold a
+    * {@link MolGraph} of the molecule.
+    *
+    * @param mol with all hydrogens suppressed.
+    * @param graph created from mol.
+    */
+   public double computeALogP(OEMolBase mol, MolGraph graph)
+   {  Arrays.fill(atomTypeCounts, 0);
+
+      if( validatedAssignment )
+      {  atomWasAssigned = new boolean[mol.GetMaxAtomIdx()+1];
+         hWasAssigned    = new boolean[mol.GetMaxAtomIdx()+1];
+         assignIndexTag(mol);
+      }
+
+      return computeALogP(mol, mol, graph);
+   }
+
+
+   /**
+    * @param noHMol copy of mol with all hydrogens suppressed.
+    * @param noHGraph created from noHMol.
+    */
+   private double computeALogP(OEMolBase mol, OEMolBase noHMol, MolGraph noHGraph)
+   {  double aLogP = 0D;
+      aLogP += processAtoms(noHMol, noHGraph, false);
+
+      // hydrogens are counted on their parent atoms so the copy with explicit
+      // hydrogens is only needed for atom types that ask for it
+      if( needExplicitHMol )
+      {  allExpHMol.Clear();
+         oechem.OEAddMols(allExpHMol, mol, (String)null);
+         oechem.OEAddExplicitHydrogens(allExpHMol);
+         aLogP += processAtoms(allExpHMol, MolGraph.create(allExpHMol), true);
+      }
 
       if( validatedAssignment )
       {  validateAssignments(mol);
@@ -97,23 +189,22 @@ public class ALogPCalculator
    }
 
 
-   private double processAtoms(OEMolBase mol, boolean hAreExplicit)
+   private double processAtoms(OEMolBase mol, MolGraph graph, boolean hAreExplicit)
    {  double aLogP = 0D;
 
       OEAtomBaseIter atIt = mol.GetAtoms();
       while( atIt.hasNext() )
       {  OEAtomBase at = atIt.next();
+         int atPos = graph.getAtomPos(at.GetIdx());
+         int atNum = graph.getAtomicNum(atPos);
 
-         if( at.GetAtomicNum() == 1 ) continue; // H are considered on central atom
-
-         aLogP += getAtomHContrib( at, hAreExplicit );
-         //System.err.printf("Hcontrib %f\n",getAtomHContrib( at, hAreExplicit ));
-
-         String atSym = oechem.OEGetAtomicSymbol(at.GetAtomicNum());
+         if( atNum == 1 ) continue; // H are considered on central atom
 
-         if( "H".equals(atSym) ) continue;  // H's are considered on parent atoms
+         aLogP += getAtomHContrib( graph, atPos, at, hAreExplicit );
+         //System.err.printf("Hcontrib %f\n",getAtomHContrib( graph, atPos, at, hAreExplicit ));
 
-         List<ALogPAtom> matchList = atomTypesByAtomSym.get(atSym);
+         ALogPAtom[] matchList = null;
+         if( atNum < atomTypesByAtomicNum.length ) matchList = atomTypesByAtomicNum[atNum];
          if( matchList == null )
          {  System.err.printf("Missing atom type for %s in %s\n",
                               Atom.getAtomName(at), oechem.OECreateSmiString(mol));
@@ -121,7 +212,7 @@ public class ALogPCalculator
          }
 
          for( ALogPAtom aType : matchList)
-         {  if( aType.matchesAtom(at, hAreExplicit) )
+         {  if( aType.matchesAtom(graph, atPos, at, hAreExplicit) )
             {  aLogP += aType.getHydrophobicity();
                //System.err.printf("At Contrib %s %f\n",aType.getDescription(), aType.getHydrophobicity());
                atomTypeCounts[aType.getType()]++;
@@ -136,13 +227,12 @@ public class ALogPCalculator
 
    /** get contribution of hydrogens on this atom
     */
-   private double getAtomHContrib(OEAtomBase at, boolean hAreExplicit)
-   {  int totlHCount = at.GetTotalHCount();
+   private double getAtomHContrib(MolGraph graph, int atPos, OEAtomBase at, boolean hAreExplicit)
+   {  int totlHCount = graph.getTotalHCount(atPos);
       if( totlHCount == 0 ) return 0D;
 
-      List<ALogPAtom> matchList = atomTypesByAtomSym.get("H");
-      for( ALogPAtom aType : matchList)
-      {  if( aType.matchesAtom(at, hAreExplicit) )
+      for( ALogPAtom aType : hAtomTypes)
+      {  if( aType.matchesAtom(graph, atPos, at, hAreExplicit) )
          {  atomTypeCounts[aType.getType()] += totlHCount;
             if( validatedAssignment ) hWasAssigned[at.GetIntData(ALOGPAtIdxTag)] = true;
 
@@ -199,18 +289,18 @@ public class ALogPCalculator
    /**
     * Parse the tab-delimited file with the SMARTS definitions
     *
-    * @return  the highest number of the atomType found.
+    * @return  the atom types sorted by match order.
     *
     */
-   private int readSMARTS( String file )
-   {  int smartsCounter = 0;
-      int maxOfficialType = 0;
+   static List<ALogPAtom> readSMARTS( String file )
+   {  List<ALogPAtom> allAtomTypes = new ArrayList<ALogPAtom>(130);
+      int smartsCounter = 0;
 
       try
       {  BufferedReader reader;
 
          if( file == null || file.length() == 0 )
-         {  InputStream strm = this.getClass().getResourceAsStream("aLogPFragments.txt");
+         {  InputStream strm = ALogPCalculator.class.getResourceAsStream("aLogPFragments.txt");
             reader = new BufferedReader(new InputStreamReader(strm));
          } else
          {   reader = new BufferedReader( new FileReader( file ) );
@@ -242,28 +332,18 @@ public class ALogPCalculator
 
             allAtomTypes.add(aLogPAtomType);
 
-            if( aLogPType > maxOfficialType ) maxOfficialType = aLogPType;
-
             smartsCounter++;
          }
+         reader.close();
       } catch (IOException e)
       {  throw new Error(e);
       }
 
       Collections.sort(allAtomTypes);     //sort by matchorder
 
-      for( ALogPAtom a : allAtomTypes)
-      {  List<ALogPAtom> atTypeByAtList = atomTypesByAtomSym.get(a.getAtomSymbol());
-         if( atTypeByAtList == null )
-         {  atTypeByAtList = new ArrayList<ALogPAtom>();
-            atomTypesByAtomSym.put(a.getAtomSymbol(), atTypeByAtList);
-         }
-         atTypeByAtList.add(a);
-      }
-
       System.err.printf( "Read %d atom types\n", smartsCounter );
 
-      return maxOfficialType;
+      return allAtomTypes;
    }
 
 }
@@ -275,8 +355,8 @@ class ALogPAtom implements Comparable<ALogPAtom>
    private final boolean needExplicitH;
    private final String description;
    private final double hydroPhob;
-   @SuppressWarnings("unused")
    private final String smarts;
+   private final AtomInvariantFilter filter;
    private final float matchOrder;
 
    public ALogPAtom(int aLogPType, String atom, float matchOrder, String smarts,
@@ -286,6 +366,7 @@ class ALogPAtom implements Comparable<ALogPAtom>
       this.centerAtomSymbol = atom;
       this.smarts = smarts;
       this.subSearch = new OESubSearch(smarts);
+      this.filter = new AtomInvariantFilter(smarts);
       this.needExplicitH = needExplicitH;
       this.description = desc;
       this.hydroPhob = hydroPhob;
@@ -309,10 +390,40 @@ class ALogPAtom implements Comparable<ALogPAtom>
    public String getDescription()
    {  return description; }
 
-   public boolean matchesAtom(OEAtomBase at, boolean hAreExplicit )
+   /**
+    * @param atPos position of at in graph, the atom invariants in graph are
+    *        checked before running the SMARTS match.
+    */
+   public boolean matchesAtom(MolGraph graph, int atPos, OEAtomBase at, boolean hAreExplicit )
    {  if( hAreExplicit != needExplicitH ) return false;
+
+      switch( filter.evaluate(graph, atPos) )
+      {  case AtomInvariantFilter.NOMatch:
+            return false;
+         case AtomInvariantFilter.MATCH:
+            return true;
+         default:
 //System.err.println(subSearch.AtomMatch(at) + " " + at.GetTotalHCount()+" " +at.GetImplicitHCount()+ " " + at.GetExplicitHCount()+" " + at.GetDegree());
-      return subSearch.AtomMatch(at);
+            return subSearch.AtomMatch(at);
+      }
+   }
+
+   public boolean needsExplicitH()
+   {  return needExplicitH;
+   }
+
+   String getSmarts()
+   {  return smarts;
+   }
+
+   AtomInvariantFilter getFilter()
+   {  return filter;
+   }
+
+   /** @return new atom type with its own OESubSearch */
+   ALogPAtom copy()
+   {  return new ALogPAtom(aLogPType, centerAtomSymbol, matchOrder, smarts,
+                           needExplicitH, description, hydroPhob);
    }
 
    /** number of this atom type as in paper */
@@ -0,0 +1,427 @@
+/*
+   Copyright 2008-2015 Genentech Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+*/
+package com.genentech.chemistry.openEye.aLogP;
+
+import com.genentech.oechem.tools.MolGraph;
+
+/**
+ * Cheap check of the first atom of a SMARTS against the atom invariants of a
+ * {@link MolGraph}.
+ *
+ * The expression of the first atom is compiled into a tree of tests on the
+ * element, aromaticity, hydrogen count, degree, connectivity and charge which
+ * is evaluated with three valued logic. Primitives which can not be decided
+ * from these invariants eg. recursive SMARTS or ring membership evaluate to
+ * {@link #MAYMatch}. {@link #MATCH} is only returned if the SMARTS consists of
+ * a single atom.
+ *
+ * SMARTS which are not understood by the parser always evaluate to
+ * {@link #MAYMatch} so that the caller falls back to the OESubSearch.
+ *
+ * @author albertgo
+ */
+class AtomInvariantFilter
+{  static final int NOMatch  = 0;
+   static final int MATCH    = 1;
+   static final int MAYMatch = 2;
+
+   private static final String[] ELEMENTS =
+   { "",
+     "H",  "He", "Li", "Be", "B",  "C",  "N",  "O",  "F",  "Ne",
+     "Na", "Mg", "Al", "Si", "P",  "S",  "Cl", "Ar", "K",  "Ca",
+     "Sc", "Ti", "V",  "Cr", "Mn", "Fe", "Co", "Ni", "Cu", "Zn",
+     "Ga", "Ge", "As", "Se", "Br", "Kr", "Rb", "Sr", "Y",  "Zr",
+     "Nb", "Mo", "Tc", "Ru", "Rh", "Pd", "Ag", "Cd", "In", "Sn",
+     "Sb", "Te", "I",  "Xe", "Cs", "Ba", "La", "Ce", "Pr", "Nd",
+     "Pm", "Sm", "Eu", "Gd", "Tb", "Dy", "Ho", "Er", "Tm", "Yb",
+     "Lu", "Hf", "Ta", "W",  "Re", "Os", "Ir", "Pt", "Au", "Hg",
+     "Tl", "Pb", "Bi", "Po", "At", "Rn", "Fr", "Ra", "Ac", "Th",
+     "Pa", "U",  "Np", "Pu", "Am", "Cm", "Bk", "Cf", "Es", "Fm",
+     "Md", "No", "Lr"
+   };
+
+   private static final int ATOMICNum = 0;
+   private static final int AROMATIC  = 1;
+   private static final int TOTALH    = 2;
+   private static final int IMPLICITH = 3;
+   private static final int DEGREE    = 4;
+   private static final int CONNECT   = 5;
+   private static final int CHARGE    = 6;
+
+   private final String smarts;
+   private final Node root;
+   private final boolean isSingleAtom;
+   private final boolean isCompiled;
+
+   /** position of the parser in smarts */
+   private int pos;
+   /** position of the first primitive in the current bracket atom */
+   private int bracketStart;
+
+
+   AtomInvariantFilter(String smarts)
+   {  this.smarts = smarts;
+
+      Node n;
+      boolean compiled;
+      try
+      {  n = parseAtom();
+         compiled = true;
+      } catch (IllegalArgumentException e)
+      {  n = new Const(MAYMatch);
+         compiled = false;
+      }
+      this.root = n;
+      this.isCompiled = compiled;
+      this.isSingleAtom = compiled && pos == smarts.length();
+   }
+
+
+   /**
+    * @return {@link #NOMatch} if the SMARTS can not match at,
+    *         {@link #MATCH} if it does match at and {@link #MAYMatch} if the
+    *         SMARTS needs to be matched to decide.
+    */
+   int evaluate(MolGraph graph, int at)
+   {  int res = root.eval(graph, at);
+      if( res == MATCH && ! isSingleAtom ) return MAYMatch;
+      return res;
+   }
+
+
+   /** @return false if the SMARTS could not be compiled and the filter never excludes an atom */
+   boolean isCompiled()
+   {  return isCompiled;
+   }
+
+
+   private Node parseAtom()
+   {  char c = peek();
+      if( c == '[' )
+      {  pos++;
+         bracketStart = pos;
+         Node n = parseLowAnd();
+         if( peek() != ']' ) throw unsupported();
+         pos++;
+         return n;
+      }
+
+      // organic subset without brackets
+      if( smarts.startsWith("Cl", pos) )
+      {  pos += 2;
+         return element(17, false);
+      }
+      if( smarts.startsWith("Br", pos) )
+      {  pos += 2;
+         return element(35, false);
+      }
+      pos++;
+      switch(c)
+      {  case '*': return new Const(MATCH);
+         case 'A': return new Prop(AROMATIC, 0);
+         case 'a': return new Prop(AROMATIC, 1);
+         case 'B': case 'C': case 'N': case 'O': case 'P': case 'S': case 'F': case 'I':
+            return element(getAtomicNum(String.valueOf(c)), false);
+         case 'b': case 'c': case 'n': case 'o': case 'p': case 's':
+            return element(getAtomicNum(String.valueOf(Character.toUpperCase(c))), true);
+         default:
+            throw unsupported();
+      }
+   }
+
+   private Node parseLowAnd()
+   {  Node n = parseOr();
+      while( peek() == ';' )
+      {  pos++;
+         n = new And(n, parseOr());
+      }
+      return n;
+   }
+
+   private Node parseOr()
+   {  Node n = parseHighAnd();
+      while( peek() == ',' )
+      {  pos++;
+         n = new Or(n, parseHighAnd());
+      }
+      return n;
+   }
+
+   private Node parseHighAnd()
+   {  Node n = parseUnary();
+      while( true )
+      {  char c = peek();
+         if( c == ';' || c == ',' || c == ']' ) return n;
+         if( c == '&' ) pos++;
+         n = new And(n, parseUnary());
+      }
+   }
+
+   private Node parseUnary()
+   {  if( peek() == '!' )
+      {  pos++;
+         return new Not(parseUnary());
+      }
+      return parsePrimitive();
+   }
+
+   private Node parsePrimitive()
+   {  boolean isFirst = pos == bracketStart;
+      char c = peek();
+
+      if( c == '$' )
+      {  skipRecursive();
+         return new Const(MAYMatch);
+      }
+
+      if( c == '#' )
+      {  pos++;
+         int atNum = readNumber();
+         if( atNum < 0 ) throw unsupported();
+         return new Prop(ATOMICNum, atNum);
+      }
+
+      if( c == '+' || c == '-' )
+      {  pos++;
+         int charge = readNumber();
+         if( charge < 0 )
+         {  charge = 1;
+            while( pos < smarts.length() && smarts.charAt(pos) == c )
+            {  pos++;
+               charge++;
+            }
+         }
+         return new Prop(CHARGE, c == '+' ? charge : -charge);
+      }
+
+      if( c == '*' )
+      {  pos++;
+         return new Const(MATCH);
+      }
+
+      if( c == '@' )
+      {  while( peek() == '@' ) pos++;
+         if( peek() == '?' ) pos++;
+         return new Const(MAYMatch);
+      }
+
+      if( Character.isDigit(c) ) // isotope
+      {  readNumber();
+         return new Const(MAYMatch);
+      }
+
+      if( Character.isUpperCase(c) )
+      {  char next = pos+1 < smarts.length() ? smarts.charAt(pos+1) : ' ';
+
+         // Ch, Nh, Oh... are atoms with implicit hydrogens
+         if( Character.isLowerCase(next) && next != 'h' )
+         {  String sym = new String(new char[] { c, next });
+            int atNum = getAtomicNum(sym);
+            if( atNum > 0 )
+            {  // eg. Cr could also be aliphatic C in a ring
+               if( "rvxa".indexOf(next) >= 0 && ! "Br".equals(sym) )
+                  throw unsupported();
+               pos += 2;
+               return element(atNum, false);
+            }
+         }
+
+         pos++;
+         switch(c)
+         {  case 'A': return new Prop(AROMATIC, 0);
+            case 'D': return new Prop(DEGREE, readNumber());
+            case 'X': return new Prop(CONNECT, readNumber());
+            case 'H':
+               if( isFirst ) throw unsupported(); // [H] is a hydrogen atom
+               return new Prop(TOTALH, readNumber());
+            case 'R':
+               readNumber();
+               return new Const(MAYMatch);
+            default:
+               int atNum = getAtomicNum(String.valueOf(c));
+               if( atNum <= 0 ) throw unsupported();
+               return element(atNum, false);
+         }
+      }
+
+      if( smarts.startsWith("se", pos) || smarts.startsWith("as", pos) )
+      {  String sym = smarts.substring(pos, pos+2);
+         pos += 2;
+         return element(getAtomicNum(Character.toUpperCase(sym.charAt(0)) + sym.substring(1)), true);
+      }
+
+      pos++;
+      switch(c)
+      {  case 'a': return new Prop(AROMATIC, 1);
+         case 'h': return new Prop(IMPLICITH, readNumber());
+         case 'r': case 'v': case 'x':
+            readNumber();
+            return new Const(MAYMatch);
+         case 'b': case 'c': case 'n': case 'o': case 'p': case 's':
+            return element(getAtomicNum(String.valueOf(Character.toUpperCase(c))), true);
+         default:
+            throw unsupported();
+      }
+   }
+
+   /** skip $(...) */
+   private void skipRecursive()
+   {  pos++;
+      if( peek() != '(' ) throw unsupported();
+      int depth = 0;
+      do
+      {  char c = peek();
+         if( c == '(' ) depth++;
+         else if( c == ')' ) depth--;
+         pos++;
+      } while( depth > 0 );
+   }
+
+   /** @return the number at pos or -1 if there is none */
+   private int readNumber()
+   {  int start = pos;
+      while( pos < smarts.length() && Character.isDigit(smarts.charAt(pos)) )
+         pos++;
+      if( start == pos ) return -1;
+      return Integer.parseInt(smarts.substring(start, pos));
+   }
+
+   private char peek()
+   {  if( pos >= smarts.length() ) throw unsupported();
+      return smarts.charAt(pos);
+   }
+
+   private IllegalArgumentException unsupported()
+   {  return new IllegalArgumentException("Unsupported SMARTS at " + pos + ": " + smarts);
+   }
+
+   private static Node element(int atNum, boolean isAromatic)
+   {  return new And(new Prop(ATOMICNum, atNum), new Prop(AROMATIC, isAromatic ? 1 : 0));
+   }
+
+   private static int getAtomicNum(String sym)
+   {  for(int i=1; i<ELEMENTS.length; i++)
+         if( ELEMENTS[i].equals(sym) ) return i;
+      return -1;
+   }
+
+
+   private static abstract class Node
+   {  abstract int eval(MolGraph graph, int at);
+   }
+
+   private static class Const extends Node
+   {  private final int value;
+
+      Const(int value)
+      {  this.value = value;
+      }
+
+      @Override
+      int eval(MolGraph graph, int at)
+      {  return value;
+      }
+   }
+
+   private static class Not extends Node
+   {  private final Node node;
+
+      Not(Node node)
+      {  this.node = node;
+      }
+
+      @Override
+      int eval(MolGraph graph, int at)
+      {  int res = node.eval(graph, at);
+         if( res == MAYMatch ) return MAYMatch;
+         return res == MATCH ? NOMatch : MATCH;
+      }
+   }
+
+   private static class And extends Node
+   {  private final Node left;
+      private final Node right;
+
+      And(Node left, Node right)
+      {  this.left = left;
+         this.right = right;
+      }
+
+      @Override
+      int eval(MolGraph graph, int at)
+      {  int res = left.eval(graph, at);
+         if( res == NOMatch ) return NOMatch;
+         int res2 = right.eval(graph, at);
+         if( res2 == NOMatch ) return NOMatch;
+         return res == MATCH && res2 == MATCH ? MATCH : MAYMatch;
+      }
+   }
+
+   private static class Or extends Node
+   {  private final Node left;
+      private final Node right;
+
+      Or(Node left, Node right)
+      {  this.left = left;
+         this.right = right;
+      }
+
+      @Override
+      int eval(MolGraph graph, int at)
+      {  int res = left.eval(graph, at);
+         if( res == MATCH ) return MATCH;
+         int res2 = right.eval(graph, at);
+         if( res2 == MATCH ) return MATCH;
+         return res == NOMatch && res2 == NOMatch ? NOMatch : MAYMatch;
+      }
+   }
+
+   /** test of one atom invariant */
+   private static class Prop extends Node
+   {  private final int type;
+      /** -1 if no count was given */
+      private final int value;
+
+      Prop(int type, int value)
+      {  this.type = type;
+         this.value = value;
+      }
+
+      @Override
+      int eval(MolGraph graph, int at)
+      {  int v;
+         switch(type)
+         {  case ATOMICNum: v = graph.getAtomicNum(at); break;
+            case AROMATIC:  v = graph.isAromatic(at) ? 1 : 0; break;
+            case TOTALH:    v = graph.getTotalHCount(at); break;
+            case IMPLICITH: v = graph.getImplicitHCount(at); break;
+            case DEGREE:    v = graph.getDegree(at); break;
+            case CONNECT:   v = graph.getDegree(at) + graph.getImplicitHCount(at); break;
+            case CHARGE:    v = graph.getFormalCharge(at); break;
+            default: throw new Error("Unknown type " + type);
+         }
+
+         if( value >= 0 || type == CHARGE )
+            return v == value ? MATCH : NOMatch;
+
+         // without count a count of 0 never matches and 1 always matches,
+         // larger counts are left to the SMARTS matcher
+         if( v == 0 ) return NOMatch;
+         return v == 1 ? MATCH : MAYMatch;
+      }
+   }
+}
@@ -0,0 +1,90 @@
+package com.genentech.chemistry.openEye.aLogP;
+
+import java.util.List;
+
+import openeye.oechem.OEAtomBase;
+import openeye.oechem.OEAtomBaseIter;
+import openeye.oechem.OEGraphMol;
+import openeye.oechem.OESubSearch;
+import openeye.oechem.oechem;
+
+import org.testng.annotations.Test;
+
+import com.genentech.oechem.tools.MolGraph;
+import com.genentech.oechem.tools.OETools;
+
+
+public class AtomInvariantFilterTest
+{  private static final String[] SMILES =
+   {  "CC(C)(C)c1ccc(O)cc1", "OC(=O)C(F)(F)F", "CC[N+](C)(C)C", "c1ccncc1C#N",
+      "[O-][N+](=O)c1ccc(Cl)cc1Br", "C1CC[NH2+]CC1", "CS(=O)(=O)N1CCOCC1",
+      "C=CC(=O)OC", "c1cc[nH]c1I", "OP(=O)(O)OCC[Se]C", "[Cl-].C[NH3+]",
+      "[H]OC([H])([H])C(F)Cl", "CC(=O)NC1=NC=CS1", "B(O)(O)c1ccccc1"
+   };
+
+   @Test()
+   public static void testDefaultTypesCompile()
+   {  List<ALogPAtom> types = ALogPCalculator.readSMARTS(null);
+      for(ALogPAtom a : types)
+      {  assert a.getFilter().isCompiled() : "not compiled: " + a.getSmarts();
+         a.close();
+      }
+   }
+
+   @Test()
+   public static void testSimpleSmarts()
+   {  OEGraphMol mol = new OEGraphMol();
+      OETools.smiToMol(mol, "[O-]C(=O)c1ccccc1");
+      MolGraph g = MolGraph.create(mol);
+      mol.delete();
+
+      assert new AtomInvariantFilter("[O;-1]").evaluate(g, 0) == AtomInvariantFilter.MATCH;
+      assert new AtomInvariantFilter("[O;X1]").evaluate(g, 2) == AtomInvariantFilter.MATCH;
+      assert new AtomInvariantFilter("[Oh]").evaluate(g, 0) == AtomInvariantFilter.NOMatch;
+      assert new AtomInvariantFilter("[ch](c)(c)").evaluate(g, 4) == AtomInvariantFilter.MAYMatch;
+      assert new AtomInvariantFilter("[ch](c)(c)").evaluate(g, 3) == AtomInvariantFilter.NOMatch;
+      assert new AtomInvariantFilter("[C;$(C=O)]").evaluate(g, 1) == AtomInvariantFilter.MAYMatch;
+      assert ! new AtomInvariantFilter("[H+]").isCompiled();
+   }
+
+   /**
+    * The filter may never contradict the SMARTS match.
+    */
+   @Test()
+   public static void testConsistentWithSubSearch()
+   {  List<ALogPAtom> types = ALogPCalculator.readSMARTS(null);
+      OEGraphMol mol = new OEGraphMol();
+
+      for(String smi : SMILES)
+      {  for(int explicitH=0; explicitH<2; explicitH++)
+         {  OETools.smiToMol(mol, smi);
+            if( explicitH == 1 )
+               oechem.OEAddExplicitHydrogens(mol);
+            else
+               oechem.OESuppressHydrogens(mol, false, false, false);
+            MolGraph g = MolGraph.create(mol);
+
+            for(ALogPAtom a : types)
+            {  OESubSearch ss = new OESubSearch(a.getSmarts());
+               OEAtomBaseIter atIt = mol.GetAtoms();
+               while( atIt.hasNext() )
+               {  OEAtomBase at = atIt.next();
+                  int res = a.getFilter().evaluate(g, g.getAtomPos(at.GetIdx()));
+                  if( res == AtomInvariantFilter.MAYMatch ) continue;
+
+                  boolean isMatch = ss.AtomMatch(at);
+                  assert isMatch == (res == AtomInvariantFilter.MATCH)
+                     : a.getSmarts() + " atom " + at.GetIdx() + " in " + smi;
+               }
+               atIt.delete();
+               ss.delete();
+            }
+            mol.Clear();
+         }
+      }
+
+      mol.delete();
+      for(ALogPAtom a : types)
+         a.close();
+   }
+}
@@ -0,0 +1,185 @@
+/*
+   Copyright 2008-2014 Genentech Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+*/
+package com.genentech.chemistry.openEye.apps;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+import openeye.oechem.OEGraphMol;
+import openeye.oechem.OEMolBase;
+import openeye.oechem.oechem;
+import openeye.oechem.oemolithread;
+import openeye.oechem.oemolothread;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.PosixParser;
+
+import com.genentech.chemistry.openEye.AAPathComparatorDatabase;
+import com.genentech.chemistry.openEye.AAPathComparatorFact;
+import com.genentech.chemistry.openEye.AAPathComparatorFact.AAPathCompareType;
+import com.genentech.chemistry.openEye.IAAPathComparatorChar;
+
+/**
+ * Precompute the atom paths used by the version 8 AAPath similarity so that
+ * reference files need not be enumerated again for each search.
+ *
+ * If the output file ends with {@link AAPathComparatorDatabase#FILE_EXTENSION}
+ * an {@link AAPathComparatorDatabase} is written which can be used as -ref
+ * file by {@link SDFMCSSNNFinder}. Otherwise the input records are written with
+ * the descriptor added in an sd tag which is used by {@link SDFMCSSNNFinder}
+ * if -AAPathDescriptorTag is given.
+ *
+ * @author albertgo
+ *
+ */
+public class SDFAAPathDescriptorBuilder
+{  private static final String DEFAULTTag = "AAPathDescriptor";
+
+   private SDFAAPathDescriptorBuilder()
+   {
+   }
+
+
+   public static void main(String...args) throws IOException
+   {  // create command line Options object
+      Options options = new Options();
+      Option opt = new Option("in",true, "input file [.sdf,...]");
+      opt.setRequired(true);
+      options.addOption(opt);
+
+      opt = new Option("out",true, "output file, either an AAPath database ending with "
+                                 + AAPathComparatorDatabase.FILE_EXTENSION
+                                 + " or an oe-supported file with the descriptor in descriptorTag");
+      opt.setRequired(true);
+      options.addOption(opt);
+
+      opt = new Option("AAPathSim",true, "FAST|INTERMEDIATE|DEFAULT|FUZZY|FUZZYINTERMEDIATE|FUZZYFAST"
+                                 + " type of AAPath similarity the descriptors are used for, default=DEFAULT."
+                                 + " Only version " + AAPathComparatorFact.DEFAULTVersion + " is supported.");
+      opt.setRequired(false);
+      options.addOption(opt);
+
+      opt = new Option("descriptorTag",true, "sd tag for the descriptor if out is not a database, default "
+                                 + DEFAULTTag);
+      opt.setRequired(false);
+      options.addOption(opt);
+
+      opt = new Option("idTag",true, "field containing id, stored in the database to create NNId fields when searching.");
+      opt.setRequired(false);
+      options.addOption(opt);
+
+      CommandLineParser parser = new PosixParser();
+      CommandLine cmd = null;
+      try
+      {  cmd = parser.parse( options, args);
+      } catch(Exception e)
+      {  System.err.println(e.getMessage());
+         exitWithHelp(options);
+      }
+      args = cmd.getArgs();
+
+      if(cmd.hasOption("d"))
+      {  System.err.println("Start debugger and press return:");
+         new BufferedReader(new InputStreamReader(System.in)).readLine();
+      }
+
+      String inFile  = cmd.getOptionValue("in");
+      String outFile = cmd.getOptionValue("out");
+      String idTag   = cmd.getOptionValue("idTag");
+      String descriptorTag = cmd.getOptionValue("descriptorTag");
+      if( descriptorTag == null ) descriptorTag = DEFAULTTag;
+
+      String aaPathSimType = cmd.getOptionValue("AAPathSim");
+      if( aaPathSimType == null ) aaPathSimType = AAPathCompareType.DEFAULT.toString();
+      if( aaPathSimType.matches(".*\\d") )
+      {  if( aaPathSimType.charAt(aaPathSimType.length()-1) - '0' != AAPathComparatorFact.DEFAULTVersion )
+         {  System.err.println("Only version " + AAPathComparatorFact.DEFAULTVersion + " is supported");
+            exitWithHelp(options);
+         }
+         aaPathSimType = aaPathSimType.substring(0,aaPathSimType.length()-1);
+      }
+      AAPathCompareType type = AAPathCompareType.valueOf(aaPathSimType);
+      AAPathComparatorFact fact = new AAPathComparatorFact(type, AAPathComparatorFact.DEFAULTVersion);
+
+      boolean isDatabase = AAPathComparatorDatabase.hasFileExtension(outFile);
+      if( idTag != null && ! isDatabase )
+         System.err.println("WARNING: idTag ignored for sd output!\n");
+
+      long start = System.currentTimeMillis();
+      AAPathComparatorDatabase.Writer dbOut = null;
+      oemolothread ofs = null;
+      if( isDatabase )
+         dbOut = new AAPathComparatorDatabase.Writer(outFile, type.getPathLen(), idTag != null);
+      else
+         ofs = new oemolothread(outFile);
+
+      OEMolBase mol = new OEGraphMol();
+      oemolithread ifs = new oemolithread(inFile);
+      int iCounter = 0;
+
+      while(oechem.OEReadMolecule(ifs, mol))
+      {  iCounter++;
+         if( ! mol.IsValid() )
+            throw new Error("Invalid molecule in input file: " + iCounter);
+
+         IAAPathComparatorChar comp = (IAAPathComparatorChar)fact.createComparator(mol);
+         if( isDatabase )
+         {  String id = null;
+            if( idTag != null )
+            {  id = oechem.OEGetSDData(mol, idTag);
+               if( id.length() == 0 )
+                  System.err.println("empty id for record " + iCounter);
+            }
+            dbOut.add(comp, id);
+         }else
+         {  oechem.OESetSDData(mol, descriptorTag, comp.getDescriptorHex());
+            oechem.OEWriteMolecule(ofs, mol);
+         }
+         comp.close();
+
+         if(iCounter % 1000 == 0) System.err.print(".");
+         if(iCounter % 40000 == 0)
+         {  System.err.printf( " %d %dsec\n",
+                  iCounter, (System.currentTimeMillis()-start)/1000);
+         }
+      }
+      ifs.close();
+      ifs.delete();
+      mol.delete();
+
+      if( isDatabase )
+      {  dbOut.close();
+      }else
+      {  ofs.close();
+         ofs.delete();
+      }
+
+      System.err.printf("\nSDFAAPathDescriptorBuilder: Wrote %d descriptors to %s. %d sec\n",
+            iCounter, outFile, (System.currentTimeMillis()-start)/1000);
+   }
+
+   private static void exitWithHelp(Options options) {
+      HelpFormatter formatter = new HelpFormatter();
+      formatter.printHelp( "SDFAAPathDescriptorBuilder", options );
+      System.exit(1);
+   }
+}
@@ -17,12 +17,15 @@
 package com.genentech.chemistry.openEye.apps;
 
 import java.io.*;
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.List;
 
 import openeye.oechem.*;
 
 import org.apache.commons.cli.*;
 
+import com.aestel.chemistry.openEye.MultiThreadBatchAlgorithm;
+import com.aestel.chemistry.openEye.MultiThreadBatchRunner;
 import com.aestel.utility.DataFormat;
 import com.genentech.chemistry.openEye.aLogP.ALogPCalculator;
 import com.genentech.oechem.tools.OETools;
@@ -35,7 +38,7 @@ import com.genentech.oechem.tools.OETools;
  * @author Alberto Gobbi/ 2012
  * Copyright 2012 Genentech
  */
-public class SDFALogP
+public class SDFALogP implements MultiThreadBatchAlgorithm<Void>
 {  private static final String MY_NAME = "SDFALogP";
    private static final String ALOGP_TAG = "ALogP_GNE";
    
@@ -46,74 +49,114 @@ public class SDFALogP
    private static final String OPT_VALIDATE_ASSIGNMENT = "validateAssignment";
    private static final String OPT_SUPRESS_ZERO = "supressZeros";
    private static final String OPT_NEUTRALIZE = "neutralize";
+   private static final String OPT_NCPU = "nCpu";
+   private static final String OPT_BATCHSIZE = "batchSize";
 
    private final oemolothread outputOEThread;
+   /** atom type definitions, each thread uses its own copy */
    private final ALogPCalculator aLogPCalcualtor;
    private final boolean outputZero;
    private final boolean neutralize;
+   private final boolean outPutCounts;
+   private final int nCpu;
+   /** all per thread calculators so that they can be closed */
+   private final List<ALogPCalculator> threadCalculators = new ArrayList<ALogPCalculator>();
+   private final ThreadLocal<ALogPCalculator> threadCalculator;
+   private oemolithread ifs;
    
    private SDFALogP( String smartsFile, String outFile, boolean outputZero, 
-            boolean neutralize, boolean validateAssignment )
+            boolean neutralize, boolean validateAssignment, boolean outPutCounts, int nCpu )
    {  outputOEThread     = new oemolothread(outFile);
       this.outputZero = outputZero;
       this.neutralize = neutralize;
+      this.outPutCounts = outPutCounts;
+      this.nCpu = nCpu;
       aLogPCalcualtor = new ALogPCalculator( smartsFile, validateAssignment );
+      threadCalculator = new ThreadLocal<ALogPCalculator>()
+      {  @Override
+         protected ALogPCalculator initialValue()
+         {  ALogPCalculator calc = aLogPCalcualtor.copy();
+            synchronized(threadCalculators)
+            {  threadCalculators.add(calc);
+            }
+            return calc;
+         }
+      };
    }
    
    
    
-   private void close()
+   @Override
+   public void close()
    {  outputOEThread.close();
       aLogPCalcualtor.close();
+      synchronized(threadCalculators)
+      {  for(ALogPCalculator calc : threadCalculators)
+            calc.close();
+         threadCalculators.clear();
+      }
+      if( ifs != null )
+      {  ifs.close();
+         ifs.delete();
+         ifs = null;
+      }
    }
    
    
 
-   private void run( String inFile, boolean outPutCounts )
-   {  oemolithread ifs = new oemolithread(inFile);
-      long start = System.currentTimeMillis();
-      int iCounter = 0; //Structures in the SD file.
-
-      OEMolBase mol = new OEGraphMol();
-      OEMolBase compMol = new OEGraphMol();
-      while( oechem.OEReadMolecule( ifs, mol ) )
-      {  iCounter++;
-    
-         compMol.Clear();
+   /**
+    * Compute the ALogP of all molecules in inFile on nCpu threads, the output
+    * is in input order. This is closed when the method returns.
+    *
+    * @param batchSize number of molecules passed to a thread at once.
+    */
+   private void run( String inFile, int batchSize )
+   {  ifs = new oemolithread(inFile);
+
+      MultiThreadBatchRunner<Void> runner = new MultiThreadBatchRunner<Void>(this, nCpu, batchSize);
+      runner.run();
+      runner.close();
+   }
+
+
+   @Override
+   public boolean read(OEMolBase mol)
+   {  return oechem.OEReadMolecule(ifs, mol);
+   }
+
+
+   @Override
+   public Void process(OEMolBase mol)
+   {  ALogPCalculator calc = threadCalculator.get();
+
+      double alogp;
+      if( neutralize )
+      {  OEMolBase compMol = new OEGraphMol();
          oechem.OEAddMols(compMol, mol);
-         if( neutralize )
-            OETools.neutralize(compMol);
-            
-         double alogp = aLogPCalcualtor.computeALogP(compMol);
-         oechem.OEAddSDData(mol, ALOGP_TAG, DataFormat.formatNumber(alogp, "r2"));
-         
-         if( outPutCounts )
-         {  int[] counts = aLogPCalcualtor.getAtomCounts();
-            for(int i=1; i<counts.length; i++)
-            {  if( outputZero || counts[i] > 0 )
-                  oechem.OEAddSDData(mol, String.format("ALogP_GCount_%03d", i), 
-                                          Integer.toString(counts[i])
-                                          );
-            }
-         }
-    
-         oechem.OEWriteMolecule(outputOEThread, mol);
-         
-         //Output "." to show that the program is running.
-         if( iCounter % 100 == 0 )
-            System.err.print(".");
-         if( iCounter % 4000 == 0 )
-         {  System.err.printf( " %d %dsec\n",
-                  iCounter, (System.currentTimeMillis()-start)/1000);
+         OETools.neutralize(compMol);
+         alogp = calc.computeALogP(compMol);
+         compMol.delete();
+      } else
+      {  alogp = calc.computeALogP(mol);
+      }
+      oechem.OEAddSDData(mol, ALOGP_TAG, DataFormat.formatNumber(alogp, "r2"));
+
+      if( outPutCounts )
+      {  int[] counts = calc.getAtomCounts();
+         for(int i=1; i<counts.length; i++)
+         {  if( outputZero || counts[i] > 0 )
+               oechem.OEAddSDData(mol, String.format("ALogP_GCount_%03d", i), 
+                                       Integer.toString(counts[i])
+                                       );
          }
       }
+      return null;
+   }
+
 
-      mol.delete();
-      compMol.delete();
-      ifs.close();
-      inFile = inFile.replaceAll( ".*" + Pattern.quote(File.separator), "" );
-      System.err.printf( "%s: Read %d structures from %s. %d sec\n",
-               MY_NAME, iCounter, inFile, (System.currentTimeMillis()-start)/1000 );
+   @Override
+   public void consume(OEMolBase mol, Void result)
+   {  oechem.OEWriteMolecule(outputOEThread, mol);
    }
 
 
@@ -168,6 +211,17 @@ public class SDFALogP
       opt.setRequired( false );
       options.addOption( opt );
 
+      opt = new Option( OPT_NCPU, true, 
+               "number of CPU's used in parallel, default 1" );
+      opt.setRequired( false );
+      options.addOption( opt );
+
+      opt = new Option( OPT_BATCHSIZE, true, 
+               "number of molecules passed to a thread at once, default "
+               + MultiThreadBatchRunner.DEFAULT_BATCHSIZE );
+      opt.setRequired( false );
+      options.addOption( opt );
+
       CommandLineParser parser = new PosixParser();
       CommandLine cmd = null;
       try
@@ -190,10 +244,16 @@ public class SDFALogP
       boolean outputZero = ! cmd.hasOption(OPT_SUPRESS_ZERO);
       boolean neutralize = ! "n".equalsIgnoreCase(cmd.getOptionValue(OPT_NEUTRALIZE));
       boolean ValidateAssignment = cmd.hasOption(OPT_VALIDATE_ASSIGNMENT);
+      int nCpu = 1;
+      if( cmd.hasOption(OPT_NCPU) )
+         nCpu = Integer.parseInt(cmd.getOptionValue(OPT_NCPU));
+      int batchSize = MultiThreadBatchRunner.DEFAULT_BATCHSIZE;
+      if( cmd.hasOption(OPT_BATCHSIZE) )
+         batchSize = Integer.parseInt(cmd.getOptionValue(OPT_BATCHSIZE));
       
-      SDFALogP sdfALogP= new SDFALogP( smartsFile, outFile, outputZero, neutralize, ValidateAssignment  );
+      SDFALogP sdfALogP= new SDFALogP( smartsFile, outFile, outputZero, neutralize, 
+                                       ValidateAssignment, outputCount, nCpu );
       
-      sdfALogP.run( inFile, outputCount );
-      sdfALogP.close();
+      sdfALogP.run( inFile, batchSize );
    }
 }
@@ -18,13 +18,17 @@
 package com.genentech.chemistry.openEye.apps;
 
 import java.io.*;
+import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.regex.Pattern;
 
 import openeye.oechem.*;
 
 import org.apache.commons.cli.*;
 
+import com.aestel.chemistry.openEye.MultiThreadBatchAlgorithm;
+import com.aestel.chemistry.openEye.MultiThreadBatchRunner;
 import com.genentech.chemistry.openEye.cats.AtomTyperInterface;
 import com.genentech.chemistry.openEye.cats.CATSIndexer;
 import com.genentech.chemistry.openEye.cats.CATSIndexer.Normalization;
@@ -47,52 +51,107 @@ public class SDFCatsIndexer
    private static final String OPT_RGROUPTYPES  = "rGroups";
    private static final String OPT_FEAT_FILE    = "featFile";
    private static final String OPT_MAX_BOND_DIST = "maxBondDist";
+   private static final String OPT_NCPU         = "nCpu";
+   private static final String OPT_BATCHSIZE    = "batchSize";
 
-   private final CATSIndexer indexer;
+   /** definitions only, each {@link CATSIndexer} uses its own copies */
+   private final AtomTyperInterface[] myTypes;
+   private final String tagPrefix;
+   private final int maxBondDist;
 
    private SDFCatsIndexer(AtomTyperInterface[] myTypes, String tagPrefix, int maxBondDist)
-   {  indexer = new CATSIndexer(myTypes, tagPrefix, maxBondDist);
+   {  this.myTypes = myTypes;
+      this.tagPrefix = tagPrefix;
+      this.maxBondDist = maxBondDist;
    }
 
 
    private void close()
-   {  indexer.close();
+   {  for(AtomTyperInterface type: myTypes)
+         type.close();
    }
 
 
 
-   private void run( String inFile, String outFile, EnumSet<CATSIndexer.Normalization> normMeth )
+   /**
+    * Compute the CATS descriptors on nCpu threads, the output is in input order.
+    *
+    * @param batchSize number of molecules passed to a thread at once.
+    */
+   private void run( String inFile, String outFile, EnumSet<CATSIndexer.Normalization> normMeth,
+                     int nCpu, int batchSize )
    {  oemolithread ifs = new oemolithread(inFile);
       oemolothread ofs = new oemolothread(outFile);
 
-      long start = System.currentTimeMillis();
-      int iCounter = 0; //Structures in the SD file.
+      CatsAlgorithm alg = new CatsAlgorithm(ifs, ofs, normMeth);
+      MultiThreadBatchRunner<Void> runner = new MultiThreadBatchRunner<Void>(alg, nCpu, batchSize);
+      runner.run();
+      runner.close();
 
-      OEMolBase mol = new OEGraphMol();
-      while( oechem.OEReadMolecule( ifs, mol ) )
-      {  iCounter++;
+      ofs.close();
+      ifs.close();
+      ofs.delete();
+      ifs.delete();
+   }
 
-         indexer.compute2DCats(mol, normMeth);
 
-         oechem.OEWriteMolecule(ofs, mol);
+   /**
+    * Computes the CATS descriptors on the worker threads of a
+    * {@link MultiThreadBatchRunner}. Each thread has its own {@link CATSIndexer}
+    * with its own copies of the typers.
+    */
+   private class CatsAlgorithm implements MultiThreadBatchAlgorithm<Void>
+   {  private final oemolithread ifs;
+      private final oemolothread ofs;
+      private final EnumSet<CATSIndexer.Normalization> normMeth;
+      /** all per thread indexers so that they can be closed */
+      private final List<CATSIndexer> threadIndexers = new ArrayList<CATSIndexer>();
+      private final ThreadLocal<CATSIndexer> threadIndexer;
+
+      CatsAlgorithm(oemolithread ifs, oemolothread ofs, EnumSet<CATSIndexer.Normalization> normMeth)
+      {  this.ifs = ifs;
+         this.ofs = ofs;
+         this.normMeth = normMeth;
+         this.threadIndexer = new ThreadLocal<CATSIndexer>()
+         {  @Override
+            protected CATSIndexer initialValue()
+            {  CATSIndexer indexer = new CATSIndexer(CATSIndexer.copyTypers(myTypes),
+                                                     tagPrefix, maxBondDist);
+               synchronized(threadIndexers)
+               {  threadIndexers.add(indexer);
+               }
+               return indexer;
+            }
+         };
+      }
 
-         //Output "." to show that the program is running.
-         if( iCounter % 100 == 0 )
-            System.err.print(".");
-         if( iCounter % 4000 == 0 )
-         {  System.err.printf( " %d %dsec\n",
-                  iCounter, (System.currentTimeMillis()-start)/1000);
-         }
+      @Override
+      public boolean read(OEMolBase mol)
+      {  return oechem.OEReadMolecule(ifs, mol);
       }
 
-      mol.delete();
-      ofs.close();
-      ifs.close();
-      ofs.delete();
-      ifs.delete();
-      inFile = inFile.replaceAll( ".*" + Pattern.quote(File.separator), "" );
-      System.err.printf( "%s: Read %d structures from %s. in %d sec\n",
-               MY_NAME, iCounter, inFile, (System.currentTimeMillis()-start)/1000 );
+      @Override
+      public Void process(OEMolBase mol)
+      {  threadIndexer.get().compute2DCats(mol, normMeth);
+         return null;
+      }
+
+      @Override
+      public void consume(OEMolBase mol, Void result)
+      {  oechem.OEWriteMolecule(ofs, mol);
+      }
+
+      /**
+       * Closes the per thread indexers, the streams are closed by the caller.
+       */
+      @Override
+      public void close()
+      {  synchronized(threadIndexers)
+         {  for(CATSIndexer indexer : threadIndexers)
+               indexer.close();
+            threadIndexers.clear();
+         }
+      }
    }
 
    private void printDescriptors( String inFile, String outFile ) throws FileNotFoundException
@@ -106,6 +165,8 @@ public class SDFCatsIndexer
       long start = System.currentTimeMillis();
       int iCounter = 0; //Structures in the SD file.
 
+      CATSIndexer indexer = new CATSIndexer(CATSIndexer.copyTypers(myTypes),
+                                            tagPrefix, maxBondDist);
       indexer.printDescriptorHeader(out);
       OEMolBase mol = new OEGraphMol();
       while( oechem.OEReadMolecule( ifs, mol ) )
@@ -123,6 +184,7 @@ public class SDFCatsIndexer
       }
 
       mol.delete();
+      indexer.close();
       out.close();
       ifs.close();
       ifs.delete();
@@ -193,6 +255,19 @@ public class SDFCatsIndexer
       opt.setRequired( false );
       options.addOption( opt );
 
+      opt = new Option( OPT_NCPU, true,
+            "number of CPU's used in parallel, default 1" );
+      opt.setArgName("n");
+      opt.setRequired( false );
+      options.addOption( opt );
+
+      opt = new Option( OPT_BATCHSIZE, true,
+            "number of molecules passed to a thread at once, default "
+            + MultiThreadBatchRunner.DEFAULT_BATCHSIZE );
+      opt.setArgName("n");
+      opt.setRequired( false );
+      options.addOption( opt );
+
       CommandLineParser parser = new PosixParser();
       CommandLine cmd = null;
       try
@@ -238,8 +313,15 @@ public class SDFCatsIndexer
       else
          normMeth.add(Normalization.CountsPerFeature);
 
+      int nCpu = 1;
+      if( cmd.hasOption(OPT_NCPU) )
+         nCpu = Integer.parseInt(cmd.getOptionValue(OPT_NCPU));
+      int batchSize = MultiThreadBatchRunner.DEFAULT_BATCHSIZE;
+      if( cmd.hasOption(OPT_BATCHSIZE) )
+         batchSize = Integer.parseInt(cmd.getOptionValue(OPT_BATCHSIZE));
+
       SDFCatsIndexer sdfIndexer = new SDFCatsIndexer(myTypes, tagPrefix, maxBondDist);
-      sdfIndexer.run( inFile, outFile, normMeth );
+      sdfIndexer.run( inFile, outFile, normMeth, nCpu, batchSize );
       sdfIndexer.close();
    }
 }
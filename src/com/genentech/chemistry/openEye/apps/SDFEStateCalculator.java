@@ -17,12 +17,9 @@
 package com.genentech.chemistry.openEye.apps;
 
 import java.io.BufferedReader;
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.util.regex.Pattern;
 
-import openeye.oechem.OEGraphMol;
 import openeye.oechem.OEMolBase;
 import openeye.oechem.oechem;
 import openeye.oechem.oemolithread;
@@ -35,9 +32,12 @@ import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.PosixParser;
 
+import com.aestel.chemistry.openEye.MultiThreadBatchAlgorithm;
+import com.aestel.chemistry.openEye.MultiThreadBatchRunner;
 import com.aestel.utility.DataFormat;
 import com.aestel.utility.NameValuePair;
 import com.genentech.chemistry.openEye.EState.EStateCalculator;
+import com.genentech.oechem.tools.MolGraph;
 
 
 
@@ -47,7 +47,7 @@ import com.genentech.chemistry.openEye.EState.EStateCalculator;
  * @author Man-Ling Lee / August 04, 2012
  * Copyright 2012-2015 Genentech
  */
-public class SDFEStateCalculator
+public class SDFEStateCalculator implements MultiThreadBatchAlgorithm<Void>
 {  private static final String MY_NAME =  SDFEStateCalculator.class.getSimpleName();
    private static final String OPT_INFILE           = "in";
    private static final String OPT_OUTFILE          = "out";
@@ -59,6 +59,8 @@ public class SDFEStateCalculator
    private static final String OPT_ESTATE_INDICE    = "es_indice";
    private static final String OPT_SMARTS           = "smarts";
    private static final String OPT_PRINT_DETAILS    = "print_details";
+   private static final String OPT_NCPU             = "nCpu";
+   private static final String OPT_BATCHSIZE        = "batchSize";
    
    private static final String TAG_ES_COUNT         = "ES_Count";
    private static final String TAG_ES_SUM           = "ES_Sum";
@@ -75,8 +77,12 @@ public class SDFEStateCalculator
 
    
 
-   private final oemolothread outputOEThread;
-   private final EStateCalculator esCalculator;
+   private oemolothread outputOEThread;
+   /** each thread uses its own calculator */
+   private final ThreadLocal<EStateCalculator> esCalculator;
+   private final int nCpu;
+   private final int batchSize;
+   private oemolithread ifs;
    private boolean outputESCount;
    private boolean outputESSum;
    private boolean outputESSymbol;
@@ -87,9 +93,16 @@ public class SDFEStateCalculator
    private boolean printDetails;
    
    
-   private SDFEStateCalculator( String outFile )
+   private SDFEStateCalculator( String outFile, int nCpu, int batchSize )
    {  outputOEThread = new oemolothread( outFile );
-      esCalculator   = new EStateCalculator();
+      this.nCpu      = nCpu;
+      this.batchSize = batchSize;
+      esCalculator   = new ThreadLocal<EStateCalculator>()
+      {  @Override
+         protected EStateCalculator initialValue()
+         {  return new EStateCalculator();
+         }
+      };
    }
    
    
@@ -108,54 +121,59 @@ public class SDFEStateCalculator
    }
    
    
+   /**
+    * Compute the E-state descriptors of all molecules in inFile on nCpu threads,
+    * the output is in input order. This is closed when the method returns.
+    */
    private void run( String inFile )
-   {  oemolithread ifs = new oemolithread( inFile );
-      long start = System.currentTimeMillis();
-      int iCounter = 0; //Structures in the SD file.
-
-      OEMolBase mol = new OEGraphMol();
-      while( oechem.OEReadMolecule( ifs, mol ) )
-      {  iCounter++;
-         esCalculator.compute( mol, outputESSum, printDetails );
-         
-         if( outputESIndex )
-            oechem.OESetSDData( mol, TAG_ESTATE_PREFIX + "_INDICE", 
-                                esCalculator.getEStateIndexSummary() );
-         if( smarts != null)
-         {  NameValuePair<String,String>[] nvPairs = esCalculator.getEStateOf( mol, smarts );
-            addOutputs( mol, TAG_ESTATE_PREFIX, nvPairs );
-         }
-         if( outputESCount )
-            addOutputs( mol, TAG_ES_COUNT, 
-                        esCalculator.getEStateCounts() );
-         if( outputESSum )
-           addOutputs( mol, TAG_ES_SUM, 
-                       esCalculator.getEStateSums() );
-         if( outputESSymbol )
-            addOutputs( mol, TAG_ES_SYMBOL, 
-                        esCalculator.getEStateAtomGroupSymbols() );
-         if( outputUnassignedCount )
-            oechem.OESetSDData( mol, TAG_UNASSIGNED_COUNT, 
-                                String.valueOf( esCalculator.getUnknownCount() ) );
-         if( outputUnassignedAtoms )
-            oechem.OESetSDData( mol, TAG_UNASSIGNED_ATOMS, 
-                                esCalculator.getUnknownAtoms() );
-         oechem.OEWriteMolecule( outputOEThread, mol );
-      }
+   {  ifs = new oemolithread( inFile );
+
+      MultiThreadBatchRunner<Void> runner = new MultiThreadBatchRunner<Void>( this, nCpu, batchSize );
+      runner.run();
+      runner.close();
+   }
 
-      //Output "." to show that the program is running.
-      if( iCounter % 100 == 0 )
-         System.err.print(".");
-      if( iCounter % 4000 == 0 )
-      {  System.err.printf( " %d %dsec\n",
-               iCounter, (System.currentTimeMillis()-start)/1000);
+
+   @Override
+   public boolean read( OEMolBase mol )
+   {  return oechem.OEReadMolecule( ifs, mol );
+   }
+
+
+   @Override
+   public Void process( OEMolBase mol )
+   {  EStateCalculator esCalc = esCalculator.get();
+      esCalc.compute( mol, MolGraph.create( mol ), outputESSum, printDetails );
+      
+      if( outputESIndex )
+         oechem.OESetSDData( mol, TAG_ESTATE_PREFIX + "_INDICE", 
+                             esCalc.getEStateIndexSummary() );
+      if( smarts != null)
+      {  NameValuePair<String,String>[] nvPairs = esCalc.getEStateOf( mol, smarts );
+         addOutputs( mol, TAG_ESTATE_PREFIX, nvPairs );
       }
-      mol.delete();
-      ifs.close();
-      ifs.delete();
-      inFile = inFile.replaceAll( ".*" + Pattern.quote(File.separator), "" );
-      System.err.printf( "%s: Read %d structures from %s. %d sec\n",
-               MY_NAME, iCounter, inFile, (System.currentTimeMillis()-start)/1000 );
+      if( outputESCount )
+         addOutputs( mol, TAG_ES_COUNT, 
+                     esCalc.getEStateCounts() );
+      if( outputESSum )
+        addOutputs( mol, TAG_ES_SUM, 
+                    esCalc.getEStateSums() );
+      if( outputESSymbol )
+         addOutputs( mol, TAG_ES_SYMBOL, 
+                     esCalc.getEStateAtomGroupSymbols() );
+      if( outputUnassignedCount )
+         oechem.OESetSDData( mol, TAG_UNASSIGNED_COUNT, 
+                             String.valueOf( esCalc.getUnknownCount() ) );
+      if( outputUnassignedAtoms )
+         oechem.OESetSDData( mol, TAG_UNASSIGNED_ATOMS, 
+                             esCalc.getUnknownAtoms() );
+      return null;
+   }
+
+
+   @Override
+   public void consume( OEMolBase mol, Void result )
+   {  oechem.OEWriteMolecule( outputOEThread, mol );
    }
    
    
@@ -196,9 +214,21 @@ public class SDFEStateCalculator
    }
    
    
-   private void close()
-   {  outputOEThread.close();
-      outputOEThread.delete();
+   /**
+    * May be called more than once, {@link #run(String)} closes this already.
+    */
+   @Override
+   public void close()
+   {  if( outputOEThread != null )
+      {  outputOEThread.close();
+         outputOEThread.delete();
+         outputOEThread = null;
+      }
+      if( ifs != null )
+      {  ifs.close();
+         ifs.delete();
+         ifs = null;
+      }
    }
    
    
@@ -266,6 +296,17 @@ public class SDFEStateCalculator
       opt.setRequired( false );
       options.addOption( opt );
 
+      opt = new Option( OPT_NCPU, true, 
+               "number of CPU's used in parallel, default 1" );
+      opt.setRequired( false );
+      options.addOption( opt );
+
+      opt = new Option( OPT_BATCHSIZE, true, 
+               "number of molecules passed to a thread at once, default "
+               + MultiThreadBatchRunner.DEFAULT_BATCHSIZE );
+      opt.setRequired( false );
+      options.addOption( opt );
+
       CommandLineParser parser = new PosixParser();
       CommandLine cmd = null;
       try
@@ -291,7 +332,16 @@ public class SDFEStateCalculator
       boolean outputUnkCount = cmd.hasOption( OPT_UNASSIGNED_COUNT );
       boolean outputUnkAtoms = cmd.hasOption( OPT_UNASSIGNED_ATOMS );
       boolean printDetails   = cmd.hasOption( OPT_PRINT_DETAILS );
-      SDFEStateCalculator calculator = new SDFEStateCalculator( outFile );
+      int nCpu = 1;
+      if( cmd.hasOption( OPT_NCPU ) )
+         nCpu = Integer.parseInt( cmd.getOptionValue( OPT_NCPU ) );
+      // details of concurrent molecules would be interleaved
+      if( printDetails ) 
+         nCpu = 1;
+      int batchSize = MultiThreadBatchRunner.DEFAULT_BATCHSIZE;
+      if( cmd.hasOption( OPT_BATCHSIZE ) )
+         batchSize = Integer.parseInt( cmd.getOptionValue( OPT_BATCHSIZE ) );
+      SDFEStateCalculator calculator = new SDFEStateCalculator( outFile, nCpu, batchSize );
       
       if( !outputESCount && !outputESSum && !outputUnkCount && !outputESSymbol
        && !outputESIndex && ( smarts == null || smarts.length() == 0 ) )
@@ -61,7 +61,9 @@ public class SDFMCSSNNFinder
       opt.setRequired(true);
       options.addOption(opt);
 
-      opt = new Option("ref",true, "refrence file to be loaded before starting, default compare to input");
+      opt = new Option("ref",true, "refrence file to be loaded before starting, default compare to input."
+                                  + " For -AAPathSim this may be a database of precomputed descriptors ("
+                                  + AAPathComparatorDatabase.FILE_EXTENSION + ") created by sdfAAPathDescriptorBuilder.");
       opt.setRequired(false);
       options.addOption(opt);
 
@@ -90,6 +92,12 @@ public class SDFMCSSNNFinder
       opt.setRequired(false);
       options.addOption(opt);
 
+      opt = new Option("AAPathDescriptorTag",true, "For AAPathSim version " + AAPathComparatorFact.DEFAULTVersion
+                                         + " only: read precomputed descriptors from this tag if present"
+                                         + " (cf. sdfAAPathDescriptorBuilder).");
+      opt.setRequired(false);
+      options.addOption(opt);
+
       opt = new Option("MCSSSimType",true, "DEFAULT|QueryRatio Compute MCSS and convert to sim using:. default=DEFAULT\n"
                       + "   2 * Default = nAtMatch/(nAtQuery+nAtCand - nAtMatch) + nBdMatch/(nBdQuery+nBdCand - nBdMatch)\n" 
                       + "   QueryRatio  = nAtMatch/nAtQuery");
@@ -108,7 +116,12 @@ public class SDFMCSSNNFinder
       opt.setRequired(false);
       options.addOption(opt);
 
-      opt = new Option("tabOutput", true, "tab|vTab output as table NxN or vertical table with smiles.smiles<tab>NNSim");
+      opt = new Option("tabOutput", true, "tab|vTab|coo|triangle output as table NxN or vertical table with smiles.smiles<tab>NNSim"
+                                 + " or as binary sparse matrix in coordinate format or binary upper triangle matrix."
+                                 + " The binary formats are written row by row while the rows are computed,"
+                                 + " only the neighbors of the rows in progress are kept in memory."
+                                 + " triangle keeps the larger of sim(i,j) and sim(j,i) and is not"
+                                 + " supported for asymmetric similarities (MCSSSimType QueryRatio).");
       opt.setRequired(false);
       options.addOption(opt);
 
@@ -116,6 +129,11 @@ public class SDFMCSSNNFinder
       opt.setRequired(false);
       options.addOption(opt);
 
+      opt = new Option("batchSize",true, "number of molecules passed to a thread at once when"
+                        + " searching -ref, default " + MultiThreadBatchRunner.DEFAULT_BATCHSIZE);
+      opt.setRequired(false);
+      options.addOption(opt);
+
       opt = new Option("cliffPropertyTag",true, "If this is given then the activity cliff is computed instead of the similarity.");
       opt.setRequired(false);
       options.addOption(opt);
@@ -178,6 +196,10 @@ public class SDFMCSSNNFinder
       String d     = cmd.getOptionValue("nCpu");
       if( d != null ) nCpu = Integer.parseInt(d);
 
+      int batchSize = MultiThreadBatchRunner.DEFAULT_BATCHSIZE;
+      d            = cmd.getOptionValue("batchSize");
+      if( d != null ) batchSize = Integer.parseInt(d);
+
       d            = cmd.getOptionValue("maxNeighbors");
       if( d != null ) maxNeighbors = Integer.parseInt(d);
 
@@ -197,10 +219,15 @@ public class SDFMCSSNNFinder
          exitWithHelp("-outputDuplicates will not work with outputVTab");
       if( outputDuplicates && refFile == null )
          exitWithHelp("-outputDuplicates requires -ref ");
-      if( "tab".equalsIgnoreCase(tabOutput) && refFile != null )
-         exitWithHelp("-tabOutput tab: does not work with reference file");
-      if( "tab".equalsIgnoreCase(tabOutput) && maxNeighbors == 1 )
-         exitWithHelp("-tabOutput tab: does not make sense with -maxNeighbors = 1");
+      boolean matrixOutput = "tab".equalsIgnoreCase(tabOutput) || "coo".equalsIgnoreCase(tabOutput)
+                          || "triangle".equalsIgnoreCase(tabOutput);
+      if( matrixOutput && refFile != null )
+         exitWithHelp("-tabOutput " + tabOutput + ": does not work with reference file");
+      if( matrixOutput && maxNeighbors == 1 )
+         exitWithHelp("-tabOutput " + tabOutput + ": does not make sense with -maxNeighbors = 1");
+      if( "triangle".equalsIgnoreCase(tabOutput) && cmd.hasOption("MCSSSimType")
+          && ! MCSSCompareType.toEnum(cmd.getOptionValue("MCSSSimType")).isSymmetric() )
+         exitWithHelp("-tabOutput triangle requires a symmetric similarity, use -tabOutput coo");
       if( cmd.hasOption("countSimilarAbove") && tabOutput != null )
          exitWithHelp("-countSimilarAbove not supported for tab or vTab output");
       if( printAll && ! (maxNeighbors > 1 || minSim > 0) )
@@ -221,7 +248,7 @@ public class SDFMCSSNNFinder
       }else
       {  // refrence file; compare inFile to refFile
          performReferenceSearch(inFile, refFile, outFile, tabOutput, compFact,
-               minSim, maxNeighbors, idTag, nCpu, countAboveSimilarityStr,
+               minSim, maxNeighbors, idTag, nCpu, batchSize, countAboveSimilarityStr,
                outputDuplicates, printAll);
       }
 
@@ -232,6 +259,9 @@ public class SDFMCSSNNFinder
    private static SimComparatorFactory<OEMolBase, OEMolBase, SimComparator<OEMolBase>>
                      getComparatorFactory(CommandLine cmd)
    {  SimComparatorFactory<OEMolBase, OEMolBase, SimComparator<OEMolBase>> compFact;
+      if( cmd.hasOption("AAPathDescriptorTag") && ! cmd.hasOption("AAPathSim") )
+         throw new Error("-AAPathDescriptorTag requires -AAPathSim");
+
       if( cmd.hasOption("AAPathSim") )
       {  if( cmd.hasOption("MCSSSimType") )
             throw new Error("-AAPathSim and -MCSSSimType may not be used together");
@@ -246,7 +276,7 @@ public class SDFMCSSNNFinder
             aaPathSimType = aaPathSimType.substring(0,aaPathSimType.length()-1);
          }
          AAPathCompareType type = AAPathCompareType.valueOf(aaPathSimType);
-         compFact = new AAPathComparatorFact(type, version);
+         compFact = new AAPathComparatorFact(type, version, cmd.getOptionValue("AAPathDescriptorTag"));
       }
       else
       {  int atExpr = OEExprOpts.DefaultAtoms;
@@ -337,6 +367,10 @@ public class SDFMCSSNNFinder
             c = new MultiNNMatrixFinderVTConsumer(outFile, idTag);
          else if( "tab".equalsIgnoreCase(tabOutput) )
             c = new MultiNNMatrixFinderTabConsumer(outFile, idTag);
+         else if( "coo".equalsIgnoreCase(tabOutput) )
+            c = new MultiNNMatrixFinderCOOConsumer(outFile, idTag);
+         else if( "triangle".equalsIgnoreCase(tabOutput) )
+            c = new MultiNNMatrixFinderTriangleConsumer(outFile, idTag);
          else
             c = new MultiNNMatrixFinderConsumer(outFile, countAboveSimilarityStr);
 
@@ -345,6 +379,8 @@ public class SDFMCSSNNFinder
 
          if( "tab".equalsIgnoreCase(tabOutput) )
             ((MultiNNMatrixFinderTabConsumer)c).setMatrixSize(alg.getObjectCount());
+         else if( c instanceof MultiNNMatrixFinderBinaryConsumer )
+            ((MultiNNMatrixFinderBinaryConsumer)c).setMatrixSize(alg.getObjectCount());
       }else
       {  NNMatrixFinderConsumerInterface c;
          if( "vTab".equalsIgnoreCase(tabOutput) )
@@ -368,14 +404,14 @@ public class SDFMCSSNNFinder
    private static void performReferenceSearch(
             String inFile, String refFile, String outFile, String tabOutput,
             SimComparatorFactory<OEMolBase, OEMolBase, SimComparator<OEMolBase>> compFact,
-            double minSim, int maxNeighbors, String idTag, int nCpu,
+            double minSim, int maxNeighbors, String idTag, int nCpu, int batchSize,
             String countAboveSimilarityStr, boolean outputDuplicates, boolean printAll)
    throws IOException
    {  double countAboveSimilarity = Double.MAX_VALUE;
       if( countAboveSimilarityStr != null )
          countAboveSimilarity = Double.parseDouble(countAboveSimilarityStr);
 
-      MultiThreadAlgortihm nnAlg;
+      MultiThreadBatchAlgorithm<?> nnAlg;
 
       if( maxNeighbors > 1 || minSim > 0 )  // use consumer to output n NN's
       {  NNMultiFinderConsumerInterface c;
@@ -401,7 +437,7 @@ public class SDFMCSSNNFinder
                                           inFile, c, compFact,refFile, idTag, countAboveSimilarity );
       }
 
-      MultiThreadRunner runner = new MultiThreadRunner(nnAlg, nCpu);
+      MultiThreadBatchRunner<?> runner = MultiThreadBatchRunner.create(nnAlg, nCpu, batchSize);
 //System.err.print("Waiting, hit enter: ");System.in.read();
       runner.run();
       runner.close();
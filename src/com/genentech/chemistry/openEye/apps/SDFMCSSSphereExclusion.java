@@ -97,6 +97,10 @@ public class SDFMCSSSphereExclusion
 
       opt = new Option("printAll",false, "print all molecule, check includeIdx tag");
       options.addOption(opt);
+
+      opt = new Option("nCpu",true, "number of CPU's used in parallel, dafault 1");
+      opt.setRequired(false);
+      options.addOption(opt);
    }
 
 
@@ -121,6 +125,9 @@ public class SDFMCSSSphereExclusion
       boolean printSphereMatchCount = cmd.hasOption("printSphereMatchCount");
       boolean reverseMatch = ! cmd.hasOption("checkSpheresInOrder") && ! printSphereMatchCount;
       boolean printAll = cmd.hasOption("printAll") || printSphereMatchCount;
+      int nCpu = 1;
+      String d = cmd.getOptionValue("nCpu");
+      if( d != null ) nCpu = Integer.parseInt(d);
       double radius = Double.parseDouble(cmd.getOptionValue("radius"));
       String inFile  = cmd.getOptionValue("in");
       String outFile = cmd.getOptionValue("out");
@@ -131,7 +138,7 @@ public class SDFMCSSSphereExclusion
 
       SphereExclusion<OEMolBase, SimComparator<OEMolBase>> alg =
          new SphereExclusion<OEMolBase, SimComparator<OEMolBase>>(compFact, refFile,
-                  outFile, radius, reverseMatch, printSphereMatchCount, printAll);
+                  outFile, radius, reverseMatch, printSphereMatchCount, printAll, nCpu);
       alg.run(inFile);
       alg.close();
    }
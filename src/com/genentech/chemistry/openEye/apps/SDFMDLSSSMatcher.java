@@ -20,14 +20,8 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorCompletionService;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
-import openeye.oechem.OEGraphMol;
 import openeye.oechem.OEMolBase;
 import openeye.oechem.oechem;
 import openeye.oechem.oemolithread;
@@ -40,20 +34,20 @@ import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.PosixParser;
 
+import com.aestel.chemistry.openEye.MultiThreadBatchAlgorithm;
+import com.aestel.chemistry.openEye.MultiThreadBatchRunner;
 import com.genentech.chemistry.openEye.MDLSSSMatcher;
 /**
  * @param <T> comparable
  * @param <Y> comparator
  */
-public class SDFMDLSSSMatcher
+public class SDFMDLSSSMatcher implements MultiThreadBatchAlgorithm<Boolean>
 {  private final MDLSSSMatcher matcher;
    private final boolean firstMatch;
-   private final ExecutorService executor;
-   private final ExecutorCompletionService<Boolean> completionService;
    private final oemolothread ofs;
    private final int nCpu;
    private oemolithread ifs;
-   private MDLSSSFind[] finder;
+   private int nMatches = 0;
    public boolean printAll;
 
    public SDFMDLSSSMatcher(String qFile, String outFile, boolean firstMatch, boolean printAll, int nCpu)
@@ -62,94 +56,60 @@ public class SDFMDLSSSMatcher
       this.matcher = new MDLSSSMatcher(qFile);
       this.ofs     = new oemolothread(outFile);
       this.nCpu    = nCpu;
-
-      this.executor = Executors.newFixedThreadPool(nCpu);
-      this.completionService = new ExecutorCompletionService<Boolean>(executor);
-
-      finder = new MDLSSSFind[nCpu];
    }
 
-   void run(String inFile) throws InterruptedException
-   {  long start = System.currentTimeMillis();
-      ifs = new oemolithread(inFile);
+   /**
+    * Match all molecules in inFile, the output is in input order.
+    * This matcher is closed when the method returns.
+    *
+    * @param batchSize number of molecules passed to a thread at once.
+    */
+   void run(String inFile, int batchSize)
+   {  ifs = new oemolithread(inFile);
 
-      // start nCpu instances of MDLSSSFind and submit them to the completionService
-      for(int i =0; i< nCpu; i++)
-      {  finder[i] = new MDLSSSFind();
-         completionService.submit(finder[i]);
-      }
+      MultiThreadBatchRunner<Boolean> runner
+         = new MultiThreadBatchRunner<Boolean>(this, nCpu, batchSize);
+      runner.run();
+      runner.close();
 
-      int iCount = 0;
-      int lastICount = 0;
-      int nRunning = nCpu;
-      // poll the running threads and output progress until all are done
-      while( nRunning > 0 )
-      {  if( completionService.poll(2, TimeUnit.SECONDS) != null)
-         {  nRunning--;
-         }
-
-         // print status report to stderr
-         iCount = 0;
-         for( int i=0; i<nCpu; i++)
-            iCount += finder[i].count;
-
-         if( iCount == lastICount ) continue;
-
-         if( iCount / (4000*nCpu) > lastICount / (4000*nCpu))
-         {  System.err.printf( " %d %dsec\n",
-                  iCount, (System.currentTimeMillis()-start)/1000);
-         }else
-         {  for( int i=lastICount; i< iCount - (100*nCpu); i+=(100*nCpu))
-               System.err.print(".");
-         }
-         lastICount = iCount;
-      }
-
-      ifs.close();
-      ifs.delete();
-      ifs = null;
+      inFile = inFile.replaceAll(".*" + Pattern.quote(File.separator), "");
+      System.err.printf("SDFMDLSSSMatcher: found %d matches in %s.\n", nMatches, inFile);
+   }
 
-      int nMatches = 0;
-      for( int i=0; i<nCpu; i++)
-         nMatches += finder[i].nMatches;
+   @Override
+   public boolean read(OEMolBase mol)
+   {  return oechem.OEReadMolecule(ifs, mol);
+   }
 
-      inFile = inFile.replaceAll(".*" + Pattern.quote(File.separator), "");
-      System.err.printf("\nSDFMDLSSSMatcher: Read %d structures from %s, found %d matches. nCpu=%d %d sec\n",
-            iCount, inFile, nMatches, nCpu, (System.currentTimeMillis()-start)/1000);
+   @Override
+   public Boolean process(OEMolBase mol)
+   {  return matcher.findMatches(mol, firstMatch);
    }
 
-   class MDLSSSFind implements Callable<Boolean>
-   {  volatile int count = 0;
-      int nMatches = 0;
-
-      @Override
-      public Boolean call()
-      {  OEMolBase mol = new OEGraphMol();
-         while( oechem.OEReadMolecule(ifs, mol) )
-         {  if( matcher.findMatches(mol, firstMatch))
-            {  oechem.OEWriteMolecule(ofs, mol);
-               nMatches++;
-            }else if( printAll )
-            {  oechem.OEWriteMolecule(ofs, mol);
-            }
-
-            count++;
-         }
-         mol.delete();
-
-         return Boolean.FALSE;
+   @Override
+   public void consume(OEMolBase mol, Boolean isMatch)
+   {  if( isMatch )
+      {  oechem.OEWriteMolecule(ofs, mol);
+         nMatches++;
+      }else if( printAll )
+      {  oechem.OEWriteMolecule(ofs, mol);
       }
    }
 
+   @Override
    public void close()
    {  matcher.close();
-      executor.shutdown();
       ofs.close();
+      if( ifs != null )
+      {  ifs.close();
+         ifs.delete();
+         ifs = null;
+      }
    }
 
 
 
-   public static void main(String...args) throws IOException, InterruptedException
+   public static void main(String...args) throws IOException
    {  //oechem.OEUseJavaHeap(false);  // remove this line if newer oechem toolkit does not include method
 
       // create command line Options object
@@ -178,6 +138,11 @@ public class SDFMDLSSSMatcher
       opt.setRequired(false);
       options.addOption(opt);
 
+      opt = new Option("batchSize",true, "number of molecules passed to a thread at once, default "
+                                         + MultiThreadBatchRunner.DEFAULT_BATCHSIZE);
+      opt.setRequired(false);
+      options.addOption(opt);
+
       CommandLineParser parser = new PosixParser();
       CommandLine cmd = null;
       try
@@ -205,13 +170,16 @@ public class SDFMDLSSSMatcher
       String d     = cmd.getOptionValue("nCpu");
       if( d != null ) nCpu = Integer.parseInt(d);
 
+      int batchSize = MultiThreadBatchRunner.DEFAULT_BATCHSIZE;
+      d            = cmd.getOptionValue("batchSize");
+      if( d != null ) batchSize = Integer.parseInt(d);
+
       String inFile  = cmd.getOptionValue("in");
       String outFile = cmd.getOptionValue("out");
       String refFile = cmd.getOptionValue("ref");
 
       SDFMDLSSSMatcher matcher = new SDFMDLSSSMatcher(refFile, outFile, firstMatch, printAll, nCpu);
-      matcher.run(inFile);
-      matcher.close();
+      matcher.run(inFile, batchSize);
    }
 
    private static void exitWithHelp(String msg , Options options)
@@ -23,4 +23,10 @@ public interface AtomTyperInterface
    public int getTypeIdx();
    public String getTypeName();
    public void close();
+
+   /**
+    * @return a new typer with the same definition. Typers are not thread safe,
+    *         each thread needs to use its own copy.
+    */
+   public AtomTyperInterface copy();
 }
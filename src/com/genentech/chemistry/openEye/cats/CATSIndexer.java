@@ -27,7 +27,14 @@ import openeye.oechem.*;
 
 import com.aestel.chemistry.molecule.Atom;
 import com.aestel.utility.DataFormat;
-
+import com.genentech.oechem.tools.MolGraph;
+
+/**
+ * Computes CATS pair count descriptors.
+ *
+ * An indexer and its typers must be used by one thread at a time, use
+ * {@link #copyTypers(AtomTyperInterface[])} to create one indexer per thread.
+ */
 public class CATSIndexer
 {
 //   static final String BASICGroup  = "[$([N;H2&+0][$([C,a]);!$([C,a](=O))]),$([N;H1&+0]([$([C,a]);!$([C,a](=O))])[$([C,a]);!$([C,a](=O))]),$([N;H0&+0]([C;!$(C(=O))])([C;!$(C(=O))])[C;!$(C(=O))]),$([N,n;X2;+0])]";
@@ -64,6 +71,20 @@ public class CATSIndexer
          new SSTyper(URANIUM, 5, "U")
       };
 
+   /**
+    * Copy the typer definitions in types for use on a different thread.
+    * The OESubSearch of an {@link SSTyper} may not be used by multiple threads
+    * at the same time, so each thread needs a {@link CATSIndexer} with its own
+    * copies. The copies need to be closed by the caller or by
+    * {@link #close()} of the indexer using them.
+    */
+   public static AtomTyperInterface[] copyTypers(AtomTyperInterface[] types)
+   {  AtomTyperInterface[] copies = new AtomTyperInterface[types.length];
+      for(int i=0; i<types.length; i++)
+         copies[i] = types[i].copy();
+      return copies;
+   }
+
    // Method to load a tab delimited SMARTS<tab>ID\n list of features for indexing
    public static AtomTyperInterface[] featuresFromFile(String featureFilename) throws IOException
    {
@@ -97,6 +118,7 @@ public class CATSIndexer
 
 
    private final OEGraphMol mCopy = new OEGraphMol();
+   private final TypedPairCounter pairCounter;
 
    public static enum Normalization
    {  Counts,
@@ -105,9 +127,14 @@ public class CATSIndexer
    }
 
    public CATSIndexer(AtomTyperInterface[] myTypes, String tagPrefix, int maxBondDistance)
-   {  this.myTypes = myTypes;
+   {  for(AtomTyperInterface type : myTypes)
+         if( type.getTypeIdx() >= Long.SIZE )
+            throw new IllegalArgumentException("At most " + Long.SIZE + " atom types are supported");
+
+      this.myTypes = myTypes;
       this.tagPrefix = tagPrefix + "CATS";
       this.maxBondDist = maxBondDistance;
+      this.pairCounter = new TypedPairCounter(maxBondDistance);
    }
 
 
@@ -120,14 +147,38 @@ public class CATSIndexer
       oechem.OEAssignHybridization(mCopy);
       oechem.OESuppressHydrogens(mCopy);
 
-      List<OEAtomBase> typedAtoms = new ArrayList<OEAtomBase>();
-      List<List<AtomTyperInterface>> atTypeList = new ArrayList<List<AtomTyperInterface>>();
-      computeAtomTypes(mCopy, typedAtoms, atTypeList);
+      compute2DCats(mol, mCopy, MolGraph.create(mCopy), normMeth);
+   }
+
+
+   /**
+    * Same as {@link #compute2DCats(OEMolBase, EnumSet)} for callers that
+    * already prepared the molecule and hold a {@link MolGraph} of it.
+    *
+    * @param mol with aromatic flags, chirality and hybridization perceived and
+    *        hydrogens suppressed, the CATS tags are added to mol.
+    * @param graph created from mol.
+    */
+   public void compute2DCats(OEMolBase mol, MolGraph graph, EnumSet<Normalization> normMeth)
+   {  compute2DCats(mol, mol, graph, normMeth);
+   }
+
+
+   /**
+    * @param mol receives the CATS tags.
+    * @param prepMol prepared copy of mol from which graph was created.
+    */
+   private void compute2DCats(OEMolBase mol, OEMolBase prepMol, MolGraph graph,
+                              EnumSet<Normalization> normMeth)
+   {  int[] typedAtoms = new int[graph.getNumAtoms()];
+      long[] typeMasks = new long[typedAtoms.length];
+      int nTyped = computeAtomTypes(prepMol, graph, typedAtoms, typeMasks);
 
       // compute distance and pair count
       int[][][] pairCount = new int[myTypes.length][myTypes.length][maxBondDist+1];
       int[] typeCount = new int[myTypes.length];
-      compute2DPairCount(typedAtoms, atTypeList, pairCount, typeCount);
+      pairCounter.count(graph.getNbrStarts(), graph.getNbrAtoms(),
+                        typedAtoms, typeMasks, nTyped, pairCount, typeCount);
 
       //System.err.println(distArrayToString(pairCount));
       // normalize as in:
@@ -247,74 +298,28 @@ public class CATSIndexer
 
 
    /**
-    * @param typedAtoms list of atoms with types
-    * @param atTypeList list of types for each atom
-    * @param pairCount filled with count of ouccurence index by atom2Idx,atom2Idx,distanceBin
-    * @param typeCount filled with occerence count of each atomType ove whole molecule
+    * @param typedAtoms filled with position in graph of atoms that have atom types
+    * @param typeMasks filled with bitmask of the type indexes of each typed atom
+    * @return number of typed atoms
     */
-   private void compute2DPairCount(List<OEAtomBase> typedAtoms, List<List<AtomTyperInterface>> atTypeList,
-            int[][][] pairCount,
-            int[] typeCount)
-   {
-      for(int i=0; i<typedAtoms.size(); i++)
-      {  OEAtomBase at1 = typedAtoms.get(i);
-         List<AtomTyperInterface> types1 = atTypeList.get(i);
-
-         for( AtomTyperInterface type : types1)
-            typeCount[type.getTypeIdx()]++;
-
-         for(int j=0; j<=i; j++ )
-         {  OEAtomBase at2 = typedAtoms.get(j);
-            List<AtomTyperInterface> types2 = atTypeList.get(j);
-
-            int dist;
-            if( i == j )
-               dist = 0;
-            else
-            {  dist = oechem.OEGetPathLength(at1,at2, maxBondDist);
-               if( dist == 0 ) continue;
-            }
-
-            // record paircount
-            for( AtomTyperInterface t1: types1 )
-            {  for( AtomTyperInterface t2: types2 )
-               {  // order types
-                  if( t1.getTypeIdx() < t2.getTypeIdx() )
-                     pairCount[t2.getTypeIdx()][t1.getTypeIdx()][dist]++;
-                  else
-                     pairCount[t1.getTypeIdx()][t2.getTypeIdx()][dist]++;
-               }
-            }
-         }
-      }
-   }
-
-
-   /**
-    * @param typedAtoms filled with list of atoms that have atom types
-    * @param atTypeList filled with list of AtomTyperInterface of each atom
-    */
-   private void computeAtomTypes(OEMolBase mol,
-                                 List<OEAtomBase> typedAtoms,
-                                 List<List<AtomTyperInterface>> atTypeList)
-   {
-      OEAtomBaseIter atit = mol.GetAtoms();
+   private int computeAtomTypes(OEMolBase mol, MolGraph graph, int[] typedAtoms, long[] typeMasks)
+   {  OEAtomBaseIter atit = mol.GetAtoms();
+      int nTyped = 0;
 
       // get list of typed atoms and their types
       while(atit.hasNext())
       {  OEAtomBase at = atit.next();
-         ArrayList<AtomTyperInterface> atTypes = new ArrayList<AtomTyperInterface>();
+         long mask = 0;
          for(AtomTyperInterface type:myTypes)
-            if( type.isType(at) )   atTypes.add(type);
-         if( atTypes.size() > 0 )
-         {  typedAtoms.add(at);
-            atTypeList.add(atTypes);
-
-//            System.err.printf("%s %s\n", com.genentech.oechem.tools.Atom.getAtomName(at),
-//                                         toString(atTypes));
+            if( type.isType(at) ) mask |= 1L << type.getTypeIdx();
+         if( mask != 0 )
+         {  typedAtoms[nTyped] = graph.getAtomPos(at.GetIdx());
+            typeMasks[nTyped++] = mask;
          }
       }
       atit.delete();
+
+      return nTyped;
    }
 
 
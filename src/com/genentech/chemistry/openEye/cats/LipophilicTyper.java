@@ -98,4 +98,10 @@ public class LipophilicTyper implements AtomTyperInterface
    public void close()
    {  // nothing to do
    }
+
+
+   @Override
+   public AtomTyperInterface copy()
+   {  return new LipophilicTyper(idx);
+   }
 }
@@ -21,12 +21,14 @@ import openeye.oechem.OESubSearch;
 
 public class SSTyper implements AtomTyperInterface
 {  private final OESubSearch ATSS;
+   private final String smarts;
    private final int idx;
    private final String name;
 
    public SSTyper(String smarts, int idx, String name)
    {  this.idx =idx;
       this.name = name;
+      this.smarts = smarts;
       ATSS = new OESubSearch(smarts);
    }
 
@@ -52,4 +54,13 @@ public class SSTyper implements AtomTyperInterface
    public void close()
    {  ATSS.delete();
    }
+
+
+   /**
+    * @return new typer with its own OESubSearch compiled from the same smarts.
+    */
+   @Override
+   public AtomTyperInterface copy()
+   {  return new SSTyper(smarts, idx, name);
+   }
 }
@@ -0,0 +1,119 @@
+/*
+   Copyright 2008-2015 Genentech Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+*/
+package com.genentech.chemistry.openEye.cats;
+
+import java.util.Arrays;
+
+/**
+ * Counts pairs of typed atoms by their topological distance.
+ *
+ * The molecular graph is given as adjacency arrays: the neighbors of atom i
+ * are nbrAt[nbrStart[i]] to nbrAt[nbrStart[i+1]-1]. The types of an atom are
+ * a bitmask with bit {@link AtomTyperInterface#getTypeIdx()} set for each
+ * type. The distances from one typed atom to all others come from a single
+ * breadth first search which stops at maxBondDist.
+ *
+ * Instances keep their work arrays and are not thread safe.
+ *
+ * @author albertgo
+ */
+final class TypedPairCounter
+{  private final int maxBondDist;
+   private int[] dist = new int[0];
+   /** BFS number in which dist[at] was set */
+   private int[] visited = new int[0];
+   private int[] queue = new int[0];
+   /** position of atom in typed atom list or -1 */
+   private int[] typedPos = new int[0];
+   private int bfsCount;
+
+   TypedPairCounter(int maxBondDist)
+   {  this.maxBondDist = maxBondDist;
+   }
+
+   /**
+    * @param nbrStart adjacency array start positions, length nAtoms+1.
+    * @param nbrAt adjacency array.
+    * @param typedAtoms index of typed atoms.
+    * @param typeMasks bitmask of types of typedAtoms[i].
+    * @param nTyped number of typedAtoms.
+    * @param pairCount incremented by the count of each pair of types at each
+    *        distance, indexed by larger typeIdx, smaller typeIdx, distance.
+    * @param typeCount incremented by the number of atoms of each type.
+    */
+   void count(int[] nbrStart, int[] nbrAt, int[] typedAtoms, long[] typeMasks,
+              int nTyped, int[][][] pairCount, int[] typeCount)
+   {  int nAtoms = nbrStart.length - 1;
+      if( dist.length < nAtoms )
+      {  dist = new int[nAtoms];
+         visited = new int[nAtoms];
+         queue = new int[nAtoms];
+         typedPos = new int[nAtoms];
+         bfsCount = 0;
+      }
+      Arrays.fill(typedPos, 0, nAtoms, -1);
+      for(int i=0; i<nTyped; i++)
+         typedPos[typedAtoms[i]] = i;
+
+      for(int i=0; i<nTyped; i++)
+      {  long mask1 = typeMasks[i];
+         for(long m=mask1; m != 0; m &= m-1)
+            typeCount[Long.numberOfTrailingZeros(m)]++;
+
+         countPair(mask1, mask1, 0, pairCount);
+         if( maxBondDist == 0 ) continue;
+
+         // bounded BFS, count pairs with typed atoms earlier in the list
+         int start = typedAtoms[i];
+         int stamp = ++bfsCount;
+         visited[start] = stamp;
+         dist[start] = 0;
+         queue[0] = start;
+         int head = 0;
+         int tail = 1;
+         while( head < tail )
+         {  int at = queue[head++];
+            int nDist = dist[at] + 1;
+            for(int k=nbrStart[at]; k<nbrStart[at+1]; k++)
+            {  int nbr = nbrAt[k];
+               if( visited[nbr] == stamp ) continue;
+               visited[nbr] = stamp;
+               dist[nbr] = nDist;
+               if( nDist < maxBondDist ) queue[tail++] = nbr;
+
+               int j = typedPos[nbr];
+               if( j >= 0 && j < i )
+                  countPair(mask1, typeMasks[j], nDist, pairCount);
+            }
+         }
+      }
+   }
+
+   /** count all combinations of the types in mask1 and mask2 */
+   private static void countPair(long mask1, long mask2, int d, int[][][] pairCount)
+   {  for(long m1=mask1; m1 != 0; m1 &= m1-1)
+      {  int t1 = Long.numberOfTrailingZeros(m1);
+         for(long m2=mask2; m2 != 0; m2 &= m2-1)
+         {  int t2 = Long.numberOfTrailingZeros(m2);
+            if( t1 < t2 )
+               pairCount[t2][t1][d]++;
+            else
+               pairCount[t1][t2][d]++;
+         }
+      }
+   }
+}
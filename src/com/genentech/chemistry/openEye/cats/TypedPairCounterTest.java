@@ -0,0 +1,120 @@
+/*
+   Copyright 2008-2015 Genentech Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+*/
+package com.genentech.chemistry.openEye.cats;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TypedPairCounterTest
+{  private static final int NTypes = 6;
+
+   @Test
+   public void testRandomGraphs()
+   {  Random rand = new Random(42);
+      for(int maxDist : new int[] { 0, 1, 3, 9 })
+      {  TypedPairCounter counter = new TypedPairCounter(maxDist);
+         for(int g=0; g<200; g++)
+         {  int nAtoms = 1 + rand.nextInt(30);
+            boolean[][] bonded = new boolean[nAtoms][nAtoms];
+            int nBonds = 0;
+            for(int i=1; i<nAtoms; i++)
+            {  // some atoms are not connected
+               if( rand.nextInt(10) == 0 ) continue;
+               int j = rand.nextInt(i);
+               bonded[i][j] = bonded[j][i] = true;
+               nBonds++;
+            }
+            for(int r=rand.nextInt(4); r>0; r--)
+            {  int i = rand.nextInt(nAtoms);
+               int j = rand.nextInt(nAtoms);
+               if( i == j || bonded[i][j] ) continue;
+               bonded[i][j] = bonded[j][i] = true;
+               nBonds++;
+            }
+
+            int[] nbrStart = new int[nAtoms+1];
+            int[] nbrAt = new int[2*nBonds];
+            for(int i=0; i<nAtoms; i++)
+            {  nbrStart[i+1] = nbrStart[i];
+               for(int j=0; j<nAtoms; j++)
+                  if( bonded[i][j] ) nbrAt[nbrStart[i+1]++] = j;
+            }
+
+            int[] typedAtoms = new int[nAtoms];
+            long[] typeMasks = new long[nAtoms];
+            int nTyped = 0;
+            for(int i=0; i<nAtoms; i++)
+            {  long mask = rand.nextInt(1 << NTypes) & rand.nextInt(1 << NTypes);
+               if( mask == 0 ) continue;
+               typedAtoms[nTyped] = i;
+               typeMasks[nTyped++] = mask;
+            }
+
+            int[][][] pairCount = new int[NTypes][NTypes][maxDist+1];
+            int[] typeCount = new int[NTypes];
+            counter.count(nbrStart, nbrAt, typedAtoms, typeMasks, nTyped, pairCount, typeCount);
+
+            int[][][] refPairCount = new int[NTypes][NTypes][maxDist+1];
+            int[] refTypeCount = new int[NTypes];
+            countPairs(bonded, typedAtoms, typeMasks, nTyped, maxDist, refPairCount, refTypeCount);
+
+            Assert.assertEquals(typeCount, refTypeCount);
+            for(int t1=0; t1<NTypes; t1++)
+               for(int t2=0; t2<NTypes; t2++)
+                  Assert.assertEquals(pairCount[t1][t2], refPairCount[t1][t2]);
+         }
+      }
+   }
+
+   /** pair count with Floyd-Warshall distances */
+   private static void countPairs(boolean[][] bonded, int[] typedAtoms, long[] typeMasks,
+            int nTyped, int maxDist, int[][][] pairCount, int[] typeCount)
+   {  int n = bonded.length;
+      int[][] d = new int[n][n];
+      for(int i=0; i<n; i++)
+      {  Arrays.fill(d[i], Integer.MAX_VALUE/2);
+         d[i][i] = 0;
+         for(int j=0; j<n; j++)
+            if( bonded[i][j] ) d[i][j] = 1;
+      }
+      for(int k=0; k<n; k++)
+         for(int i=0; i<n; i++)
+            for(int j=0; j<n; j++)
+               d[i][j] = Math.min(d[i][j], d[i][k] + d[k][j]);
+
+      for(int i=0; i<nTyped; i++)
+      {  for(int t=0; t<NTypes; t++)
+            if( (typeMasks[i] & 1L << t) != 0 ) typeCount[t]++;
+
+         for(int j=0; j<=i; j++)
+         {  int dist = d[typedAtoms[i]][typedAtoms[j]];
+            if( dist > maxDist ) continue;
+
+            for(int t1=0; t1<NTypes; t1++)
+            {  if( (typeMasks[i] & 1L << t1) == 0 ) continue;
+               for(int t2=0; t2<NTypes; t2++)
+               {  if( (typeMasks[j] & 1L << t2) == 0 ) continue;
+                  pairCount[Math.max(t1,t2)][Math.min(t1,t2)][dist]++;
+               }
+            }
+         }
+      }
+   }
+}
@@ -0,0 +1,358 @@
+/*
+   Copyright 2008-2015 Genentech Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+*/
+package com.genentech.chemistry.openEye.topoIndexes;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Distance matrices of a molecular graph given as adjacency arrays.
+ *
+ * The neighbors of atom i are nbrAt[nbrStart[i]] to nbrAt[nbrStart[i+1]-1]
+ * and the weight of the bond to nbrAt[k] is nbrWeight[k]. Atom indexes
+ * without bonds are allowed and are not reachable from any other atom.
+ *
+ * @author albertgo
+ *
+ */
+final class GraphDistances
+{  private final int nAtoms;
+   private final int[] nbrStart;
+   private final int[] nbrAt;
+   private final int[] nbrWeight;
+
+   GraphDistances(int[] nbrStart, int[] nbrAt, int[] nbrWeight)
+   {  this.nAtoms = nbrStart.length - 1;
+      this.nbrStart = nbrStart;
+      this.nbrAt = nbrAt;
+      this.nbrWeight = nbrWeight;
+   }
+
+   /**
+    * Dijkstra from every atom.
+    *
+    * @return matrix with the sum of the weights on the lightest path between
+    *         two atoms, Integer.MAX_VALUE if they are not connected.
+    */
+   int[][] getShortestMatrix()
+   {  int[][] dMat = new int[nAtoms][nAtoms];
+      // entries are distance << 32 | atom
+      long[] heap = new long[nbrAt.length + 1];
+
+      for(int i=0; i<nAtoms; i++)
+      {  int[] dist = dMat[i];
+         Arrays.fill(dist, Integer.MAX_VALUE);
+         dist[i] = 0;
+         heap[0] = i;
+         int heapSize = 1;
+         while( heapSize > 0 )
+         {  long top = heap[0];
+            heap[0] = heap[--heapSize];
+            siftDown(heap, heapSize);
+
+            int at = (int)top;
+            int d = (int)(top >>> 32);
+            if( d > dist[at] ) continue;
+
+            for(int k=nbrStart[at]; k<nbrStart[at+1]; k++)
+            {  int nbr = nbrAt[k];
+               int nd = d + nbrWeight[k];
+               if( nd >= dist[nbr] ) continue;
+
+               dist[nbr] = nd;
+               heap[heapSize] = (long)nd << 32 | nbr;
+               siftUp(heap, heapSize++);
+            }
+         }
+      }
+      return dMat;
+   }
+
+   private static void siftUp(long[] heap, int pos)
+   {  long val = heap[pos];
+      while( pos > 0 )
+      {  int parent = (pos - 1) >> 1;
+         if( heap[parent] <= val ) break;
+         heap[pos] = heap[parent];
+         pos = parent;
+      }
+      heap[pos] = val;
+   }
+
+   private static void siftDown(long[] heap, int size)
+   {  if( size == 0 ) return;
+      long val = heap[0];
+      int pos = 0;
+      int child;
+      while( (child = 2 * pos + 1) < size )
+      {  if( child + 1 < size && heap[child+1] < heap[child] ) child++;
+         if( val <= heap[child] ) break;
+         heap[pos] = heap[child];
+         pos = child;
+      }
+      heap[pos] = val;
+   }
+
+
+   /**
+    * Longest simple path between atoms as enumerated by
+    * {@link com.aestel.chemistry.openEye.tools.DFSIterator}.
+    *
+    * A path returned by the DFSIterator may end with a ring closure bond from
+    * its last atom to an atom already on the path. The weight of that bond
+    * is included in the path weight, so the longest distance from i to j
+    * includes the heaviest such bond.
+    *
+    * A simple path visits the biconnected components (blocks) of the graph
+    * in the unique order given by the block-cut tree, entering and leaving
+    * each block through an articulation atom. The longest path is therefore
+    * the sum of the longest paths within each block. Only these are
+    * enumerated, the cost is exponential in the size of the largest block
+    * but not in the number of ring systems.
+    *
+    * @param maxSteps maximum number of atoms visited in the enumeration.
+    * @return matrix with the longest distance from atom i (row) to atom j,
+    *         Integer.MIN_VALUE if they are not connected. This is not symmetric
+    *         because of the ring closure bonds.
+    * @throws TimeoutException if more than maxSteps atoms need to be visited.
+    */
+   int[][] getLongestMatrix(long maxSteps) throws TimeoutException
+   {  Block[] blocks = getBlocks();
+
+      // blocks and local index of each atom in these blocks
+      int[] nAtBlocks = new int[nAtoms+1];
+      for(Block b : blocks)
+         for(int at : b.atoms)
+            nAtBlocks[at+1]++;
+      for(int i=0; i<nAtoms; i++)
+         nAtBlocks[i+1] += nAtBlocks[i];
+      int[] atBlock = new int[nAtBlocks[nAtoms]];
+      int[] atBlockIdx = new int[nAtBlocks[nAtoms]];
+      int[] fill = Arrays.copyOf(nAtBlocks, nAtoms);
+      for(int bIdx=0; bIdx<blocks.length; bIdx++)
+      {  int[] ats = blocks[bIdx].atoms;
+         for(int l=0; l<ats.length; l++)
+         {  atBlock[fill[ats[l]]] = bIdx;
+            atBlockIdx[fill[ats[l]]++] = l;
+         }
+      }
+
+      long[] steps = new long[] { maxSteps };
+      for(Block b : blocks)
+         b.computeLongest(steps);
+
+      int[][] dMat = new int[nAtoms][nAtoms];
+      // stack entries: block, entry atom local index, distance at entry atom
+      int[] stack = new int[3 * (atBlock.length + 1)];
+      for(int i=0; i<nAtoms; i++)
+      {  int[] dist = dMat[i];
+         Arrays.fill(dist, Integer.MIN_VALUE);
+
+         int sp = 0;
+         for(int k=nAtBlocks[i]; k<nAtBlocks[i+1]; k++)
+         {  stack[sp++] = atBlock[k];
+            stack[sp++] = atBlockIdx[k];
+            stack[sp++] = 0;
+         }
+         while( sp > 0 )
+         {  int d = stack[--sp];
+            int entry = stack[--sp];
+            int bIdx = stack[--sp];
+            Block b = blocks[bIdx];
+            int[] longest = b.longest[entry];
+            int[] longestClosed = b.longestClosed[entry];
+            for(int l=0; l<b.atoms.length; l++)
+            {  if( l == entry ) continue;
+               int at = b.atoms[l];
+               dist[at] = d + longestClosed[l];
+
+               for(int k=nAtBlocks[at]; k<nAtBlocks[at+1]; k++)
+               {  if( atBlock[k] == bIdx ) continue;
+                  stack[sp++] = atBlock[k];
+                  stack[sp++] = atBlockIdx[k];
+                  stack[sp++] = d + longest[l];
+               }
+            }
+         }
+      }
+      return dMat;
+   }
+
+
+   /**
+    * Biconnected components by the iterative Tarjan algorithm, a single
+    * bond which is not in a ring forms a block of two atoms.
+    */
+   private Block[] getBlocks()
+   {  int[] disc = new int[nAtoms];
+      int[] low = new int[nAtoms];
+      int[] parent = new int[nAtoms];
+      int[] nextNbr = new int[nAtoms];
+      int[] atStack = new int[nAtoms];
+      int[] edgeStack = new int[2 * nbrAt.length];
+      int[] inBlock = new int[nAtoms];
+      Arrays.fill(inBlock, -1);
+      int[] localIdx = new int[nAtoms];
+      int[] bAtoms = new int[nAtoms];
+      Block[] blocks = new Block[nbrAt.length/2];
+      int nBlocks = 0;
+      int time = 0;
+
+      for(int root=0; root<nAtoms; root++)
+      {  if( disc[root] != 0 || nbrStart[root] == nbrStart[root+1] ) continue;
+
+         int asp = 0;
+         int esp = 0;
+         atStack[asp++] = root;
+         parent[root] = -1;
+         disc[root] = low[root] = ++time;
+         nextNbr[root] = nbrStart[root];
+
+         while( asp > 0 )
+         {  int at = atStack[asp-1];
+            if( nextNbr[at] < nbrStart[at+1] )
+            {  int nbr = nbrAt[nextNbr[at]++];
+               if( nbr == parent[at] ) continue;
+
+               if( disc[nbr] == 0 )
+               {  edgeStack[esp++] = at;
+                  edgeStack[esp++] = nbr;
+                  parent[nbr] = at;
+                  disc[nbr] = low[nbr] = ++time;
+                  nextNbr[nbr] = nbrStart[nbr];
+                  atStack[asp++] = nbr;
+
+               } else if( disc[nbr] < disc[at] )
+               {  edgeStack[esp++] = at;
+                  edgeStack[esp++] = nbr;
+                  low[at] = Math.min(low[at], disc[nbr]);
+               }
+               continue;
+            }
+
+            asp--;
+            int par = parent[at];
+            if( par < 0 ) continue;
+
+            low[par] = Math.min(low[par], low[at]);
+            if( low[at] < disc[par] ) continue;
+
+            // pop the bonds of the block closed by par-at
+            int nbAtoms = 0;
+            int a1, a2;
+            do
+            {  a2 = edgeStack[--esp];
+               a1 = edgeStack[--esp];
+               if( inBlock[a1] != nBlocks ) { inBlock[a1] = nBlocks; bAtoms[nbAtoms++] = a1; }
+               if( inBlock[a2] != nBlocks ) { inBlock[a2] = nBlocks; bAtoms[nbAtoms++] = a2; }
+            } while( a1 != par || a2 != at );
+
+            blocks[nBlocks] = new Block(Arrays.copyOf(bAtoms, nbAtoms), inBlock, nBlocks, localIdx);
+            nBlocks++;
+         }
+      }
+      return Arrays.copyOf(blocks, nBlocks);
+   }
+
+
+   /** Biconnected component with the longest paths between its atoms. */
+   private final class Block
+   {  private final int[] atoms;
+      /** local adjacency arrays */
+      private final int[] bNbrStart;
+      private final int[] bNbrAt;
+      private final int[] bNbrWeight;
+      private int[][] longest;
+      private int[][] longestClosed;
+
+      private boolean[] visited;
+      private long[] steps;
+
+      /**
+       * @param inBlock inBlock[at] == blockIdx for all atoms in this block.
+       * @param localIdx work array of size nAtoms.
+       */
+      private Block(int[] atoms, int[] inBlock, int blockIdx, int[] localIdx)
+      {  this.atoms = atoms;
+         int n = atoms.length;
+         for(int l=0; l<n; l++)
+            localIdx[atoms[l]] = l;
+
+         // two atoms of a block share only bonds that are in the block
+         bNbrStart = new int[n+1];
+         int nNbr = 0;
+         for(int l=0; l<n; l++)
+         {  int at = atoms[l];
+            for(int k=nbrStart[at]; k<nbrStart[at+1]; k++)
+               if( inBlock[nbrAt[k]] == blockIdx ) nNbr++;
+            bNbrStart[l+1] = nNbr;
+         }
+         bNbrAt = new int[nNbr];
+         bNbrWeight = new int[nNbr];
+         nNbr = 0;
+         for(int l=0; l<n; l++)
+         {  int at = atoms[l];
+            for(int k=nbrStart[at]; k<nbrStart[at+1]; k++)
+            {  if( inBlock[nbrAt[k]] != blockIdx ) continue;
+               bNbrAt[nNbr] = localIdx[nbrAt[k]];
+               bNbrWeight[nNbr++] = nbrWeight[k];
+            }
+         }
+      }
+
+      private void computeLongest(long[] steps) throws TimeoutException
+      {  int n = atoms.length;
+         longest = new int[n][n];
+         longestClosed = new int[n][n];
+         visited = new boolean[n];
+         this.steps = steps;
+
+         for(int start=0; start<n; start++)
+         {  visited[start] = true;
+            extend(longest[start], longestClosed[start], start, -1, 0);
+            visited[start] = false;
+         }
+         visited = null;
+      }
+
+      /** depth first enumeration of all simple paths in this block */
+      private void extend(int[] lngst, int[] lngstClosed, int at, int prev, int dist)
+            throws TimeoutException
+      {  if( --steps[0] < 0 )
+            throw new TimeoutException("Exceeded time in topological Indexer");
+
+         int closure = 0;
+         for(int k=bNbrStart[at]; k<bNbrStart[at+1]; k++)
+         {  int nbr = bNbrAt[k];
+            if( nbr == prev ) continue;
+
+            if( visited[nbr] )
+            {  closure = Math.max(closure, bNbrWeight[k]);
+               continue;
+            }
+
+            visited[nbr] = true;
+            extend(lngst, lngstClosed, nbr, at, dist + bNbrWeight[k]);
+            visited[nbr] = false;
+         }
+
+         if( prev < 0 ) return;
+         lngst[at] = Math.max(lngst[at], dist);
+         lngstClosed[at] = Math.max(lngstClosed[at], dist + closure);
+      }
+   }
+}
@@ -0,0 +1,185 @@
+/*
+   Copyright 2008-2015 Genentech Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+*/
+package com.genentech.chemistry.openEye.topoIndexes;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeoutException;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class GraphDistancesTest
+{  private static final int[] WEIGHTS = { 12, 12, 12, 6, 8, 4 };
+
+   /** bonds as atom pairs */
+   private int[][] bonds;
+   private int[] weights;
+   private int nAtoms;
+
+   /** random graph with rings, the last atom is not connected */
+   private void randomGraph(Random rand)
+   {  nAtoms = 3 + rand.nextInt(10);
+      int nRingBonds = rand.nextInt(5);
+      bonds = new int[nAtoms - 2 + nRingBonds][];
+      weights = new int[bonds.length];
+      boolean[][] bonded = new boolean[nAtoms][nAtoms];
+      int nBonds = 0;
+      for(int i=1; i<nAtoms-1; i++)
+      {  int j = rand.nextInt(i);
+         bonded[i][j] = bonded[j][i] = true;
+         bonds[nBonds++] = new int[] { i, j };
+      }
+      for(int r=0; r<nRingBonds; r++)
+      {  int i = rand.nextInt(nAtoms-1);
+         int j = rand.nextInt(nAtoms-1);
+         if( i == j || bonded[i][j] ) continue;
+         bonded[i][j] = bonded[j][i] = true;
+         bonds[nBonds++] = new int[] { i, j };
+      }
+      bonds = Arrays.copyOf(bonds, nBonds);
+      for(int b=0; b<nBonds; b++)
+         weights[b] = WEIGHTS[rand.nextInt(WEIGHTS.length)];
+   }
+
+   private GraphDistances createGraphDistances()
+   {  int[] nbrStart = new int[nAtoms+1];
+      for(int[] bd : bonds)
+      {  nbrStart[bd[0]+1]++;
+         nbrStart[bd[1]+1]++;
+      }
+      for(int i=0; i<nAtoms; i++)
+         nbrStart[i+1] += nbrStart[i];
+      int[] fill = Arrays.copyOf(nbrStart, nAtoms);
+      int[] nbrAt = new int[2*bonds.length];
+      int[] nbrWeight = new int[2*bonds.length];
+      for(int b=0; b<bonds.length; b++)
+      {  int a1 = bonds[b][0];
+         int a2 = bonds[b][1];
+         nbrAt[fill[a1]] = a2;
+         nbrWeight[fill[a1]++] = weights[b];
+         nbrAt[fill[a2]] = a1;
+         nbrWeight[fill[a2]++] = weights[b];
+      }
+      return new GraphDistances(nbrStart, nbrAt, nbrWeight);
+   }
+
+   /**
+    * Enumerate all paths as the DFSIterator does, including paths ending in
+    * a ring closure bond.
+    */
+   private void enumerate(int start, int at, int dist, boolean[] atVisited,
+                          boolean[] bdVisited, int[] shortest, int[] longest)
+   {  for(int b=0; b<bonds.length; b++)
+      {  if( bdVisited[b] ) continue;
+         int nbr;
+         if( bonds[b][0] == at ) nbr = bonds[b][1];
+         else if( bonds[b][1] == at ) nbr = bonds[b][0];
+         else continue;
+
+         bdVisited[b] = true;
+         int d = dist + weights[b];
+         if( atVisited[nbr] )
+         {  // ring closure, last atom is at
+            longest[at] = Math.max(longest[at], d);
+         } else
+         {  atVisited[nbr] = true;
+            shortest[nbr] = Math.min(shortest[nbr], d);
+            longest[nbr] = Math.max(longest[nbr], d);
+            enumerate(start, nbr, d, atVisited, bdVisited, shortest, longest);
+            atVisited[nbr] = false;
+         }
+         bdVisited[b] = false;
+      }
+   }
+
+   @Test
+   public void testRandomGraphs() throws TimeoutException
+   {  Random rand = new Random(42);
+      for(int g=0; g<500; g++)
+      {  randomGraph(rand);
+         GraphDistances gd = createGraphDistances();
+         int[][] shortest = gd.getShortestMatrix();
+         int[][] longest = gd.getLongestMatrix(Long.MAX_VALUE);
+
+         int[] refShortest = new int[nAtoms];
+         int[] refLongest = new int[nAtoms];
+         for(int i=0; i<nAtoms; i++)
+         {  Arrays.fill(refShortest, Integer.MAX_VALUE);
+            Arrays.fill(refLongest, Integer.MIN_VALUE);
+            boolean[] atVisited = new boolean[nAtoms];
+            atVisited[i] = true;
+            enumerate(i, i, 0, atVisited, new boolean[bonds.length], refShortest, refLongest);
+            refShortest[i] = 0;
+
+            for(int j=0; j<nAtoms; j++)
+            {  Assert.assertEquals(shortest[i][j], refShortest[j], "shortest " + i + " " + j);
+               if( i != j )
+                  Assert.assertEquals(longest[i][j], refLongest[j], "longest " + i + " " + j);
+            }
+         }
+
+      }
+   }
+
+   @Test
+   public void testCyclopentane() throws TimeoutException
+   {  nAtoms = 5;
+      bonds = new int[][] { {0,1}, {1,2}, {2,3}, {3,4}, {4,0} };
+      weights = new int[] { 12, 12, 12, 12, 12 };
+      GraphDistances gd = createGraphDistances();
+
+      // neighbors are 4 bonds away plus the closing bond
+      Assert.assertEquals(gd.getLongestMatrix(Long.MAX_VALUE)[0], new int[] { Integer.MIN_VALUE, 60, 36, 36, 60 });
+      Assert.assertEquals(gd.getShortestMatrix()[0], new int[] { 0, 12, 24, 24, 12 });
+   }
+
+   @Test(expectedExceptions = TimeoutException.class)
+   public void testTimeout() throws TimeoutException
+   {  // complete graph on 12 atoms has too many paths
+      nAtoms = 12;
+      bonds = new int[nAtoms*(nAtoms-1)/2][];
+      weights = new int[bonds.length];
+      int b = 0;
+      for(int i=0; i<nAtoms; i++)
+         for(int j=0; j<i; j++)
+         {  weights[b] = 12;
+            bonds[b++] = new int[] { i, j };
+         }
+      createGraphDistances().getLongestMatrix(1000*1000);
+   }
+
+   @Test
+   public void testLongChain() throws TimeoutException
+   {  // ring systems connected by chains do not multiply the number of paths
+      int nRings = 200;
+      nAtoms = 6 * nRings;
+      bonds = new int[7 * nRings - 1][];
+      weights = new int[bonds.length];
+      int b = 0;
+      for(int r=0; r<nRings; r++)
+      {  for(int a=0; a<6; a++)
+            bonds[b++] = new int[] { 6*r + a, 6*r + (a+1)%6 };
+         if( r > 0 ) bonds[b++] = new int[] { 6*r - 3, 6*r };
+      }
+      Arrays.fill(weights, 8);
+
+      int[][] longest = createGraphDistances().getLongestMatrix(1000*1000);
+      // 3 bonds in each ring + 1 bond between rings
+      Assert.assertEquals(longest[0][nAtoms-3], 3*8*nRings + 8*(nRings-1));
+   }
+}
@@ -17,15 +17,13 @@
 package com.genentech.chemistry.openEye.topoIndexes;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.TimeoutException;
 
 import openeye.oechem.*;
 
 import com.aestel.chemistry.molecule.Atom;
-import com.aestel.chemistry.openEye.tools.DFSIterator;
-import com.aestel.chemistry.openEye.tools.OEAtomBondPath;
+import com.genentech.oechem.tools.MolGraph;
 
 
 
@@ -44,10 +42,14 @@ import com.aestel.chemistry.openEye.tools.OEAtomBondPath;
  */
 
 public class TopologicalIndexer
-{  private OEGraphMol mol = new OEGraphMol();
+{  /** limit for the enumeration of paths for the longest distances, about 1 sec */
+   private static final long MAXPathSteps = 100L*1000*1000;
+
+   private OEGraphMol mol = new OEGraphMol();
    private int nAtom;
    private int nBond;
-   private OEAtomBase[] ats;
+   private MolGraph molGraph;
+   private GraphDistances graph;
    private int[][] dMat;
    private int[][] multiDMat12;
    private int[][] multiLongDMat12;
@@ -73,9 +75,20 @@ public class TopologicalIndexer
       oechem.OESuppressHydrogens(mol);
       oechem.OEAssignAromaticFlags(mol);
 
-      nAtom = mol.NumAtoms();
-      nBond = mol.NumBonds();
-      ats  = null;
+      computeIndexes(MolGraph.create(mol));
+   }
+
+   /**
+    * call this method or {@link #computeIndexes(OEMolBase)} before any of the
+    * get>>> functions.
+    *
+    * @param graph of a molecule with suppressed hydrogens and aromatic flags.
+    */
+   public void computeIndexes(MolGraph graph)
+   {  molGraph = graph;
+      nAtom = graph.getNumAtoms();
+      nBond = graph.getNumBonds();
+      this.graph = null;
       dMat = null;
       adjacentPairs = null;
       vertexDegrees = null;
@@ -104,8 +117,7 @@ public class TopologicalIndexer
    }
 
 
-   /** Eq. 6 and 8 in Ref 3
-    * @throws TimeoutException if a single molecule needs more thatn 30sec */
+   /** Eq. 6 and 8 in Ref 3 */
    public double getBalabanJYIndex() throws TimeoutException
    {  double ret = 0D;
       getAdjacentPairs();
@@ -121,8 +133,7 @@ public class TopologicalIndexer
       return (double)nBond/(nBond-nAtom + 1 +1) * ret;
    }
 
-   /** Eq. 6 and 8 in Ref 3
-    * @throws TimeoutException if a single molecule needs more thatn 30sec */
+   /** Eq. 6 and 8 in Ref 3 */
    public double getBalabanJXIndex() throws TimeoutException
    {  double ret = 0D;
       getAdjacentPairs();
@@ -157,7 +168,8 @@ public class TopologicalIndexer
 
 
    /** Eq. 6 and 8 in Ref 3
-    * @throws TimeoutException if a single molecule needs more thatn 30sec */
+    * @throws TimeoutException if the longest paths in a ring system can not
+    *         be enumerated in about 1 sec. Eg. for buckyballs. */
    public double getBalabanJYStarIndex() throws TimeoutException
    {  getAdjacentPairs();
       getMultiLongDegrees();
@@ -174,7 +186,8 @@ public class TopologicalIndexer
    }
 
    /** Eq. 6 and 8 in Ref 3
-    * @throws TimeoutException if a single molecule needs more thatn 30sec */
+    * @throws TimeoutException if the longest paths in a ring system can not
+    *         be enumerated in about 1 sec. Eg. for buckyballs. */
    public double getBalabanJXStarIndex() throws TimeoutException
    {  getAdjacentPairs();
       getMultiLongDegrees();
@@ -254,17 +267,13 @@ public class TopologicalIndexer
       return distributionDistDegrees;
    }
 
-   /** array of number of bonds per atom by atom index */
+   /** array of number of bonds per atom by atom position */
    private int[] getVertexDegrees()
    {  if( vertexDegrees != null ) return vertexDegrees;
 
-      vertexDegrees = new int[mol.GetMaxAtomIdx()+1];
-      OEAtomBaseIter atIt = mol.GetAtoms();
-      while(atIt.hasNext())
-      {  OEAtomBase at = atIt.next();
-         vertexDegrees[at.GetIdx()] = at.GetExplicitDegree();
-      }
-      atIt.delete();
+      vertexDegrees = new int[nAtom];
+      for(int i=0; i<nAtom; i++)
+         vertexDegrees[i] = molGraph.getDegree(i);
 
       return vertexDegrees;
    }
@@ -282,9 +291,8 @@ public class TopologicalIndexer
 
    /**
     * MultiDegree of an atom is the sum e of its row (=column) in the multi distance matrix.
-    * @throws TimeoutException if a single molecule needs more thatn 30sec
     */
-   private double[] getMultiDegrees() throws TimeoutException
+   private double[] getMultiDegrees()
    {  if( multiDegrees != null ) return multiDegrees;
       getMultiDistanceMatrixTimes12();
 
@@ -298,11 +306,11 @@ public class TopologicalIndexer
 
    /**
     * MultiDegree of an atom is the sum e of its row (=column) in the multi distance matrix.
-    * @throws TimeoutException if a single molecule needs more thatn 30sec
+    * @throws TimeoutException if the longest paths can not be enumerated in time.
     */
    private double[] getMultiLongDegrees() throws TimeoutException
    {  if( multiLongDegrees != null ) return multiLongDegrees;
-      getMultiDistanceMatrixTimes12();
+      getMultiLongDistanceMatrixTimes12();
 
       long[] deg = getDegrees(multiLongDMat12);
       multiLongDegrees = new double[deg.length];
@@ -316,147 +324,102 @@ public class TopologicalIndexer
    /**
     * degree of an atom is the sum of its row (=column) in the distance matrix.
     */
-   private long[] getDegrees(int[][] dMat2)
-   {  getAtoms();
-      long[] deg = new long[dMat2.length];
+   private static long[] getDegrees(int[][] dMat2)
+   {  long[] deg = new long[dMat2.length];
       for(int i=0; i<dMat2.length; i++)
-      {  if(ats[i] == null) continue;
          for(int j=0; j<dMat2.length; j++)
-         {  if(ats[j] == null) continue;
             deg[i] += dMat2[i][j];
-         }
-      }
       return deg;
    }
 
 
    /**
-    * fill ats array with atoms indexed by at.getIdx()
-    *
+    * Adjacency arrays by atom position with the multi bond orders times 12 as
+    * weights.
     */
-   OEAtomBase[] getAtoms()
-   {  if( ats != null ) return ats;
-
-      ats = new OEAtomBase[mol.GetMaxAtomIdx() + 1];
-      OEAtomBaseIter atIt1 = mol.GetAtoms();
-      while (atIt1.hasNext())
-      {
-         OEAtomBase at = atIt1.next();
-         ats[at.GetIdx()] = at;
+   private GraphDistances getGraph()
+   {  if( graph != null ) return graph;
+
+      int[] nbrAt = molGraph.getNbrAtoms();
+      int[] nbrWeight = new int[nbrAt.length];
+      for(int k=0; k<nbrAt.length; k++)
+      {  int bd = molGraph.getNbrBond(k);
+         nbrWeight[k] = getMultiBondOrderTimes12(molGraph.isBondAromatic(bd),
+                                                 molGraph.getBondOrder(bd));
       }
-      atIt1.delete();
 
-      return ats;
+      graph = new GraphDistances(molGraph.getNbrStarts(), nbrAt, nbrWeight);
+      return graph;
    }
 
    /**
-    * Calculate distance matrix of atoms in molecule indexed by {@see OEAtomBase#getIndex}.
+    * Distance matrix of atoms in molecule indexed by atom position.
     */
    private int[][] getDistanceMatrix()
    {  if( dMat != null ) return dMat;
-      getAtoms();
-
-      dMat = new int[ats.length][ats.length];
-      for( int i=0; i<ats.length; i++)
-      {  if( ats[i] == null) continue;
-         for(int j=0; j<i; j++)
-         {  if( ats[j] == null ) continue;
-            dMat[i][j] = oechem.OEGetPathLength(ats[i], ats[j]);
-            dMat[j][i] = dMat[i][j];
-         }
-      }
 
+      dMat = molGraph.getDistanceMatrix();
       return dMat;
    }
 
 
    /**
     * Fill multiDMat12 with the MultiBondDistance Matrix times 12 (cf. reference 1).
-    *
-    *  And the multiShortDMat12 which is called delta in ref. 6
-    * @throws TimeoutException if a single molecule needs more thatn 30sec. Eg. for buckyballs.
     */
-   private int[][] getMultiDistanceMatrixTimes12() throws TimeoutException
-   {  int maxAtIdx = mol.GetMaxAtomIdx();
-      int nBonds = mol.NumBonds();
-      int[] multiBondOrdersTimes12 = new int[mol.GetMaxBondIdx()+1];
-
-      OEBondBaseIter bdIt = mol.GetBonds();
-      while(bdIt.hasNext())
-      {  OEBondBase bd = bdIt.next();
-         multiBondOrdersTimes12[bd.GetIdx()] = getMultiBondOrderTimes12(bd);
-      }
-      bdIt.delete();
-
-      multiDMat12 = new int[maxAtIdx+1][maxAtIdx+1];
-      multiLongDMat12 = new int[maxAtIdx+1][maxAtIdx+1];
-
-      OEAtomBaseIter atIt = mol.GetAtoms();
-      while(atIt.hasNext())
-      {  OEAtomBase at = atIt.next();
-         int i = at.GetIdx();
-         Arrays.fill(multiDMat12[i], Integer.MAX_VALUE);
-         Arrays.fill(multiLongDMat12[i], Integer.MIN_VALUE);
-
-         DFSIterator dfs = new DFSIterator(at, nBonds);
-         long start = System.currentTimeMillis();
-         while( dfs.hasNext())
-         {  if(System.currentTimeMillis() - start > 30*1000)
-            {  dfs.close();
-               atIt.delete();
-               throw new TimeoutException("Exceeded time in topological Indexer");
-            }
-
-            OEAtomBondPath atbPath = dfs.next();
-            OEAtomBase at2 = atbPath.getLastNode();
-            int j = at2.GetIdx();
-            if( j >= i ) continue;
-
-            OEBondBase[] bonds = atbPath.getVertexSequence();
-            int mDist = 0;
-            for( OEBondBase bd : bonds)
-               mDist += multiBondOrdersTimes12[bd.GetIdx()];
-
-            if( multiDMat12[i][j] > mDist )
-               multiDMat12[i][j] = mDist;
-
-            if( multiLongDMat12[i][j] < mDist )
-               multiLongDMat12[i][j] = mDist;
-         }
-         dfs.close();
-      }
-      atIt.delete();
-
-      for( int i=0; i<maxAtIdx+1; i++)
-      {  multiDMat12[i][i] = 0;
-         multiLongDMat12[i][i] = 0;
-         for(int j=i+1; j<maxAtIdx+1; j++)
-         {  multiDMat12[i][j] = multiDMat12[j][i];
-            multiLongDMat12[i][j] = multiLongDMat12[j][i];
-         }
-      }
-
+   private int[][] getMultiDistanceMatrixTimes12()
+   {  if( multiDMat12 != null ) return multiDMat12;
 
+      multiDMat12 = toSymmetric(getGraph().getShortestMatrix());
       return multiDMat12;
    }
 
 
+   /**
+    * Fill multiLongDMat12 with the longest MultiBondDistance Matrix times 12
+    * which is called delta in ref. 6
+    * @throws TimeoutException if the longest paths can not be enumerated in
+    *          about 1 sec. Eg. for buckyballs.
+    */
+   private int[][] getMultiLongDistanceMatrixTimes12() throws TimeoutException
+   {  if( multiLongDMat12 != null ) return multiLongDMat12;
+
+      multiLongDMat12 = toSymmetric(getGraph().getLongestMatrix(MAXPathSteps));
+      return multiLongDMat12;
+   }
+
+
+   /**
+    * Keep the values of the lower triangle and copy them to the upper
+    * triangle. The values in the lower triangle are those of paths starting
+    * at the atom with the larger index.
+    */
+   private static int[][] toSymmetric(int[][] mat)
+   {  for( int i=0; i<mat.length; i++)
+         mat[i][i] = 0;
+
+      for( int i=0; i<mat.length; i++)
+         for(int j=i+1; j<mat.length; j++)
+            mat[i][j] = mat[j][i];
+
+      return mat;
+   }
+
+
    /** Multi Bondorder times 12.
     * 8 for aromatic bonds.
     * 12/Bondorder for others
     * This allows for integer values
     */
-   private static int getMultiBondOrderTimes12(OEBondBase bd)
-   {  if (bd.IsAromatic())
+   private static int getMultiBondOrderTimes12(boolean isAromatic, int order)
+   {  if (isAromatic)
          return 8;
-      return 12/bd.GetOrder();
+      return 12/order;
    }
 
 
    /** Eq. 8 in Ref 3 */
-   private double getBalabanDY(int atIdxi, double atDegree)
-   {  OEAtomBase at = ats[atIdxi];
-      int z = at.GetAtomicNum();
+   private double getBalabanDY(int atPos, double atDegree)
+   {  int z = molGraph.getAtomicNum(atPos);
       int g = Atom.MAIN_GROUP[z];
 
       double d = atDegree * (1.1191 + 0.016 * z - 0.0537 * g);
@@ -466,9 +429,8 @@ public class TopologicalIndexer
 
    /** Eq. Xi form Ref 5, page 23
     * @param multiLongDegrees2 */
-   private double getBalabanDX(int atIdx, double atDegree)
-   {  OEAtomBase at = ats[atIdx];
-      int z = at.GetAtomicNum();
+   private double getBalabanDX(int atPos, double atDegree)
+   {  int z = molGraph.getAtomicNum(atPos);
       int g = Atom.MAIN_GROUP[z];
 
       double d = atDegree * (0.4196 - 0.0078 * z + 0.1567 * g);
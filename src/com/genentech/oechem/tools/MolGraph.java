@@ -0,0 +1,349 @@
+/*
+   Copyright 2008-2014 Genentech Inc.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+*/
+package com.genentech.oechem.tools;
+
+import java.util.Arrays;
+
+import openeye.oechem.OEAtomBase;
+import openeye.oechem.OEAtomBaseIter;
+import openeye.oechem.OEBondBase;
+import openeye.oechem.OEBondBaseIter;
+import openeye.oechem.OEMolBase;
+
+/**
+ * Immutable snapshot of the graph of an OEMolBase in primitive arrays.
+ *
+ * The atom and bond properties are read from the molecule once in
+ * {@link #create(OEMolBase)}, after that no calls to OEChem are needed, the
+ * snapshot stays valid if the molecule is changed or deleted and can be
+ * shared between threads.
+ *
+ * Atoms are identified by their position 0..getNumAtoms()-1, which is in
+ * order of {@link OEAtomBase#GetIdx()}. Bonds are identified by their position
+ * 0..getNumBonds()-1. The neighbors of atom at are in positions
+ * getNbrStart(at) to getNbrEnd(at)-1 of the neighbor arrays.
+ *
+ * Any ring perception, aromaticity or hydrogen handling needs to be done on
+ * the molecule before creating the snapshot.
+ *
+ * @author albertgo
+ */
+public final class MolGraph
+{  private final int nAtoms;
+   private final int nBonds;
+
+   private final int[] atomIdx;
+   /** atom position by OEChem atom index, -1 for unused indexes */
+   private final int[] atomPos;
+   private final int[] atomicNum;
+   private final int[] formalCharge;
+   private final int[] implicitHCount;
+   private final int[] explicitHCount;
+   private final int[] hvyDegree;
+   private final boolean[] atomAromatic;
+   private final boolean[] atomInRing;
+
+   private final int[] nbrStart;
+   private final int[] nbrAt;
+   private final int[] nbrBond;
+
+   private final int[] bondIdx;
+   private final int[] bondBgn;
+   private final int[] bondEnd;
+   private final int[] bondOrder;
+   private final boolean[] bondAromatic;
+   private final boolean[] bondInRing;
+
+   /** computed on first use, a race only computes the same matrix twice */
+   private volatile int[][] distanceMatrix;
+
+
+   private MolGraph(int nAtoms, int nBonds, int maxAtomIdx)
+   {  this.nAtoms = nAtoms;
+      this.nBonds = nBonds;
+
+      atomIdx        = new int[nAtoms];
+      atomPos        = new int[maxAtomIdx+1];
+      atomicNum      = new int[nAtoms];
+      formalCharge   = new int[nAtoms];
+      implicitHCount = new int[nAtoms];
+      explicitHCount = new int[nAtoms];
+      hvyDegree      = new int[nAtoms];
+      atomAromatic   = new boolean[nAtoms];
+      atomInRing     = new boolean[nAtoms];
+
+      nbrStart = new int[nAtoms+1];
+      nbrAt    = new int[2*nBonds];
+      nbrBond  = new int[2*nBonds];
+
+      bondIdx      = new int[nBonds];
+      bondBgn      = new int[nBonds];
+      bondEnd      = new int[nBonds];
+      bondOrder    = new int[nBonds];
+      bondAromatic = new boolean[nBonds];
+      bondInRing   = new boolean[nBonds];
+   }
+
+
+   /**
+    * Read the graph of mol.
+    */
+   public static MolGraph create(OEMolBase mol)
+   {  int maxAtomIdx = 0;
+      int[] atIdx = new int[mol.NumAtoms()];
+      int nAtoms = 0;
+      OEAtomBaseIter atIt = mol.GetAtoms();
+      while( atIt.hasNext() )
+      {  int idx = atIt.next().GetIdx();
+         atIdx[nAtoms++] = idx;
+         if( idx > maxAtomIdx ) maxAtomIdx = idx;
+      }
+      atIt.delete();
+
+      // GetAtoms() is usually but not necessarily in order of the index
+      atIdx = Arrays.copyOf(atIdx, nAtoms);
+      Arrays.sort(atIdx);
+
+      MolGraph g = new MolGraph(nAtoms, mol.NumBonds(), maxAtomIdx);
+      Arrays.fill(g.atomPos, -1);
+      for(int pos=0; pos<nAtoms; pos++)
+      {  g.atomIdx[pos] = atIdx[pos];
+         g.atomPos[atIdx[pos]] = pos;
+      }
+
+      atIt = mol.GetAtoms();
+      while( atIt.hasNext() )
+      {  OEAtomBase at = atIt.next();
+         int pos = g.atomPos[at.GetIdx()];
+         g.atomicNum[pos]      = at.GetAtomicNum();
+         g.formalCharge[pos]   = at.GetFormalCharge();
+         g.implicitHCount[pos] = at.GetImplicitHCount();
+         g.atomAromatic[pos]   = at.IsAromatic();
+         g.atomInRing[pos]     = at.IsInRing();
+      }
+      atIt.delete();
+
+      int nBonds = 0;
+      OEBondBaseIter bdIt = mol.GetBonds();
+      while( bdIt.hasNext() )
+      {  OEBondBase bd = bdIt.next();
+         g.bondIdx[nBonds]      = bd.GetIdx();
+         g.bondBgn[nBonds]      = g.atomPos[bd.GetBgnIdx()];
+         g.bondEnd[nBonds]      = g.atomPos[bd.GetEndIdx()];
+         g.bondOrder[nBonds]    = bd.GetOrder();
+         g.bondAromatic[nBonds] = bd.IsAromatic();
+         g.bondInRing[nBonds]   = bd.IsInRing();
+         nBonds++;
+      }
+      bdIt.delete();
+
+      g.fillNeighbors();
+      return g;
+   }
+
+
+   private void fillNeighbors()
+   {  for(int b=0; b<nBonds; b++)
+      {  nbrStart[bondBgn[b]+1]++;
+         nbrStart[bondEnd[b]+1]++;
+      }
+      for(int at=0; at<nAtoms; at++)
+         nbrStart[at+1] += nbrStart[at];
+
+      int[] fill = Arrays.copyOf(nbrStart, nAtoms);
+      for(int b=0; b<nBonds; b++)
+      {  int a1 = bondBgn[b];
+         int a2 = bondEnd[b];
+         nbrAt[fill[a1]] = a2;
+         nbrBond[fill[a1]++] = b;
+         nbrAt[fill[a2]] = a1;
+         nbrBond[fill[a2]++] = b;
+      }
+
+      for(int at=0; at<nAtoms; at++)
+      {  for(int k=nbrStart[at]; k<nbrStart[at+1]; k++)
+         {  if( atomicNum[nbrAt[k]] == 1 )
+               explicitHCount[at]++;
+            else
+               hvyDegree[at]++;
+         }
+      }
+   }
+
+
+   public int getNumAtoms()
+   {  return nAtoms;
+   }
+
+   public int getNumBonds()
+   {  return nBonds;
+   }
+
+   /** @return {@link OEAtomBase#GetIdx()} of the atom at pos */
+   public int getAtomIdx(int pos)
+   {  return atomIdx[pos];
+   }
+
+   /** @return position of the atom with {@link OEAtomBase#GetIdx()} == idx or -1 */
+   public int getAtomPos(int idx)
+   {  if( idx >= atomPos.length ) return -1;
+      return atomPos[idx];
+   }
+
+   public int getAtomicNum(int at)
+   {  return atomicNum[at];
+   }
+
+   public int getFormalCharge(int at)
+   {  return formalCharge[at];
+   }
+
+   public int getImplicitHCount(int at)
+   {  return implicitHCount[at];
+   }
+
+   /** @return number of hydrogen atoms bonded to at */
+   public int getExplicitHCount(int at)
+   {  return explicitHCount[at];
+   }
+
+   public int getTotalHCount(int at)
+   {  return implicitHCount[at] + explicitHCount[at];
+   }
+
+   /** @return number of atoms bonded to at */
+   public int getDegree(int at)
+   {  return nbrStart[at+1] - nbrStart[at];
+   }
+
+   /** @return number of non hydrogen atoms bonded to at */
+   public int getHvyDegree(int at)
+   {  return hvyDegree[at];
+   }
+
+   public boolean isAromatic(int at)
+   {  return atomAromatic[at];
+   }
+
+   public boolean isInRing(int at)
+   {  return atomInRing[at];
+   }
+
+   /** @return first position of the neighbors of at */
+   public int getNbrStart(int at)
+   {  return nbrStart[at];
+   }
+
+   /** @return last position (exclusive) of the neighbors of at */
+   public int getNbrEnd(int at)
+   {  return nbrStart[at+1];
+   }
+
+   /** @return atom position of the neighbor at position k */
+   public int getNbrAtom(int k)
+   {  return nbrAt[k];
+   }
+
+   /** @return bond position of the bond to the neighbor at position k */
+   public int getNbrBond(int k)
+   {  return nbrBond[k];
+   }
+
+   /**
+    * Neighbor start positions of all atoms, length getNumAtoms()+1.
+    * This is the internal array and must not be modified.
+    */
+   public int[] getNbrStarts()
+   {  return nbrStart;
+   }
+
+   /**
+    * Neighbor atom positions of all atoms.
+    * This is the internal array and must not be modified.
+    */
+   public int[] getNbrAtoms()
+   {  return nbrAt;
+   }
+
+   /** @return {@link OEBondBase#GetIdx()} of the bond at position bd */
+   public int getBondIdx(int bd)
+   {  return bondIdx[bd];
+   }
+
+   /** @return atom position of the begin atom of bd */
+   public int getBondBgn(int bd)
+   {  return bondBgn[bd];
+   }
+
+   /** @return atom position of the end atom of bd */
+   public int getBondEnd(int bd)
+   {  return bondEnd[bd];
+   }
+
+   /** @return atom position of the atom across bd from at */
+   public int getBondNbr(int bd, int at)
+   {  return bondBgn[bd] == at ? bondEnd[bd] : bondBgn[bd];
+   }
+
+   public int getBondOrder(int bd)
+   {  return bondOrder[bd];
+   }
+
+   public boolean isBondAromatic(int bd)
+   {  return bondAromatic[bd];
+   }
+
+   public boolean isBondInRing(int bd)
+   {  return bondInRing[bd];
+   }
+
+   /**
+    * Number of bonds on the shortest path between two atoms by atom position,
+    * 0 if they are not connected as returned by OEGetPathLength.
+    *
+    * The matrix is computed on first use and shared, it must not be modified.
+    */
+   public int[][] getDistanceMatrix()
+   {  int[][] dMat = distanceMatrix;
+      if( dMat != null ) return dMat;
+
+      dMat = new int[nAtoms][nAtoms];
+      int[] queue = new int[nAtoms];
+      boolean[] seen = new boolean[nAtoms];
+      for(int i=0; i<nAtoms; i++)
+      {  int[] dist = dMat[i];
+         Arrays.fill(seen, false);
+         seen[i] = true;
+         queue[0] = i;
+         int head = 0;
+         int tail = 1;
+         while( head < tail )
+         {  int at = queue[head++];
+            for(int k=nbrStart[at]; k<nbrStart[at+1]; k++)
+            {  int nbr = nbrAt[k];
+               if( seen[nbr] ) continue;
+               seen[nbr] = true;
+               dist[nbr] = dist[at] + 1;
+               queue[tail++] = nbr;
+            }
+         }
+      }
+
+      distanceMatrix = dMat;
+      return dMat;
+   }
+}
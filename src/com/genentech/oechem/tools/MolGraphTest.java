@@ -0,0 +1,45 @@
+package com.genentech.oechem.tools;
+
+import org.testng.annotations.Test;
+import openeye.oechem.OEGraphMol;
+
+
+public class MolGraphTest
+{
+   @Test()
+   public static void testGraph()
+   {  OEGraphMol mol = new OEGraphMol();
+
+      OETools.smiToMol(mol,"[O-]C(=O)c1ccccc1[H]");
+      MolGraph g = MolGraph.create(mol);
+      mol.delete();
+
+      assert g.getNumAtoms() == 10 : "nAtoms " + g.getNumAtoms();
+      assert g.getNumBonds() == 10 : "nBonds " + g.getNumBonds();
+
+      assert g.getAtomicNum(0) == 8 && g.getFormalCharge(0) == -1;
+      assert g.getDegree(1) == 3 && g.getHvyDegree(1) == 3;
+      assert g.getDegree(8) == 3 && g.getHvyDegree(8) == 2;
+      assert g.getExplicitHCount(8) == 1 && g.getImplicitHCount(8) == 0;
+      assert g.getTotalHCount(4) == 1;
+      assert g.isAromatic(3) && ! g.isAromatic(1);
+      assert g.isInRing(8) && ! g.isInRing(9);
+
+      int dblBonds = 0;
+      for(int k=g.getNbrStart(1); k<g.getNbrEnd(1); k++)
+      {  int bd = g.getNbrBond(k);
+         assert g.getBondNbr(bd, 1) == g.getNbrAtom(k);
+         if( g.getBondOrder(bd) == 2 )
+         {  assert g.getNbrAtom(k) == 2;
+            dblBonds++;
+         }
+      }
+      assert dblBonds == 1;
+
+      int[][] dMat = g.getDistanceMatrix();
+      assert dMat[2][2] == 0;
+      assert dMat[0][6] == 5 && dMat[6][0] == 5 : "dist 0-6 " + dMat[0][6];
+      assert dMat[9][5] == 4 : "dist 9-5 " + dMat[9][5];
+      assert g.getDistanceMatrix() == dMat;
+   }
+}
@@ -0,0 +1,131 @@
+/*
+   Copyright 2006-2014 Man-Ling Lee & Alberto Gobbi
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+Contact: aestelSW@gmail.com
+*/
+package com.aestel.chemistry.openEye.fp;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link TanimotoKernel} processing {@link #SPECIES} longs per instruction
+ * using the jdk.incubator.vector module.
+ *
+ * The bits are counted with the shift and mask population count because
+ * java 17 has no lanewise bit count. After the third step each byte holds the
+ * count of its bits (&lt;= 8) so up to {@link #MAXByteSums} vectors are summed
+ * before the bytes have to be added up.
+ *
+ * Compile with java 17 or newer using
+ * <code>--add-modules jdk.incubator.vector</code>, see the compileVector
+ * target in build.xml.
+ *
+ * @author albertgo
+ */
+public final class VectorTanimotoKernel extends TanimotoKernel
+{  private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+   /** 31 * 8 &lt; 256 */
+   private static final int MAXByteSums = 31;
+
+   private static final long M1  = 0x5555555555555555L;
+   private static final long M2  = 0x3333333333333333L;
+   private static final long M4  = 0x0f0f0f0f0f0f0f0fL;
+   private static final long M8  = 0x00ff00ff00ff00ffL;
+   private static final long M16 = 0x0000ffff0000ffffL;
+
+   public VectorTanimotoKernel()
+   {  // fail early if the module was not added to the vm
+      SPECIES.length();
+   }
+
+   @Override
+   public String getName()
+   {  return "vector";
+   }
+
+   @Override
+   public int andBitCount(long[] a, int aOff, long[] b, int bOff, int len)
+   {  int step = SPECIES.length();
+      int upper = SPECIES.loopBound(len);
+      int count = 0;
+      int i = 0;
+
+      while( i < upper )
+      {  int chunkEnd = Math.min(upper, i + MAXByteSums * step);
+         LongVector acc = LongVector.zero(SPECIES);
+         for( ; i<chunkEnd; i+=step)
+         {  LongVector v = LongVector.fromArray(SPECIES, a, aOff+i)
+                              .and(LongVector.fromArray(SPECIES, b, bOff+i));
+            acc = acc.add(byteCounts(v));
+         }
+         count += sumBytes(acc);
+      }
+
+      for( ; i<len; i++)
+         count += Long.bitCount(a[aOff+i] & b[bOff+i]);
+
+      return count;
+   }
+
+   /**
+    * The query is loaded into registers once if it fits into one or two vectors.
+    */
+   @Override
+   public void andBitCounts(long[] query, int qOff, int len, long[] words, int off, int stride,
+                            int n, int[] counts)
+   {  int step = SPECIES.length();
+
+      if( len == step )
+      {  LongVector q = LongVector.fromArray(SPECIES, query, qOff);
+         for(int i=0; i<n; i++, off+=stride)
+            counts[i] = sumBytes(byteCounts(q.and(LongVector.fromArray(SPECIES, words, off))));
+
+      } else if( len == 2 * step )
+      {  LongVector q0 = LongVector.fromArray(SPECIES, query, qOff);
+         LongVector q1 = LongVector.fromArray(SPECIES, query, qOff+step);
+         for(int i=0; i<n; i++, off+=stride)
+         {  LongVector c0 = byteCounts(q0.and(LongVector.fromArray(SPECIES, words, off)));
+            LongVector c1 = byteCounts(q1.and(LongVector.fromArray(SPECIES, words, off+step)));
+            counts[i] = sumBytes(c0.add(c1));
+         }
+
+      } else
+      {  super.andBitCounts(query, qOff, len, words, off, stride, n, counts);
+      }
+   }
+
+   /**
+    * @return vector with the number of bits set in each byte of v in the byte.
+    */
+   private static LongVector byteCounts(LongVector v)
+   {  v = v.sub(v.lanewise(VectorOperators.LSHR, 1).and(M1));
+      v = v.and(M2).add(v.lanewise(VectorOperators.LSHR, 2).and(M2));
+      return v.add(v.lanewise(VectorOperators.LSHR, 4)).and(M4);
+   }
+
+   /**
+    * @return sum of all bytes in v, each byte must be &lt;= {@link #MAXByteSums} * 8.
+    */
+   private static int sumBytes(LongVector v)
+   {  // four 16 bit sums per lane, then sum of lanes which can not overflow 16 bits
+      v = v.and(M8).add(v.lanewise(VectorOperators.LSHR, 8).and(M8));
+      long s = v.reduceLanes(VectorOperators.ADD);
+
+      s = (s & M16) + ((s >>> 16) & M16);
+      return (int)((s & 0xFFFFFFFFL) + (s >>> 32));
+   }
+}